@@ -0,0 +1,54 @@
+/**
+ * This class is one microbenchmark run by BenchmarkRunner. The runner calls setUpIteration(), times a
+ * single call to run(operations), then calls tearDownIteration(), so work that only prepares or restores
+ * the state of an iteration is left out of the measurement.
+ *
+ * run(...) returns a checksum of what it computed. The runner folds every checksum into a volatile field
+ * so the JIT cannot remove the work as dead code.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public abstract class Benchmark {
+	private String name;
+
+	//Constructors
+    /**
+     * Creates a benchmark.
+     *
+     * @param name The name reported for the benchmark, for example "Buyer.addNewOfferTicks depth=1024 target=200"
+     *
+     * @return Benchmark instance
+     */
+	public Benchmark(String name){
+		this.name = name;
+	}
+
+	//Getters
+	public String getName(){
+		return this.name;
+	}
+
+	/**
+	 * This method prepares the state for an iteration. It is not timed.
+	 *
+	 * @param operations The number of operations the next call to run(...) will perform
+	 */
+	public void setUpIteration(int operations) throws Exception {
+	}
+
+	/**
+	 * This method performs the operations that are timed.
+	 *
+	 * @param operations The number of operations to perform
+	 *
+	 * @return checksum A value computed from the results of the operations
+	 */
+	public abstract long run(int operations) throws Exception;
+
+	/**
+	 * This method restores the state after an iteration. It is not timed.
+	 */
+	public void tearDownIteration() throws Exception {
+	}
+}
@@ -0,0 +1,199 @@
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class runs the microbenchmarks of the pricer and reports, for each one, the time per operation,
+ * the operations per second, the bytes allocated per operation and the garbage collections during the
+ * measured iterations. Each benchmark first runs warm up iterations so the JIT has compiled it.
+ *
+ *		java -cp ../src/:../bench/ BenchmarkRunner [--warmup=N] [--iterations=N] [--operations=N] [--forks=N]
+ *			[filter ...]
+ *
+ * Only benchmarks whose names contain one of the filters are run, every benchmark if there are none. With
+ * --forks=N each benchmark is run in N fresh JVMs one after the other, each reporting a line, so the code
+ * one benchmark made the JIT compile cannot change how the next is compiled. With --forks=0, the default,
+ * every benchmark runs in this JVM.
+ *
+ * The tree has no Maven or Gradle build to hold a JMH module, so this harness stands in for JMH. It has
+ * warm up, iteration and fork controls, but unlike JMH it does not merge the results of forks, does not
+ * guard against the JIT folding the work of one call beyond folding each run's checksum into a volatile
+ * field, and times whole iterations rather than single calls, so it reports means and not percentiles.
+ *
+ * Allocation is measured with the allocated bytes counter of the current thread, which HotSpot and
+ * OpenJ9 provide through com.sun.management.ThreadMXBean. It is reported as n/a where it is missing.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BenchmarkRunner {
+	private static final String usage = "Usage: BenchmarkRunner [--warmup=N] [--iterations=N] [--operations=N] [--forks=N] [filter ...]";
+
+	//Folds the checksums together so the benchmarked work is never dead code
+	public static volatile long sink;
+
+	/**
+	 * This is the main method. It prints a line per benchmark.
+	 *
+	 * @param args The options and filters
+	 */
+	public static void main(String[] args) throws Exception {
+		int warmup = 5;
+		int iterations = 10;
+		int operations = 100000;
+		int forks = 0;
+		String only = null; //the one benchmark a fork runs, null in the parent
+		List<String> filters = new ArrayList<String>();
+		for (String arg : args){
+			if (arg.startsWith("--warmup=")){
+				warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+			} else if (arg.startsWith("--iterations=")){
+				iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+			} else if (arg.startsWith("--operations=")){
+				operations = Integer.parseInt(arg.substring("--operations=".length()));
+			} else if (arg.startsWith("--forks=")){
+				forks = Integer.parseInt(arg.substring("--forks=".length()));
+			} else if (arg.startsWith("--fork-of=")){
+				only = arg.substring("--fork-of=".length());
+			} else if (arg.startsWith("--")){
+				System.err.println(usage);
+				System.exit(1);
+			} else {
+				filters.add(arg);
+			}
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(BookBenchmarks.create());
+		benchmarks.add(new ParseBenchmark(1));
+		benchmarks.add(new ParseBenchmark(64));
+
+		if (only == null){
+			System.out.println(String.format("%-52s %12s %10s %14s %10s %6s %8s", "benchmark", "ns/op", "+-",
+				"ops/s", "B/op", "gcs", "gc ms"));
+		}
+		for (Benchmark benchmark : benchmarks){
+			if (only != null ? !benchmark.getName().equals(only) : !matches(benchmark.getName(), filters)){
+				continue;
+			}
+			if (forks > 0){
+				for (int fork = 0; fork < forks; fork++){
+					fork(benchmark.getName(), warmup, iterations, operations);
+				}
+			} else {
+				measure(benchmark, warmup, iterations, operations);
+			}
+		}
+	}
+
+	/**
+	 * This method runs one benchmark in a fresh JVM with the same class path, which prints its line.
+	 */
+	private static void fork(String name, int warmup, int iterations, int operations) throws Exception {
+		String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "BenchmarkRunner",
+			"--warmup="+warmup, "--iterations="+iterations, "--operations="+operations, "--fork-of="+name)
+			.inheritIO().start();
+		if (process.waitFor() != 0){
+			throw new IllegalStateException("Error: Fork of "+name+" failed");
+		}
+	}
+
+	private static boolean matches(String name, List<String> filters){
+		if (filters.isEmpty()){
+			return true;
+		}
+		for (String filter : filters){
+			if (name.contains(filter)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void measure(Benchmark benchmark, int warmup, int iterations, int operations) throws Exception {
+		for (int i = 0; i < warmup; i++){
+			runIteration(benchmark, operations);
+		}
+		double[] nanos_per_op = new double[iterations];
+		long allocated = 0;
+		long gcs = gcCount();
+		long gc_millis = gcMillis();
+		for (int i = 0; i < iterations; i++){
+			long before = allocatedBytes();
+			nanos_per_op[i] = runIteration(benchmark, operations) / (double) operations;
+			allocated += allocatedBytes() - before;
+		}
+		gcs = gcCount() - gcs;
+		gc_millis = gcMillis() - gc_millis;
+
+		double mean = 0;
+		for (double value : nanos_per_op){
+			mean += value;
+		}
+		mean /= iterations;
+		double variance = 0;
+		for (double value : nanos_per_op){
+			variance += (value - mean) * (value - mean);
+		}
+		double deviation = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+		String bytes_per_op = (allocatedBytes() < 0) ? "n/a"
+			: String.format("%.2f", allocated / (double) iterations / operations);
+		System.out.println(String.format("%-52s %12.2f %10.2f %14.0f %10s %6d %8d", benchmark.getName(), mean,
+			deviation, 1e9 / mean, bytes_per_op, gcs, gc_millis));
+	}
+
+	private static long runIteration(Benchmark benchmark, int operations) throws Exception {
+		benchmark.setUpIteration(operations);
+		long start = System.nanoTime();
+		long checksum = benchmark.run(operations);
+		long elapsed = System.nanoTime() - start;
+		benchmark.tearDownIteration();
+		sink += checksum;
+		return elapsed;
+	}
+
+	/*****Profiling*****/
+
+	/**
+	 * This method returns the bytes allocated by the current thread so far.
+	 *
+	 * @return bytes The number of bytes, -1 if the JVM does not count them
+	 */
+	public static long allocatedBytes(){
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean){
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * This method returns the number of garbage collections so far, over every collector.
+	 *
+	 * @return count The number of collections
+	 */
+	public static long gcCount(){
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * This method returns the time spent in garbage collection so far, over every collector.
+	 *
+	 * @return millis The time in milliseconds
+	 */
+	public static long gcMillis(){
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class builds the benchmarks of the Buyer and Seller. Each one times adding or removing orders on a
+ * side that already holds a given number of price levels, for one target size, through the tick methods
+ * the pricer calls or the public double methods:
+ *
+ *		Buyer.addNewOfferTicks		Buyer.removeOfferTicks		Buyer.addNewOffer		Buyer.removeOffer
+ *		Seller.addNewBidTicks		Seller.removeBidTicks		Seller.addNewBid		Seller.removeBid
+ *
+ * The orders of an iteration are drawn with a fixed seed, mostly close to the best price like real order
+ * flow, and always on the levels already in the book, so the depth stays the same across iterations. The
+ * orders added by an add iteration are removed again outside the timing, and the orders removed by a
+ * remove iteration are added first outside the timing.
+ *
+ * The double methods convert the price to ticks, call the tick method and box the new cost, so the
+ * difference between the two shows what the conversion and boxing cost callers of the double API.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BookBenchmarks {
+	public static final int[] DEPTHS = {16, 1024, 65536};
+	public static final int[] TARGET_SIZES = {1, 200, 10000};
+	private static final long BEST_PRICE = 440000;
+	private static final int MAX_LEVEL_SIZE = 1000;
+
+	/**
+	 * This method creates a benchmark of every side, operation, API, depth and target size.
+	 *
+	 * @return benchmarks The benchmarks, in the order they should be reported
+	 */
+	public static List<Benchmark> create(){
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (char side : new char[]{OrderMessage.SELL, OrderMessage.BUY}){
+			for (boolean ticks : new boolean[]{true, false}){
+				for (boolean add : new boolean[]{true, false}){
+					for (int depth : DEPTHS){
+						for (int target_size : TARGET_SIZES){
+							benchmarks.add(new SideBenchmark(side, add, ticks, depth, target_size));
+						}
+					}
+				}
+			}
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Adds or removes orders of one side. Offers (OrderMessage.SELL) go to a Buyer and bids to a Seller.
+	 */
+	private static class SideBenchmark extends Benchmark {
+		private char side;
+		private boolean add;
+		private boolean ticks; //true for the tick methods, false for the double methods
+		private int depth;
+		private int target_size;
+		private Buyer buyer;
+		private Seller seller;
+		private long[] prices;
+		private double[] decimal_prices; //prices as the double methods take them
+		private int[] sizes;
+		private int count; //number of orders in prices and sizes
+
+		SideBenchmark(char side, boolean add, boolean ticks, int depth, int target_size){
+			super(((side == OrderMessage.SELL) ? (add ? "Buyer.addNewOffer" : "Buyer.removeOffer")
+				: (add ? "Seller.addNewBid" : "Seller.removeBid"))
+				+(ticks ? "Ticks" : "")+" depth="+depth+" target="+target_size);
+			this.side = side;
+			this.add = add;
+			this.ticks = ticks;
+			this.depth = depth;
+			this.target_size = target_size;
+		}
+
+		@Override
+		public void setUpIteration(int operations) throws Exception {
+			if (this.prices == null){
+				createBook(operations);
+			}
+			if (!this.add){
+				apply(true, operations);
+			}
+		}
+
+		@Override
+		public long run(int operations) throws Exception {
+			return apply(this.add, operations);
+		}
+
+		@Override
+		public void tearDownIteration() throws Exception {
+			if (this.add){
+				apply(false, this.count);
+			}
+		}
+
+		private void createBook(int operations) throws Exception {
+			Random random = new Random(this.depth * 31 + this.target_size);
+			if (this.side == OrderMessage.SELL){
+				this.buyer = new Buyer(this.target_size);
+			} else {
+				this.seller = new Seller(this.target_size);
+			}
+			for (int level = 0; level < this.depth; level++){
+				long price = priceOf(level);
+				int size = 1 + random.nextInt(MAX_LEVEL_SIZE);
+				if (this.buyer != null){
+					this.buyer.addNewOfferTicks(price, size);
+				} else {
+					this.seller.addNewBidTicks(price, size);
+				}
+			}
+			//most orders land close to the best price, but deep levels are still touched
+			int spread = Math.min(this.depth, 64);
+			this.count = operations;
+			this.prices = new long[operations];
+			this.decimal_prices = new double[operations];
+			this.sizes = new int[operations];
+			for (int i = 0; i < operations; i++){
+				int level = (int) Math.abs(random.nextGaussian() * spread) % this.depth;
+				this.prices[i] = priceOf(level);
+				this.decimal_prices[i] = Prices.toDouble(this.prices[i]);
+				this.sizes[i] = 1 + random.nextInt(MAX_LEVEL_SIZE);
+			}
+		}
+
+		private long priceOf(int level){
+			return (this.side == OrderMessage.SELL) ? BEST_PRICE + level : BEST_PRICE - level;
+		}
+
+		private long apply(boolean add, int operations) throws Exception {
+			if (!this.ticks){
+				return applyDecimal(add, operations);
+			}
+			long checksum = 0;
+			for (int i = 0; i < operations; i++){
+				if (this.buyer != null){
+					checksum += add ? this.buyer.addNewOfferTicks(this.prices[i], this.sizes[i])
+						: this.buyer.removeOfferTicks(this.prices[i], this.sizes[i]);
+				} else {
+					checksum += add ? this.seller.addNewBidTicks(this.prices[i], this.sizes[i])
+						: this.seller.removeBidTicks(this.prices[i], this.sizes[i]);
+				}
+			}
+			return checksum;
+		}
+
+		private long applyDecimal(boolean add, int operations) throws Exception {
+			long checksum = 0;
+			for (int i = 0; i < operations; i++){
+				Double cost;
+				if (this.buyer != null){
+					cost = add ? this.buyer.addNewOffer(this.decimal_prices[i], this.sizes[i])
+						: this.buyer.removeOffer(this.decimal_prices[i], this.sizes[i]);
+				} else {
+					cost = add ? this.seller.addNewBid(this.decimal_prices[i], this.sizes[i])
+						: this.seller.removeBid(this.decimal_prices[i], this.sizes[i]);
+				}
+				checksum += (cost == null) ? 0 : Double.doubleToRawLongBits(cost);
+			}
+			return checksum;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class generates a synthetic feed of add and reduce lines in the format read by the pricer:
+ *
+ *		timestamp A order-id side price size [symbol]
+ *		timestamp R order-id size [symbol]
+ *
+ * Each instrument has a mid price that random walks with the given volatility. New orders are placed
+ * behind the mid price, at a distance that is mostly small and rarely reaches the given depth, so each side
+ * spans about that many price levels. Reduces pick a random live order and are sometimes partial, and the
+ * number of live orders is held at or below the given maximum. Every reduce names a live order, so the feed
+ * is always valid, and the same seed always gives the same feed.
+ *
+ *		java -cp ../src/:../bench/ FeedGenerator [--messages=N] [--symbols=N] [--depth=LEVELS]
+ *			[--volatility=TICKS] [--cancel-ratio=R] [--partial-ratio=R] [--sizes=S,S,...]
+ *			[--live-orders=N] [--seed=N] [--output=FILE[.gz]]
+ *
+ * The feed is written to STDOUT unless an output file is given, gzipped if its name ends with .gz.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class FeedGenerator {
+	private static final String usage = "Usage: FeedGenerator [--messages=N] [--symbols=N] [--depth=LEVELS] "+
+		"[--volatility=TICKS] [--cancel-ratio=R] [--partial-ratio=R] [--sizes=S,S,...] [--live-orders=N] "+
+		"[--seed=N] [--output=FILE[.gz]]";
+	private static final long START_TIMESTAMP = 28800000; //08:00:00.000 in milliseconds
+	private static final long START_MID = 4400; //44.00 in ticks
+
+	private int symbols;
+	private int depth;
+	private double volatility;
+	private double cancel_ratio;
+	private double partial_ratio;
+	private int[] sizes;
+	private int live_orders;
+	private long seed;
+
+	//Constructors
+    /**
+     * Creates a generator of a single instrument about 100 levels deep, where half of the messages reduce
+     * an order.
+     *
+     * @return FeedGenerator instance with the default settings
+     */
+	public FeedGenerator(){
+		this.symbols = 1;
+		this.depth = 100;
+		this.volatility = 0.5;
+		this.cancel_ratio = 0.5;
+		this.partial_ratio = 0.4;
+		this.sizes = new int[]{1, 5, 10, 50, 100, 100, 200, 300, 500, 1000};
+		this.live_orders = 100000;
+		this.seed = 1;
+	}
+
+	//Getters & Setters
+    /**
+     * Sets the number of instruments. With more than one, every line ends with a symbol SYM0, SYM1, ...
+     *
+     * @param symbols The number of instruments
+     */
+	public void setSymbols(int symbols){
+		this.symbols = symbols;
+	}
+
+    /**
+     * Sets about how many price levels each side of a book spans behind the mid price.
+     *
+     * @param depth The number of levels
+     */
+	public void setDepth(int depth){
+		this.depth = depth;
+	}
+
+    /**
+     * Sets the standard deviation of the move of the mid price per new order.
+     *
+     * @param volatility The standard deviation in ticks
+     */
+	public void setVolatility(double volatility){
+		this.volatility = volatility;
+	}
+
+    /**
+     * Sets the share of messages that reduce an order while there are fewer live orders than the maximum.
+     *
+     * @param cancel_ratio The share, from 0 to 1
+     */
+	public void setCancelRatio(double cancel_ratio){
+		this.cancel_ratio = cancel_ratio;
+	}
+
+    /**
+     * Sets the share of reduces that only remove part of an order.
+     *
+     * @param partial_ratio The share, from 0 to 1
+     */
+	public void setPartialRatio(double partial_ratio){
+		this.partial_ratio = partial_ratio;
+	}
+
+    /**
+     * Sets the sizes of new orders. Each is picked with the same probability, so a size can be repeated to
+     * make it more likely.
+     *
+     * @param sizes The order sizes
+     */
+	public void setSizes(int[] sizes){
+		this.sizes = sizes;
+	}
+
+    /**
+     * Sets the most orders that can be live at once. Once there are this many, the next message is always
+     * a reduce.
+     *
+     * @param live_orders The number of live orders
+     */
+	public void setLiveOrders(int live_orders){
+		this.live_orders = Math.max(1, live_orders);
+	}
+
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * This method generates a feed into memory.
+	 *
+	 * @param messages The number of lines
+	 *
+	 * @return feed The lines, each ending with '\n'
+	 */
+	public byte[] generate(int messages){
+		ByteArrayOutputStream feed = new ByteArrayOutputStream(messages * 24);
+		try{
+			generate(messages, feed);
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+		return feed.toByteArray();
+	}
+
+	/**
+	 * This method writes a feed to a stream.
+	 *
+	 * @param messages The number of lines
+	 * @param out The stream to write the lines to. It is not flushed or closed.
+	 */
+	public void generate(int messages, OutputStream out) throws IOException {
+		Random random = new Random(this.seed);
+		//live orders, with a reduce swapping the last order into the place of one it removes
+		ArrayList<String> ids = new ArrayList<String>();
+		int[] remaining = new int[Math.max(16, Math.min(this.live_orders, messages) + 1)];
+		int[] order_symbols = new int[remaining.length];
+		double[] mids = new double[this.symbols];
+		for (int i = 0; i < this.symbols; i++){
+			mids[i] = START_MID;
+		}
+		StringBuilder line = new StringBuilder(64);
+		byte[] bytes = new byte[64];
+		long timestamp = START_TIMESTAMP;
+		long next_id = 0;
+		for (int i = 0; i < messages; i++){
+			timestamp += random.nextInt(4);
+			line.setLength(0);
+			boolean reduce = !ids.isEmpty() && (ids.size() >= this.live_orders || random.nextDouble() < this.cancel_ratio);
+			if (reduce){
+				int index = random.nextInt(ids.size());
+				int size = (random.nextDouble() < this.partial_ratio && remaining[index] > 1)
+					? 1 + random.nextInt(remaining[index] - 1) : remaining[index];
+				line.append(timestamp).append(" R ").append(ids.get(index)).append(' ').append(size);
+				appendSymbol(line, order_symbols[index]);
+				remaining[index] -= size;
+				if (remaining[index] == 0){
+					int last = ids.size() - 1;
+					ids.set(index, ids.get(last));
+					remaining[index] = remaining[last];
+					order_symbols[index] = order_symbols[last];
+					ids.remove(last);
+				}
+			} else {
+				int symbol = random.nextInt(this.symbols);
+				String id = Long.toString(next_id++, 36);
+				boolean buy = random.nextBoolean();
+				mids[symbol] = Math.max(this.depth + 1, mids[symbol] + random.nextGaussian() * this.volatility);
+				//mostly close to the mid price, about one order in a thousand at the full depth
+				long offset = Math.min(this.depth - 1, (long) Math.abs(random.nextGaussian() * this.depth / 3.3));
+				long mid = Math.round(mids[symbol]);
+				long price = buy ? mid - offset : mid + 1 + offset;
+				int size = this.sizes[random.nextInt(this.sizes.length)];
+				line.append(timestamp).append(" A ").append(id).append(buy ? " B " : " S ")
+					.append(Prices.format(price)).append(' ').append(size);
+				appendSymbol(line, symbol);
+				remaining[ids.size()] = size;
+				order_symbols[ids.size()] = symbol;
+				ids.add(id);
+			}
+			line.append('\n');
+			if (bytes.length < line.length()){
+				bytes = new byte[line.length() * 2];
+			}
+			for (int c = 0; c < line.length(); c++){
+				bytes[c] = (byte) line.charAt(c);
+			}
+			out.write(bytes, 0, line.length());
+		}
+	}
+
+	private void appendSymbol(StringBuilder line, int symbol){
+		if (this.symbols > 1){
+			line.append(" SYM").append(symbol);
+		}
+	}
+
+	/**
+	 * This is the main method. It writes a feed with the settings given as options.
+	 *
+	 * @param args The options
+	 */
+	public static void main(String[] args) throws IOException {
+		FeedGenerator generator = new FeedGenerator();
+		int messages = 1000000;
+		String output = null;
+		try{
+			for (String arg : args){
+				int equals = arg.indexOf('=');
+				String name = (equals < 0) ? arg : arg.substring(0, equals);
+				String value = (equals < 0) ? "" : arg.substring(equals + 1);
+				if (name.equals("--messages")){
+					messages = Integer.parseInt(value);
+				} else if (name.equals("--symbols")){
+					generator.setSymbols(Integer.parseInt(value));
+				} else if (name.equals("--depth")){
+					generator.setDepth(Integer.parseInt(value));
+				} else if (name.equals("--volatility")){
+					generator.setVolatility(Double.parseDouble(value));
+				} else if (name.equals("--cancel-ratio")){
+					generator.setCancelRatio(Double.parseDouble(value));
+				} else if (name.equals("--partial-ratio")){
+					generator.setPartialRatio(Double.parseDouble(value));
+				} else if (name.equals("--sizes")){
+					String[] sizes = value.split(",");
+					int[] parsed = new int[sizes.length];
+					for (int i = 0; i < sizes.length; i++){
+						parsed[i] = Integer.parseInt(sizes[i]);
+					}
+					generator.setSizes(parsed);
+				} else if (name.equals("--live-orders")){
+					generator.setLiveOrders(Integer.parseInt(value));
+				} else if (name.equals("--seed")){
+					generator.setSeed(Long.parseLong(value));
+				} else if (name.equals("--output")){
+					output = value;
+				} else {
+					throw new IllegalArgumentException(arg);
+				}
+			}
+		} catch (IllegalArgumentException e){
+			System.err.println(usage);
+			System.exit(1);
+		}
+
+		OutputStream out = (output == null) ? System.out : new FileOutputStream(output);
+		if (output != null && output.endsWith(".gz")){
+			out = new GZIPOutputStream(out, 1 << 16);
+		}
+		out = new BufferedOutputStream(out, 1 << 16);
+		generator.generate(messages, out);
+		out.flush();
+		if (output != null){
+			out.close();
+		}
+	}
+}
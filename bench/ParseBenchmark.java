@@ -0,0 +1,57 @@
+/**
+ * This class times MessageParser.parse(...) on realistic add and reduce lines, which is the parsing done by
+ * Pricer.parseNewOrder(...) and by the main loop for each line. The lines come from a FeedGenerator, with or
+ * without symbols, and are parsed in place out of one byte array into a reused OrderMessage.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ParseBenchmark extends Benchmark {
+	private static final int FEED_MESSAGES = 1 << 16;
+
+	private MessageParser parser;
+	private OrderMessage message;
+	private byte[] feed;
+	private int[] line_starts; //start of each line, with the end of the feed at the end
+	private int next_line;
+
+	//Constructors
+    /**
+     * Creates a benchmark over a generated feed.
+     *
+     * @param symbols The number of instruments in the feed, 1 to leave the symbols out
+     *
+     * @return ParseBenchmark instance
+     */
+	public ParseBenchmark(int symbols){
+		super("MessageParser.parse symbols="+symbols);
+		this.parser = new MessageParser();
+		this.message = new OrderMessage();
+		FeedGenerator generator = new FeedGenerator();
+		generator.setSymbols(symbols);
+		this.feed = generator.generate(FEED_MESSAGES);
+		this.line_starts = new int[FEED_MESSAGES + 1];
+		int line = 0;
+		for (int i = 0; i < this.feed.length; i++){
+			if (this.feed[i] == '\n'){
+				this.line_starts[++line] = i + 1;
+			}
+		}
+		this.next_line = 0;
+	}
+
+	@Override
+	public long run(int operations) throws Exception {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++){
+			if (this.next_line == FEED_MESSAGES){
+				this.next_line = 0;
+			}
+			int start = this.line_starts[this.next_line];
+			int end = this.line_starts[++this.next_line] - 1;
+			this.parser.parse(this.feed, start, end, this.message);
+			checksum += this.message.getSize() + this.message.getTimestamp();
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,160 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class measures the pricer end to end. It loads a feed into memory, then replays it several times
+ * through the same loop as Pricer.main(...): a MessageParser reading the feed, OrderBooks applying each
+ * message and a PriceWriter formatting the price changes into an output stream that discards them. For
+ * each measured run it reports the messages per second, percentiles of the time taken by each message, and
+ * the bytes allocated and garbage collections per run.
+ *
+ *		java -cp ../src/:../bench/ ReplayBenchmark [--runs=N] [--warmup=N] [--target=T[,T...]] [--messages=N]
+ *			[--symbols=N] [feed[.gz]]
+ *
+ * Without a feed file, --messages lines are generated by a FeedGenerator with its default settings. The time of a message includes
+ * reading it from the in-memory stream and the two calls to System.nanoTime() around it, so percentiles
+ * below a few tens of nanoseconds are dominated by the clock.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ReplayBenchmark {
+	private static final String usage = "Usage: ReplayBenchmark [--runs=N] [--warmup=N] [--target=T[,T...]] "+
+		"[--messages=N] [--symbols=N] [feed[.gz]]";
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+	/**
+	 * This is the main method. It prints a line per measured run.
+	 *
+	 * @param args The options and the feed file
+	 */
+	public static void main(String[] args) throws Exception {
+		int runs = 5;
+		int warmup = 2;
+		int[] target_sizes = {200};
+		int messages = 1000000;
+		int symbols = 1;
+		String feed_file = null;
+		for (String arg : args){
+			if (arg.startsWith("--runs=")){
+				runs = Integer.parseInt(arg.substring("--runs=".length()));
+			} else if (arg.startsWith("--warmup=")){
+				warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+			} else if (arg.startsWith("--target=")){
+				String[] sizes = arg.substring("--target=".length()).split(",");
+				target_sizes = new int[sizes.length];
+				for (int i = 0; i < sizes.length; i++){
+					target_sizes[i] = Integer.parseInt(sizes[i]);
+				}
+			} else if (arg.startsWith("--messages=")){
+				messages = Integer.parseInt(arg.substring("--messages=".length()));
+			} else if (arg.startsWith("--symbols=")){
+				symbols = Integer.parseInt(arg.substring("--symbols=".length()));
+			} else if (arg.startsWith("--") || feed_file != null){
+				System.err.println(usage);
+				System.exit(1);
+			} else {
+				feed_file = arg;
+			}
+		}
+
+		FeedGenerator generator = new FeedGenerator();
+		generator.setSymbols(symbols);
+		byte[] feed = (feed_file == null) ? generator.generate(messages) : load(feed_file);
+		int lines = countLines(feed);
+		System.out.println("feed: "+((feed_file == null) ? "synthetic" : feed_file)+", "+lines+" messages, targets "+
+			Arrays.toString(target_sizes));
+		long[] latencies = new long[lines];
+		for (int run = 0; run < warmup + runs; run++){
+			report(run < warmup ? "warmup" : "run "+(run - warmup + 1), feed, target_sizes, latencies);
+		}
+	}
+
+	private static void report(String label, byte[] feed, int[] target_sizes, long[] latencies) throws Exception {
+		long gcs = BenchmarkRunner.gcCount();
+		long gc_millis = BenchmarkRunner.gcMillis();
+		long allocated = BenchmarkRunner.allocatedBytes();
+		long start = System.nanoTime();
+		int count = replay(feed, target_sizes, latencies);
+		long elapsed = System.nanoTime() - start;
+		allocated = BenchmarkRunner.allocatedBytes() - allocated;
+		gcs = BenchmarkRunner.gcCount() - gcs;
+		gc_millis = BenchmarkRunner.gcMillis() - gc_millis;
+
+		Arrays.sort(latencies, 0, count);
+		StringBuilder line = new StringBuilder(String.format("%-8s %12.0f msg/s", label, count * 1e9 / elapsed));
+		for (double percentile : PERCENTILES){
+			int index = (int) Math.min(count - 1, Math.ceil(percentile / 100 * count) - 1);
+			line.append(String.format("  p%s=%dns", percentile == (long) percentile ? String.valueOf((long) percentile)
+				: String.valueOf(percentile), latencies[Math.max(0, index)]));
+		}
+		line.append(String.format("  max=%dns  %.1f B/msg  gcs=%d gc=%dms", latencies[count - 1],
+			allocated / (double) count, gcs, gc_millis));
+		System.out.println(line);
+	}
+
+	private static int replay(byte[] feed, int[] target_sizes, long[] latencies) throws Exception {
+		OrderBooks books = new OrderBooks(target_sizes, target_sizes);
+		PriceWriter writer = new PriceWriter(new NullOutputStream());
+		writer.setTagTargets(target_sizes.length > 1);
+		MessageParser parser = new MessageParser(new ByteArrayInputStream(feed));
+		OrderMessage message = new OrderMessage();
+		int count = 0;
+		long start = System.nanoTime();
+		while (parser.next(message)){
+			books.processMessage(message, writer);
+			long end = System.nanoTime();
+			latencies[count++] = end - start;
+			start = end;
+		}
+		writer.flush();
+		return count;
+	}
+
+	static byte[] load(String file_name) throws IOException {
+		InputStream in = new FileInputStream(file_name);
+		if (file_name.endsWith(".gz")){
+			in = new GZIPInputStream(in, 1 << 16);
+		}
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = in.read(buffer)) > 0){
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	static int countLines(byte[] feed){
+		int lines = 0;
+		for (int i = 0; i < feed.length; i++){
+			if (feed[i] == '\n'){
+				lines++;
+			}
+		}
+		return (feed.length > 0 && feed[feed.length - 1] != '\n') ? lines + 1 : lines;
+	}
+
+	/**
+	 * Discards everything written to it, so the replay measures formatting but not the output device.
+	 */
+	static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b){
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len){
+		}
+	}
+}
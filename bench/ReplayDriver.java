@@ -0,0 +1,205 @@
+import java.util.Random;
+
+/**
+ * This class replays a feed through the pricer at a controlled rate to find the rate it can sustain and the
+ * latency it gives below that. Messages are released on a schedule, either at fixed intervals or with the
+ * exponential gaps of a Poisson process, and each one is parsed, applied to the OrderBooks and formatted by
+ * a PriceWriter as in Pricer.main(...).
+ *
+ * The driver never waits for the pricer before releasing the next message, so when the pricer falls behind
+ * the messages queue up as they would on a real feed. The latency of a message is measured from the time it
+ * was scheduled, not from when the pricer got to it, which corrects for coordinated omission: a stall is
+ * charged to every message that arrived during it, not only to the one that was being applied. The service
+ * time, from when the pricer started on a message, is reported next to it.
+ *
+ *		java -cp ../src/:../bench/ ReplayDriver [--rates=R[,R...]] [--arrivals=fixed|poisson] [--warmup=N]
+ *			[--target=T[,T...]] [--messages=N] [--symbols=N] [--depth=LEVELS] [feed[.gz]]
+ *
+ * A rate of 0 replays as fast as possible. Each rate is run over the whole feed on new books, after the
+ * feed has been replayed --warmup times unmeasured. A rate is flagged as saturated when less than 95% of it
+ * was achieved. Without a feed file, --messages lines are generated by a FeedGenerator.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ReplayDriver {
+	private static final String usage = "Usage: ReplayDriver [--rates=R[,R...]] [--arrivals=fixed|poisson] "+
+		"[--warmup=N] [--target=T[,T...]] [--messages=N] [--symbols=N] [--depth=LEVELS] [feed[.gz]]";
+	private static final double[] PERCENTILES = {50, 99, 99.9, 99.99};
+
+	private byte[] feed;
+	private int[] line_starts; //start of each line, with the end of the feed at the end
+	private int[] target_sizes;
+	private LatencyHistogram corrected;
+	private LatencyHistogram service;
+
+	//Constructors
+    /**
+     * Creates a driver for a feed.
+     *
+     * @param feed The lines of the feed
+     * @param target_sizes The target numbers of shares to price on both sides
+     *
+     * @return ReplayDriver instance
+     */
+	public ReplayDriver(byte[] feed, int[] target_sizes){
+		this.feed = feed;
+		this.target_sizes = target_sizes;
+		int lines = ReplayBenchmark.countLines(feed);
+		this.line_starts = new int[lines + 1];
+		int line = 0;
+		for (int i = 0; i < feed.length && line < lines; i++){
+			if (feed[i] == '\n'){
+				this.line_starts[++line] = i + 1;
+			}
+		}
+		this.line_starts[lines] = Math.max(this.line_starts[lines], feed.length);
+		this.corrected = new LatencyHistogram();
+		this.service = new LatencyHistogram();
+	}
+
+	//Getters
+    /**
+     * Returns the latencies of the last replay, measured from when each message was scheduled
+     *
+     * @return corrected The histogram of latencies in nanoseconds
+     */
+	public LatencyHistogram getCorrectedLatencies(){
+		return this.corrected;
+	}
+
+    /**
+     * Returns the service times of the last replay, measured from when the pricer started on each message
+     *
+     * @return service The histogram of service times in nanoseconds
+     */
+	public LatencyHistogram getServiceTimes(){
+		return this.service;
+	}
+
+	/**
+	 * This method replays the whole feed on new books.
+	 *
+	 * @param rate The messages per second to release, 0 to release each message as soon as the last is done
+	 * @param poisson true for exponential gaps between messages, false for fixed intervals
+	 *
+	 * @return rate The messages per second achieved
+	 */
+	public double replay(double rate, boolean poisson) throws Exception {
+		OrderBooks books = new OrderBooks(this.target_sizes, this.target_sizes);
+		PriceWriter writer = new PriceWriter(new ReplayBenchmark.NullOutputStream());
+		writer.setTagTargets(this.target_sizes.length > 1);
+		MessageParser parser = new MessageParser();
+		OrderMessage message = new OrderMessage();
+		Random random = new Random(5);
+		this.corrected.reset();
+		this.service.reset();
+
+		int lines = this.line_starts.length - 1;
+		double interval = (rate > 0) ? 1e9 / rate : 0;
+		long start = System.nanoTime();
+		double scheduled = 0; //nanoseconds from start at which the next message is released
+		long end = start;
+		for (int line = 0; line < lines; line++){
+			long now = System.nanoTime();
+			long release = now;
+			if (rate > 0){
+				release = start + (long) scheduled;
+				while (now < release){
+					now = System.nanoTime();
+				}
+				scheduled += poisson ? -Math.log(1 - random.nextDouble()) * interval : interval;
+			}
+			int line_end = this.line_starts[line + 1];
+			if (line_end > this.line_starts[line] && this.feed[line_end - 1] == '\n'){
+				line_end--;
+			}
+			parser.parse(this.feed, this.line_starts[line], line_end, message);
+			books.processMessage(message, writer);
+			end = System.nanoTime();
+			this.corrected.record(end - release);
+			this.service.record(end - now);
+		}
+		writer.flush();
+		return lines * 1e9 / Math.max(1, end - start);
+	}
+
+	/**
+	 * This is the main method. It prints a line per rate.
+	 *
+	 * @param args The options and the feed file
+	 */
+	public static void main(String[] args) throws Exception {
+		double[] rates = {0};
+		boolean poisson = false;
+		int warmup = 1;
+		int[] target_sizes = {200};
+		int messages = 1000000;
+		FeedGenerator generator = new FeedGenerator();
+		String feed_file = null;
+		try{
+			for (String arg : args){
+				int equals = arg.indexOf('=');
+				String name = (equals < 0) ? arg : arg.substring(0, equals);
+				String value = (equals < 0) ? "" : arg.substring(equals + 1);
+				if (name.equals("--rates")){
+					String[] values = value.split(",");
+					rates = new double[values.length];
+					for (int i = 0; i < values.length; i++){
+						rates[i] = Double.parseDouble(values[i]);
+					}
+				} else if (name.equals("--arrivals") && (value.equals("fixed") || value.equals("poisson"))){
+					poisson = value.equals("poisson");
+				} else if (name.equals("--warmup")){
+					warmup = Integer.parseInt(value);
+				} else if (name.equals("--target")){
+					String[] values = value.split(",");
+					target_sizes = new int[values.length];
+					for (int i = 0; i < values.length; i++){
+						target_sizes[i] = Integer.parseInt(values[i]);
+					}
+				} else if (name.equals("--messages")){
+					messages = Integer.parseInt(value);
+				} else if (name.equals("--symbols")){
+					generator.setSymbols(Integer.parseInt(value));
+				} else if (name.equals("--depth")){
+					generator.setDepth(Integer.parseInt(value));
+				} else if (!name.startsWith("--") && feed_file == null){
+					feed_file = arg;
+				} else {
+					throw new IllegalArgumentException(arg);
+				}
+			}
+		} catch (IllegalArgumentException e){
+			System.err.println(usage);
+			System.exit(1);
+		}
+
+		byte[] feed = (feed_file == null) ? generator.generate(messages) : ReplayBenchmark.load(feed_file);
+		ReplayDriver driver = new ReplayDriver(feed, target_sizes);
+		for (int i = 0; i < warmup; i++){
+			driver.replay(0, false);
+		}
+		System.out.println(String.format("%12s %12s  %-44s  %s", "rate", "achieved", "latency from schedule (ns)",
+			"service time (ns)"));
+		for (double rate : rates){
+			double achieved = driver.replay(rate, poisson);
+			StringBuilder line = new StringBuilder(String.format("%12s %12.0f ", (rate > 0) ? String.format("%.0f", rate)
+				: "max", achieved));
+			line.append(format(driver.getCorrectedLatencies())).append("   ").append(format(driver.getServiceTimes()));
+			if (rate > 0 && achieved < 0.95 * rate){
+				line.append("  saturated");
+			}
+			System.out.println(line);
+		}
+	}
+
+	private static String format(LatencyHistogram histogram){
+		StringBuilder text = new StringBuilder();
+		for (double percentile : PERCENTILES){
+			text.append(String.format(" p%s=%d", (percentile == (long) percentile) ? String.valueOf((long) percentile)
+				: String.valueOf(percentile), histogram.getValueAtPercentile(percentile)));
+		}
+		return text.append(" max=").append(histogram.getMax()).toString();
+	}
+}
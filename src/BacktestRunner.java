@@ -0,0 +1,310 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class replays a directory of historical feed files through the pricer in one JVM, many files at a
+ * time, so a backtest over months of sessions is not spent starting and warming up a JVM per file:
+ *
+ *		java BacktestRunner [--parallelism=N] [--output-dir=D] [--buy-target=N[,N...]] [--sell-target=N[,N...]]
+ *			input_dir target_size [target_size...]
+ *
+ * Every regular file in input_dir is a session: a text feed, gzipped if its name ends in .gz, or a binary
+ * feed (see BinaryFormat) if it ends in .bin. Each session is priced with books of its own and its output,
+ * exactly what Pricer writes for the file, goes to output_dir/name.out (the current directory by default).
+ * Files named *.out are skipped, so the output can go to the input directory.
+ *
+ * Sessions are independent, so each one is a task on a ForkJoinPool of N workers (one per processor by
+ * default) and idle workers steal the tasks not started yet. The largest files are started first, so the
+ * pool does not wait on one large file at the end. A summary of the messages and throughput of each session
+ * and of the whole run is printed to STDOUT.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BacktestRunner {
+	public static final String USAGE = "Usage: java BacktestRunner [--parallelism=N] [--output-dir=D]"
+		+" [--buy-target=N[,N...]] [--sell-target=N[,N...]] input_dir target_size [target_size...]";
+	public static final String OUTPUT_SUFFIX = ".out";
+	private static final int INPUT_BUFFER_SIZE = 1 << 16;
+
+	private PricerOptions options;
+	private File output_dir;
+	private ForkJoinPool pool;
+
+	//Constructors
+    /**
+     * Creates a runner and its pool of workers.
+     *
+     * @param options The target sizes to price every session with
+     * @param output_dir The directory to write the output of each session to
+     * @param parallelism The number of sessions to replay at a time
+     *
+     * @return BacktestRunner instance
+     */
+	public BacktestRunner(PricerOptions options, File output_dir, int parallelism){
+		this.options = options;
+		this.output_dir = output_dir;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * This method replays every session and waits for them all.
+	 *
+	 * @param inputs The feed files
+	 *
+	 * @return sessions The result of each session, in the order of inputs
+	 */
+	public Session[] run(File[] inputs){
+		Replay[] replays = new Replay[inputs.length];
+		for (int i = 0; i < inputs.length; i++){
+			replays[i] = new Replay(inputs[i], new File(this.output_dir, inputs[i].getName()+OUTPUT_SUFFIX), this.options);
+		}
+		ArrayList<Replay> largest_first = new ArrayList<Replay>(Arrays.asList(replays));
+		Collections.sort(largest_first, new Comparator<Replay>(){
+			public int compare(Replay r1, Replay r2){
+				return Long.compare(r2.input.length(), r1.input.length());
+			}
+		});
+		//submitted from outside the pool, so the workers take them from a shared queue in order
+		for (Replay replay : largest_first){
+			this.pool.execute(replay);
+		}
+		Session[] sessions = new Session[inputs.length];
+		for (int i = 0; i < inputs.length; i++){
+			sessions[i] = replays[i].join();
+		}
+		return sessions;
+	}
+
+	/**
+	 * This method stops the workers once the sessions have been replayed.
+	 */
+	public void shutdown(){
+		this.pool.shutdown();
+	}
+
+	/**
+	 * This method replays one session with books of its own, as Pricer would: it stops at the first invalid
+	 * message and writes the same warning.
+	 *
+	 * @param input The feed file
+	 * @param output The file to write the price changes to, replaced if it exists
+	 * @param options The target sizes to price with
+	 *
+	 * @return session The messages, time taken and error of the session
+	 */
+	public static Session replay(File input, File output, PricerOptions options){
+		Session session = new Session(input.getName());
+		long start = System.nanoTime();
+		OrderBooks books = new OrderBooks(options.getBuyTargetSizes(), options.getSellTargetSizes(), options.isOffHeap());
+		InputStream in = null;
+		MessageReader reader = null;
+		FileOutputStream out = null;
+		try{
+			out = new FileOutputStream(output);
+			PriceWriter writer = new PriceWriter(out);
+			writer.setTagTargets(options.isTagTargets());
+			try{
+				if (input.getName().endsWith(".bin")){
+					reader = new BinaryFeedReader(input.getPath());
+				} else {
+					in = new FileInputStream(input);
+					if (input.getName().endsWith(".gz")){
+						in = new GZIPInputStream(in, INPUT_BUFFER_SIZE);
+					}
+					reader = new MessageParser(in);
+				}
+			} catch (IOException|IllegalArgumentException e){
+				session.error = "Error: Cannot read "+input+": "+e.getMessage();
+			}
+			try{
+				OrderMessage message = new OrderMessage();
+				while (reader != null && reader.next(message)){
+					books.processMessage(message, writer);
+					session.messages++;
+				}
+			} catch (IndexOutOfBoundsException|IOException|NumberFormatException e){
+				session.error = "Warning invalid input: \""+reader.getLine()+"\"";
+				writer.writeLine(Pricer.getInvalidInputWarning(reader.getLine()));
+			} catch (Exception e){
+				session.error = String.valueOf(e.getMessage());
+				writer.writeLine(session.error);
+			}
+			writer.flush();
+		} catch (IOException e){
+			session.error = "Error: Cannot write "+output+": "+e.getMessage();
+		} finally {
+			close(in);
+			close(out);
+			if (reader instanceof BinaryFeedReader){
+				try{
+					((BinaryFeedReader) reader).close();
+				} catch (IOException e){
+					//only read from
+				}
+			}
+		}
+		session.nanos = System.nanoTime() - start;
+		return session;
+	}
+
+    /**
+     * Returns the feed files of a directory: its regular files that are not hidden or output, by name.
+     *
+     * @param directory The input directory
+     *
+     * @return inputs The feed files
+     *
+     * @throws IllegalArgumentException if directory is not a directory
+     */
+	public static File[] listInputs(File directory){
+		File[] files = directory.listFiles();
+		if (files == null){
+			throw new IllegalArgumentException("Error: Not a directory: "+directory);
+		}
+		ArrayList<File> inputs = new ArrayList<File>();
+		for (File file : files){
+			if (file.isFile() && !file.isHidden() && !file.getName().endsWith(OUTPUT_SUFFIX)){
+				inputs.add(file);
+			}
+		}
+		Collections.sort(inputs);
+		return inputs.toArray(new File[0]);
+	}
+
+	private static void close(Closeable stream){
+		if (stream != null){
+			try{
+				stream.close();
+			} catch (IOException e){
+				//nothing more to read or write
+			}
+		}
+	}
+
+	/**
+	 * This is the main method of the runner. It replays every session in a directory and prints the summary.
+	 *
+	 * @param args The options, the input directory and the target sizes
+	 */
+	public static void main(String[] args){
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		File output_dir = new File(".");
+		File input_dir = null;
+		ArrayList<String> pricer_args = new ArrayList<String>();
+		PricerOptions options;
+		File[] inputs;
+		try{
+			for (String arg : args){
+				if (arg.startsWith("--parallelism=")){
+					parallelism = Integer.parseInt(arg.substring("--parallelism=".length()));
+					if (parallelism < 1){
+						throw new IllegalArgumentException("Error: --parallelism must be at least 1\n"+USAGE);
+					}
+				} else if (arg.startsWith("--output-dir=")){
+					output_dir = new File(arg.substring("--output-dir=".length()));
+				} else if (arg.startsWith("--buy-target=") || arg.startsWith("--sell-target=")){
+					pricer_args.add(arg);
+				} else if (arg.startsWith("--")){
+					throw new IllegalArgumentException("Unknown option: "+arg+"\n"+USAGE);
+				} else if (input_dir == null){
+					input_dir = new File(arg);
+				} else {
+					pricer_args.add(arg);
+				}
+			}
+			if (input_dir == null || pricer_args.isEmpty()){
+				throw new IllegalArgumentException(USAGE);
+			}
+			options = new PricerOptions(pricer_args.toArray(new String[0]));
+			inputs = listInputs(input_dir);
+			if (!output_dir.isDirectory() && !output_dir.mkdirs()){
+				throw new IllegalArgumentException("Error: Cannot create output directory: "+output_dir);
+			}
+		} catch (IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		BacktestRunner runner = new BacktestRunner(options, output_dir, parallelism);
+		long start = System.nanoTime();
+		Session[] sessions = runner.run(inputs);
+		long wall_nanos = System.nanoTime() - start;
+		runner.shutdown();
+
+		long messages = 0;
+		System.out.println(String.format("%-32s %12s %10s %14s", "session", "messages", "seconds", "messages/s"));
+		for (Session session : sessions){
+			messages += session.messages;
+			System.out.println(String.format("%-32s %12d %10.3f %14.0f%s", session.name, session.messages,
+				session.nanos / 1e9, session.getMessagesPerSecond(), session.error == null ? "" : "  "+session.error));
+		}
+		System.out.println(String.format("%d sessions, %d messages in %.3f s on %d workers: %.0f messages/s",
+			sessions.length, messages, wall_nanos / 1e9, parallelism, messages / (wall_nanos / 1e9)));
+	}
+
+	/**
+	 * The result of replaying one session.
+	 */
+	public static class Session {
+		private String name;
+		private long messages;
+		private long nanos;
+		private String error; //first error, null if the whole file was replayed
+
+		Session(String name){
+			this.name = name;
+		}
+
+		//Getters
+		public String getName(){
+			return this.name;
+		}
+		public long getMessages(){
+			return this.messages;
+		}
+		public long getNanos(){
+			return this.nanos;
+		}
+		public String getError(){
+			return this.error;
+		}
+		public double getMessagesPerSecond(){
+			return (this.nanos == 0) ? 0 : this.messages / (this.nanos / 1e9);
+		}
+	}
+
+	/**
+	 * A session to replay on the pool.
+	 */
+	private static class Replay extends RecursiveTask<Session> {
+		private static final long serialVersionUID = 1L;
+
+		final File input;
+		final File output;
+		final PricerOptions options;
+
+		Replay(File input, File output, PricerOptions options){
+			this.input = input;
+			this.output = output;
+			this.options = options;
+		}
+
+		@Override
+		protected Session compute(){
+			return replay(this.input, this.output, this.options);
+		}
+	}
+}
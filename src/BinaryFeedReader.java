@@ -0,0 +1,223 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class reads a binary feed (see BinaryFormat) by memory mapping the file with FileChannel.map and
+ * decoding each fixed-width record in place into a reused OrderMessage. Nothing is tokenized, copied into
+ * an intermediate buffer or allocated per message, so a replay is limited by how fast the pages of the
+ * file can be read rather than by parsing.
+ *
+ * Files larger than a mapping can hold are mapped one region at a time. The symbols are read once when the
+ * file is opened.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BinaryFeedReader implements MessageReader {
+	private static final long REGION_RECORDS = (1 << 30) / BinaryFormat.RECORD_SIZE;
+	private static final byte[] NO_SYMBOL = new byte[0];
+
+	private FileChannel channel;
+	private long record_count;
+	private byte[][] symbols; //symbol number - 1 to symbol
+	private MappedByteBuffer region;
+	private long region_start; //number of the first record in region
+	private long region_end; //number of the record after the last one in region
+	private long next_record;
+	private int offset; //offset in region of the last record read, -1 if none has been read
+	private boolean timed; //true to time each decode
+	private long parse_nanos; //time the last record took to decode, if timed
+
+	//Constructors
+    /**
+     * Opens and checks a binary feed.
+     *
+     * @param file_name The name of the file
+     *
+     * @return BinaryFeedReader instance positioned before the first record
+     *
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file does not exist or is not a binary feed
+     */
+	public BinaryFeedReader(String file_name) throws IOException {
+		RandomAccessFile file;
+		try{
+			file = new RandomAccessFile(file_name, "r");
+		} catch (FileNotFoundException e){
+			throw new IllegalArgumentException("Error: Cannot open binary feed: "+file_name);
+		}
+		this.channel = file.getChannel();
+		long length = this.channel.size();
+		if (length < BinaryFormat.HEADER_SIZE){
+			throw new IllegalArgumentException("Error: Not a binary feed: "+file_name);
+		}
+		ByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryFormat.HEADER_SIZE)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		this.record_count = header.getLong(BinaryFormat.HEADER_RECORD_COUNT);
+		long symbol_table = header.getLong(BinaryFormat.HEADER_SYMBOL_TABLE);
+		if (header.getInt(BinaryFormat.HEADER_MAGIC) != BinaryFormat.MAGIC
+				|| header.getShort(BinaryFormat.HEADER_VERSION) != BinaryFormat.VERSION
+				|| header.getShort(BinaryFormat.HEADER_RECORD_SIZE) != BinaryFormat.RECORD_SIZE
+				|| this.record_count < 0
+				|| symbol_table != BinaryFormat.HEADER_SIZE + this.record_count * BinaryFormat.RECORD_SIZE
+				|| symbol_table + 4 > length){
+			throw new IllegalArgumentException("Error: Not a binary feed: "+file_name);
+		}
+		readSymbols(symbol_table, length - symbol_table);
+		this.region_start = 0;
+		this.region_end = 0;
+		this.next_record = 0;
+		this.offset = -1;
+	}
+
+	//Getters
+    /**
+     * Returns the number of records in the file
+     *
+     * @return record_count The number of records
+     */
+	public long getRecordCount(){
+		return this.record_count;
+	}
+
+	/**
+	 * This method decodes the next record into message.
+	 *
+	 * @param message The message to fill in
+	 *
+	 * @return true if a message was read, false at the end of the file
+	 *
+	 * @throws IOException if the record is not a valid message
+	 */
+	@Override
+	public boolean next(OrderMessage message) throws IOException {
+		if (this.next_record == this.record_count){
+			return false;
+		}
+		if (this.next_record == this.region_end){
+			mapRegion(this.next_record);
+		}
+		long start = this.timed ? System.nanoTime() : 0;
+		this.offset = (int) (this.next_record - this.region_start) * BinaryFormat.RECORD_SIZE;
+		this.next_record++;
+
+		MappedByteBuffer record = this.region;
+		char type = (char) record.get(this.offset + BinaryFormat.TYPE);
+		char side = (char) record.get(this.offset + BinaryFormat.SIDE);
+		int size = record.getInt(this.offset + BinaryFormat.SIZE);
+		int symbol = record.getShort(this.offset + BinaryFormat.SYMBOL) & 0xFFFF;
+		long price = record.getLong(this.offset + BinaryFormat.PRICE);
+		boolean add = type == OrderMessage.ADD && (side == OrderMessage.BUY || side == OrderMessage.SELL) && price >= 0
+			&& price <= Prices.MAX_TICKS;
+		if ((!add && type != OrderMessage.REDUCE) || size < 0 || symbol > this.symbols.length){
+			throw new IOException();
+		}
+		message.setType(type);
+		message.setTimestamp(record.getLong(this.offset + BinaryFormat.TIMESTAMP));
+		message.setOrderId(record.getLong(this.offset + BinaryFormat.ORDER_ID));
+		message.setSize(size);
+		if (add){
+			message.setSide(side);
+			message.setPrice(price);
+		}
+		if (symbol == 0){
+			message.setSymbol(NO_SYMBOL, 0, 0);
+		} else {
+			message.setSymbol(this.symbols[symbol - 1], 0, this.symbols[symbol - 1].length);
+		}
+		if (this.timed){
+			this.parse_nanos = System.nanoTime() - start;
+		}
+		return true;
+	}
+
+    /**
+     * Returns the last record read in the text format, for diagnostics. This allocates.
+     *
+     * @return line The last record, "" if none has been read
+     */
+	@Override
+	public String getLine(){
+		if (this.offset < 0){
+			return "";
+		}
+		MappedByteBuffer record = this.region;
+		char type = (char) record.get(this.offset + BinaryFormat.TYPE);
+		StringBuilder line = new StringBuilder();
+		line.append(record.getLong(this.offset + BinaryFormat.TIMESTAMP)).append(' ').append(type).append(' ')
+			.append(record.getLong(this.offset + BinaryFormat.ORDER_ID)).append(' ');
+		if (type == OrderMessage.ADD){
+			line.append((char) record.get(this.offset + BinaryFormat.SIDE)).append(' ')
+				.append(Prices.format(record.getLong(this.offset + BinaryFormat.PRICE))).append(' ');
+		}
+		line.append(record.getInt(this.offset + BinaryFormat.SIZE));
+		int symbol = record.getShort(this.offset + BinaryFormat.SYMBOL) & 0xFFFF;
+		if (symbol > 0 && symbol <= this.symbols.length){
+			line.append(' ').append(new String(this.symbols[symbol - 1]));
+		}
+		return line.toString();
+	}
+
+	/**
+	 * This method sets whether the time each record takes to decode is measured, leaving out the time spent
+	 * mapping the file. It is off by default.
+	 *
+	 * @param timed true to measure getParseNanos()
+	 */
+	@Override
+	public void setTimed(boolean timed){
+		this.timed = timed;
+	}
+
+	/**
+	 * Returns how long the last record read took to decode, if timing is on.
+	 *
+	 * @return parse_nanos The nanoseconds spent decoding the last record, 0 if timing is off
+	 */
+	@Override
+	public long getParseNanos(){
+		return this.parse_nanos;
+	}
+
+	/**
+	 * This method closes the file. The records already mapped stay readable until they are garbage collected.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private void mapRegion(long first_record) throws IOException {
+		long records = Math.min(REGION_RECORDS, this.record_count - first_record);
+		long position = BinaryFormat.HEADER_SIZE + first_record * BinaryFormat.RECORD_SIZE;
+		this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, position, records * BinaryFormat.RECORD_SIZE);
+		this.region.order(ByteOrder.LITTLE_ENDIAN);
+		this.region_start = first_record;
+		this.region_end = first_record + records;
+	}
+
+	private void readSymbols(long position, long length) throws IOException {
+		ByteBuffer table = this.channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		int count = table.getInt();
+		if (count < 0 || count > BinaryFormat.MAX_SYMBOLS){
+			throw new IllegalArgumentException("Error: Not a binary feed: bad symbol table");
+		}
+		this.symbols = new byte[count][];
+		for (int i = 0; i < count; i++){
+			if (!table.hasRemaining()){
+				throw new IllegalArgumentException("Error: Not a binary feed: bad symbol table");
+			}
+			int symbol_length = table.get() & 0xFF;
+			if (symbol_length > table.remaining()){
+				throw new IllegalArgumentException("Error: Not a binary feed: bad symbol table");
+			}
+			this.symbols[i] = new byte[symbol_length];
+			table.get(this.symbols[i]);
+		}
+	}
+}
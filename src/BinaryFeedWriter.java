@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class converts messages to the binary feed format (see BinaryFormat) and writes them to a file,
+ * so a feed can be converted once and then replayed many times without parsing text. Its main method
+ * converts a text feed read from STDIN:
+ *
+ *		java BinaryFeedWriter output_file < text_feed
+ *
+ * Order ids are interned as numbers, separately for each symbol as each book has its own orders. A live
+ * order keeps its number until it is fully reduced, so an id that is added again later gets a new number,
+ * exactly as the pricer forgets an order once it has no shares left. Only live orders are remembered, so
+ * converting a long feed needs as much memory as its busiest moment. A reduce of an id that is not live is
+ * given a number of its own, so the pricer still reports it.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BinaryFeedWriter {
+	private static final int BUFFER_RECORDS = 1 << 12;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private HashMap<String, long[]> live_ids; //symbol number and text id to {interned id, remaining size}
+	private long next_id;
+	private HashMap<String, Integer> symbol_numbers;
+	private ArrayList<byte[]> symbols; //symbol number - 1 to symbol
+	private long records;
+
+	//Constructors
+    /**
+     * Creates the file, replacing it if it exists, and leaves room for the header.
+     *
+     * @param file_name The name of the file to write
+     *
+     * @return BinaryFeedWriter instance with no records
+     */
+	public BinaryFeedWriter(String file_name) throws IOException {
+		this.file = new RandomAccessFile(file_name, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * BinaryFormat.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.live_ids = new HashMap<String, long[]>();
+		this.next_id = 1;
+		this.symbol_numbers = new HashMap<String, Integer>();
+		this.symbols = new ArrayList<byte[]>();
+		this.records = 0;
+		this.channel.position(BinaryFormat.HEADER_SIZE);
+	}
+
+	//Getters
+    /**
+     * Returns the number of records written
+     *
+     * @return records The number of records
+     */
+	public long getRecordCount(){
+		return this.records;
+	}
+
+	/**
+	 * This method appends a message to the file.
+	 *
+	 * @param message The parsed add or reduce message
+	 *
+	 * @throws IllegalArgumentException if the order id or symbol is too long, or there are too many symbols
+	 */
+	public void write(OrderMessage message) throws IOException {
+		if (message.getOrderIdLength() > OrderIndex.DEFAULT_MAX_ID_LENGTH){
+			throw new IllegalArgumentException("Error: Order id is longer than "+OrderIndex.DEFAULT_MAX_ID_LENGTH
+				+" bytes: "+message.getOrderId());
+		}
+		int symbol = symbolNumber(message);
+		long id = internId(message, symbol);
+		if (!this.buffer.hasRemaining()){
+			drain();
+		}
+		int record = this.buffer.position();
+		boolean add = message.getType() == OrderMessage.ADD;
+		this.buffer.putLong(record + BinaryFormat.TIMESTAMP, message.getTimestamp());
+		this.buffer.putLong(record + BinaryFormat.ORDER_ID, id);
+		this.buffer.putLong(record + BinaryFormat.PRICE, add ? message.getPrice() : 0);
+		this.buffer.putInt(record + BinaryFormat.SIZE, message.getSize());
+		this.buffer.putShort(record + BinaryFormat.SYMBOL, (short) symbol);
+		this.buffer.put(record + BinaryFormat.TYPE, (byte) message.getType());
+		this.buffer.put(record + BinaryFormat.SIDE, add ? (byte) message.getSide() : 0);
+		this.buffer.position(record + BinaryFormat.RECORD_SIZE);
+		this.records++;
+	}
+
+	/**
+	 * This method writes the remaining records, the symbol table and the header, and closes the file.
+	 */
+	public void close() throws IOException {
+		drain();
+		long symbol_table = this.channel.position();
+		int table_size = 4;
+		for (byte[] symbol : this.symbols){
+			table_size += 1 + symbol.length;
+		}
+		ByteBuffer table = ByteBuffer.allocate(table_size).order(ByteOrder.LITTLE_ENDIAN);
+		table.putInt(this.symbols.size());
+		for (byte[] symbol : this.symbols){
+			table.put((byte) symbol.length);
+			table.put(symbol);
+		}
+		table.flip();
+		writeFully(table, symbol_table);
+
+		ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(BinaryFormat.HEADER_MAGIC, BinaryFormat.MAGIC);
+		header.putShort(BinaryFormat.HEADER_VERSION, BinaryFormat.VERSION);
+		header.putShort(BinaryFormat.HEADER_RECORD_SIZE, (short) BinaryFormat.RECORD_SIZE);
+		header.putLong(BinaryFormat.HEADER_RECORD_COUNT, this.records);
+		header.putLong(BinaryFormat.HEADER_SYMBOL_TABLE, symbol_table);
+		writeFully(header, 0);
+		this.channel.force(false);
+		this.file.close();
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()){
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void writeFully(ByteBuffer bytes, long position) throws IOException {
+		while (bytes.hasRemaining()){
+			position += this.channel.write(bytes, position);
+		}
+	}
+
+	private long internId(OrderMessage message, int symbol){
+		//each book has an order index of its own, so the same id can be live on two symbols at once
+		String text_id = symbol+" "+message.getOrderId();
+		long[] order = this.live_ids.get(text_id);
+		if (message.getType() == OrderMessage.ADD){
+			if (order == null){
+				order = new long[]{this.next_id++, 0};
+			}
+			//an add of a live id replaces the order, as it does in OrderIndex
+			order[1] = message.getSize();
+			if (order[1] > 0){
+				this.live_ids.put(text_id, order);
+			} else {
+				this.live_ids.remove(text_id);
+			}
+			return order[0];
+		}
+		if (order == null){
+			return this.next_id++;
+		}
+		order[1] -= Math.min(order[1], message.getSize());
+		if (order[1] == 0){
+			this.live_ids.remove(text_id);
+		}
+		return order[0];
+	}
+
+	private int symbolNumber(OrderMessage message){
+		if (message.getSymbolLength() == 0){
+			return 0;
+		}
+		String symbol = message.getSymbol();
+		Integer number = this.symbol_numbers.get(symbol);
+		if (number == null){
+			if (message.getSymbolLength() > SymbolTable.MAX_SYMBOL_LENGTH){
+				throw new IllegalArgumentException("Error: Symbol is longer than "+SymbolTable.MAX_SYMBOL_LENGTH
+					+" bytes: "+symbol);
+			}
+			if (this.symbols.size() == BinaryFormat.MAX_SYMBOLS){
+				throw new IllegalArgumentException("Error: More than "+BinaryFormat.MAX_SYMBOLS+" symbols");
+			}
+			this.symbols.add(symbol.getBytes());
+			number = this.symbols.size();
+			this.symbol_numbers.put(symbol, number);
+		}
+		return number;
+	}
+
+	/**
+	 * This is the main method of the converter. It reads a text feed from STDIN and writes it in the binary
+	 * format. It stops at the first line that is not a valid message.
+	 *
+	 * @param args The name of the file to write
+	 */
+	public static void main(String[] args){
+		if (args.length != 1){
+			System.err.println("Usage: java BinaryFeedWriter output_file < text_feed");
+			System.exit(1);
+		}
+		MessageParser parser = new MessageParser(System.in);
+		OrderMessage message = new OrderMessage();
+		BinaryFeedWriter writer = null;
+		try{
+			writer = new BinaryFeedWriter(args[0]);
+			while (parser.next(message)){
+				writer.write(message);
+			}
+			writer.close();
+		} catch (IOException|NumberFormatException e){
+			System.err.println((writer == null) ? e.getMessage() : "Warning invalid input: \""+parser.getLine()+"\"");
+			System.exit(1);
+		} catch (IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
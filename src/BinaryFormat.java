@@ -0,0 +1,55 @@
+/**
+ * This class describes the binary feed format written by BinaryFeedWriter and read by BinaryFeedReader.
+ * Every message is a fixed-width little-endian record, so a reader can decode it straight out of a memory
+ * mapped file with no tokenizing:
+ *
+ *		offset  0	long	timestamp
+ *		offset  8	long	order id, interned: the n-th distinct live order id of the text feed is n
+ *		offset 16	long	price in ticks, 0 for a reduce
+ *		offset 24	int		size
+ *		offset 28	short	symbol number, 0 for the unnamed default instrument (unsigned)
+ *		offset 30	byte	type, 'A' or 'R'
+ *		offset 31	byte	side, 'B' or 'S' for an add, 0 for a reduce
+ *
+ * The file starts with a header of the same width as a record, so every record is aligned to it:
+ *
+ *		offset  0	int		MAGIC
+ *		offset  4	short	VERSION
+ *		offset  6	short	RECORD_SIZE
+ *		offset  8	long	number of records
+ *		offset 16	long	offset of the symbol table, after the last record
+ *
+ * The symbol table holds an int count followed by the symbols numbered 1, 2, ... in order, each a byte of
+ * length and its bytes.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BinaryFormat {
+	public static final int MAGIC = 0x4F424B46; //"OBKF"
+	public static final short VERSION = 1;
+	public static final int RECORD_SIZE = 32;
+	public static final int HEADER_SIZE = RECORD_SIZE;
+
+	//Offsets of the header fields
+	public static final int HEADER_MAGIC = 0;
+	public static final int HEADER_VERSION = 4;
+	public static final int HEADER_RECORD_SIZE = 6;
+	public static final int HEADER_RECORD_COUNT = 8;
+	public static final int HEADER_SYMBOL_TABLE = 16;
+
+	//Offsets of the record fields
+	public static final int TIMESTAMP = 0;
+	public static final int ORDER_ID = 8;
+	public static final int PRICE = 16;
+	public static final int SIZE = 24;
+	public static final int SYMBOL = 28;
+	public static final int TYPE = 30;
+	public static final int SIDE = 31;
+
+	//Most symbols a feed can name, as their numbers are unsigned shorts and 0 means no symbol
+	public static final int MAX_SYMBOLS = 0xFFFF;
+
+	private BinaryFormat(){
+	}
+}
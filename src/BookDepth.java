@@ -0,0 +1,133 @@
+/**
+ * This class answers level-2 depth queries on the book of an instrument: the top N levels of a side, the
+ * cumulative shares and notional up to a price, and the cost and volume weighted average price of any
+ * number of shares. The queries read the same PriceLevelTrees that the Buyer and Seller keep up to date,
+ * so nothing is maintained for them beyond the share and notional totals the trees already hold for each
+ * subtree. Each query is a single descent from the root, O(log(n)) however deep the book is; only the top
+ * N levels cost O(log(n) + N).
+ *
+ * Sides are named as in messages: OrderMessage.BUY for the bids and OrderMessage.SELL for the offers.
+ *
+ * Like OrderBook, this class is not thread safe: queries must run on the thread that owns the book, or on
+ * a copy of it.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BookDepth {
+	private PriceLevelTree bids;
+	private PriceLevelTree offers;
+
+	//Constructors
+    /**
+     * Creates the depth queries of a book.
+     *
+     * @param book The book to query. Queries always see its current levels.
+     *
+     * @return BookDepth instance
+     */
+	public BookDepth(OrderBook book){
+		this(book.getSeller().getBidLog(), book.getBuyer().getOfferLog());
+	}
+
+    /**
+     * Creates the depth queries of the bids and offers of a book.
+     *
+     * @param bids The descending price levels of the bids
+     * @param offers The ascending price levels of the offers
+     *
+     * @return BookDepth instance
+     */
+	public BookDepth(PriceLevelTree bids, PriceLevelTree offers){
+		this.bids = bids;
+		this.offers = offers;
+	}
+
+    /**
+     * Returns the number of price levels on a side
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     *
+     * @return level_count The number of levels
+     */
+	public int getLevelCount(char side){
+		return log(side).getLevelCount();
+	}
+
+	/**
+	 * This method copies the best levels of a side, best first.
+	 *
+	 * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+	 * @param prices The array to copy the prices to in ticks
+	 * @param shares The array to copy the shares to
+	 * @param count The most levels to copy, no more than the length of the arrays
+	 *
+	 * @return copied The number of levels copied, less than count if the side has fewer levels
+	 */
+	public int getTopLevels(char side, long[] prices, int[] shares, int count){
+		return log(side).getLevels(prices, shares, count);
+	}
+
+	/**
+	 * This method returns the shares available at price or better, which is how many shares could be sold
+	 * to the bids down to price, or bought from the offers up to it.
+	 *
+	 * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+	 * @param price The worst price to count in ticks
+	 *
+	 * @return shares The cumulative number of shares
+	 */
+	public long getCumulativeShares(char side, long price){
+		return log(side).getSharesThrough(price);
+	}
+
+	/**
+	 * This method returns the notional (price * shares) of the levels at price or better.
+	 *
+	 * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+	 * @param price The worst price to count in ticks
+	 *
+	 * @return notional The cumulative notional in ticks
+	 */
+	public long getCumulativeNotional(char side, long price){
+		return log(side).getNotionalThrough(price);
+	}
+
+	/**
+	 * This method returns what the best shares of a side add up to: the cost of buying them from the
+	 * offers, or the amount from selling them to the bids.
+	 *
+	 * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+	 * @param shares The number of shares
+	 *
+	 * @return cost The cost in ticks, Prices.NOT_AVAILABLE if the side does not have that many shares
+	 */
+	public long getCostOf(char side, long shares){
+		return log(side).getCostOfBest(shares);
+	}
+
+	/**
+	 * This method returns the volume weighted average price of the best shares of a side.
+	 *
+	 * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+	 * @param shares The number of shares
+	 *
+	 * @return vwap The average price per share, Double.NaN if the side does not have that many shares
+	 */
+	public double getVwap(char side, long shares){
+		long cost = getCostOf(side, shares);
+		if (cost == Prices.NOT_AVAILABLE){
+			return Double.NaN;
+		}
+		return Prices.toDouble(cost) / shares;
+	}
+
+	private PriceLevelTree log(char side){
+		if (side == OrderMessage.BUY){
+			return this.bids;
+		} else if (side == OrderMessage.SELL){
+			return this.offers;
+		}
+		throw new IllegalArgumentException("Error: Unknown side: "+side);
+	}
+}
@@ -0,0 +1,186 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This class writes and restores compact binary snapshots of every book in an OrderBooks: the price levels
+ * of both sides and the live orders of the order index. Levels are stored as well as orders because they
+ * are what the costs are computed from, so a restored book prices exactly like the original. The target
+ * sizes are not stored, so a snapshot can be restored with any targets.
+ *
+ * A snapshot is written to a temporary file and renamed into place, so a snapshot file is always complete.
+ * All numbers are little-endian:
+ *
+ *		int		MAGIC
+ *		short	VERSION
+ *		long	number of messages applied to the books when the snapshot was taken
+ *		int		number of books, then for each book:
+ *			byte	symbol length, then the symbol bytes
+ *			int		number of offer levels, then for each level: long price, int shares
+ *			int		number of bid levels, then for each level: long price, int shares
+ *			int		number of live orders, then for each order: byte id length, id bytes, byte side,
+ *					long price, int remaining size
+ *		int		MAGIC again, to mark the end of the snapshot
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BookSnapshot {
+	public static final int MAGIC = 0x4F424B53; //"OBKS"
+	public static final short VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private BookSnapshot(){
+	}
+
+	/**
+	 * This method writes a snapshot of every book.
+	 *
+	 * @param books The books. They must not change while the snapshot is written.
+	 * @param sequence The number of messages that have been applied to the books
+	 * @param file The file to write, replaced if it exists
+	 */
+	public static void write(OrderBooks books, long sequence, File file) throws IOException {
+		File temporary = new File(file.getPath()+".tmp");
+		RandomAccessFile out = new RandomAccessFile(temporary, "rw");
+		try{
+			out.setLength(0);
+			Output output = new Output(out.getChannel());
+			output.ensure(18).putInt(MAGIC).putShort(VERSION).putLong(sequence);
+			output.ensure(4).putInt(books.size());
+			byte[] id = new byte[OrderIndex.DEFAULT_MAX_ID_LENGTH];
+			for (OrderBook book : books.values()){
+				byte[] symbol = book.getSymbol();
+				output.ensure(1 + symbol.length).put((byte) symbol.length).put(symbol);
+				writeLevels(output, book.getBuyer().getOfferLog());
+				writeLevels(output, book.getSeller().getBidLog());
+
+				OrderIndex orders = book.getOrderIndex();
+				output.ensure(4).putInt(orders.size());
+				for (int slot = 0; slot < orders.getCapacity(); slot++){
+					if (!orders.isLive(slot)){
+						continue;
+					}
+					int length = orders.getIdLength(slot);
+					if (id.length < length){
+						id = new byte[length];
+					}
+					orders.getId(slot, id);
+					output.ensure(14 + length).put((byte) length).put(id, 0, length).put((byte) orders.getSide(slot))
+						.putLong(orders.getPrice(slot)).putInt(orders.getSize(slot));
+				}
+			}
+			output.ensure(4).putInt(MAGIC);
+			output.drain();
+			out.getChannel().force(false);
+		} finally {
+			out.close();
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * This method memory maps a snapshot and restores it into books that have not processed any message.
+	 * No price changes are written.
+	 *
+	 * @param file The snapshot file
+	 * @param books The empty books to restore into
+	 *
+	 * @return sequence The number of messages that had been applied when the snapshot was taken
+	 *
+	 * @throws IOException if the file cannot be read or is not a complete snapshot
+	 */
+	public static long restore(File file, OrderBooks books) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try{
+			MappedByteBuffer snapshot = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+			snapshot.order(ByteOrder.LITTLE_ENDIAN);
+			if (snapshot.remaining() < 18 || snapshot.getInt() != MAGIC || snapshot.getShort() != VERSION){
+				throw new IOException("Error: Not a book snapshot: "+file);
+			}
+			long sequence = snapshot.getLong();
+			int book_count = snapshot.getInt();
+			byte[] id = new byte[OrderIndex.DEFAULT_MAX_ID_LENGTH];
+			for (int i = 0; i < book_count; i++){
+				byte[] symbol = new byte[snapshot.get() & 0xFF];
+				snapshot.get(symbol);
+				OrderBook book = books.getBook(symbol, symbol.length);
+				restoreLevels(snapshot, book, OrderMessage.SELL);
+				restoreLevels(snapshot, book, OrderMessage.BUY);
+				int order_count = snapshot.getInt();
+				for (int order = 0; order < order_count; order++){
+					int length = snapshot.get() & 0xFF;
+					if (id.length < length){
+						id = new byte[length];
+					}
+					snapshot.get(id, 0, length);
+					char side = (char) snapshot.get();
+					long price = snapshot.getLong();
+					book.restoreOrder(id, length, side, price, snapshot.getInt());
+				}
+			}
+			if (snapshot.getInt() != MAGIC){
+				throw new IOException("Error: Incomplete book snapshot: "+file);
+			}
+			return sequence;
+		} catch (BufferUnderflowException e){
+			throw new IOException("Error: Incomplete book snapshot: "+file);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeLevels(Output output, PriceLevelTree log) throws IOException {
+		output.ensure(4).putInt(log.getLevelCount());
+		for (long price = log.getBestPrice(); price != Prices.NO_PRICE; price = log.getNextPrice(price)){
+			output.ensure(12).putLong(price).putInt(log.getShares(price));
+		}
+	}
+
+	private static void restoreLevels(ByteBuffer snapshot, OrderBook book, char side){
+		int level_count = snapshot.getInt();
+		for (int level = 0; level < level_count; level++){
+			long price = snapshot.getLong();
+			book.restoreLevel(side, price, snapshot.getInt());
+		}
+	}
+
+	/**
+	 * Buffers little-endian writes to a channel.
+	 */
+	private static class Output {
+		private FileChannel channel;
+		private ByteBuffer buffer;
+
+		Output(FileChannel channel){
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Makes room for bytes in the buffer and returns it to put them in.
+		 */
+		ByteBuffer ensure(int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes){
+				drain();
+			}
+			return this.buffer;
+		}
+
+		void drain() throws IOException {
+			this.buffer.flip();
+			while (this.buffer.hasRemaining()){
+				this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+}
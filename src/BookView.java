@@ -0,0 +1,200 @@
+/**
+ * This class holds a consistent copy of a book as it was published after one message (see PublishedBook).
+ * A reader keeps a view of its own and refreshes it with PublishedBook.read(...), so reading allocates
+ * nothing once the view has been created.
+ *
+ * Sides are named as in messages: OrderMessage.BUY for the bids and OrderMessage.SELL for the offers.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class BookView {
+	private byte[] symbol;
+	private int[] buy_target_sizes;
+	private int[] sell_target_sizes;
+
+	//Filled in by PublishedBook.read
+	long timestamp;
+	long messages;
+	int bid_level_count;
+	int offer_level_count;
+	long bid_shares;
+	long offer_shares;
+	long[] buy_costs;
+	long[] sell_costs;
+	long[] bid_prices;
+	int[] bid_sizes;
+	long[] offer_prices;
+	int[] offer_sizes;
+
+	//Constructors
+    /**
+     * Creates an empty view. Views are created with PublishedBook.newView().
+     */
+	BookView(byte[] symbol, int depth, int[] buy_target_sizes, int[] sell_target_sizes){
+		this.symbol = symbol;
+		this.buy_target_sizes = buy_target_sizes;
+		this.sell_target_sizes = sell_target_sizes;
+		this.buy_costs = new long[buy_target_sizes.length];
+		this.sell_costs = new long[sell_target_sizes.length];
+		this.bid_prices = new long[depth];
+		this.bid_sizes = new int[depth];
+		this.offer_prices = new long[depth];
+		this.offer_sizes = new int[depth];
+	}
+
+	//Getters
+    /**
+     * Returns the symbol of the instrument. The array must not be modified.
+     *
+     * @return symbol The symbol bytes, empty for the unnamed default instrument
+     */
+	public byte[] getSymbol(){
+		return this.symbol;
+	}
+
+    /**
+     * Returns the timestamp of the last message applied when the view was published
+     *
+     * @return timestamp The timestamp, 0 if nothing has been published
+     */
+	public long getTimestamp(){
+		return this.timestamp;
+	}
+
+    /**
+     * Returns the number of messages the book had applied when the view was published
+     *
+     * @return messages The number of messages published
+     */
+	public long getMessages(){
+		return this.messages;
+	}
+
+    /**
+     * Returns the number of price levels on a side, which may be more than the levels in the view
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     *
+     * @return level_count The number of levels in the book
+     */
+	public int getLevelCount(char side){
+		return isBuy(side) ? this.bid_level_count : this.offer_level_count;
+	}
+
+    /**
+     * Returns the total number of shares on a side
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     *
+     * @return shares The shares over every level of the side
+     */
+	public long getTotalShares(char side){
+		return isBuy(side) ? this.bid_shares : this.offer_shares;
+	}
+
+    /**
+     * Returns the number of levels of a side in the view, the best of them up to the depth published
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     *
+     * @return count The number of levels that can be read with getPrice and getShares
+     */
+	public int getLevels(char side){
+		return Math.min(getLevelCount(side), this.bid_prices.length);
+	}
+
+    /**
+     * Returns the price of a level, best first
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     * @param level The level, from 0 to getLevels(side) - 1
+     *
+     * @return price The price in ticks
+     */
+	public long getPrice(char side, int level){
+		return isBuy(side) ? this.bid_prices[level] : this.offer_prices[level];
+	}
+
+    /**
+     * Returns the shares of a level, best first
+     *
+     * @param side OrderMessage.BUY for the bids, OrderMessage.SELL for the offers
+     * @param level The level, from 0 to getLevels(side) - 1
+     *
+     * @return shares The number of shares at the level
+     */
+	public int getShares(char side, int level){
+		return isBuy(side) ? this.bid_sizes[level] : this.offer_sizes[level];
+	}
+
+    /**
+     * Returns the number of targets priced for buying (OrderMessage.BUY) or selling (OrderMessage.SELL).
+     * Buying is priced from the offers and selling from the bids.
+     *
+     * @param side OrderMessage.BUY for the buy targets, OrderMessage.SELL for the sell targets
+     *
+     * @return count The number of targets
+     */
+	public int getTargetCount(char side){
+		return isBuy(side) ? this.buy_target_sizes.length : this.sell_target_sizes.length;
+	}
+	public int getTargetSize(char side, int target){
+		return isBuy(side) ? this.buy_target_sizes[target] : this.sell_target_sizes[target];
+	}
+
+    /**
+     * Returns the cost of buying, or the amount from selling, the shares of a target
+     *
+     * @param side OrderMessage.BUY for the buy targets, OrderMessage.SELL for the sell targets
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return cost The cost in ticks, Prices.NOT_AVAILABLE if there were not enough shares
+     */
+	public long getCost(char side, int target){
+		return isBuy(side) ? this.buy_costs[target] : this.sell_costs[target];
+	}
+
+    /**
+     * Returns the cost of buying, or the amount from selling, any number of shares. A target of the view
+     * is answered from its cost; any other number of shares is walked through the levels in the view.
+     *
+     * @param side OrderMessage.BUY to buy from the offers, OrderMessage.SELL to sell to the bids
+     * @param shares The number of shares
+     *
+     * @return cost The cost in ticks, Prices.NOT_AVAILABLE if there were not enough shares, or
+     *		Prices.BEYOND_DEPTH if there were but not in the levels of the view
+     */
+	public long getCostOf(char side, long shares){
+		boolean buy = isBuy(side);
+		int[] target_sizes = buy ? this.buy_target_sizes : this.sell_target_sizes;
+		for (int target = 0; target < target_sizes.length; target++){
+			if (target_sizes[target] == shares){
+				return getCost(side, target);
+			}
+		}
+		//buying walks the offers and selling the bids
+		char levels_side = buy ? OrderMessage.SELL : OrderMessage.BUY;
+		if (shares > getTotalShares(levels_side)){
+			return Prices.NOT_AVAILABLE;
+		}
+		long cost = 0;
+		long remaining = shares;
+		int levels = getLevels(levels_side);
+		for (int level = 0; level < levels && remaining > 0; level++){
+			long taken = Math.min(remaining, getShares(levels_side, level));
+			cost += taken * getPrice(levels_side, level);
+			remaining -= taken;
+		}
+		return (remaining == 0) ? cost : Prices.BEYOND_DEPTH;
+	}
+
+	private static boolean isBuy(char side){
+		if (side == OrderMessage.BUY){
+			return true;
+		} else if (side == OrderMessage.SELL){
+			return false;
+		}
+		throw new IllegalArgumentException("Error: Unknown side: "+side);
+	}
+}
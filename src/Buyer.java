@@ -1,138 +1,200 @@
 /**
  * This class contains methods and attributes for processing offers and calculated new minimum purchase price.
  * It is initialized with a target size of the number of shares to buy, and it maintains a log in the form of
- * a min TreeMap in order track the shares.
+ * an ascending PriceLevelTree in order track the shares.
+ *
+ * Prices and costs are fixed-point ticks (see Prices). The methods that take and return doubles convert
+ * at the edges and are kept for callers that work in decimal prices.
  *
  * @author Michael Hinds
  * @version 1.0
 */
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.TreeMap;
-import java.util.Map;
-
 public class Buyer {
-	private TreeMap<Double, Integer> offer_log;
-	private int target_size;
-	private double target_shares_cost;
-	private double max_price_paid_per_share; //track this to know if we need to recalculate the min cost of target shares
+	private PriceLevelTree offer_log;
+	private TargetCostSet target_costs; //running cost of the best shares in the log for each target size
 	//Constructors
     /**
-     * This is a constructor for the buyer class. It instantiates buyer instances with 
-     * empty logs (TreeMap<Double, Integer>) and requires a target_size param.
+     * This is a constructor for the buyer class. It instantiates buyer instances with
+     * empty logs (PriceLevelTree) and requires a target_size param.
      *
      * @param target_size The target number of shares to buy
      *
      * @return Buyer instance with empty log and target_size populated
      */
     public Buyer(int target_size){
-		 this.offer_log = new TreeMap<Double, Integer>();
-		 this.target_size = target_size;
-		 this.target_shares_cost = -1;
-		 this.max_price_paid_per_share = Double.POSITIVE_INFINITY;
+		 this(new int[]{target_size});
+	}
+
+    /**
+     * This is a constructor for a buyer that prices several target sizes over the same log of offers.
+     * The cost changes of every target are available from getCostChange(...) after each update.
+     *
+     * @param target_sizes The target numbers of shares to buy. They are kept in ascending order.
+     *
+     * @return Buyer instance with empty log and target sizes populated
+     */
+    public Buyer(int[] target_sizes){
+		 this(target_sizes, false);
+	}
+
+    /**
+     * This is a constructor for a buyer that prices several target sizes, with its log of offers stored on
+     * the heap or in direct memory.
+     *
+     * @param target_sizes The target numbers of shares to buy. They are kept in ascending order.
+     * @param off_heap true to keep the price levels in direct memory (see OffHeapLevelStore)
+     *
+     * @return Buyer instance with empty log and target sizes populated
+     */
+    public Buyer(int[] target_sizes, boolean off_heap){
+		 this.offer_log = new PriceLevelTree(false, off_heap);
+		 this.target_costs = new TargetCostSet(this.offer_log, target_sizes);
 	}
 
 	//Getters & Setters
     /**
-     * Returns the target_size param
+     * Returns the target_size param, the smallest target if there are several
      *
      * @return target_size An integer representing the number of shares to purchase
      */
 	public int getTargetSize(){
-		return this.target_size;
+		return this.target_costs.getTargetSize(0);
 	}
 
     /**
      * Sets the target_size param. It is not recommended to do this while after adding offers to the
-     * log as this could lead to an inconsistent state.
+     * log as this could lead to an inconsistent state. It replaces every target size with this one.
      *
      * @param target_size The number of shares to purchase
      */
 	public void setTargetSize(int target_size){
-		this.target_size = target_size;
+		this.target_costs.setTargetSizes(new int[]{target_size});
 	}
 
-	/**
-     * This method calculates the minimum cost to buy target_size shares. Returns infinity if there
-	 * aren't enough shares available. 
-	 * Potential optimization:
-	 * + Reduce the size of the tree being traversed by using head method s.t. the highest priced 
-	 * share <= max_price_paid_per_share. This would see greatest benefit when number of offers in 
-	 * the log are much larger than target_size.
+    /**
+     * Returns the log of offers. It must only be read, as the costs are kept up to date by this buyer.
+     *
+     * @return offer_log The price levels of the offers
+     */
+	public PriceLevelTree getOfferLog(){
+		return this.offer_log;
+	}
 
-     * @return costOfTargetShares The minimum cost to buy target_size shares. Returns Double.POSITIVE_INFINITY
-     * if there aren't enough shares in the log.
-	*/
-	public double getCostOfTargetShares(){
-		int shares_remaining = target_size;
-		double total_cost = 0.0;
-		Map.Entry<Double,Integer> cur_offer = this.offer_log.firstEntry();
+    /**
+     * Returns the number of times the cost of a target has been updated (see TargetCostSet)
+     *
+     * @return recomputes The number of updates
+     */
+	public long getRecomputes(){
+		return this.target_costs.getRecomputes();
+	}
 
-		while (shares_remaining > 0 && cur_offer != null){
+    /**
+     * Returns the number of price levels the cost updates have walked across
+     *
+     * @return levels_walked The number of levels
+     */
+	public long getLevelsWalked(){
+		return this.target_costs.getLevelsWalked();
+	}
+
+    /**
+     * Returns the number of target sizes
+     *
+     * @return count The number of target sizes
+     */
+	public int getTargetCount(){
+		return this.target_costs.size();
+	}
 
-			//check if the current offer has enough shares to complete the buy
-			if (cur_offer.getValue() < shares_remaining){
+    /**
+     * Returns one of the target sizes
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return target_size The number of shares to buy
+     */
+	public int getTargetSize(int target){
+		return this.target_costs.getTargetSize(target);
+	}
 
-				//Add all the shares at this price point to the buy
-				total_cost += cur_offer.getKey() * cur_offer.getValue();
-				shares_remaining -= cur_offer.getValue();
+    /**
+     * Returns how the cost of a target changed in the last add or remove. The add and remove methods
+     * return the change of the smallest target.
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of the target is unchanged
+     * Prices.NOT_AVAILABLE if there are no longer enough shares
+     * new cost of the target shares in ticks
+     */
+	public long getCostChange(int target){
+		return this.target_costs.getChange(target);
+	}
 
-			} else { //the current offer has enough shares to complete the buy order
+    /**
+     * Returns the current cost of a target
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return cost The cost to buy the target shares in ticks, Prices.NOT_AVAILABLE if there are not enough
+     */
+	public long getCost(int target){
+		return this.target_costs.getCost(target);
+	}
 
-				total_cost += cur_offer.getKey() * shares_remaining;
-				shares_remaining = 0;
-				this.max_price_paid_per_share = cur_offer.getKey();
+	/**
+     * This method calculates the minimum cost to buy target_size shares. Returns infinity if there
+	 * aren't enough shares available. The log keeps share and notional totals for each subtree, so
+	 * this takes O(log(n)) however many price levels the target shares span.
 
-			}
-			//get the next lowest priced offer
-			cur_offer = offer_log.higherEntry(cur_offer.getKey());
-		}
-		if(shares_remaining > 0){
+     * @return costOfTargetShares The minimum cost to buy target_size shares. Returns Double.POSITIVE_INFINITY
+     * if there aren't enough shares in the log.
+	*/
+	public double getCostOfTargetShares(){
+		long total_cost = this.offer_log.getCostOfBest(getTargetSize());
+		if (total_cost == Prices.NOT_AVAILABLE){
 			return Double.POSITIVE_INFINITY;
-		} else {
-			return total_cost;
 		}
+		return Prices.toDouble(total_cost);
 	}
+
 	/**
-	 * This method adds a offer to the log and recalculates the 
-	 * minimum buy price for target_size shares. 
+	 * This method adds a offer to the log and recalculates the
+	 * minimum buy price for target_size shares.
      *
      * @param price The price per share of the offer to be added
      * @param size The number of shares in the offer
-     * 
+     *
      * @return
      * null if the cost of buying target shares is unchanged
      * Double.POSITIVE_INFINITY if there are not enough shares to complete the buy
      * new cost of buying target_size shares
 	**/
 	public Double addNewOffer(double price, int size){
-		double new_cost;
-		/*****add new offer to the log****/
-		//Keys are prices, so check and see if there are some shares available at this price already
-		Integer current_shares = this.offer_log.get(price);
-		if (current_shares != null){
-			//already have shares at this price, so increment the number by size
-			this.offer_log.put(price, current_shares+size);
-		} else {
-			//no shares at this price so create a new key/value pair
-			this.offer_log.put(price, size);
-		}
-		//check if the price should be updated
-		if (price >= this.max_price_paid_per_share){
-			//the new offer is too high and won't affect min price
-			return null;
-		}
-		new_cost = getCostOfTargetShares();
+		return toDecimalCost(addNewOfferTicks(Prices.toTicks(price), size));
+	}
 
-		if (new_cost == this.target_shares_cost || (this.target_shares_cost == -1 && new_cost == Double.POSITIVE_INFINITY)){
-			//the new_cost is the same as the old cost
-			this.target_shares_cost = new_cost;
-			return null;
-		} else {
-			this.target_shares_cost = new_cost;
-			return this.target_shares_cost;
-		}
+	/**
+	 * This method adds a offer to the log and recalculates the
+	 * minimum buy price for target_size shares.
+     *
+     * @param price The price per share of the offer to be added in ticks
+     * @param size The number of shares in the offer
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of buying target shares is unchanged
+     * Prices.NOT_AVAILABLE if there are not enough shares to complete the buy
+     * new cost of buying target_size shares in ticks
+	**/
+	public long addNewOfferTicks(long price, int size){
+		/*****add new offer to the log****/
+		//Levels are keyed by price, so the shares are merged into an existing level at this price
+		this.offer_log.add(price, size);
+		//apply the new shares to the running cost, this only walks the levels the boundary moves across
+		return this.target_costs.add(price, size);
 	}
 
     /**
@@ -147,32 +209,39 @@ public class Buyer {
      * Double.POSITIVE_INFINITY if there are not enough shares to complete the buy
      */
     public Double removeOffer(double price, int size) throws Exception{
-		Double new_cost;
+		return toDecimalCost(removeOfferTicks(Prices.toTicks(price), size));
+	}
+
+    /**
+     * This method removes an offer from the log. Then, it recalculates the minimum price to purchase target_size
+     * shares.
+     *
+     * @param price The price per share of the offer to remove in ticks
+     * @param size The number of shares in the offer
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of buying target shares is unchanged
+     * Prices.NOT_AVAILABLE if there are not enough shares to complete the buy
+     * new cost of buying target_size shares in ticks
+     */
+    public long removeOfferTicks(long price, int size) throws Exception{
 		//remove shares from log
-		Integer current_shares = this.offer_log.get(price);
-        if (current_shares == null) {
-            throw new Exception("Error: Cannot remove shares. No shares in the buyer log at this price: "+price);
+		int current_shares = this.offer_log.getShares(price);
+        if (current_shares == 0) {
+            throw new Exception("Error: Cannot remove shares. No shares in the buyer log at this price: "+Prices.toDouble(price));
         }
-		if (size < current_shares) {//there are other offers at this price, so just decrement shares from log
-			this.offer_log.put(price, current_shares-size);
-		} else {//remove the entry from the log completely
-			this.offer_log.remove(price);
-		}
-		//recalculate price if needed
-		if (price <= this.max_price_paid_per_share){
-			//invalidates max_price_paid_per_share
-			this.max_price_paid_per_share = Double.POSITIVE_INFINITY;
-			new_cost = getCostOfTargetShares();
-
-			if(new_cost == this.target_shares_cost || (this.target_shares_cost == -1 && new_cost == Double.POSITIVE_INFINITY)){
-				this.target_shares_cost = new_cost;
-				return null;
-			} else {
-				this.target_shares_cost = new_cost;
-				return this.target_shares_cost;
-			}
-		} else {
+		//decrements the shares at this price, or removes the level completely if no shares are left
+		this.offer_log.remove(price, size);
+		//apply the removed shares to the running cost
+		return this.target_costs.remove(price, Math.min(size, current_shares));
+	}
+
+	private static Double toDecimalCost(long cost){
+		if (cost == Prices.UNCHANGED){
 			return null;
+		} else if (cost == Prices.NOT_AVAILABLE){
+			return Double.POSITIVE_INFINITY;
 		}
+		return Prices.toDouble(cost);
 	}
 }
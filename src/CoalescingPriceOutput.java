@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class coalesces the price changes of each timestamp, so a burst of messages that share a timestamp
+ * writes at most one line per instrument, side and target size: the price it settled on. A price that
+ * moves and comes back within a timestamp writes nothing at all.
+ *
+ * The changes of the current timestamp are held back and written to the output when a message with
+ * another timestamp is about to be applied (see advance(...)), when a change with another timestamp
+ * arrives, or when the output is flushed at the end or while the input is idle. They are written in the
+ * order each was first changed within the timestamp, so the output stays in timestamp order.
+ *
+ * Like OrderBook, this class is not thread safe and is meant to be owned by one thread.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class CoalescingPriceOutput implements PriceOutput {
+	private PriceOutput out;
+	private int[] target_sizes; //ascending and distinct
+	private InstrumentTable instruments;
+	private long timestamp; //timestamp of the held back changes
+	private Instrument[] pending_instruments; //changes held back, in the order they were first changed
+	private int[] pending_indexes; //index of each held back change in the arrays of its instrument
+	private int pending_count;
+
+	//Constructors
+    /**
+     * Creates an output that coalesces before writing to another.
+     *
+     * @param out The output to write the coalesced changes to
+     * @param target_sizes Every target size of either side the books price
+     *
+     * @return CoalescingPriceOutput instance with no changes held back
+     */
+	public CoalescingPriceOutput(PriceOutput out, int[] target_sizes){
+		this.out = out;
+		this.target_sizes = target_sizes.clone();
+		Arrays.sort(this.target_sizes);
+		this.instruments = new InstrumentTable(this.target_sizes.length);
+		this.pending_instruments = new Instrument[16];
+		this.pending_indexes = new int[16];
+		this.pending_count = 0;
+	}
+
+	/**
+	 * This method writes the changes held back if a message with another timestamp is about to be applied.
+	 *
+	 * @param timestamp The timestamp of the next message
+	 */
+	public void advance(long timestamp) throws IOException {
+		if (timestamp != this.timestamp){
+			writePending();
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * This method takes the current costs of books that were not built through this output, such as books
+	 * recovered from a journal, as the costs already written, so the first change after them is not mistaken
+	 * for no change.
+	 *
+	 * @param books The books, before any message is applied to them through this output
+	 */
+	public void seed(OrderBooks books){
+		for (OrderBook book : books.values()){
+			Instrument instrument = this.instruments.get(book.getSymbol(), book.getSymbol().length);
+			Buyer buyer = book.getBuyer();
+			for (int i = 0; i < buyer.getTargetCount(); i++){
+				int target = Arrays.binarySearch(this.target_sizes, buyer.getTargetSize(i));
+				instrument.written_costs[target] = buyer.getCost(i);
+			}
+			Seller seller = book.getSeller();
+			for (int i = 0; i < seller.getTargetCount(); i++){
+				int target = Arrays.binarySearch(this.target_sizes, seller.getTargetSize(i));
+				instrument.written_costs[this.target_sizes.length + target] = seller.getCost(i);
+			}
+		}
+	}
+
+	/**
+	 * This method holds a price change back until its timestamp is over.
+	 */
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length)
+			throws IOException {
+		advance(timestamp);
+		int target = Arrays.binarySearch(this.target_sizes, target_size);
+		if (target < 0){
+			throw new IllegalArgumentException("Error: Unknown target size: "+target_size);
+		}
+		int index = (side == OrderMessage.BUY ? 0 : this.target_sizes.length) + target;
+		Instrument instrument = this.instruments.get(symbol, symbol_length);
+		instrument.latest_costs[index] = cost;
+		if (!instrument.pending[index]){
+			instrument.pending[index] = true;
+			if (this.pending_count == this.pending_indexes.length){
+				this.pending_instruments = Arrays.copyOf(this.pending_instruments, 2 * this.pending_count);
+				this.pending_indexes = Arrays.copyOf(this.pending_indexes, 2 * this.pending_count);
+			}
+			this.pending_instruments[this.pending_count] = instrument;
+			this.pending_indexes[this.pending_count++] = index;
+		}
+	}
+
+	/**
+	 * This method writes the changes held back and flushes the output.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writePending();
+		this.out.flush();
+	}
+
+	private void writePending() throws IOException {
+		int target_count = this.target_sizes.length;
+		for (int i = 0; i < this.pending_count; i++){
+			Instrument instrument = this.pending_instruments[i];
+			int index = this.pending_indexes[i];
+			this.pending_instruments[i] = null;
+			instrument.pending[index] = false;
+			long cost = instrument.latest_costs[index];
+			if (cost != instrument.written_costs[index]){
+				instrument.written_costs[index] = cost;
+				char side = (index < target_count) ? OrderMessage.BUY : OrderMessage.SELL;
+				this.out.writePrice(this.timestamp, side, this.target_sizes[index % target_count], cost,
+					instrument.symbol, instrument.symbol.length);
+			}
+		}
+		this.pending_count = 0;
+	}
+
+	/**
+	 * The costs of an instrument, buy targets first.
+	 */
+	private static class Instrument {
+		final byte[] symbol;
+		final long[] written_costs; //last cost written, Prices.NOT_AVAILABLE as in TargetCostSet until then or seeded
+		final long[] latest_costs; //latest cost of the current timestamp
+		final boolean[] pending; //true if held back
+
+		Instrument(byte[] symbol, int target_count){
+			this.symbol = symbol;
+			this.written_costs = new long[2 * target_count];
+			Arrays.fill(this.written_costs, Prices.NOT_AVAILABLE);
+			this.latest_costs = new long[2 * target_count];
+			this.pending = new boolean[2 * target_count];
+		}
+	}
+
+	private static class InstrumentTable extends SymbolTable<Instrument> {
+		private int target_count;
+
+		InstrumentTable(int target_count){
+			this.target_count = target_count;
+		}
+
+		@Override
+		protected Instrument create(byte[] symbol){
+			return new Instrument(symbol, this.target_count);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+
+/**
+ * This class delivers the price changes of the books to a PriceListener on a thread of its own, conflating
+ * them so a listener that is slower than the books sees only the latest cost of each side rather than a
+ * growing backlog of stale ones. The books are never held up by the listener.
+ *
+ * The latest change of every instrument, side and target size is kept in a slot of its own. The thread
+ * that applies the books overwrites the slot under a sequence lock and, unless the slot is already waiting
+ * to be delivered, queues it on an SpscRing. The dispatcher thread takes the queued slots, reads each one
+ * consistently and calls the listener with whatever is latest by then. A slot is only ever queued once at
+ * a time, so the queue never holds more than one entry per slot and updates that arrive while a slot waits
+ * cost no more than overwriting it. Nothing is allocated per change once every slot has been created.
+ *
+ * Changes of different slots are delivered in the order the slots were queued, but several changes to one
+ * slot may be delivered as only the last of them. If more slots than DEFAULT_RING_SIZE are waiting at once,
+ * the books wait for the listener to catch up.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ConflatingDispatcher implements PriceSink {
+	public static final int DEFAULT_RING_SIZE = 1 << 12;
+
+	private int[] target_sizes; //ascending and distinct
+	private SlotTable slots; //owned by the thread that applies the books
+	private SpscRing<QueuedSlot> queue;
+	private PriceListener listener;
+	private Thread thread;
+	private volatile RuntimeException error; //first error thrown by the listener, null if there is none
+
+	//Constructors
+    /**
+     * Creates a dispatcher and starts its thread.
+     *
+     * @param listener The listener to deliver the price changes to
+     * @param target_sizes Every target size of either side the books price
+     * @param ring_size The most slots that can wait to be delivered at once, a power of 2
+     * @param wait How the dispatcher thread waits for changes
+     *
+     * @return ConflatingDispatcher instance with a running dispatcher thread
+     */
+	public ConflatingDispatcher(PriceListener listener, int[] target_sizes, int ring_size, WaitStrategy wait){
+		this.listener = listener;
+		int[] sorted = target_sizes.clone();
+		Arrays.sort(sorted);
+		this.target_sizes = sorted;
+		this.slots = new SlotTable(sorted.length);
+		QueuedSlot[] entries = new QueuedSlot[ring_size];
+		for (int i = 0; i < ring_size; i++){
+			entries[i] = new QueuedSlot();
+		}
+		this.queue = new SpscRing<QueuedSlot>(entries, WaitStrategy.PARK, wait);
+		this.thread = new Thread(new Runnable(){
+			public void run(){
+				dispatch();
+			}
+		}, "price-dispatcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+    /**
+     * Returns the first error thrown by the listener. The dispatcher stops delivering after it.
+     *
+     * @return error The error, null if there has been none
+     */
+	public RuntimeException getError(){
+		return this.error;
+	}
+
+	/**
+	 * This method records a price change and queues its slot for delivery if it is not queued already.
+	 * It must only be called from the thread that applies the books.
+	 */
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length){
+		int target = Arrays.binarySearch(this.target_sizes, target_size);
+		if (target < 0){
+			throw new IllegalArgumentException("Error: Unknown target size: "+target_size);
+		}
+		int index = (side == OrderMessage.BUY ? 0 : this.target_sizes.length) + target;
+		Instrument instrument = this.slots.get(symbol, symbol_length);
+		Slot slot = instrument.slots[index];
+		if (slot == null){
+			slot = new Slot(instrument.symbol, side, target_size);
+			instrument.slots[index] = slot;
+		}
+		slot.version++; //odd while the slot is written
+		slot.timestamp = timestamp;
+		slot.cost = cost;
+		slot.version++;
+		if (!slot.queued){
+			slot.queued = true;
+			this.queue.claim().slot = slot;
+			this.queue.publish();
+		}
+	}
+
+	/**
+	 * This method waits for the dispatcher thread to deliver every change already recorded and stops it.
+	 */
+	public void finish() throws InterruptedException {
+		this.queue.close();
+		this.thread.join();
+	}
+
+	/*****Dispatcher thread*****/
+
+	private void dispatch(){
+		QueuedSlot entry;
+		while ((entry = this.queue.take()) != null){
+			Slot slot = entry.slot;
+			this.queue.release();
+			//clear the flag before reading, so a change written after the read queues the slot again
+			slot.queued = false;
+			long version;
+			long timestamp;
+			long cost;
+			do{
+				version = slot.version;
+				timestamp = slot.timestamp;
+				cost = slot.cost;
+			} while ((version & 1) != 0 || version != slot.version);
+			if (this.error != null){
+				continue;
+			}
+			try{
+				this.listener.priceChanged(timestamp, slot.side, slot.target_size, cost, slot.symbol,
+					slot.symbol.length);
+			} catch (RuntimeException e){
+				this.error = e;
+			}
+		}
+	}
+
+	/**
+	 * The latest change of one instrument, side and target size. The volatile fields make the sequence
+	 * lock and the queued flag safe between the two threads.
+	 */
+	private static class Slot {
+		final byte[] symbol;
+		final char side;
+		final int target_size;
+		volatile long version; //odd while the slot is being written
+		volatile long timestamp;
+		volatile long cost;
+		volatile boolean queued; //set by the books' thread, cleared by the dispatcher thread
+
+		Slot(byte[] symbol, char side, int target_size){
+			this.symbol = symbol;
+			this.side = side;
+			this.target_size = target_size;
+		}
+	}
+
+	private static class QueuedSlot {
+		Slot slot;
+	}
+
+	/**
+	 * The slots of an instrument, buy targets first. Slots are created when their first change arrives.
+	 */
+	private static class Instrument {
+		final byte[] symbol;
+		final Slot[] slots;
+
+		Instrument(byte[] symbol, int target_count){
+			this.symbol = symbol;
+			this.slots = new Slot[2 * target_count];
+		}
+	}
+
+	private static class SlotTable extends SymbolTable<Instrument> {
+		private int target_count;
+
+		SlotTable(int target_count){
+			this.target_count = target_count;
+		}
+
+		@Override
+		protected Instrument create(byte[] symbol){
+			return new Instrument(symbol, this.target_count);
+		}
+	}
+}
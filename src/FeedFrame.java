@@ -0,0 +1,97 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class describes the frames of a live TCP feed, read by TcpFeedReader and written by TcpFeedPublisher.
+ * Every frame carries one message and the sequence number the publisher gave it. Sequence numbers start at
+ * 1 on every connection and go up by 1 per frame, so the reader can tell a lost frame from a repeated one.
+ * All numbers are little-endian:
+ *
+ *		offset  0	int		length of the rest of the frame
+ *		offset  4	long	sequence number
+ *		offset 12	byte	format, TEXT or BINARY
+ *		offset 13			the message
+ *
+ * A TEXT message is one line of the text feed (see MessageParser) without its line separator. A BINARY
+ * message is a record laid out like a journal record (see Journal):
+ *
+ *		offset  0	byte	type, 'A' or 'R'
+ *		offset  1	byte	side, 'B' or 'S' for an add
+ *		offset  2	byte	order id length
+ *		offset  3	byte	symbol length, 0 for the unnamed default instrument
+ *		offset  4	int		size
+ *		offset  8	long	timestamp
+ *		offset 16	long	price in ticks for an add
+ *		offset 24			the order id bytes, then the symbol bytes
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class FeedFrame {
+	public static final byte TEXT = 'T';
+	public static final byte BINARY = 'B';
+
+	//Offsets of the frame fields
+	public static final int LENGTH = 0;
+	public static final int SEQUENCE = 4;
+	public static final int FORMAT = 12;
+	public static final int HEADER_SIZE = 13;
+
+	//Offsets of the binary message fields
+	public static final int TYPE = 0;
+	public static final int SIDE = 1;
+	public static final int ID_LENGTH = 2;
+	public static final int SYMBOL_LENGTH = 3;
+	public static final int SIZE = 4;
+	public static final int TIMESTAMP = 8;
+	public static final int PRICE = 16;
+	public static final int RECORD_HEADER = 24;
+
+	//Longest frame a reader accepts: a binary record with the longest id and symbol, with room for a text line
+	public static final int MAX_FRAME_SIZE = 1024;
+
+	private FeedFrame(){
+	}
+
+	/**
+	 * This method appends a frame holding a line of the text feed to a buffer.
+	 *
+	 * @param buffer The little-endian buffer to write at its position, with room for the frame
+	 * @param sequence The sequence number of the frame
+	 * @param line The bytes of the line
+	 * @param offset The index of the first byte of the line
+	 * @param length The number of bytes in the line, without the line separator
+	 */
+	public static void putText(ByteBuffer buffer, long sequence, byte[] line, int offset, int length){
+		buffer.putInt(HEADER_SIZE - SEQUENCE + length).putLong(sequence).put(TEXT).put(line, offset, length);
+	}
+
+	/**
+	 * This method appends a frame holding a message as a binary record to a buffer.
+	 *
+	 * @param buffer The little-endian buffer to write at its position, with room for the frame
+	 * @param sequence The sequence number of the frame
+	 * @param message The add or reduce message
+	 */
+	public static void putBinary(ByteBuffer buffer, long sequence, OrderMessage message){
+		int id_length = message.getOrderIdLength();
+		int symbol_length = message.getSymbolLength();
+		boolean add = message.getType() == OrderMessage.ADD;
+		buffer.putInt(HEADER_SIZE - SEQUENCE + RECORD_HEADER + id_length + symbol_length).putLong(sequence)
+			.put(BINARY);
+		buffer.put((byte) message.getType()).put(add ? (byte) message.getSide() : 0).put((byte) id_length)
+			.put((byte) symbol_length).putInt(message.getSize()).putLong(message.getTimestamp())
+			.putLong(add ? message.getPrice() : 0);
+		buffer.put(message.getOrderIdBytes(), 0, id_length).put(message.getSymbolBytes(), 0, symbol_length);
+	}
+
+    /**
+     * Returns the size of the binary frame of a message
+     *
+     * @param message The message
+     *
+     * @return size The number of bytes putBinary writes
+     */
+	public static int binarySize(OrderMessage message){
+		return HEADER_SIZE + RECORD_HEADER + message.getOrderIdLength() + message.getSymbolLength();
+	}
+}
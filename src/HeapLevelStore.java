@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * This class stores the nodes of a PriceLevelTree in parallel primitive arrays on the heap, which are
+ * doubled when they fill up. A book of any depth is a handful of arrays rather than an object per level.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class HeapLevelStore extends LevelStore {
+	private long[] price;
+	private int[] shares;
+	private int[] height;
+	private int[] left;
+	private int[] right;
+	private long[] subtree_shares;
+	private long[] subtree_notional;
+
+	//Constructors
+    /**
+     * Creates a store with every node zero.
+     *
+     * @param capacity The number of nodes to make room for
+     *
+     * @return HeapLevelStore instance
+     */
+	public HeapLevelStore(int capacity){
+		this.price = new long[capacity];
+		this.shares = new int[capacity];
+		this.height = new int[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.subtree_shares = new long[capacity];
+		this.subtree_notional = new long[capacity];
+	}
+
+	@Override
+	public int capacity(){
+		return this.price.length;
+	}
+
+	@Override
+	public void grow(){
+		int capacity = this.price.length * 2;
+		this.price = Arrays.copyOf(this.price, capacity);
+		this.shares = Arrays.copyOf(this.shares, capacity);
+		this.height = Arrays.copyOf(this.height, capacity);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.subtree_shares = Arrays.copyOf(this.subtree_shares, capacity);
+		this.subtree_notional = Arrays.copyOf(this.subtree_notional, capacity);
+	}
+
+	@Override
+	public long price(int node){
+		return this.price[node];
+	}
+	@Override
+	public void setPrice(int node, long price){
+		this.price[node] = price;
+	}
+	@Override
+	public int shares(int node){
+		return this.shares[node];
+	}
+	@Override
+	public void setShares(int node, int shares){
+		this.shares[node] = shares;
+	}
+	@Override
+	public int height(int node){
+		return this.height[node];
+	}
+	@Override
+	public void setHeight(int node, int height){
+		this.height[node] = height;
+	}
+	@Override
+	public int left(int node){
+		return this.left[node];
+	}
+	@Override
+	public void setLeft(int node, int left){
+		this.left[node] = left;
+	}
+	@Override
+	public int right(int node){
+		return this.right[node];
+	}
+	@Override
+	public void setRight(int node, int right){
+		this.right[node] = right;
+	}
+	@Override
+	public long subtreeShares(int node){
+		return this.subtree_shares[node];
+	}
+	@Override
+	public void setSubtreeShares(int node, long shares){
+		this.subtree_shares[node] = shares;
+	}
+	@Override
+	public long subtreeNotional(int node){
+		return this.subtree_notional[node];
+	}
+	@Override
+	public void setSubtreeNotional(int node, long notional){
+		this.subtree_notional[node] = notional;
+	}
+}
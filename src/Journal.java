@@ -0,0 +1,321 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class makes the books recoverable after a crash. It keeps an append-only journal of every message
+ * applied to the books and periodically replaces it with a BookSnapshot, so a restart only has to restore
+ * the latest snapshot and replay the messages journaled since, however long the session has been running.
+ *
+ * The thread that applies the messages only copies each one into a ring buffer (see SpscRing). A journal
+ * thread appends the messages to the journal file and applies them to a shadow copy of the books, so it can
+ * write a snapshot from the shadow every snapshot_interval messages without ever pausing the books. The
+ * files in the directory are named by the number of messages applied before them:
+ *
+ *		snapshot.N	the books after N messages (see BookSnapshot)
+ *		journal.N	the messages from message N + 1 on
+ *
+ * Once snapshot.N is written, journal.N is started and the older snapshot and journal are deleted. A
+ * journal record is the message in little-endian:
+ *
+ *		byte type, byte side, byte order id length, byte symbol length, int size, long timestamp,
+ *		long price, the order id bytes, the symbol bytes
+ *
+ * The journal is written with ordinary buffered writes whenever the journal thread runs out of messages,
+ * so it survives the pricer process dying but not the machine losing power. A record cut short by a crash
+ * is ignored on recovery.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class Journal {
+	public static final long DEFAULT_SNAPSHOT_INTERVAL = 1000000;
+	public static final int DEFAULT_RING_SIZE = 1 << 12;
+	private static final int RECORD_HEADER = 24;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String SNAPSHOT = "snapshot.";
+	private static final String JOURNAL = "journal.";
+
+	//Discards the price changes of the shadow books and of recovery
+	private static final PriceSink NO_OUTPUT = new PriceSink(){
+		public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length){
+		}
+	};
+
+	private File directory;
+	private long snapshot_interval;
+	private OrderBooks shadow; //owned by the journal thread
+	private long recovered_sequence; //number of messages the books had applied when they were recovered
+	private long sequence; //number of messages applied to the shadow
+	private long snapshot_sequence; //sequence of the latest snapshot
+	private RandomAccessFile journal_file;
+	private FileChannel journal;
+	private ByteBuffer buffer;
+	private SpscRing<OrderMessage> messages;
+	private Thread thread;
+	private volatile Exception error; //first error writing the journal or a snapshot, null if there is none
+	private boolean finished;
+
+	//Constructors
+    /**
+     * Recovers the books from the latest snapshot and journal in a directory, if there are any, and starts
+     * the journal thread. A new snapshot of the recovered books is written first, so the files of the
+     * previous process are no longer needed once this returns.
+     *
+     * @param directory The directory of the snapshots and journals, created if it does not exist
+     * @param snapshot_interval The number of messages between snapshots
+     * @param books Books that have not processed any message. They are recovered in place.
+     * @param shadow Other empty books with the same targets, for the journal thread to keep up to date
+     *
+     * @return Journal instance with a running journal thread
+     *
+     * @throws IllegalArgumentException if the directory cannot be created
+     * @throws IllegalStateException if the recovery or the first snapshot fails
+     */
+	public Journal(File directory, long snapshot_interval, OrderBooks books, OrderBooks shadow) throws Exception {
+		if (!directory.isDirectory() && !directory.mkdirs()){
+			throw new IllegalArgumentException("Error: Cannot create journal directory: "+directory);
+		}
+		this.directory = directory;
+		this.snapshot_interval = snapshot_interval;
+		this.shadow = shadow;
+		this.finished = false;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		try{
+			this.recovered_sequence = recover(directory, books);
+			recover(directory, shadow);
+			this.sequence = this.recovered_sequence;
+			this.snapshot_sequence = -1;
+			snapshot();
+		} catch (IOException e){
+			//not an input error, so the pricer must not report it as one
+			throw new IllegalStateException("Error: Cannot recover from journal directory "+directory+": "
+				+e.getMessage(), e);
+		}
+
+		OrderMessage[] slots = new OrderMessage[DEFAULT_RING_SIZE];
+		for (int i = 0; i < slots.length; i++){
+			slots[i] = new OrderMessage();
+		}
+		this.messages = new SpscRing<OrderMessage>(slots, WaitStrategy.PARK, WaitStrategy.PARK);
+		this.thread = new Thread(new Runnable(){
+			public void run(){
+				runJournal();
+			}
+		}, "pricer-journal");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	//Getters
+    /**
+     * Returns the number of messages the books had applied when they were recovered
+     *
+     * @return recovered_sequence The number of messages, 0 if there was nothing to recover
+     */
+	public long getRecoveredSequence(){
+		return this.recovered_sequence;
+	}
+
+    /**
+     * Returns the first error writing the journal or a snapshot
+     *
+     * @return error The error, null if there has been none
+     */
+	public Exception getError(){
+		return this.error;
+	}
+
+	/**
+	 * This method hands a message that has been applied to the books to the journal thread. It only waits
+	 * if the journal thread has fallen a whole ring behind.
+	 *
+	 * @param message The message. It may be reused as soon as this returns.
+	 */
+	public void append(OrderMessage message){
+		this.messages.claim().copyFrom(message);
+		this.messages.publish();
+	}
+
+	/**
+	 * This method waits for the journal thread to write every message handed to it and stops it. It does
+	 * nothing if called again.
+	 */
+	public void finish() throws InterruptedException {
+		if (this.finished){
+			return;
+		}
+		this.finished = true;
+		this.messages.close();
+		this.thread.join();
+	}
+
+	/**
+	 * This method restores books from the latest snapshot in a directory and replays the journal that
+	 * follows it, without writing any price change.
+	 *
+	 * @param directory The directory of the snapshots and journals
+	 * @param books Books that have not processed any message
+	 *
+	 * @return sequence The number of messages the books have applied, 0 if there was nothing to recover
+	 */
+	public static long recover(File directory, OrderBooks books) throws Exception {
+		long latest = -1;
+		String[] names = directory.list();
+		for (String name : (names == null) ? new String[0] : names){
+			if (name.startsWith(SNAPSHOT) && name.matches(SNAPSHOT.replace(".", "\\.")+"[0-9]+")){
+				latest = Math.max(latest, Long.parseLong(name.substring(SNAPSHOT.length())));
+			}
+		}
+		long sequence = 0;
+		if (latest >= 0){
+			sequence = BookSnapshot.restore(new File(directory, SNAPSHOT+latest), books);
+		}
+		File journal = new File(directory, JOURNAL+sequence);
+		if (!journal.exists()){
+			return sequence;
+		}
+		RandomAccessFile in = new RandomAccessFile(journal, "r");
+		try{
+			MappedByteBuffer records = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+			records.order(ByteOrder.LITTLE_ENDIAN);
+			OrderMessage message = new OrderMessage();
+			byte[] bytes = new byte[255];
+			while (records.remaining() >= RECORD_HEADER){
+				int start = records.position();
+				char type = (char) records.get(start);
+				int id_length = records.get(start + 2) & 0xFF;
+				int symbol_length = records.get(start + 3) & 0xFF;
+				if ((type != OrderMessage.ADD && type != OrderMessage.REDUCE)
+						|| records.remaining() < RECORD_HEADER + id_length + symbol_length){
+					break; //cut short by a crash
+				}
+				message.setType(type);
+				message.setSide((char) records.get(start + 1));
+				message.setSize(records.getInt(start + 4));
+				message.setTimestamp(records.getLong(start + 8));
+				message.setPrice(records.getLong(start + 16));
+				records.position(start + RECORD_HEADER);
+				records.get(bytes, 0, id_length);
+				message.setOrderId(bytes, 0, id_length);
+				records.get(bytes, 0, symbol_length);
+				message.setSymbol(bytes, 0, symbol_length);
+				books.processMessage(message, NO_OUTPUT);
+				sequence++;
+			}
+		} finally {
+			in.close();
+		}
+		return sequence;
+	}
+
+	/*****Journal thread*****/
+
+	private void runJournal(){
+		boolean failed = false;
+		while (true){
+			OrderMessage message = this.messages.poll();
+			if (message == null){
+				if (!failed){
+					failed = drain();
+				}
+				message = this.messages.take();
+				if (message == null){
+					break;
+				}
+			}
+			if (!failed){
+				try{
+					write(message);
+					this.shadow.processMessage(message, NO_OUTPUT);
+					this.sequence++;
+					if (this.sequence - this.snapshot_sequence >= this.snapshot_interval){
+						drain();
+						snapshot();
+					}
+				} catch (Exception e){
+					failed = true;
+					fail(e);
+				}
+			}
+			this.messages.release();
+		}
+		try{
+			if (this.journal_file != null){
+				this.journal_file.close();
+			}
+		} catch (IOException e){
+			fail(e);
+		}
+	}
+
+	private void write(OrderMessage message) throws IOException {
+		int id_length = message.getOrderIdLength();
+		int symbol_length = message.getSymbolLength();
+		if (this.buffer.remaining() < RECORD_HEADER + id_length + symbol_length){
+			drainOrThrow();
+		}
+		this.buffer.put((byte) message.getType());
+		this.buffer.put((byte) message.getSide());
+		this.buffer.put((byte) id_length);
+		this.buffer.put((byte) symbol_length);
+		this.buffer.putInt(message.getSize());
+		this.buffer.putLong(message.getTimestamp());
+		this.buffer.putLong(message.getPrice());
+		this.buffer.put(message.getOrderIdBytes(), 0, id_length);
+		this.buffer.put(message.getSymbolBytes(), 0, symbol_length);
+	}
+
+	private boolean drain(){
+		try{
+			drainOrThrow();
+			return false;
+		} catch (IOException e){
+			fail(e);
+			return true;
+		}
+	}
+
+	private void drainOrThrow() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()){
+			this.journal.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Writes a snapshot of the shadow books, starts the journal that follows it and deletes the files it
+	 * replaces.
+	 */
+	private void snapshot() throws IOException {
+		BookSnapshot.write(this.shadow, this.sequence, new File(this.directory, SNAPSHOT+this.sequence));
+		RandomAccessFile next_file = new RandomAccessFile(new File(this.directory, JOURNAL+this.sequence), "rw");
+		next_file.setLength(0);
+		if (this.journal_file != null){
+			this.journal_file.close();
+		}
+		this.journal_file = next_file;
+		this.journal = next_file.getChannel();
+		this.snapshot_sequence = this.sequence;
+
+		String[] names = this.directory.list();
+		for (String name : (names == null) ? new String[0] : names){
+			if ((name.startsWith(SNAPSHOT) || name.startsWith(JOURNAL)) && !name.endsWith("."+this.sequence)
+					&& !name.endsWith(".tmp")){
+				new File(this.directory, name).delete();
+			}
+		}
+	}
+
+	private synchronized void fail(Exception e){
+		if (this.error == null){
+			this.error = e;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * This class records latencies in nanoseconds into log-linear buckets, like an HDR histogram: values
+ * below 64 have a bucket each, and every power of 2 above that is split into 32 buckets. Percentiles are
+ * therefore within about 3% of the recorded values whatever their magnitude, from nanoseconds to minutes,
+ * in a fixed 15KB of counts, and recording never allocates.
+ *
+ * Like OrderBook, this class is not thread safe and is meant to be owned by one thread.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class LatencyHistogram {
+	private static final int LINEAR_BUCKETS = 64; //values below this have a bucket each
+	private static final int SUB_BUCKET_BITS = 5; //each power of 2 above is split into 2^5 buckets
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BITS = 6; //log2(LINEAR_BUCKETS)
+	private static final int BUCKETS = LINEAR_BUCKETS + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+	private long[] counts;
+	private long count;
+	private long sum;
+	private long max;
+
+	//Constructors
+    /**
+     * Creates an empty histogram.
+     *
+     * @return LatencyHistogram instance with no values
+     */
+	public LatencyHistogram(){
+		this.counts = new long[BUCKETS];
+		reset();
+	}
+
+	//Getters
+    /**
+     * Returns the number of values recorded
+     *
+     * @return count The number of values
+     */
+	public long getCount(){
+		return this.count;
+	}
+
+    /**
+     * Returns the largest value recorded
+     *
+     * @return max The largest value, 0 if there are none
+     */
+	public long getMax(){
+		return this.max;
+	}
+
+    /**
+     * Returns the mean of the values recorded
+     *
+     * @return mean The mean, 0 if there are none
+     */
+	public double getMean(){
+		return (this.count == 0) ? 0 : (double) this.sum / this.count;
+	}
+
+    /**
+     * Returns the value at a percentile: the largest value that falls in the same bucket as the value at
+     * or below which that percentage of the values lie, but never more than the largest value recorded.
+     *
+     * @param percentile The percentile, from 0 to 100
+     *
+     * @return value The value at the percentile, 0 if there are none
+     */
+	public long getValueAtPercentile(double percentile){
+		if (this.count == 0){
+			return 0;
+		}
+		long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * this.count);
+		rank = Math.max(1, rank);
+		long seen = 0;
+		for (int index = 0; index < BUCKETS; index++){
+			seen += this.counts[index];
+			if (seen >= rank){
+				return Math.min(highestValueOf(index), this.max);
+			}
+		}
+		return this.max;
+	}
+
+	/**
+	 * This method records a value.
+	 *
+	 * @param value The value, negative values are recorded as 0
+	 */
+	public void record(long value){
+		if (value < 0){
+			value = 0;
+		}
+		this.counts[indexOf(value)]++;
+		this.count++;
+		this.sum += value;
+		if (value > this.max){
+			this.max = value;
+		}
+	}
+
+	/**
+	 * This method adds every value recorded by another histogram to this one.
+	 *
+	 * @param other The histogram to add
+	 */
+	public void add(LatencyHistogram other){
+		for (int index = 0; index < BUCKETS; index++){
+			this.counts[index] += other.counts[index];
+		}
+		this.count += other.count;
+		this.sum += other.sum;
+		this.max = Math.max(this.max, other.max);
+	}
+
+	/**
+	 * This method removes every value.
+	 */
+	public void reset(){
+		Arrays.fill(this.counts, 0);
+		this.count = 0;
+		this.sum = 0;
+		this.max = 0;
+	}
+
+	private static int indexOf(long value){
+		if (value < LINEAR_BUCKETS){
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub_bucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub_bucket;
+	}
+
+	private static long highestValueOf(int index){
+		if (index < LINEAR_BUCKETS){
+			return index;
+		}
+		int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+		long sub_bucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		long lowest = sub_bucket << (exponent - SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
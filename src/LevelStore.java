@@ -0,0 +1,39 @@
+/**
+ * This class stores the nodes of a PriceLevelTree, indexed by node number. Each node is a price level
+ * with its shares, its AVL height, its children and the share and notional totals of its subtree. Node 0
+ * is the sentinel that stands in for null children and must read as all zeros.
+ *
+ * HeapLevelStore keeps the nodes in primitive arrays on the heap and OffHeapLevelStore in direct memory.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public abstract class LevelStore {
+
+    /**
+     * Returns the number of nodes that can be stored, including the sentinel
+     *
+     * @return capacity The number of nodes
+     */
+	public abstract int capacity();
+
+	/**
+	 * This method makes room for more nodes, keeping the nodes already stored.
+	 */
+	public abstract void grow();
+
+	public abstract long price(int node);
+	public abstract void setPrice(int node, long price);
+	public abstract int shares(int node);
+	public abstract void setShares(int node, int shares);
+	public abstract int height(int node);
+	public abstract void setHeight(int node, int height);
+	public abstract int left(int node);
+	public abstract void setLeft(int node, int left);
+	public abstract int right(int node);
+	public abstract void setRight(int node, int right);
+	public abstract long subtreeShares(int node);
+	public abstract void setSubtreeShares(int node, long shares);
+	public abstract long subtreeNotional(int node);
+	public abstract void setSubtreeNotional(int node, long notional);
+}
@@ -0,0 +1,31 @@
+/**
+ * This class hands every price change of the books straight to a PriceListener, on the thread that applies
+ * the books. It is how the pricer is embedded as a library:
+ *
+ *		OrderBooks books = new OrderBooks(target_size);
+ *		PriceSink prices = new ListenerPriceSink(listener);
+ *		books.processMessage(message, prices);
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ListenerPriceSink implements PriceSink {
+	private PriceListener listener;
+
+	//Constructors
+    /**
+     * Creates a sink for a listener.
+     *
+     * @param listener The listener to call for every price change
+     *
+     * @return ListenerPriceSink instance
+     */
+	public ListenerPriceSink(PriceListener listener){
+		this.listener = listener;
+	}
+
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length){
+		this.listener.priceChanged(timestamp, side, target_size, cost, symbol, symbol_length);
+	}
+}
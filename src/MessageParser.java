@@ -0,0 +1,330 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class parses add and reduce messages straight out of a reusable byte buffer into an OrderMessage.
+ * It replaces Scanner and the regular expressions that used to be matched against every line, and does
+ * not allocate per line. It accepts exactly the lines that the old patterns matched:
+ *
+ *		timestamp<int> A<char> order-id<string> side<'B'|'S'> price<double> size<int> [symbol<string>]
+ *		timestamp<int> R<char> order-id<string> size<int> [symbol<string>]
+ *
+ * The trailing symbol is optional. Messages without one belong to the unnamed default instrument.
+ *
+ * Lines are separated by '\n' and the fields by any of the whitespace characters matched by \s. Like
+ * Scanner.hasNext(), whitespace at the end of the input is ignored, but a blank line followed by more
+ * input is invalid.
+ *
+ * An idle Flushable can be set to be flushed before the parser blocks waiting for more input, so buffered
+ * output is not held back while the feed is quiet.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class MessageParser implements MessageReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_TOKENS = 7;
+	private static final int MAX_TIMESTAMP_DIGITS = 18;
+
+	private InputStream in;
+	private byte[] buffer;
+	private int position; //start of the next unread line
+	private int limit; //end of the bytes read into the buffer
+	private boolean end_of_input;
+	private int line_start;
+	private int line_end;
+	private String blank_line; //first blank line seen since the last message, null if there is none
+	private Flushable idle_flushable; //flushed before blocking on input, null if not needed
+	private boolean timed; //true to time each parse
+	private long parse_nanos; //time the last line took to parse, if timed
+
+	//Token boundaries for the line being parsed
+	private int[] token_start;
+	private int[] token_end;
+
+	//Constructors
+    /**
+     * Creates a parser for a line that is already in memory. Use parse(...) with this parser.
+     *
+     * @return MessageParser instance without an input stream
+     */
+	public MessageParser(){
+		this(null);
+	}
+
+    /**
+     * Creates a parser that reads lines from an input stream.
+     *
+     * @param in The stream of input lines
+     *
+     * @return MessageParser instance that reads from in
+     */
+	public MessageParser(InputStream in){
+		this.in = in;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.position = 0;
+		this.limit = 0;
+		this.end_of_input = (in == null);
+		this.token_start = new int[MAX_TOKENS + 1];
+		this.token_end = new int[MAX_TOKENS + 1];
+	}
+
+    /**
+     * Sets an object to flush before the parser blocks waiting for more input.
+     *
+     * @param idle_flushable The object to flush when the input is idle, null for none
+     */
+	public void setIdleFlushable(Flushable idle_flushable){
+		this.idle_flushable = idle_flushable;
+	}
+
+    /**
+     * Returns the text of the last line that was read, without the line separator. This allocates and
+     * is meant for diagnostics.
+     *
+     * @return line The last line read, "" if no line has been read
+     */
+	@Override
+	public String getLine(){
+		if (this.blank_line != null){
+			return this.blank_line;
+		}
+		return new String(this.buffer, this.line_start, this.line_end - this.line_start);
+	}
+
+	/**
+	 * This method sets whether the time each line takes to parse is measured, leaving out the time spent
+	 * reading or waiting for input. It is off by default.
+	 *
+	 * @param timed true to measure getParseNanos()
+	 */
+	@Override
+	public void setTimed(boolean timed){
+		this.timed = timed;
+	}
+
+	/**
+	 * Returns how long the last line read took to parse, if timing is on.
+	 *
+	 * @return parse_nanos The nanoseconds spent parsing the last line, 0 if timing is off
+	 */
+	@Override
+	public long getParseNanos(){
+		return this.parse_nanos;
+	}
+
+	/**
+	 * This method reads the next line of input and parses it into message.
+	 *
+	 * @param message The message to fill in
+	 *
+	 * @return true if a message was read, false at the end of the input
+	 *
+	 * @throws IOException if the line is not a valid message
+	 * @throws NumberFormatException if a number in the line is out of range
+	 */
+	@Override
+	public boolean next(OrderMessage message) throws IOException {
+		while (true){
+			int newline = indexOfNewline(this.position);
+			if (newline < 0 && !this.end_of_input){
+				fill();
+				continue;
+			}
+			if (newline < 0 && this.position == this.limit){
+				return false;
+			}
+			this.line_start = this.position;
+			this.line_end = newline < 0 ? this.limit : newline;
+			this.position = newline < 0 ? this.limit : newline + 1;
+			if (this.line_end > this.line_start && this.buffer[this.line_end - 1] == '\r'){
+				this.line_end--;
+			}
+
+			if (isBlank(this.buffer, this.line_start, this.line_end)){
+				//only an error if more input follows, so remember it and keep going
+				if (this.blank_line == null){
+					this.blank_line = new String(this.buffer, this.line_start, this.line_end - this.line_start);
+				}
+				continue;
+			}
+			if (this.blank_line != null){
+				throw new IOException();
+			}
+			if (this.timed){
+				long start = System.nanoTime();
+				parse(this.buffer, this.line_start, this.line_end, message);
+				this.parse_nanos = System.nanoTime() - start;
+			} else {
+				parse(this.buffer, this.line_start, this.line_end, message);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * This method parses a single line into message.
+	 *
+	 * @param line The bytes of the line
+	 * @param start The index of the first byte of the line
+	 * @param end The index after the last byte of the line
+	 * @param message The message to fill in
+	 *
+	 * @throws IOException if the line is not a valid message
+	 * @throws NumberFormatException if a number in the line is out of range
+	 */
+	public void parse(byte[] line, int start, int end, OrderMessage message) throws IOException {
+		int tokens = tokenize(line, start, end);
+
+		if ((tokens == 6 || tokens == 7) && isDigits(line, 0) && isChar(line, 1, OrderMessage.ADD)
+				&& (isChar(line, 3, OrderMessage.BUY) || isChar(line, 3, OrderMessage.SELL)) && isPrice(line, 4)
+				&& isDigits(line, 5)){
+			message.setType(OrderMessage.ADD);
+			message.setTimestamp(parseTimestamp(line, 0));
+			message.setOrderId(line, this.token_start[2], this.token_end[2] - this.token_start[2]);
+			message.setSide((char) line[this.token_start[3]]);
+			message.setPrice(Prices.parseTicks(line, this.token_start[4], this.token_end[4]));
+			message.setSize(parseSize(line, 5));
+			setSymbol(line, tokens, 6, message);
+
+		} else if ((tokens == 4 || tokens == 5) && isDigits(line, 0) && isChar(line, 1, OrderMessage.REDUCE) && isDigits(line, 3)){
+			message.setType(OrderMessage.REDUCE);
+			message.setTimestamp(parseTimestamp(line, 0));
+			message.setOrderId(line, this.token_start[2], this.token_end[2] - this.token_start[2]);
+			message.setSize(parseSize(line, 3));
+			setSymbol(line, tokens, 4, message);
+
+		} else {
+			throw new IOException();
+		}
+	}
+
+	/*****Tokens*****/
+
+	private int tokenize(byte[] line, int start, int end){
+		int tokens = 0;
+		int i = start;
+		while (true){
+			while (i < end && isSpace(line[i])){
+				i++;
+			}
+			if (i == end || tokens > MAX_TOKENS){
+				return tokens;
+			}
+			if (tokens < this.token_start.length){
+				this.token_start[tokens] = i;
+			}
+			while (i < end && !isSpace(line[i])){
+				i++;
+			}
+			if (tokens < this.token_end.length){
+				this.token_end[tokens] = i;
+			}
+			tokens++;
+		}
+	}
+
+	private void setSymbol(byte[] line, int tokens, int token, OrderMessage message){
+		if (tokens > token){
+			message.setSymbol(line, this.token_start[token], this.token_end[token] - this.token_start[token]);
+		} else {
+			message.setSymbol(line, 0, 0);
+		}
+	}
+
+	private boolean isChar(byte[] line, int token, char c){
+		return this.token_end[token] - this.token_start[token] == 1 && line[this.token_start[token]] == c;
+	}
+
+	private boolean isDigits(byte[] line, int token){
+		for (int i = this.token_start[token]; i < this.token_end[token]; i++){
+			if (line[i] < '0' || line[i] > '9'){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isPrice(byte[] line, int token){
+		for (int i = this.token_start[token]; i < this.token_end[token]; i++){
+			if ((line[i] < '0' || line[i] > '9') && line[i] != '.'){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long parseTimestamp(byte[] line, int token){
+		if (this.token_end[token] - this.token_start[token] > MAX_TIMESTAMP_DIGITS){
+			throw new NumberFormatException("Timestamp out of range");
+		}
+		long timestamp = 0;
+		for (int i = this.token_start[token]; i < this.token_end[token]; i++){
+			timestamp = timestamp * 10 + (line[i] - '0');
+		}
+		return timestamp;
+	}
+
+	private int parseSize(byte[] line, int token){
+		long size = 0;
+		for (int i = this.token_start[token]; i < this.token_end[token]; i++){
+			size = size * 10 + (line[i] - '0');
+			if (size > Integer.MAX_VALUE){
+				throw new NumberFormatException("Size out of range");
+			}
+		}
+		return (int) size;
+	}
+
+	private static boolean isSpace(byte b){
+		//the characters matched by \s
+		return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+	}
+
+	private static boolean isBlank(byte[] line, int start, int end){
+		for (int i = start; i < end; i++){
+			if (!isSpace(line[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*****Buffer*****/
+
+	private int indexOfNewline(int from){
+		for (int i = from; i < this.limit; i++){
+			if (this.buffer[i] == '\n'){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void fill() throws IOException {
+		if (this.position > 0){
+			//move the partial line to the front of the buffer
+			System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+			this.limit -= this.position;
+			this.line_start = 0;
+			this.line_end = 0;
+			this.position = 0;
+		} else if (this.limit == this.buffer.length){
+			//the line is longer than the buffer
+			byte[] larger = new byte[this.buffer.length * 2];
+			System.arraycopy(this.buffer, 0, larger, 0, this.limit);
+			this.buffer = larger;
+		}
+		if (this.idle_flushable != null && this.in.available() == 0){
+			//the next read may block, so don't hold anything back while waiting
+			this.idle_flushable.flush();
+		}
+		int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (read < 0){
+			this.end_of_input = true;
+		} else {
+			this.limit += read;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+import java.io.IOException;
+
+/**
+ * This interface reads add and reduce messages one at a time into a reused OrderMessage. MessageParser
+ * reads the text format and BinaryFeedReader reads the binary format written by BinaryFeedWriter.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public interface MessageReader {
+
+	/**
+	 * This method reads the next message into message.
+	 *
+	 * @param message The message to fill in
+	 *
+	 * @return true if a message was read, false at the end of the input
+	 *
+	 * @throws IOException if the input is not a valid message
+	 */
+	boolean next(OrderMessage message) throws IOException;
+
+	/**
+	 * This method describes the last message read, for diagnostics. It may allocate.
+	 *
+	 * @return line The text of the last message, "" if none has been read
+	 */
+	String getLine();
+
+	/**
+	 * This method sets whether the time each message takes to parse is measured. The time spent reading or
+	 * waiting for input is left out. It is off by default.
+	 *
+	 * @param timed true to measure getParseNanos()
+	 */
+	void setTimed(boolean timed);
+
+	/**
+	 * Returns how long the last message read took to parse, if timing is on.
+	 *
+	 * @return parse_nanos The nanoseconds spent parsing the last message, 0 if timing is off
+	 */
+	long getParseNanos();
+}
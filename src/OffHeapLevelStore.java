@@ -0,0 +1,147 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class stores the nodes of a PriceLevelTree in direct memory, outside the Java heap, so however
+ * deep a book grows its levels add nothing for the garbage collector to trace or copy. The heap only holds
+ * one ByteBuffer per chunk of nodes. The live orders are already off the heap in the direct table of
+ * OrderIndex, so with this store the price levels were the last part of a book left to move.
+ *
+ * Each node is a fixed-width record in the native byte order:
+ *
+ *		offset  0	long	price
+ *		offset  8	long	subtree shares
+ *		offset 16	long	subtree notional
+ *		offset 24	int		shares
+ *		offset 28	int		height
+ *		offset 32	int		left child
+ *		offset 36	int		right child
+ *
+ * The store grows by adding a chunk as large as all the chunks before it together, so growing never copies
+ * the nodes already stored, and chunk k holds nodes first_chunk_nodes * (2^k - 1) onwards. Direct memory
+ * is zeroed when it is allocated, which makes node 0 the all-zero sentinel. The memory is freed when the
+ * tree is garbage collected.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class OffHeapLevelStore extends LevelStore {
+	private static final int NODE_SIZE = 40;
+	private static final int PRICE = 0;
+	private static final int SUBTREE_SHARES = 8;
+	private static final int SUBTREE_NOTIONAL = 16;
+	private static final int SHARES = 24;
+	private static final int HEIGHT = 28;
+	private static final int LEFT = 32;
+	private static final int RIGHT = 36;
+
+	private int first_chunk_bits; //log2 of the number of nodes in the first chunk
+	private ByteBuffer[] chunks;
+	private int chunk_count;
+	private int capacity;
+
+	//Constructors
+    /**
+     * Creates a store with every node zero.
+     *
+     * @param capacity The number of nodes in the first chunk, a power of 2
+     *
+     * @return OffHeapLevelStore instance
+     */
+	public OffHeapLevelStore(int capacity){
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1){
+			throw new IllegalArgumentException("Capacity must be a power of 2: "+capacity);
+		}
+		this.first_chunk_bits = Integer.numberOfTrailingZeros(capacity);
+		this.chunks = new ByteBuffer[8];
+		this.chunk_count = 0;
+		this.capacity = 0;
+		grow();
+	}
+
+	@Override
+	public int capacity(){
+		return this.capacity;
+	}
+
+	@Override
+	public void grow(){
+		int nodes = 1 << (this.first_chunk_bits + this.chunk_count);
+		if (nodes > Integer.MAX_VALUE / NODE_SIZE){
+			throw new IllegalStateException("Error: Too many price levels for the off-heap store");
+		}
+		if (this.chunk_count == this.chunks.length){
+			this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunk_count);
+		}
+		this.chunks[this.chunk_count++] = ByteBuffer.allocateDirect(nodes * NODE_SIZE).order(ByteOrder.nativeOrder());
+		this.capacity = (1 << (this.first_chunk_bits + this.chunk_count)) - (1 << this.first_chunk_bits);
+	}
+
+	private ByteBuffer chunk(int node){
+		int x = node + (1 << this.first_chunk_bits);
+		return this.chunks[31 - Integer.numberOfLeadingZeros(x) - this.first_chunk_bits];
+	}
+
+	private int offset(int node){
+		int x = node + (1 << this.first_chunk_bits);
+		return (x - Integer.highestOneBit(x)) * NODE_SIZE;
+	}
+
+	@Override
+	public long price(int node){
+		return chunk(node).getLong(offset(node) + PRICE);
+	}
+	@Override
+	public void setPrice(int node, long price){
+		chunk(node).putLong(offset(node) + PRICE, price);
+	}
+	@Override
+	public int shares(int node){
+		return chunk(node).getInt(offset(node) + SHARES);
+	}
+	@Override
+	public void setShares(int node, int shares){
+		chunk(node).putInt(offset(node) + SHARES, shares);
+	}
+	@Override
+	public int height(int node){
+		return chunk(node).getInt(offset(node) + HEIGHT);
+	}
+	@Override
+	public void setHeight(int node, int height){
+		chunk(node).putInt(offset(node) + HEIGHT, height);
+	}
+	@Override
+	public int left(int node){
+		return chunk(node).getInt(offset(node) + LEFT);
+	}
+	@Override
+	public void setLeft(int node, int left){
+		chunk(node).putInt(offset(node) + LEFT, left);
+	}
+	@Override
+	public int right(int node){
+		return chunk(node).getInt(offset(node) + RIGHT);
+	}
+	@Override
+	public void setRight(int node, int right){
+		chunk(node).putInt(offset(node) + RIGHT, right);
+	}
+	@Override
+	public long subtreeShares(int node){
+		return chunk(node).getLong(offset(node) + SUBTREE_SHARES);
+	}
+	@Override
+	public void setSubtreeShares(int node, long shares){
+		chunk(node).putLong(offset(node) + SUBTREE_SHARES, shares);
+	}
+	@Override
+	public long subtreeNotional(int node){
+		return chunk(node).getLong(offset(node) + SUBTREE_NOTIONAL);
+	}
+	@Override
+	public void setSubtreeNotional(int node, long notional){
+		chunk(node).putLong(offset(node) + SUBTREE_NOTIONAL, notional);
+	}
+}
@@ -0,0 +1,233 @@
+import java.io.IOException;
+
+/**
+ * This class holds the book of a single instrument: a Buyer for the offers, a Seller for the bids and an
+ * OrderIndex of the live orders. It applies add and reduce messages and writes any change in the min/max
+ * cost to buy/sell target_size shares to a PriceSink, followed by the symbol of the instrument. Each side
+ * can price several target sizes over the same log, and their changes are written smallest target first.
+ *
+ * A book is not thread safe. It is meant to be owned by one thread, which may keep many books.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class OrderBook {
+	private byte[] symbol;
+	private Buyer buyer;
+	private Seller seller;
+	private OrderIndex id_to_order; //order_id's to price, remaining shares, and side
+
+	//Constructors
+    /**
+     * Creates an empty book.
+     *
+     * @param symbol The symbol of the instrument, an empty array for the unnamed default instrument
+     * @param target_size The target number of shares to buy and sell
+     *
+     * @return OrderBook instance with no orders
+     */
+	public OrderBook(byte[] symbol, int target_size){
+		this(symbol, new int[]{target_size}, new int[]{target_size});
+	}
+
+    /**
+     * Creates an empty book with one or more targets for each side.
+     *
+     * @param symbol The symbol of the instrument, an empty array for the unnamed default instrument
+     * @param buy_target_sizes The target numbers of shares to buy
+     * @param sell_target_sizes The target numbers of shares to sell
+     *
+     * @return OrderBook instance with no orders
+     */
+	public OrderBook(byte[] symbol, int[] buy_target_sizes, int[] sell_target_sizes){
+		this(symbol, buy_target_sizes, sell_target_sizes, false);
+	}
+
+    /**
+     * Creates an empty book with its price levels stored on the heap or in direct memory.
+     *
+     * @param symbol The symbol of the instrument, an empty array for the unnamed default instrument
+     * @param buy_target_sizes The target numbers of shares to buy
+     * @param sell_target_sizes The target numbers of shares to sell
+     * @param off_heap true to keep the price levels in direct memory (see OffHeapLevelStore)
+     *
+     * @return OrderBook instance with no orders
+     */
+	public OrderBook(byte[] symbol, int[] buy_target_sizes, int[] sell_target_sizes, boolean off_heap){
+		this.symbol = symbol;
+		this.buyer = new Buyer(buy_target_sizes, off_heap);
+		this.seller = new Seller(sell_target_sizes, off_heap);
+		this.id_to_order = new OrderIndex();
+	}
+
+	//Getters
+    /**
+     * Returns the symbol of the instrument. The array must not be modified.
+     *
+     * @return symbol The symbol bytes, empty for the unnamed default instrument
+     */
+	public byte[] getSymbol(){
+		return this.symbol;
+	}
+	public Buyer getBuyer(){
+		return this.buyer;
+	}
+	public Seller getSeller(){
+		return this.seller;
+	}
+	public OrderIndex getOrderIndex(){
+		return this.id_to_order;
+	}
+
+    /**
+     * This method calls the appropriate function to add or remove the
+     * order described by a parsed message.
+     *
+     * @param message The parsed add or reduce message
+     * @param writer The sink for price changes
+     */
+	public void processMessage(OrderMessage message, PriceSink writer) throws Exception{
+		if (message.getType() == OrderMessage.ADD){//add order to log book
+			addOrder(message, writer);
+		} else {
+			removeOrder(message, writer);
+		}
+	}
+
+    /**
+     * This method adds a new order to the appropriate buyer or seller
+     * log book. If there is an update to the min/max buy/sell cost
+     * it will be written to the PriceSink.
+     *
+     * @param message The add message with the timestamp, order id, side, price
+     * and size of the order
+     * @param writer The sink for price changes
+     */
+	public void addOrder(OrderMessage message, PriceSink writer) throws IOException {
+		long min_buy_price, max_sell_price;
+		long timestamp = message.getTimestamp();
+		long price = message.getPrice();
+		int size = message.getSize();
+		//add the order to the log
+		this.id_to_order.add(message.getOrderIdBytes(), message.getOrderIdLength(), message.getSide(), price, size);
+
+		if(message.getSide() == OrderMessage.SELL){//offer
+
+			min_buy_price = this.buyer.addNewOfferTicks(price,size);
+
+			//check to see if there is a new minimum buy price, NA if there are no longer enough shares
+			if(min_buy_price != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.BUY, this.buyer.getTargetSize(), min_buy_price, this.symbol,
+					this.symbol.length);
+			}
+			writeOtherBuyTargets(timestamp, writer);
+		} else {//bid
+			max_sell_price = this.seller.addNewBidTicks(price,size);
+
+			//check to see if there is a new maximum sale price, NA if there are no longer enough shares
+			if(max_sell_price != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.SELL, this.seller.getTargetSize(), max_sell_price, this.symbol,
+					this.symbol.length);
+			}
+			writeOtherSellTargets(timestamp, writer);
+		}
+	}
+
+    /**
+     * This method reduces an order in the log. It identifies whether the order
+     * is on the buy or sell side and calls the appropriate method in the buyer or
+     * seller objects. The order is reduced by at most its remaining size and is
+     * forgotten once nothing remains. If there is an update to the min/max buy/sell
+     * cost, then it is written to the PriceSink.
+     *
+     * @param message The reduce message with the timestamp, order id and size
+     * @param writer The sink for price changes
+     */
+	public void removeOrder(OrderMessage message, PriceSink writer) throws Exception {
+		long min_buy_price, max_sell_price;
+		long timestamp = message.getTimestamp();
+		int slot = this.id_to_order.find(message.getOrderIdBytes(), message.getOrderIdLength());
+		if (slot == OrderIndex.NOT_FOUND){
+			throw new Exception("Error: Cannot remove shares. Unknown order id: "+message.getOrderId());
+		}
+		char side = this.id_to_order.getSide(slot);
+		long price = this.id_to_order.getPrice(slot);
+		int size = this.id_to_order.reduce(slot, message.getSize());
+
+		if(side == OrderMessage.SELL){//remove an offer
+			min_buy_price = this.buyer.removeOfferTicks(price,size);
+
+			//check to see if there is a new minimum buy price, NA if there are no longer enough shares
+			if(min_buy_price != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.BUY, this.buyer.getTargetSize(), min_buy_price, this.symbol,
+					this.symbol.length);
+			}
+			writeOtherBuyTargets(timestamp, writer);
+		} else {//remove a bid
+			max_sell_price = this.seller.removeBidTicks(price,size);
+
+			//check to see if there is a new maximum sale price, NA if there are no longer enough shares
+			if(max_sell_price != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.SELL, this.seller.getTargetSize(), max_sell_price, this.symbol,
+					this.symbol.length);
+			}
+			writeOtherSellTargets(timestamp, writer);
+		}
+	}
+
+    /**
+     * This method puts shares back on a price level while the book is restored from a snapshot, without
+     * writing any price change. It must be called on a book that has not processed any message.
+     *
+     * @param side OrderMessage.SELL for an offer level, OrderMessage.BUY for a bid level
+     * @param price The price of the level in ticks
+     * @param shares The number of shares at the level
+     */
+	public void restoreLevel(char side, long price, int shares){
+		if (side == OrderMessage.SELL){
+			this.buyer.addNewOfferTicks(price, shares);
+		} else {
+			this.seller.addNewBidTicks(price, shares);
+		}
+	}
+
+    /**
+     * This method puts a live order back into the order index while the book is restored from a snapshot.
+     * Its shares are restored with the levels, so they are not added to the logs again.
+     *
+     * @param id The bytes of the order id
+     * @param length The number of bytes in the order id
+     * @param side The side of the order
+     * @param price The price of the order in ticks
+     * @param size The remaining size of the order
+     */
+	public void restoreOrder(byte[] id, int length, char side, long price, int size){
+		this.id_to_order.add(id, length, side, price, size);
+	}
+
+	/**
+	 * Writes the cost changes of the buyer's targets after the smallest, if it has several.
+	 */
+	private void writeOtherBuyTargets(long timestamp, PriceSink writer) throws IOException {
+		for (int target = 1; target < this.buyer.getTargetCount(); target++){
+			long change = this.buyer.getCostChange(target);
+			if (change != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.BUY, this.buyer.getTargetSize(target), change, this.symbol,
+					this.symbol.length);
+			}
+		}
+	}
+
+	/**
+	 * Writes the cost changes of the seller's targets after the smallest, if it has several.
+	 */
+	private void writeOtherSellTargets(long timestamp, PriceSink writer) throws IOException {
+		for (int target = 1; target < this.seller.getTargetCount(); target++){
+			long change = this.seller.getCostChange(target);
+			if (change != Prices.UNCHANGED){
+				writer.writePrice(timestamp, OrderMessage.SELL, this.seller.getTargetSize(target), change, this.symbol,
+					this.symbol.length);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * This class maps instrument symbols to their OrderBooks. A book is created the first time its symbol is
+ * seen, and messages without a symbol go to the book of the unnamed default instrument (see SymbolTable).
+ *
+ * Like OrderBook, this class is not thread safe and is meant to be owned by one thread.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class OrderBooks extends SymbolTable<OrderBook> {
+	private int[] buy_target_sizes;
+	private int[] sell_target_sizes;
+	private boolean off_heap; //true to keep the price levels of new books in direct memory
+
+	//Constructors
+    /**
+     * Creates a table with no books.
+     *
+     * @param target_size The target number of shares to buy and sell in every book
+     *
+     * @return OrderBooks instance with no books
+     */
+	public OrderBooks(int target_size){
+		this(new int[]{target_size}, new int[]{target_size});
+	}
+
+    /**
+     * Creates a table with no books and one or more targets for each side.
+     *
+     * @param buy_target_sizes The target numbers of shares to buy in every book
+     * @param sell_target_sizes The target numbers of shares to sell in every book
+     *
+     * @return OrderBooks instance with no books
+     */
+	public OrderBooks(int[] buy_target_sizes, int[] sell_target_sizes){
+		this(buy_target_sizes, sell_target_sizes, false);
+	}
+
+    /**
+     * Creates a table with no books, whose books keep their price levels on the heap or in direct memory.
+     *
+     * @param buy_target_sizes The target numbers of shares to buy in every book
+     * @param sell_target_sizes The target numbers of shares to sell in every book
+     * @param off_heap true to keep the price levels in direct memory (see OffHeapLevelStore)
+     *
+     * @return OrderBooks instance with no books
+     */
+	public OrderBooks(int[] buy_target_sizes, int[] sell_target_sizes, boolean off_heap){
+		this.buy_target_sizes = buy_target_sizes;
+		this.sell_target_sizes = sell_target_sizes;
+		this.off_heap = off_heap;
+	}
+
+	/**
+	 * This method returns the book of an instrument, creating it if its symbol has not been seen before.
+	 *
+	 * @param symbol The bytes of the symbol
+	 * @param length The number of bytes in the symbol, 0 for the unnamed default instrument
+	 *
+	 * @return book The book of the instrument
+	 *
+	 * @throws IllegalArgumentException if the symbol is longer than MAX_SYMBOL_LENGTH bytes
+	 */
+	public OrderBook getBook(byte[] symbol, int length){
+		return get(symbol, length);
+	}
+
+    /**
+     * This method applies a parsed message to the book named by its symbol.
+     *
+     * @param message The parsed add or reduce message
+     * @param writer The sink for price changes
+     */
+	public void processMessage(OrderMessage message, PriceSink writer) throws Exception{
+		get(message.getSymbolBytes(), message.getSymbolLength()).processMessage(message, writer);
+	}
+
+	@Override
+	protected OrderBook create(byte[] symbol){
+		return new OrderBook(symbol, this.buy_target_sizes, this.sell_target_sizes, this.off_heap);
+	}
+}
@@ -0,0 +1,313 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class maps order ids to the side, price and remaining size of live orders. It replaces a
+ * HashMap<String,Order>, which kept a String, an Order and a map node on the heap for every order ever
+ * added. The index is an open-addressing hash table with linear probing, stored off-heap in a direct
+ * ByteBuffer of fixed-width slots:
+ *
+ *		offset  0	byte	state (EMPTY or LIVE)
+ *		offset  1	byte	side
+ *		offset  2	short	order id length
+ *		offset  4	int		remaining size
+ *		offset  8	long	price in ticks
+ *		offset 16	long	hash of the order id
+ *		offset 24	bytes	order id
+ *
+ * Order ids are hashed and compared straight from their bytes, so no String is created. A slot is
+ * reclaimed as soon as the remaining size of its order reaches zero. Deletion shifts later entries of the
+ * probe sequence back instead of leaving tombstones, so lookups stay short however many orders come and go.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class OrderIndex {
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+	public static final int DEFAULT_MAX_ID_LENGTH = 40;
+	public static final int NOT_FOUND = -1;
+
+	private static final byte EMPTY = 0;
+	private static final byte LIVE = 1;
+	private static final int STATE = 0;
+	private static final int SIDE = 1;
+	private static final int ID_LENGTH = 2;
+	private static final int SIZE = 4;
+	private static final int PRICE = 8;
+	private static final int HASH = 16;
+	private static final int ID = 24;
+
+	private ByteBuffer slots;
+	private int slot_size;
+	private int max_id_length;
+	private int capacity; //number of slots, always a power of 2
+	private int live_orders;
+
+	//Constructors
+    /**
+     * Creates an empty index with the default capacity and maximum id length.
+     *
+     * @return OrderIndex instance with no orders
+     */
+	public OrderIndex(){
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_ID_LENGTH);
+	}
+
+    /**
+     * Creates an empty index.
+     *
+     * @param initial_capacity The number of orders to size the table for. It grows as needed.
+     * @param max_id_length The longest order id in bytes that can be stored
+     *
+     * @return OrderIndex instance with no orders
+     */
+	public OrderIndex(int initial_capacity, int max_id_length){
+		this.max_id_length = max_id_length;
+		this.slot_size = (ID + max_id_length + 7) & ~7;
+		this.capacity = Integer.highestOneBit(Math.max(initial_capacity * 2 - 1, 16));
+		this.slots = allocate(this.capacity, this.slot_size);
+		this.live_orders = 0;
+	}
+
+	//Getters
+    /**
+     * Returns the number of orders with shares remaining
+     *
+     * @return live_orders The number of live orders
+     */
+	public int size(){
+		return this.live_orders;
+	}
+
+    /**
+     * Returns the number of slots. Slots from 0 to getCapacity() - 1 can be checked with isLive(...) to
+     * visit every live order.
+     *
+     * @return capacity The number of slots
+     */
+	public int getCapacity(){
+		return this.capacity;
+	}
+	public boolean isLive(int slot){
+		return this.slots.get(offset(slot) + STATE) == LIVE;
+	}
+	public int getIdLength(int slot){
+		return this.slots.getShort(offset(slot) + ID_LENGTH);
+	}
+
+    /**
+     * Copies the id of the order in a slot.
+     *
+     * @param slot The slot of a live order
+     * @param id The array to copy the id into, at least getIdLength(slot) long
+     */
+	public void getId(int slot, byte[] id){
+		int offset = offset(slot) + ID;
+		for (int i = 0; i < getIdLength(slot); i++){
+			id[i] = this.slots.get(offset + i);
+		}
+	}
+	public char getSide(int slot){
+		return (char) this.slots.get(offset(slot) + SIDE);
+	}
+	public long getPrice(int slot){
+		return this.slots.getLong(offset(slot) + PRICE);
+	}
+	public int getSize(int slot){
+		return this.slots.getInt(offset(slot) + SIZE);
+	}
+
+	/**
+	 * This method adds an order to the index. If an order with the same id is already live, it is
+	 * replaced.
+	 *
+	 * @param id The bytes of the order id
+	 * @param length The number of bytes in the order id
+	 * @param side The side of the order
+	 * @param price The price of the order in ticks
+	 * @param size The number of shares in the order
+	 *
+	 * @throws IllegalArgumentException if the order id is longer than the maximum id length
+	 */
+	public void add(byte[] id, int length, char side, long price, int size){
+		if (length > this.max_id_length){
+			throw new IllegalArgumentException("Error: Order id is longer than "+this.max_id_length+" bytes: "
+				+new String(id, 0, length));
+		}
+		if (size <= 0){
+			//nothing left to reduce, so there is no need to remember the order
+			remove(find(id, length));
+			return;
+		}
+		if ((this.live_orders + 1) * 2 > this.capacity){
+			resize(this.capacity * 2);
+		}
+		long hash = hash(id, length);
+		int slot = probe(id, length, hash);
+		int offset = offset(slot);
+		if (this.slots.get(offset + STATE) == EMPTY){
+			this.live_orders++;
+			this.slots.put(offset + STATE, LIVE);
+			this.slots.putShort(offset + ID_LENGTH, (short) length);
+			this.slots.putLong(offset + HASH, hash);
+			for (int i = 0; i < length; i++){
+				this.slots.put(offset + ID + i, id[i]);
+			}
+		}
+		this.slots.put(offset + SIDE, (byte) side);
+		this.slots.putLong(offset + PRICE, price);
+		this.slots.putInt(offset + SIZE, size);
+	}
+
+	/**
+	 * This method finds the slot of a live order.
+	 *
+	 * @param id The bytes of the order id
+	 * @param length The number of bytes in the order id
+	 *
+	 * @return slot The slot of the order, NOT_FOUND if there is no live order with this id
+	 */
+	public int find(byte[] id, int length){
+		if (length > this.max_id_length){
+			return NOT_FOUND;
+		}
+		int slot = probe(id, length, hash(id, length));
+		return this.slots.get(offset(slot) + STATE) == EMPTY ? NOT_FOUND : slot;
+	}
+
+	/**
+	 * This method reduces the remaining size of the order in a slot. The slot is reclaimed when no
+	 * shares remain, so it must not be used after the order is gone.
+	 *
+	 * @param slot The slot of the order, from find(...)
+	 * @param size The number of shares to reduce the order by
+	 *
+	 * @return removed The number of shares actually removed, which is at most the remaining size
+	 */
+	public int reduce(int slot, int size){
+		int offset = offset(slot);
+		int remaining = this.slots.getInt(offset + SIZE);
+		int removed = Math.min(size, remaining);
+		if (removed == remaining){
+			remove(slot);
+		} else {
+			this.slots.putInt(offset + SIZE, remaining - removed);
+		}
+		return removed;
+	}
+
+	/*****Hash table*****/
+
+	/**
+	 * Returns the slot holding the id, or the empty slot where it would be inserted.
+	 */
+	private int probe(byte[] id, int length, long hash){
+		int mask = this.capacity - 1;
+		int slot = (int) hash & mask;
+		while (true){
+			int offset = offset(slot);
+			if (this.slots.get(offset + STATE) == EMPTY){
+				return slot;
+			}
+			if (this.slots.getLong(offset + HASH) == hash && sameId(offset, id, length)){
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean sameId(int offset, byte[] id, int length){
+		if (this.slots.getShort(offset + ID_LENGTH) != length){
+			return false;
+		}
+		for (int i = 0; i < length; i++){
+			if (this.slots.get(offset + ID + i) != id[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void remove(int slot){
+		if (slot == NOT_FOUND){
+			return;
+		}
+		int mask = this.capacity - 1;
+		this.live_orders--;
+		//shift back any entry further along the probe sequence that could have been placed in the hole
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (this.slots.get(offset(next) + STATE) != EMPTY){
+			int home = (int) this.slots.getLong(offset(next) + HASH) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)){
+				copySlot(next, hole);
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this.slots.put(offset(hole) + STATE, EMPTY);
+	}
+
+	private void copySlot(int from, int to){
+		int from_offset = offset(from);
+		int to_offset = offset(to);
+		for (int i = 0; i < this.slot_size; i += 8){
+			this.slots.putLong(to_offset + i, this.slots.getLong(from_offset + i));
+		}
+	}
+
+	private void resize(int new_capacity){
+		ByteBuffer old_slots = this.slots;
+		int old_capacity = this.capacity;
+		this.slots = allocate(new_capacity, this.slot_size);
+		this.capacity = new_capacity;
+		int mask = new_capacity - 1;
+
+		for (int old_slot = 0; old_slot < old_capacity; old_slot++){
+			int old_offset = old_slot * this.slot_size;
+			if (old_slots.get(old_offset + STATE) == EMPTY){
+				continue;
+			}
+			int slot = (int) old_slots.getLong(old_offset + HASH) & mask;
+			while (this.slots.get(offset(slot) + STATE) != EMPTY){
+				slot = (slot + 1) & mask;
+			}
+			int offset = offset(slot);
+			for (int i = 0; i < this.slot_size; i += 8){
+				this.slots.putLong(offset + i, old_slots.getLong(old_offset + i));
+			}
+		}
+	}
+
+	private int offset(int slot){
+		return slot * this.slot_size;
+	}
+
+	private static ByteBuffer allocate(int capacity, int slot_size){
+		//a new direct buffer is zeroed, so every slot starts EMPTY
+		return ByteBuffer.allocateDirect(capacity * slot_size).order(ByteOrder.nativeOrder());
+	}
+
+    /**
+     * Hashes the bytes of an order id (FNV-1a followed by a final avalanche step so that the low bits
+     * used to pick a slot depend on every byte).
+     *
+     * @param id The bytes of the order id
+     * @param length The number of bytes in the order id
+     *
+     * @return hash A 64 bit hash of the id
+     */
+	public static long hash(byte[] id, int length){
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < length; i++){
+			hash ^= id[i];
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,220 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class holds one parsed add or reduce message. It is meant to be reused for every line of input,
+ * so all of the fields are primitives and the order id and symbol are copied into byte arrays owned by the
+ * message instead of being turned into Strings.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class OrderMessage {
+	public static final char ADD = 'A';
+	public static final char REDUCE = 'R';
+	public static final char BUY = 'B';
+	public static final char SELL = 'S';
+
+	private char type;
+	private long timestamp;
+	private byte[] order_id;
+	private int order_id_length;
+	private boolean interned_id; //true if order_id holds the 8 bytes of an id interned by BinaryFeedWriter
+	private char side; //only set for ADD messages
+	private long price; //in ticks, only set for ADD messages
+	private int size;
+	private byte[] symbol;
+	private int symbol_length; //0 if the message has no symbol
+
+	//Constructor
+    /**
+     * Creates an empty message to be filled in by a MessageParser.
+     *
+     * @return new OrderMessage object
+     */
+	public OrderMessage(){
+		this.order_id = new byte[16];
+		this.symbol = new byte[16];
+	}
+
+	//Getters & Setters
+	public char getType(){
+		return this.type;
+	}
+	public void setType(char type){
+		this.type = type;
+	}
+	public long getTimestamp(){
+		return this.timestamp;
+	}
+	public void setTimestamp(long timestamp){
+		this.timestamp = timestamp;
+	}
+	public char getSide(){
+		return this.side;
+	}
+	public void setSide(char side){
+		this.side = side;
+	}
+	public long getPrice(){
+		return this.price;
+	}
+	public void setPrice(long price){
+		this.price = price;
+	}
+	public int getSize(){
+		return this.size;
+	}
+	public void setSize(int size){
+		this.size = size;
+	}
+
+    /**
+     * Returns the array holding the order id bytes. Only the first getOrderIdLength() bytes are valid and
+     * the array is overwritten by the next message.
+     *
+     * @return order_id The order id bytes
+     */
+	public byte[] getOrderIdBytes(){
+		return this.order_id;
+	}
+	public int getOrderIdLength(){
+		return this.order_id_length;
+	}
+
+    /**
+     * Returns the order id as a new String. This allocates, so it should be kept off the hot path.
+     *
+     * @return order_id The order id, or the number of an interned id read from a binary feed
+     */
+	public String getOrderId(){
+		if (this.interned_id){
+			long id = 0;
+			for (int i = 0; i < 8; i++){
+				id = (id << 8) | (this.order_id[i] & 0xFF);
+			}
+			return Long.toString(id);
+		}
+		return new String(this.order_id, 0, this.order_id_length);
+	}
+
+    /**
+     * Copies the order id out of a buffer into this message.
+     *
+     * @param buffer The bytes holding the order id
+     * @param offset The index of the first byte of the id
+     * @param length The number of bytes in the id
+     */
+	public void setOrderId(byte[] buffer, int offset, int length){
+		if (length > this.order_id.length){
+			this.order_id = Arrays.copyOf(this.order_id, Math.max(length, this.order_id.length * 2));
+		}
+		System.arraycopy(buffer, offset, this.order_id, 0, length);
+		this.order_id_length = length;
+		this.interned_id = false;
+	}
+
+    /**
+     * Copies the order id out of a byte buffer into this message, without moving the buffer's position.
+     *
+     * @param buffer The buffer holding the order id, which may be direct
+     * @param offset The index of the first byte of the id
+     * @param length The number of bytes in the id
+     */
+	public void setOrderId(ByteBuffer buffer, int offset, int length){
+		if (length > this.order_id.length){
+			this.order_id = Arrays.copyOf(this.order_id, Math.max(length, this.order_id.length * 2));
+		}
+		for (int i = 0; i < length; i++){
+			this.order_id[i] = buffer.get(offset + i);
+		}
+		this.order_id_length = length;
+		this.interned_id = false;
+	}
+
+    /**
+     * Sets the order id to an id interned by BinaryFeedWriter. The id is kept as its 8 bytes, so it is
+     * hashed and compared like any other id without being formatted.
+     *
+     * @param id The interned order id
+     */
+	public void setOrderId(long id){
+		for (int i = 7; i >= 0; i--){
+			this.order_id[i] = (byte) id;
+			id >>>= 8;
+		}
+		this.order_id_length = 8;
+		this.interned_id = true;
+	}
+
+    /**
+     * Returns the array holding the symbol bytes. Only the first getSymbolLength() bytes are valid and
+     * the array is overwritten by the next message.
+     *
+     * @return symbol The symbol bytes
+     */
+	public byte[] getSymbolBytes(){
+		return this.symbol;
+	}
+	public int getSymbolLength(){
+		return this.symbol_length;
+	}
+
+    /**
+     * Returns the symbol as a new String. This allocates, so it should be kept off the hot path.
+     *
+     * @return symbol The symbol, "" if the message has no symbol
+     */
+	public String getSymbol(){
+		return new String(this.symbol, 0, this.symbol_length);
+	}
+
+    /**
+     * Copies the symbol out of a buffer into this message.
+     *
+     * @param buffer The bytes holding the symbol
+     * @param offset The index of the first byte of the symbol
+     * @param length The number of bytes in the symbol, 0 for none
+     */
+	public void setSymbol(byte[] buffer, int offset, int length){
+		if (length > this.symbol.length){
+			this.symbol = Arrays.copyOf(this.symbol, Math.max(length, this.symbol.length * 2));
+		}
+		System.arraycopy(buffer, offset, this.symbol, 0, length);
+		this.symbol_length = length;
+	}
+
+    /**
+     * Copies the symbol out of a byte buffer into this message, without moving the buffer's position.
+     *
+     * @param buffer The buffer holding the symbol, which may be direct
+     * @param offset The index of the first byte of the symbol
+     * @param length The number of bytes in the symbol, 0 for none
+     */
+	public void setSymbol(ByteBuffer buffer, int offset, int length){
+		if (length > this.symbol.length){
+			this.symbol = Arrays.copyOf(this.symbol, Math.max(length, this.symbol.length * 2));
+		}
+		for (int i = 0; i < length; i++){
+			this.symbol[i] = buffer.get(offset + i);
+		}
+		this.symbol_length = length;
+	}
+
+    /**
+     * Copies every field of another message into this one, so a message can be handed to another thread
+     * while the original is reused.
+     *
+     * @param other The message to copy
+     */
+	public void copyFrom(OrderMessage other){
+		this.type = other.type;
+		this.timestamp = other.timestamp;
+		this.side = other.side;
+		this.price = other.price;
+		this.size = other.size;
+		setOrderId(other.order_id, 0, other.order_id_length);
+		this.interned_id = other.interned_id;
+		setSymbol(other.symbol, 0, other.symbol_length);
+	}
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+
+/**
+ * This class splits the pricer into three pipelined stages, each on its own thread, so that reading,
+ * parsing and writing no longer add to the time spent on the book:
+ *
+ *		reader	(the caller) parses input lines straight into the slots of the message ring
+ *		book	applies each message to the OrderBooks and puts the price changes into the output ring
+ *		writer	writes the price changes to a PriceOutput, such as a PriceWriter
+ *
+ * The stages are connected by SpscRings of preallocated OrderMessage and PriceChange slots, so the steady
+ * state does not allocate or lock, and each stage waits with its own WaitStrategy. Every stage handles
+ * the messages in input order, so the output is the same as when the books are applied on one thread.
+ *
+ *		OrderMessage message = pipeline.claim();
+ *		while (parser.next(message) && pipeline.publish()){
+ *			message = pipeline.claim();
+ *		}
+ *		pipeline.finish();
+ *
+ * If the book stage fails, for example on a reduce of an unknown order id, it stops applying messages and
+ * publish() returns false so the reader can stop.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PipelinedPricer {
+	public static final int DEFAULT_RING_SIZE = 1 << 12;
+
+	private OrderBooks books;
+	private PriceOutput writer;
+	private boolean flush_when_idle;
+	private SpscRing<OrderMessage> messages; //reader to book
+	private SpscRing<PriceChange> changes; //book to writer
+	private Thread book_thread;
+	private Thread writer_thread;
+	private volatile Exception error; //first error from the book or writer stage, null if there is none
+	private boolean finished;
+
+	//Constructors
+    /**
+     * Creates the rings and starts the book and writer threads.
+     *
+     * @param books The books to apply the messages to. They must only be used by the pipeline from now on.
+     * @param writer The writer for price changes. It must only be used by the pipeline until finish() returns.
+     * @param ring_size The number of slots in each ring, a power of 2
+     * @param reader_wait How the reader waits while the message ring is full
+     * @param book_wait How the book stage waits for messages and for room in the output ring
+     * @param writer_wait How the writer waits for price changes
+     * @param flush_when_idle true to flush the writer whenever it runs out of price changes
+     *
+     * @return PipelinedPricer instance with running book and writer threads
+     */
+	public PipelinedPricer(OrderBooks books, PriceOutput writer, int ring_size, WaitStrategy reader_wait,
+			WaitStrategy book_wait, WaitStrategy writer_wait, boolean flush_when_idle){
+		this.books = books;
+		this.writer = writer;
+		this.flush_when_idle = flush_when_idle;
+		this.finished = false;
+
+		OrderMessage[] message_slots = new OrderMessage[ring_size];
+		PriceChange[] change_slots = new PriceChange[ring_size];
+		for (int i = 0; i < ring_size; i++){
+			message_slots[i] = new OrderMessage();
+			change_slots[i] = new PriceChange();
+		}
+		this.messages = new SpscRing<OrderMessage>(message_slots, reader_wait, book_wait);
+		this.changes = new SpscRing<PriceChange>(change_slots, book_wait, writer_wait);
+
+		this.book_thread = new Thread(new Runnable(){
+			public void run(){
+				runBook();
+			}
+		}, "pricer-book");
+		this.writer_thread = new Thread(new Runnable(){
+			public void run(){
+				runWriter();
+			}
+		}, "pricer-writer");
+		this.book_thread.setDaemon(true);
+		this.writer_thread.setDaemon(true);
+		this.book_thread.start();
+		this.writer_thread.start();
+	}
+
+	//Getters
+    /**
+     * Returns the first error thrown by the book or writer stage
+     *
+     * @return error The error, null if no stage has failed
+     */
+	public Exception getError(){
+		return this.error;
+	}
+
+	/*****Reader*****/
+
+	/**
+	 * This method returns the next free message slot for the reader to parse into, waiting while the
+	 * ring is full. Calling it again before publish() returns the same slot.
+	 *
+	 * @return message The slot to fill in
+	 */
+	public OrderMessage claim(){
+		return this.messages.claim();
+	}
+
+	/**
+	 * This method hands the claimed message to the book stage.
+	 *
+	 * @return true to keep going, false if a stage has failed
+	 */
+	public boolean publish(){
+		this.messages.publish();
+		return this.error == null;
+	}
+
+	/**
+	 * This method waits for the book and writer stages to handle every published message and stops them.
+	 * The writer is not flushed, so the caller can add to the output after it. It does nothing if called
+	 * again.
+	 */
+	public void finish() throws InterruptedException {
+		if (this.finished){
+			return;
+		}
+		this.finished = true;
+		this.messages.close();
+		this.book_thread.join();
+		this.writer_thread.join();
+	}
+
+	/*****Stages*****/
+
+	private void runBook(){
+		PriceSink sink = new PriceSink(){
+			public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol,
+					int symbol_length){
+				changes.claim().set(timestamp, side, target_size, cost, symbol, symbol_length);
+				changes.publish();
+			}
+		};
+		boolean failed = false;
+		OrderMessage message;
+		while ((message = this.messages.take()) != null){
+			if (!failed){
+				try{
+					this.books.processMessage(message, sink);
+				} catch (Exception e){
+					failed = true;
+					fail(e);
+				}
+			}
+			//keep releasing after a failure so the reader never waits on a full ring
+			this.messages.release();
+		}
+		this.changes.close();
+	}
+
+	private void runWriter(){
+		boolean failed = false;
+		while (true){
+			PriceChange change = this.changes.poll();
+			if (change == null){
+				if (this.flush_when_idle && !failed){
+					failed = flushWriter();
+				}
+				change = this.changes.take();
+				if (change == null){
+					return;
+				}
+			}
+			if (!failed){
+				try{
+					change.writeTo(this.writer);
+				} catch (IOException e){
+					failed = true;
+					fail(e);
+				}
+			}
+			this.changes.release();
+		}
+	}
+
+	private boolean flushWriter(){
+		try{
+			this.writer.flush();
+			return false;
+		} catch (IOException e){
+			fail(e);
+			return true;
+		}
+	}
+
+	private synchronized void fail(Exception e){
+		if (this.error == null){
+			this.error = e;
+		}
+	}
+}
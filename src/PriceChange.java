@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class holds one change in the min/max cost to buy/sell target_size shares, so it can be handed to
+ * another thread. Like OrderMessage it is meant to be reused, so all of the fields are primitives and the
+ * symbol is copied into a byte array owned by the change.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceChange {
+	private long timestamp;
+	private char side;
+	private int target_size;
+	private long cost; //in ticks, or Prices.NOT_AVAILABLE
+	private byte[] symbol;
+	private int symbol_length;
+
+	//Constructor
+    /**
+     * Creates an empty change to be filled in with set(...).
+     *
+     * @return new PriceChange object
+     */
+	public PriceChange(){
+		this.symbol = new byte[16];
+	}
+
+	//Getters
+	public long getTimestamp(){
+		return this.timestamp;
+	}
+	public char getSide(){
+		return this.side;
+	}
+	public int getTargetSize(){
+		return this.target_size;
+	}
+	public long getCost(){
+		return this.cost;
+	}
+	public byte[] getSymbolBytes(){
+		return this.symbol;
+	}
+	public int getSymbolLength(){
+		return this.symbol_length;
+	}
+
+    /**
+     * Fills in every field of the change. The arguments are the same as PriceSink.writePrice(...).
+     */
+	public void set(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length){
+		this.timestamp = timestamp;
+		this.side = side;
+		this.target_size = target_size;
+		this.cost = cost;
+		if (symbol_length > this.symbol.length){
+			this.symbol = Arrays.copyOf(this.symbol, Math.max(symbol_length, this.symbol.length * 2));
+		}
+		if (symbol_length > 0){
+			System.arraycopy(symbol, 0, this.symbol, 0, symbol_length);
+		}
+		this.symbol_length = symbol_length;
+	}
+
+    /**
+     * Passes the change on to a sink.
+     *
+     * @param sink The sink to write the change to
+     */
+	public void writeTo(PriceSink sink) throws IOException {
+		sink.writePrice(this.timestamp, this.side, this.target_size, this.cost, this.symbol, this.symbol_length);
+	}
+}
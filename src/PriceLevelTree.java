@@ -0,0 +1,500 @@
+/**
+ * This class implements an order log as a balanced (AVL) binary search tree of price levels. Each node
+ * holds the number of shares available at its price and is augmented with the total number of shares and
+ * the total notional (price * shares) of the subtree rooted at it. This allows the cost of the best N shares
+ * to be found by a single descent from the root in O(log(n)), no matter how many price levels the N shares
+ * span.
+ *
+ * Prices are fixed-point ticks (see Prices) and the nodes are kept in a LevelStore indexed by node number,
+ * either parallel primitive arrays on the heap or records in direct memory, so adding and removing levels
+ * does not box keys or allocate once the store has grown to the depth of the book. Node 0 is an empty
+ * sentinel that stands in for null children. Freed nodes are chained through their left child and reused.
+ *
+ * The sort direction is built into the tree. It can be ordered ascending (best = lowest price, used for
+ * offers) or descending (best = highest price, used for bids).
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceLevelTree {
+	private static final int NIL = 0;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private boolean descending;
+	private int root;
+	private int level_count;
+	private int next_unused; //first node that has never been used
+	private int free_list; //head of the chain of freed nodes, NIL if there are none
+	private long last_boundary_price; //price of the worst level used by the last call to getCostOfBest
+	private int[] path; //nodes still to visit in getLevels, deeper than any AVL tree of int nodes can be
+	private long modifications; //number of calls to add and remove
+	private long last_modified_price; //price of the level changed by the last call to add or remove
+
+	//Node attributes, indexed by node number
+	private LevelStore nodes;
+
+	//Constructors
+    /**
+     * Creates an empty tree of price levels stored on the heap.
+     *
+     * @param descending true if the best price is the highest price (bids), false if it is the
+     * lowest price (offers)
+     *
+     * @return PriceLevelTree instance with no levels
+     */
+	public PriceLevelTree(boolean descending){
+		this(descending, false);
+	}
+
+    /**
+     * Creates an empty tree of price levels.
+     *
+     * @param descending true if the best price is the highest price (bids), false if it is the
+     * lowest price (offers)
+     * @param off_heap true to store the levels in direct memory (see OffHeapLevelStore)
+     *
+     * @return PriceLevelTree instance with no levels
+     */
+	public PriceLevelTree(boolean descending, boolean off_heap){
+		this.descending = descending;
+		this.root = NIL;
+		this.level_count = 0;
+		this.next_unused = 1;
+		this.free_list = NIL;
+		this.last_boundary_price = Prices.NO_PRICE;
+		this.path = new int[64];
+		this.nodes = off_heap ? new OffHeapLevelStore(INITIAL_CAPACITY) : new HeapLevelStore(INITIAL_CAPACITY);
+	}
+
+	//Getters
+    /**
+     * Returns true if the best price is the highest price.
+     *
+     * @return descending The sort direction of the tree
+     */
+	public boolean isDescending(){
+		return this.descending;
+	}
+
+    /**
+     * Returns the number of shares available at a price.
+     *
+     * @param price The price of the level in ticks
+     *
+     * @return shares The number of shares at this price, 0 if there is no level at this price
+     */
+	public int getShares(long price){
+		int node = find(price);
+		return node == NIL ? 0 : this.nodes.shares(node);
+	}
+
+    /**
+     * Returns the total number of shares in the tree
+     *
+     * @return total_shares The sum of shares over all price levels
+     */
+	public long getTotalShares(){
+		return this.nodes.subtreeShares(this.root);
+	}
+
+    /**
+     * Returns the number of times levels have been added to or removed from, so a caller can tell cheaply
+     * whether the tree may have changed since it last looked
+     *
+     * @return modifications The number of calls to add and remove
+     */
+	public long getModifications(){
+		return this.modifications;
+	}
+
+    /**
+     * Returns the price of the level changed by the last call to add or remove
+     *
+     * @return price The price in ticks, undefined if the tree has never been modified
+     */
+	public long getLastModifiedPrice(){
+		return this.last_modified_price;
+	}
+
+    /**
+     * Returns the number of distinct price levels in the tree
+     *
+     * @return level_count The number of price levels
+     */
+	public int getLevelCount(){
+		return this.level_count;
+	}
+
+    /**
+     * Returns the price of the worst level that was needed to fill the shares in the last call to
+     * getCostOfBest.
+     *
+     * @return last_boundary_price The boundary price in ticks, Prices.NO_PRICE if the last query could
+     * not be filled
+     */
+	public long getLastBoundaryPrice(){
+		return this.last_boundary_price;
+	}
+
+    /**
+     * Returns the best price in the tree
+     *
+     * @return best_price The price of the best level in ticks, Prices.NO_PRICE if the tree is empty
+     */
+	public long getBestPrice(){
+		int node = this.root;
+		if (node == NIL){
+			return Prices.NO_PRICE;
+		}
+		while (this.nodes.left(node) != NIL){
+			node = this.nodes.left(node);
+		}
+		return this.nodes.price(node);
+	}
+
+    /**
+     * Returns the price of the next worse level after price. The level at price does not need to exist.
+     *
+     * @param price The price to search from in ticks
+     *
+     * @return next_price The best price that is worse than price, Prices.NO_PRICE if there is none
+     */
+	public long getNextPrice(long price){
+		int node = this.root;
+		long next_price = Prices.NO_PRICE;
+		while (node != NIL){
+			if (compare(price, this.nodes.price(node)) < 0){
+				next_price = this.nodes.price(node);
+				node = this.nodes.left(node);
+			} else {
+				node = this.nodes.right(node);
+			}
+		}
+		return next_price;
+	}
+
+    /**
+     * Returns the price of the next better level before price. The level at price does not need to exist.
+     *
+     * @param price The price to search from in ticks
+     *
+     * @return previous_price The worst price that is better than price, Prices.NO_PRICE if there is none
+     */
+	public long getPreviousPrice(long price){
+		int node = this.root;
+		long previous_price = Prices.NO_PRICE;
+		while (node != NIL){
+			if (compare(price, this.nodes.price(node)) > 0){
+				previous_price = this.nodes.price(node);
+				node = this.nodes.right(node);
+			} else {
+				node = this.nodes.left(node);
+			}
+		}
+		return previous_price;
+	}
+
+    /**
+     * Compares two prices in the order of the tree.
+     *
+     * @param p1 The first price in ticks
+     * @param p2 The second price in ticks
+     *
+     * @return a negative number if p1 is a better price than p2, 0 if they are equal and a positive
+     * number if p1 is worse
+     */
+	public int compare(long p1, long p2){
+		return this.descending ? Long.compare(p2, p1) : Long.compare(p1, p2);
+	}
+
+	/**
+	 * This method adds shares to the level at price, creating the level if needed.
+	 *
+	 * @param price The price per share in ticks
+	 * @param size The number of shares to add
+	 */
+	public void add(long price, int size){
+		this.modifications++;
+		this.last_modified_price = price;
+		this.root = insert(this.root, price, size);
+	}
+
+	/**
+	 * This method removes shares from the level at price. If size is greater than or equal to the shares
+	 * at the level, then the level is removed completely. Nothing happens if there is no level at price.
+	 *
+	 * @param price The price per share in ticks
+	 * @param size The number of shares to remove
+	 */
+	public void remove(long price, int size){
+		this.modifications++;
+		this.last_modified_price = price;
+		this.root = delete(this.root, price, size);
+	}
+
+	/**
+	 * This method calculates the cost of the best target shares in the tree by descending once from the
+	 * root. At each node either the whole left (better) subtree is taken using its aggregates, or the
+	 * search continues into it.
+	 *
+	 * @param target The number of shares to fill
+	 *
+	 * @return cost The total cost of the best target shares in ticks. Returns Prices.NOT_AVAILABLE if there
+	 * aren't enough shares in the tree.
+	 */
+	public long getCostOfBest(long target){
+		if (target <= 0 || getTotalShares() < target){
+			this.last_boundary_price = Prices.NO_PRICE;
+			return Prices.NOT_AVAILABLE;
+		}
+		long shares_remaining = target;
+		long total_cost = 0;
+		int node = this.root;
+		while (true){
+			int better = this.nodes.left(node);
+			if (shares_remaining <= this.nodes.subtreeShares(better)){
+				//the target is filled entirely inside the better subtree
+				node = better;
+				continue;
+			}
+			//take every level in the better subtree
+			total_cost += this.nodes.subtreeNotional(better);
+			shares_remaining -= this.nodes.subtreeShares(better);
+
+			if (shares_remaining <= this.nodes.shares(node)){
+				//this level completes the fill
+				total_cost += this.nodes.price(node) * shares_remaining;
+				this.last_boundary_price = this.nodes.price(node);
+				return total_cost;
+			}
+			total_cost += this.nodes.price(node) * this.nodes.shares(node);
+			shares_remaining -= this.nodes.shares(node);
+			node = this.nodes.right(node);
+		}
+	}
+
+	/**
+	 * This method returns the total number of shares at price and every better price, by descending once
+	 * from the root and taking the aggregates of the subtrees it passes.
+	 *
+	 * @param price The worst price to count in ticks. There does not need to be a level at it.
+	 *
+	 * @return shares The cumulative number of shares up to and including price
+	 */
+	public long getSharesThrough(long price){
+		long total = 0;
+		int node = this.root;
+		while (node != NIL){
+			if (compare(this.nodes.price(node), price) <= 0){
+				total += this.nodes.subtreeShares(this.nodes.left(node)) + this.nodes.shares(node);
+				node = this.nodes.right(node);
+			} else {
+				node = this.nodes.left(node);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * This method returns the total notional (price * shares) of the levels at price and every better
+	 * price, which is what taking all of getSharesThrough(price) shares would cost.
+	 *
+	 * @param price The worst price to count in ticks. There does not need to be a level at it.
+	 *
+	 * @return notional The cumulative notional in ticks
+	 */
+	public long getNotionalThrough(long price){
+		long total = 0;
+		int node = this.root;
+		while (node != NIL){
+			if (compare(this.nodes.price(node), price) <= 0){
+				total += this.nodes.subtreeNotional(this.nodes.left(node)) + this.nodes.price(node) * this.nodes.shares(node);
+				node = this.nodes.right(node);
+			} else {
+				node = this.nodes.left(node);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * This method copies the best levels, best first, with an in-order walk that costs O(log(n)) to reach
+	 * the best level and O(1) amortized per level after it.
+	 *
+	 * @param prices The array to copy the prices of the levels to in ticks
+	 * @param shares The array to copy the shares of the levels to
+	 * @param count The most levels to copy, no more than the length of the arrays
+	 *
+	 * @return copied The number of levels copied, less than count if the tree has fewer levels
+	 */
+	public int getLevels(long[] prices, int[] shares, int count){
+		int copied = 0;
+		int depth = 0;
+		int node = this.root;
+		while (copied < count && (node != NIL || depth > 0)){
+			while (node != NIL){
+				this.path[depth++] = node;
+				node = this.nodes.left(node);
+			}
+			node = this.path[--depth];
+			prices[copied] = this.nodes.price(node);
+			shares[copied++] = this.nodes.shares(node);
+			node = this.nodes.right(node);
+		}
+		return copied;
+	}
+
+	/*****Tree maintenance*****/
+
+	private int find(long price){
+		int node = this.root;
+		while (node != NIL){
+			int cmp = compare(price, this.nodes.price(node));
+			if (cmp == 0){
+				return node;
+			}
+			node = cmp < 0 ? this.nodes.left(node) : this.nodes.right(node);
+		}
+		return NIL;
+	}
+
+	private int insert(int node, long price, int size){
+		if (node == NIL){
+			this.level_count++;
+			return newNode(price, size);
+		}
+		int cmp = compare(price, this.nodes.price(node));
+		if (cmp == 0){
+			this.nodes.setShares(node, this.nodes.shares(node) + size);
+			update(node);
+			return node;
+		}
+		//the child is stored after the recursive call returns, since inserting may grow the arrays
+		int child;
+		if (cmp < 0){
+			child = insert(this.nodes.left(node), price, size);
+			this.nodes.setLeft(node, child);
+		} else {
+			child = insert(this.nodes.right(node), price, size);
+			this.nodes.setRight(node, child);
+		}
+		return rebalance(node);
+	}
+
+	private int delete(int node, long price, int size){
+		if (node == NIL){
+			return NIL;
+		}
+		int cmp = compare(price, this.nodes.price(node));
+		if (cmp < 0){
+			this.nodes.setLeft(node, delete(this.nodes.left(node), price, size));
+		} else if (cmp > 0){
+			this.nodes.setRight(node, delete(this.nodes.right(node), price, size));
+		} else if (size < this.nodes.shares(node)){
+			this.nodes.setShares(node, this.nodes.shares(node) - size);
+			update(node);
+			return node;
+		} else {//remove the level
+			this.level_count--;
+			int replacement;
+			if (this.nodes.left(node) == NIL){
+				replacement = this.nodes.right(node);
+			} else if (this.nodes.right(node) == NIL){
+				replacement = this.nodes.left(node);
+			} else {
+				//replace this level with the next worse level and unlink that level from the right subtree
+				replacement = this.nodes.right(node);
+				while (this.nodes.left(replacement) != NIL){
+					replacement = this.nodes.left(replacement);
+				}
+				this.nodes.setRight(replacement, removeFirst(this.nodes.right(node)));
+				this.nodes.setLeft(replacement, this.nodes.left(node));
+				replacement = rebalance(replacement);
+			}
+			freeNode(node);
+			return replacement;
+		}
+		return rebalance(node);
+	}
+
+	private int removeFirst(int node){
+		if (this.nodes.left(node) == NIL){
+			return this.nodes.right(node);
+		}
+		this.nodes.setLeft(node, removeFirst(this.nodes.left(node)));
+		return rebalance(node);
+	}
+
+	private int rebalance(int node){
+		update(node);
+		int balance = this.nodes.height(this.nodes.left(node)) - this.nodes.height(this.nodes.right(node));
+		if (balance > 1){
+			int child = this.nodes.left(node);
+			if (this.nodes.height(this.nodes.left(child)) < this.nodes.height(this.nodes.right(child))){
+				this.nodes.setLeft(node, rotateLeft(child));
+			}
+			return rotateRight(node);
+		} else if (balance < -1){
+			int child = this.nodes.right(node);
+			if (this.nodes.height(this.nodes.right(child)) < this.nodes.height(this.nodes.left(child))){
+				this.nodes.setRight(node, rotateRight(child));
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private int rotateRight(int node){
+		int pivot = this.nodes.left(node);
+		this.nodes.setLeft(node, this.nodes.right(pivot));
+		this.nodes.setRight(pivot, node);
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private int rotateLeft(int node){
+		int pivot = this.nodes.right(node);
+		this.nodes.setRight(node, this.nodes.left(pivot));
+		this.nodes.setLeft(pivot, node);
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private void update(int node){
+		int l = this.nodes.left(node);
+		int r = this.nodes.right(node);
+		LevelStore nodes = this.nodes;
+		nodes.setHeight(node, 1 + Math.max(nodes.height(l), nodes.height(r)));
+		nodes.setSubtreeShares(node, nodes.subtreeShares(l) + nodes.shares(node) + nodes.subtreeShares(r));
+		nodes.setSubtreeNotional(node, nodes.subtreeNotional(l) + nodes.price(node) * nodes.shares(node)
+			+ nodes.subtreeNotional(r));
+	}
+
+	/*****Node storage*****/
+
+	private int newNode(long price, int size){
+		int node;
+		if (this.free_list != NIL){
+			node = this.free_list;
+			this.free_list = this.nodes.left(node);
+		} else {
+			if (this.next_unused == this.nodes.capacity()){
+				this.nodes.grow();
+			}
+			node = this.next_unused++;
+		}
+		this.nodes.setPrice(node, price);
+		this.nodes.setShares(node, size);
+		this.nodes.setLeft(node, NIL);
+		this.nodes.setRight(node, NIL);
+		update(node);
+		return node;
+	}
+
+	private void freeNode(int node){
+		this.nodes.setLeft(node, this.free_list);
+		this.free_list = node;
+	}
+}
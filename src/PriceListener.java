@@ -0,0 +1,25 @@
+/**
+ * This interface lets code in the same JVM receive the price changes of the books directly, instead of
+ * parsing the text the pricer writes. Every event is made of primitives: nothing is boxed and a cost that
+ * cannot be filled is Prices.NOT_AVAILABLE rather than a null or an infinite Double.
+ *
+ * A listener is called on the thread that applies the books through a ListenerPriceSink, or on a thread
+ * of its own through a ConflatingDispatcher when it may be slower than the books.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public interface PriceListener {
+
+	/**
+	 * This method receives a change in the min/max cost to buy/sell target_size shares of an instrument.
+	 *
+	 * @param timestamp The timestamp of the message that changed the price
+	 * @param side OrderMessage.BUY for the cost to buy, OrderMessage.SELL for the amount from selling
+	 * @param target_size The number of shares the cost is for
+	 * @param cost The new cost in ticks (see Prices), or Prices.NOT_AVAILABLE
+	 * @param symbol The bytes of the symbol, only read if symbol_length > 0. They are only valid during the call.
+	 * @param symbol_length The number of bytes in the symbol, 0 for the unnamed default instrument
+	 */
+	void priceChanged(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length);
+}
@@ -0,0 +1,11 @@
+import java.io.Flushable;
+
+/**
+ * This interface is a PriceSink that buffers what it is given and writes it out when flushed, such as a
+ * PriceWriter. It is what the pipelined pricers hand their price changes to.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public interface PriceOutput extends PriceSink, Flushable {
+}
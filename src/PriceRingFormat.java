@@ -0,0 +1,122 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * This class describes the price ring written by PriceRingWriter and read by PriceRingReader: a memory
+ * mapped file holding the latest price changes as fixed-width little-endian records, so that local processes
+ * can take the prices without parsing text or a system call per change. Each record fills a cache line:
+ *
+ *		offset  0	long	sequence number, from 0, or IN_PROGRESS while the record is being written
+ *		offset  8	long	timestamp of the message that changed the price
+ *		offset 16	long	cost in ticks, or Prices.NOT_AVAILABLE
+ *		offset 24	int		target size
+ *		offset 28	byte	side, 'B' for the cost to buy, 'S' for the amount from selling
+ *		offset 29	byte	symbol length, 0 for the unnamed default instrument
+ *		offset 30	bytes	symbol, up to SymbolTable.MAX_SYMBOL_LENGTH
+ *
+ * Record n is kept in slot n % capacity after a header of two cache lines, so the cursor the writer updates
+ * does not share a line with the fields readers only read once:
+ *
+ *		offset  0	int		MAGIC
+ *		offset  4	short	VERSION
+ *		offset  6	short	RECORD_SIZE
+ *		offset  8	int		capacity, the number of slots, a power of 2
+ *		offset 64	long	cursor, the number of records published
+ *		offset 72	int		1 once the writer has closed the ring, 0 before
+ *
+ * The writer marks a slot IN_PROGRESS, writes the fields, then stores the sequence number and the cursor,
+ * with a release fence before each step. A reader compares the sequence number before and after reading the
+ * fields, with acquire fences between, so it never takes a record the writer overwrote meanwhile. A slot still
+ * marked IN_PROGRESS, or holding an older record, is read again on the next poll rather than counted lost.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceRingFormat {
+	public static final int MAGIC = 0x4F424B52; //"OBKR"
+	public static final short VERSION = 1;
+	public static final int RECORD_SIZE = 64;
+	public static final int HEADER_SIZE = 128;
+	public static final long IN_PROGRESS = -1;
+
+	//Offsets of the header fields
+	public static final int HEADER_MAGIC = 0;
+	public static final int HEADER_VERSION = 4;
+	public static final int HEADER_RECORD_SIZE = 6;
+	public static final int HEADER_CAPACITY = 8;
+	public static final int HEADER_CURSOR = 64;
+	public static final int HEADER_CLOSED = 72;
+
+	//Offsets of the record fields
+	public static final int SEQUENCE = 0;
+	public static final int TIMESTAMP = 8;
+	public static final int COST = 16;
+	public static final int TARGET_SIZE = 24;
+	public static final int SIDE = 28;
+	public static final int SYMBOL_LENGTH = 29;
+	public static final int SYMBOL = 30;
+
+	//VarHandle.releaseFence() and acquireFence(), looked up at runtime so the pricer still runs on Java 8,
+	//where a volatile write and read stand in for them
+	private static final MethodHandle RELEASE_FENCE = fence("releaseFence");
+	private static final MethodHandle ACQUIRE_FENCE = fence("acquireFence");
+	private static volatile int fence_word;
+
+	private PriceRingFormat(){
+	}
+
+    /**
+     * Returns the length of a ring file.
+     *
+     * @param capacity The number of slots
+     *
+     * @return length The length in bytes
+     */
+	public static long fileLength(int capacity){
+		return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+	}
+
+	/**
+	 * This method keeps the loads and stores before it from being reordered with the stores after it, as seen
+	 * by another process mapping the same file.
+	 */
+	public static void releaseFence(){
+		try{
+			RELEASE_FENCE.invokeExact();
+		} catch (Throwable e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * This method keeps the loads before it from being reordered with the loads and stores after it.
+	 */
+	public static void acquireFence(){
+		try{
+			ACQUIRE_FENCE.invokeExact();
+		} catch (Throwable e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void volatileFence(){
+		fence_word = 0;
+		if (fence_word != 0){
+			fence_word = 0;
+		}
+	}
+
+	private static MethodHandle fence(String name){
+		MethodType type = MethodType.methodType(void.class);
+		try{
+			return MethodHandles.publicLookup().findStatic(Class.forName("java.lang.invoke.VarHandle"), name, type);
+		} catch (ReflectiveOperationException e){
+			try{
+				return MethodHandles.lookup().findStatic(PriceRingFormat.class, "volatileFence", type);
+			} catch (ReflectiveOperationException f){
+				throw new IllegalStateException(f);
+			}
+		}
+	}
+}
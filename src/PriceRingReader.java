@@ -0,0 +1,282 @@
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class reads the price changes a PriceRingWriter publishes (see PriceRingFormat), from any process on
+ * the same machine. The ring is memory mapped, so polling for a change reads the cursor the writer publishes
+ * with no system call, and each record is decoded straight out of the mapping into the fields of the reader,
+ * with nothing allocated:
+ *
+ *		PriceRingReader ring = new PriceRingReader("/dev/shm/prices");
+ *		while (!ring.isClosed()){
+ *			if (ring.next()){
+ *				... ring.getTimestamp(), ring.getSide(), ring.getTargetSize(), ring.getCost() ...
+ *			}
+ *		}
+ *
+ * Any number of readers can follow one ring, each at its own pace, as the writer never waits for them. A
+ * reader that falls more than the capacity of the ring behind skips to the oldest record still in it and
+ * counts the records it lost. Its main method follows a ring and writes the changes as Pricer would:
+ *
+ *		java PriceRingReader [--tag-targets] ring_file
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceRingReader {
+	private static final long IDLE_PARK_NANOS = 50000;
+
+	//Outcomes of reading a slot
+	private static final int READ = 0;
+	private static final int NOT_PUBLISHED = 1; //the writer has not finished the record yet
+	private static final int OVERWRITTEN = 2; //the writer is a lap ahead
+
+	private RandomAccessFile file;
+	private MappedByteBuffer ring;
+	private int capacity;
+	private int mask; //capacity - 1
+	private long next_sequence;
+	private long lost;
+
+	//Fields of the last record read
+	private long sequence;
+	private long timestamp;
+	private long cost;
+	private int target_size;
+	private char side;
+	private int symbol_length;
+	private byte[] symbol;
+
+	//Constructors
+    /**
+     * Maps a ring and positions the reader at the oldest record still in it.
+     *
+     * @param file_name The name of the ring file
+     *
+     * @return PriceRingReader instance
+     *
+     * @throws IllegalArgumentException if the file does not exist or is not a price ring
+     */
+	public PriceRingReader(String file_name) throws IOException {
+		try{
+			this.file = new RandomAccessFile(file_name, "r");
+		} catch (FileNotFoundException e){
+			throw new IllegalArgumentException("Error: Cannot open price ring: "+file_name);
+		}
+		FileChannel channel = this.file.getChannel();
+		long length = channel.size();
+		if (length < PriceRingFormat.HEADER_SIZE){
+			throw new IllegalArgumentException("Error: Not a price ring: "+file_name);
+		}
+		this.ring = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		this.ring.order(ByteOrder.LITTLE_ENDIAN);
+		boolean valid = this.ring.getInt(PriceRingFormat.HEADER_MAGIC) == PriceRingFormat.MAGIC;
+		PriceRingFormat.acquireFence();
+		this.capacity = this.ring.getInt(PriceRingFormat.HEADER_CAPACITY);
+		if (!valid
+				|| this.ring.getShort(PriceRingFormat.HEADER_VERSION) != PriceRingFormat.VERSION
+				|| this.ring.getShort(PriceRingFormat.HEADER_RECORD_SIZE) != PriceRingFormat.RECORD_SIZE
+				|| this.capacity < 1 || Integer.bitCount(this.capacity) != 1
+				|| length != PriceRingFormat.fileLength(this.capacity)){
+			this.file.close();
+			throw new IllegalArgumentException("Error: Not a price ring: "+file_name);
+		}
+		this.mask = this.capacity - 1;
+		this.symbol = new byte[SymbolTable.MAX_SYMBOL_LENGTH];
+		this.next_sequence = Math.max(0, getCursor() - this.capacity);
+		this.lost = 0;
+		this.sequence = -1;
+	}
+
+	//Getters
+    /**
+     * Returns the number of records the writer has published
+     *
+     * @return cursor The sequence number of the next record to be published
+     */
+	public long getCursor(){
+		long cursor = this.ring.getLong(PriceRingFormat.HEADER_CURSOR);
+		PriceRingFormat.acquireFence();
+		return cursor;
+	}
+
+    /**
+     * Returns the number of records overwritten before this reader got to them
+     *
+     * @return lost The number of records skipped
+     */
+	public long getLost(){
+		return this.lost;
+	}
+	public int getCapacity(){
+		return this.capacity;
+	}
+	public long getSequence(){
+		return this.sequence;
+	}
+	public long getTimestamp(){
+		return this.timestamp;
+	}
+	public char getSide(){
+		return this.side;
+	}
+	public int getTargetSize(){
+		return this.target_size;
+	}
+
+    /**
+     * Returns the cost of the last record read
+     *
+     * @return cost The cost in ticks, or Prices.NOT_AVAILABLE
+     */
+	public long getCost(){
+		return this.cost;
+	}
+
+    /**
+     * Returns the symbol of the last record read, valid until the next record is read
+     *
+     * @return symbol The bytes of the symbol, of which getSymbolLength() are used
+     */
+	public byte[] getSymbolBytes(){
+		return this.symbol;
+	}
+	public int getSymbolLength(){
+		return this.symbol_length;
+	}
+
+    /**
+     * Returns the symbol of the last record read as a String. It allocates and is meant to be used off the hot
+     * path.
+     *
+     * @return symbol The symbol, empty for the unnamed default instrument
+     */
+	public String getSymbol(){
+		return new String(this.symbol, 0, this.symbol_length);
+	}
+
+    /**
+     * Returns true once the writer has closed the ring and every record in it has been read.
+     *
+     * @return closed true if no more records will come
+     */
+	public boolean isClosed(){
+		boolean closed = this.ring.getInt(PriceRingFormat.HEADER_CLOSED) != 0;
+		PriceRingFormat.acquireFence();
+		return closed && this.next_sequence >= getCursor();
+	}
+
+	/**
+	 * This method skips the records published so far, so the next one read is the next one published.
+	 */
+	public void skipToEnd(){
+		this.next_sequence = getCursor();
+	}
+
+	/**
+	 * This method reads the next record if the writer has published it. It never waits.
+	 *
+	 * @return read true if a record was read into the getters, false if there is none yet
+	 */
+	public boolean next(){
+		while (true){
+			long cursor = getCursor();
+			if (this.next_sequence >= cursor){
+				return false;
+			}
+			if (cursor - this.next_sequence > this.capacity){
+				this.lost += cursor - this.capacity - this.next_sequence;
+				this.next_sequence = cursor - this.capacity;
+			}
+			int outcome = read(this.next_sequence);
+			if (outcome == NOT_PUBLISHED){
+				//read it again on the next poll
+				return false;
+			}
+			this.next_sequence++;
+			if (outcome == READ){
+				return true;
+			}
+			this.lost++;
+		}
+	}
+
+	/**
+	 * This method closes the file. The reader must not be used afterwards.
+	 */
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+	private int read(long expected){
+		MappedByteBuffer ring = this.ring;
+		int record = PriceRingFormat.HEADER_SIZE + (int) (expected & this.mask) * PriceRingFormat.RECORD_SIZE;
+		long sequence = ring.getLong(record + PriceRingFormat.SEQUENCE);
+		if (sequence != expected){
+			//IN_PROGRESS is either this record or the one a lap on, which is only told apart once it is done
+			return (sequence > expected) ? OVERWRITTEN : NOT_PUBLISHED;
+		}
+		PriceRingFormat.acquireFence();
+		this.timestamp = ring.getLong(record + PriceRingFormat.TIMESTAMP);
+		this.cost = ring.getLong(record + PriceRingFormat.COST);
+		this.target_size = ring.getInt(record + PriceRingFormat.TARGET_SIZE);
+		this.side = (char) ring.get(record + PriceRingFormat.SIDE);
+		int length = Math.min(ring.get(record + PriceRingFormat.SYMBOL_LENGTH) & 0xFF, this.symbol.length);
+		for (int i = 0; i < length; i++){
+			this.symbol[i] = ring.get(record + PriceRingFormat.SYMBOL + i);
+		}
+		this.symbol_length = length;
+		PriceRingFormat.acquireFence();
+		if (ring.getLong(record + PriceRingFormat.SEQUENCE) != expected){
+			//the slot was published, so any change is the record a lap on
+			return OVERWRITTEN;
+		}
+		this.sequence = expected;
+		return READ;
+	}
+
+	/**
+	 * This is the main method of the reader. It follows a ring until the writer closes it and writes each
+	 * price change to STDOUT as a line of Pricer output, and the number of changes lost to STDERR.
+	 *
+	 * @param args [--tag-targets] ring_file
+	 */
+	public static void main(String[] args){
+		boolean tag_targets = args.length == 2 && args[0].equals("--tag-targets");
+		if (args.length != (tag_targets ? 2 : 1)){
+			System.err.println("Usage: java PriceRingReader [--tag-targets] ring_file");
+			System.exit(1);
+		}
+		PriceWriter writer = new PriceWriter(new FileOutputStream(FileDescriptor.out));
+		writer.setTagTargets(tag_targets);
+		try{
+			PriceRingReader ring = new PriceRingReader(args[args.length - 1]);
+			long lost = 0;
+			while (!ring.isClosed()){
+				if (!ring.next()){
+					writer.flush();
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+					continue;
+				}
+				if (ring.getLost() != lost){
+					System.err.println("Warning: lost "+(ring.getLost() - lost)+" price changes");
+					lost = ring.getLost();
+				}
+				writer.writePrice(ring.getTimestamp(), ring.getSide(), ring.getTargetSize(), ring.getCost(),
+					ring.getSymbolBytes(), ring.getSymbolLength());
+			}
+			writer.flush();
+			ring.close();
+		} catch (IOException|IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class writes price changes as binary records into a memory mapped ring file (see PriceRingFormat)
+ * instead of as text, for local processes that read them with PriceRingReader. Nothing is formatted, and a
+ * change is published to every reader as soon as it is written, with a few stores and no system call.
+ *
+ * The writer never waits for readers. A reader that falls more than the capacity behind loses the oldest
+ * changes and is told how many. There must only be one writer, and it must write from one thread at a time.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceRingWriter implements PriceOutput {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	public static final int MAX_CAPACITY = 1 << 24; //so the ring fits in one mapping
+
+	private RandomAccessFile file;
+	private MappedByteBuffer ring;
+	private int mask; //capacity - 1
+	private long sequence; //sequence number of the next record
+
+	//Constructors
+    /**
+     * Creates the ring file. A file already there is deleted first rather than truncated, so readers that
+     * still map it keep reading the old ring to its end instead of faulting.
+     *
+     * @param file_name The name of the file, best on a memory backed file system such as /dev/shm
+     * @param capacity The number of records kept, a power of 2 up to MAX_CAPACITY
+     *
+     * @return PriceRingWriter instance with no records
+     *
+     * @throws IllegalArgumentException if capacity is not a power of 2 up to MAX_CAPACITY
+     */
+	public PriceRingWriter(String file_name, int capacity) throws IOException {
+		if (capacity < 1 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1){
+			throw new IllegalArgumentException("Error: Price ring size must be a power of 2 up to "+MAX_CAPACITY+": "
+				+capacity);
+		}
+		File ring_file = new File(file_name);
+		if (ring_file.exists() && !ring_file.delete()){
+			throw new IOException("Error: Cannot replace price ring: "+file_name);
+		}
+		this.file = new RandomAccessFile(ring_file, "rw");
+		long length = PriceRingFormat.fileLength(capacity);
+		this.file.setLength(length);
+		this.ring = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		this.ring.order(ByteOrder.LITTLE_ENDIAN);
+		this.mask = capacity - 1;
+		this.sequence = 0;
+		for (int slot = 0; slot < capacity; slot++){
+			this.ring.putLong(offset(slot) + PriceRingFormat.SEQUENCE, PriceRingFormat.IN_PROGRESS);
+		}
+		this.ring.putLong(PriceRingFormat.HEADER_CURSOR, 0);
+		this.ring.putInt(PriceRingFormat.HEADER_CLOSED, 0);
+		this.ring.putShort(PriceRingFormat.HEADER_VERSION, PriceRingFormat.VERSION);
+		this.ring.putShort(PriceRingFormat.HEADER_RECORD_SIZE, (short) PriceRingFormat.RECORD_SIZE);
+		this.ring.putInt(PriceRingFormat.HEADER_CAPACITY, capacity);
+		PriceRingFormat.releaseFence();
+		this.ring.putInt(PriceRingFormat.HEADER_MAGIC, PriceRingFormat.MAGIC);
+	}
+
+	//Getters
+    /**
+     * Returns the number of records written
+     *
+     * @return sequence The sequence number of the next record
+     */
+	public long getSequence(){
+		return this.sequence;
+	}
+
+	/**
+	 * This method writes a price change into the next slot and publishes it.
+	 *
+	 * @param timestamp The timestamp of the message that changed the price
+	 * @param side OrderMessage.BUY for the cost to buy, OrderMessage.SELL for the amount from selling
+	 * @param target_size The number of shares the cost is for
+	 * @param cost The new cost in ticks, or Prices.NOT_AVAILABLE
+	 * @param symbol The bytes of the symbol, only read if symbol_length > 0
+	 * @param symbol_length The number of bytes in the symbol, 0 for the unnamed default instrument
+	 */
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length){
+		MappedByteBuffer ring = this.ring;
+		int record = offset(this.sequence);
+		ring.putLong(record + PriceRingFormat.SEQUENCE, PriceRingFormat.IN_PROGRESS);
+		PriceRingFormat.releaseFence();
+		ring.putLong(record + PriceRingFormat.TIMESTAMP, timestamp);
+		ring.putLong(record + PriceRingFormat.COST, cost);
+		ring.putInt(record + PriceRingFormat.TARGET_SIZE, target_size);
+		ring.put(record + PriceRingFormat.SIDE, (byte) side);
+		ring.put(record + PriceRingFormat.SYMBOL_LENGTH, (byte) symbol_length);
+		for (int i = 0; i < symbol_length; i++){
+			ring.put(record + PriceRingFormat.SYMBOL + i, symbol[i]);
+		}
+		PriceRingFormat.releaseFence();
+		ring.putLong(record + PriceRingFormat.SEQUENCE, this.sequence);
+		PriceRingFormat.releaseFence();
+		ring.putLong(PriceRingFormat.HEADER_CURSOR, ++this.sequence);
+	}
+
+	/**
+	 * This method does nothing, as every record is published when it is written.
+	 */
+	@Override
+	public void flush(){
+	}
+
+	/**
+	 * This method marks the ring closed, so readers know no more records will come, and closes the file.
+	 */
+	public void close() throws IOException {
+		PriceRingFormat.releaseFence();
+		this.ring.putInt(PriceRingFormat.HEADER_CLOSED, 1);
+		this.file.close();
+	}
+
+	private int offset(long sequence){
+		return PriceRingFormat.HEADER_SIZE + (int) (sequence & this.mask) * PriceRingFormat.RECORD_SIZE;
+	}
+}
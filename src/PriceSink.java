@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+/**
+ * This interface receives the price changes of an OrderBook. PriceWriter formats them as text lines, and
+ * the pipelined and sharded pricers use it to hand the changes to another thread.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public interface PriceSink {
+
+	/**
+	 * This method receives a change in the min/max cost to buy/sell target_size shares.
+	 *
+	 * @param timestamp The timestamp of the message that changed the price
+	 * @param side OrderMessage.BUY for the cost to buy, OrderMessage.SELL for the amount from selling
+	 * @param target_size The number of shares the cost is for
+	 * @param cost The new cost in ticks, or Prices.NOT_AVAILABLE
+	 * @param symbol The bytes of the symbol, only read if symbol_length > 0. They are only valid during the call.
+	 * @param symbol_length The number of bytes in the symbol, 0 for the unnamed default instrument
+	 */
+	void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length) throws IOException;
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes price changes to an output stream. Each line is formatted straight into a reusable
+ * byte buffer with integer arithmetic, so writing a price does not allocate, lock or go through a
+ * Formatter. The buffer is written out in large blocks when it fills up.
+ *
+ * When running live, a latency bound can be set. Buffered lines are then flushed once the oldest of them
+ * is older than the bound, and whenever the input goes idle (see MessageParser.setIdleFlushable). The bound
+ * is checked as each line is written and whenever flushIfDue() is called, which the reader loop does once
+ * per message, so lines are not held back while input keeps arriving without changing any prices.
+ *
+ * Output lines look like "28800538 B 44.26" or "28800744 B NA". Prices of a named instrument are followed
+ * by its symbol, as in "28800538 B 44.26 AAPL". When several target sizes are priced into one stream, each
+ * line can be tagged with its target size in front, as in "200 28800538 B 44.26".
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PriceWriter implements PriceOutput {
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	private static final int MAX_LINE_LENGTH = 64; //longest line writePrice can produce
+	private static final byte[] NA = {'N', 'A'};
+
+	private OutputStream out;
+	private byte[] buffer;
+	private int length; //number of bytes waiting in the buffer
+	private long max_latency_nanos; //0 if lines are only flushed when the buffer fills
+	private long oldest_line_nanos; //when the oldest line in the buffer was written
+	private byte[] digits; //scratch space for formatting numbers
+	private boolean tag_targets; //true to start each price line with its target size
+
+	//Constructors
+    /**
+     * Creates a writer that only flushes when the buffer fills or flush() is called.
+     *
+     * @param out The stream to write lines to
+     *
+     * @return PriceWriter instance with an empty buffer
+     */
+	public PriceWriter(OutputStream out){
+		this(out, DEFAULT_BUFFER_SIZE, 0);
+	}
+
+    /**
+     * Creates a writer with a latency bound.
+     *
+     * @param out The stream to write lines to
+     * @param buffer_size The number of bytes to buffer before writing a block
+     * @param max_latency_nanos The longest a line may wait in the buffer, 0 to wait until the buffer fills
+     *
+     * @return PriceWriter instance with an empty buffer
+     */
+	public PriceWriter(OutputStream out, int buffer_size, long max_latency_nanos){
+		this.out = out;
+		this.buffer = new byte[Math.max(buffer_size, MAX_LINE_LENGTH)];
+		this.length = 0;
+		this.max_latency_nanos = max_latency_nanos;
+		this.digits = new byte[20];
+	}
+
+	/**
+	 * This method writes a price change line.
+	 *
+	 * @param timestamp The timestamp of the message that changed the price
+	 * @param side OrderMessage.BUY for the cost to buy, OrderMessage.SELL for the amount from selling
+	 * @param cost The new cost in ticks, or Prices.NOT_AVAILABLE
+	 */
+	public void writePrice(long timestamp, char side, long cost) throws IOException {
+		writePrice(timestamp, side, 0, cost, null, 0);
+	}
+
+    /**
+     * Sets whether each price line starts with the target size it is for, so the prices of several
+     * targets can share one stream.
+     *
+     * @param tag_targets true to tag the lines with their target size
+     */
+	public void setTagTargets(boolean tag_targets){
+		this.tag_targets = tag_targets;
+	}
+
+	/**
+	 * This method writes a price change line for a named instrument and a target size.
+	 *
+	 * @param timestamp The timestamp of the message that changed the price
+	 * @param side OrderMessage.BUY for the cost to buy, OrderMessage.SELL for the amount from selling
+	 * @param target_size The number of shares the cost is for, only written if the lines are tagged
+	 * @param cost The new cost in ticks, or Prices.NOT_AVAILABLE
+	 * @param symbol The bytes of the symbol, only read if symbol_length > 0
+	 * @param symbol_length The number of bytes in the symbol, 0 to leave it out
+	 */
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length)
+			throws IOException {
+		int max_length = MAX_LINE_LENGTH + symbol_length;
+		if (this.length + max_length > this.buffer.length){
+			writeBuffer();
+			if (max_length > this.buffer.length){
+				this.buffer = new byte[max_length];
+			}
+		}
+		boolean was_empty = (this.length == 0);
+
+		if (this.tag_targets){
+			writeNumber(target_size);
+			this.buffer[this.length++] = ' ';
+		}
+		writeNumber(timestamp);
+		this.buffer[this.length++] = ' ';
+		this.buffer[this.length++] = (byte) side;
+		this.buffer[this.length++] = ' ';
+		if (cost == Prices.NOT_AVAILABLE){
+			this.buffer[this.length++] = NA[0];
+			this.buffer[this.length++] = NA[1];
+		} else {
+			writeNumber(cost / Prices.TICKS_PER_UNIT);
+			long fraction = cost % Prices.TICKS_PER_UNIT;
+			this.buffer[this.length++] = '.';
+			this.buffer[this.length++] = (byte) ('0' + fraction / 10);
+			this.buffer[this.length++] = (byte) ('0' + fraction % 10);
+		}
+		if (symbol_length > 0){
+			this.buffer[this.length++] = ' ';
+			System.arraycopy(symbol, 0, this.buffer, this.length, symbol_length);
+			this.length += symbol_length;
+		}
+		this.buffer[this.length++] = '\n';
+
+		lineWritten(was_empty);
+	}
+
+	/**
+	 * This method writes a line of text, such as a diagnostic. It allocates and is meant to be used off
+	 * the hot path.
+	 *
+	 * @param text The line to write, without the line separator
+	 */
+	public void writeLine(String text) throws IOException {
+		byte[] bytes = (text + "\n").getBytes();
+		boolean was_empty = (this.length == 0);
+		if (this.length + bytes.length > this.buffer.length){
+			writeBuffer();
+			if (bytes.length > this.buffer.length){
+				this.out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+		this.length += bytes.length;
+		lineWritten(was_empty);
+	}
+
+	/**
+	 * This method writes any buffered lines to the output stream and flushes it.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBuffer();
+		this.out.flush();
+	}
+
+	/**
+	 * This method flushes the buffered lines if the oldest of them has waited as long as the latency bound.
+	 * It does nothing if no bound is set.
+	 */
+	public void flushIfDue() throws IOException {
+		if (this.max_latency_nanos > 0 && this.length > 0
+				&& System.nanoTime() - this.oldest_line_nanos >= this.max_latency_nanos){
+			flush();
+		}
+	}
+
+	private void lineWritten(boolean was_empty) throws IOException {
+		if (this.max_latency_nanos <= 0){
+			return;
+		}
+		long now = System.nanoTime();
+		if (was_empty){
+			this.oldest_line_nanos = now;
+		} else if (now - this.oldest_line_nanos >= this.max_latency_nanos){
+			flush();
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		if (this.length > 0){
+			this.out.write(this.buffer, 0, this.length);
+			this.length = 0;
+		}
+	}
+
+	private void writeNumber(long value){
+		//digits are produced from the right, then copied in order
+		int count = 0;
+		do {
+			this.digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		while (count > 0){
+			this.buffer[this.length++] = this.digits[--count];
+		}
+	}
+}
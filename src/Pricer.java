@@ -1,190 +1,355 @@
 /**
- * This class implements a pricer for a single instrument. The pricer
- * maintains a logbook along with the min/max cost to buy/sell 
- * target_shares of a given instrument. This is the main entry point for 
+ * This class implements a pricer for one or more instruments. For each instrument
+ * the pricer maintains a logbook along with the min/max cost to buy/sell 
+ * target_shares of the instrument. Messages name their instrument with an
+ * optional trailing symbol (see MessageParser). This is the main entry point for 
  * pricer application. 
  *
  * @author Michael Hinds
  * @version 1.0
  * @since 8-31-16
  */
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.HashMap;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class Pricer {
 
 	//Invalid input message
 	private static final String improper_input_warning_1 = "Warning invalid input: \"";
-	private static final String improper_input_warning_2 = "\"\nValid Inputs: 	\n\t timestamp<int> A<char> order-id<string> side<'b'|'s'> price<double> size<int>"+
-										"\n\t timestamp<int> R<char> order-id<string> size<int>";
-	//Regular exppressions to parse input lines 
-	private static final Pattern add_order_pattern = Pattern.compile(
-		"\\s*(\\d+)\\s+A\\s+(\\S+)\\s+([BS])\\s+([0-9.]+)\\s+(\\d+)\\s*");
-	private static final Pattern remove_order_pattern = Pattern.compile(
-		"\\s*(\\d+)\\s+R\\s+(\\S+)\\s+(\\d+)\\s*");
-	private static Matcher add_order_matcher;
-	private static Matcher remove_order_matcher;
-
-	//Objects to handle buying and selling new orders
-	private static Buyer buyer;
-	private static Seller seller;
-
-	//HashMap to associate order_id's with price, shares, and side
-	private static HashMap<String,Order> id_to_order = new HashMap<String,Order>();
+	private static final String improper_input_warning_2 = "\"\nValid Inputs: 	\n\t timestamp<int> A<char> order-id<string> side<'b'|'s'> price<double> size<int> [symbol<string>]"+
+										"\n\t timestamp<int> R<char> order-id<string> size<int> [symbol<string>]";
+	//Parser and reusable message for lines passed to parseNewOrder
+	private static final MessageParser line_parser = new MessageParser();
+	private static final OrderMessage line_message = new OrderMessage();
+
+	//Buffered writer for STDOUT, used for warnings and by default for price changes
+	private static PriceWriter writer;
+
+	//Where price changes go, either writer or a file per target size
+	private static PriceOutput prices;
+
+	//The file per target size when running with --output-prefix, null otherwise
+	private static TargetPriceWriters target_writers;
+
+	//Book of each instrument, with the Buyer, Seller and order index of the instrument
+	private static OrderBooks books;
+
+	//Worker threads that own the books when running with --threads, null otherwise
+	private static ShardedPricer sharded;
+
+	//Book and writer threads when running with --pipeline, null otherwise
+	private static PipelinedPricer pipeline;
+
+	//Buyer, seller and merger threads when running with --split-sides, null otherwise
+	private static SplitSidePricer split;
+
+	//Journal and snapshots of the books when running with --journal-dir, null otherwise
+	private static Journal journal;
+
+	//Output that holds back the price changes of each timestamp when running with --coalesce, null otherwise
+	private static CoalescingPriceOutput coalescer;
+
+	//Instrumentation when running with --stats, null otherwise
+	private static PricerStats stats;
+
+	//Ring the prices are written to when running with --price-ring, null otherwise
+	private static PriceRingWriter ring;
+
+	//Books published for the query server when running with --query, null otherwise
+	private static PublishedBooks published;
+
+	//prices, timed by stats
+	private static PriceSink timed_prices;
+
+	//Time it took to parse the message being processed, without reading or waiting for input, with --stats
+	private static long parse_nanos;
 
     /**
      * This method parses a line of input text representing
-     * a command to add or remove an offer/bid. It uses regular 
-     * expressions to parse the line and then calls the appropriate
+     * a command to add or remove an offer/bid. It uses a 
+     * MessageParser to parse the line and then calls the appropriate
      * function to add or remove the order.
      *
      * @param line This is a line from the log book
      */
 	public static void parseNewOrder(String line) throws IOException, Exception{
-		String order_id, timestamp;
-		String side;
-		int target_size, size;
-		double price;
-
-		remove_order_matcher = remove_order_pattern.matcher(line);
-		add_order_matcher = add_order_pattern.matcher(line);
-
-        if(add_order_matcher.matches()){//add order to log book
-			//separate fields
-			timestamp = add_order_matcher.group(1);
-			order_id = add_order_matcher.group(2);
-			side = add_order_matcher.group(3);
-			price = Double.parseDouble(add_order_matcher.group(4));
-			size = Integer.parseInt(add_order_matcher.group(5));
-
-			addOrder(timestamp,order_id,side,price,size);
-
-        } else if(remove_order_matcher.matches()){
-			//separate fields
-			timestamp = remove_order_matcher.group(1);
-			order_id = remove_order_matcher.group(2);
-			size = Integer.parseInt(remove_order_matcher.group(3));
-
-			removeOrder(timestamp,order_id,size);
-
-		}  else {
-			throw new IOException();
-		}
+		byte[] bytes = line.getBytes();
+		line_parser.parse(bytes, 0, bytes.length, line_message);
+		processMessage(line_message);
 	}
 
     /**
-     * This method adds a new order to the appropriate buer or seller 
-     * log book. If there is an update to the min/max buy/sell cost 
-     * it will be printed to System.out.
+     * This method adds or removes the order described by a parsed message
+     * in the book of its instrument.
      *
-     * @oaram timestamp The timestamp of the order
-     * @param order_id The unique identifier of the order
-     * @param side The side of the order (buy | sell)
-     * @param price The price of the order
-     * @param size The number of shares in the order
+     * @param message The parsed add or reduce message
      */
-	public static void addOrder(String timestamp, String order_id, String side, double price, int size) {
-		Double min_buy_price, max_sell_price;
-		//add the order to the log
-		id_to_order.put(order_id, new Order(side,price,size));
-
-		if("S".equals(side)){//offer
-
-			min_buy_price = buyer.addNewOffer(price,size);
-
-			//check to see if there is a new minimum buy price
-			if(min_buy_price == null){}//do nothing, no change in min buy price
-			else if(min_buy_price == Double.POSITIVE_INFINITY){//there are no longer enough shares to complete the buy
-				System.out.println(timestamp +" B NA");
+	public static void processMessage(OrderMessage message) throws Exception{
+		if (coalescer != null){
+			coalescer.advance(message.getTimestamp());
+		}
+		if (stats == null && published == null){
+			books.processMessage(message, prices);
+		} else {
+			OrderBook book = books.getBook(message.getSymbolBytes(), message.getSymbolLength());
+			if (stats == null){
+				book.processMessage(message, prices);
 			} else {
-				System.out.println(timestamp +" B "+ String.format("%.2f", min_buy_price));
+				stats.beforeMessage(book);
+				long start = System.nanoTime();
+				book.processMessage(message, timed_prices);
+				stats.afterMessage(message, book, parse_nanos, start, System.nanoTime());
+				parse_nanos = 0;
 			}
-		} else {//bid
-			max_sell_price = seller.addNewBid(price,size);
-
-			//check to see if there is a new maximum sale price
-			if(max_sell_price == null){}//do nothing, no change in min buy price
-			else if(max_sell_price == Double.NEGATIVE_INFINITY){//there are no longer enough shares to complete the sale
-				System.out.println(timestamp +" S NA");
-			} else {
-				System.out.println(timestamp +" S "+ String.format("%.2f", max_sell_price));
+			if (published != null){
+				published.publish(book, message.getTimestamp());
 			}
 		}
+		if (journal != null){
+			journal.append(message);
+		}
 	}
 
     /**
-     * This method removes an order from the log. It identifies whether the order 
-     * is on the buy or sell side and calls the appropriate method in the buyer or 
-     * seller objects. If there is an update to the min/max buy/sell cost, then it
-     * is printed to System.out.
+     * This is the main method for the pricer program. It takes command line arguments for
+     * the target numbers of shares to buy/sell (see PricerOptions). Then, it iterates over lines
+     * of input on STDIN until it reaches a null value. Price changes are buffered and written
+     * to STDOUT in blocks. With --threads the books are applied on worker threads, and the
+     * output of each instrument stays in input order. With --pipeline reading, the books and
+     * writing each get a thread, and with --split-sides offers and bids are applied on
+     * separate threads. Both leave the output unchanged. With --binary-input the messages
+     * are read from a memory mapped binary feed instead of STDIN, and with --listen from live
+     * feeds over TCP. With --journal-dir the
+     * books are recovered from the journal before the first message and journaled after it.
+     * With --coalesce at most one price per side is written for each timestamp, with
+     * --stats every message is timed and counted (see PricerStats), and with --query the books
+     * are published to a QueryServer after every message. With --price-ring the prices are written
+     * as binary records to a memory mapped ring instead (see PriceRingWriter).
      *
-     * @oaram timestamp The timestamp of the order
-     * @param order_id The unique identifier of the order
-     * @param size The number of shares in the order
+     * @param target_shares The target number of shares to buy and sell 
      */
-	public static void removeOrder (String timestamp, String order_id, int size) throws Exception {
-		Double min_buy_price, max_sell_price;
-		Order order_to_remove = id_to_order.get(order_id);
-		String side = order_to_remove.getSide();
-		double price = order_to_remove.getPrice();
-
-		if("S".equals(side)){//remove an offer
-			min_buy_price = buyer.removeOffer(price,size);
-
-			//check to see if there is a new minimum buy price
-			if(min_buy_price == null){}//do nothing, no change in min buy price
-			else if(min_buy_price == Double.POSITIVE_INFINITY){//there are no longer enough shares to complete the buy
-				System.out.println(timestamp +" B NA");
+    public static void main(String[] args) {
+
+		MessageReader reader = null;
+		FileOutputStream stdout = new FileOutputStream(FileDescriptor.out);
+		writer = new PriceWriter(stdout);
+		prices = writer;
+
+		try{
+			PricerOptions options = new PricerOptions(args);
+			if (options.getFlushLatencyNanos() > 0){
+				writer = new PriceWriter(stdout, PriceWriter.DEFAULT_BUFFER_SIZE, options.getFlushLatencyNanos());
+				prices = writer;
+			}
+			writer.setTagTargets(options.isTagTargets());
+			if (options.getOutputPrefix() != null){
+				target_writers = TargetPriceWriters.toFiles(options.getOutputPrefix(), options.getAllTargetSizes(),
+					options.getFlushLatencyNanos());
+				prices = target_writers;
+			}
+			if (options.getPriceRing() != null){
+				try{
+					ring = new PriceRingWriter(options.getPriceRing(), options.getPriceRingSize());
+				} catch (IOException e){
+					//not an input error
+					throw new IllegalArgumentException("Error: Cannot create price ring "+options.getPriceRing()+": "
+						+e.getMessage());
+				}
+				prices = ring;
+			}
+			if (options.getThreads() > 1){
+				sharded = new ShardedPricer(options.getThreads(), options.getBuyTargetSizes(),
+					options.getSellTargetSizes(), stdout, options.getFlushLatencyNanos(), options.isTagTargets(), options.isOffHeap());
+			} else if (options.isSplitSides()){
+				split = new SplitSidePricer(options.getBuyTargetSizes(), options.getSellTargetSizes(), prices,
+					SplitSidePricer.DEFAULT_RING_SIZE, options.getReaderWait(), options.getFlushLatencyNanos() > 0,
+					options.isOffHeap());
 			} else {
-				System.out.println(timestamp +" B "+ String.format("%.2f", min_buy_price));
+				books = new OrderBooks(options.getBuyTargetSizes(), options.getSellTargetSizes(), options.isOffHeap());
+			}
+			if (options.isCoalesce()){
+				coalescer = new CoalescingPriceOutput(prices, options.getAllTargetSizes());
+				prices = coalescer;
+			}
+			if (options.getJournalDir() != null){
+				journal = new Journal(new File(options.getJournalDir()), options.getSnapshotInterval(), books,
+					new OrderBooks(options.getBuyTargetSizes(), options.getSellTargetSizes(), options.isOffHeap()));
+				if (journal.getRecoveredSequence() > 0){
+					System.err.println("Recovered "+journal.getRecoveredSequence()+" messages from "
+						+options.getJournalDir());
+				}
+				if (coalescer != null){
+					//the recovered costs were written before the restart
+					coalescer.seed(books);
+				}
+			}
+			if (options.isStats()){
+				stats = new PricerStats(books, options.getStatsIntervalNanos(),
+					options.isStatsLine() ? System.err : null);
+				stats.register();
+				timed_prices = stats.timeOutput(prices);
+			}
+			if (options.getQueryAddress() != null){
+				published = new PublishedBooks(options.getQueryDepth(), options.getBuyTargetSizes(),
+					options.getSellTargetSizes());
+				QueryServer query = new QueryServer(options.getQueryAddress(), published,
+					QueryServer.DEFAULT_PUSH_INTERVAL_NANOS);
+				System.err.println("Serving queries on port "+query.getPort());
+			}
+			if (options.isPipeline()){
+				pipeline = new PipelinedPricer(books, prices, PipelinedPricer.DEFAULT_RING_SIZE, options.getReaderWait(),
+					options.getBookWait(), options.getWriterWait(), options.getFlushLatencyNanos() > 0);
 			}
-		} else {//remove a bid
-			max_sell_price = seller.removeBid(price,size);
 
-			//check to see if there is a new maximum sale price
-			if(max_sell_price == null){}//do nothing, no change in max sell price
-			else if(max_sell_price == Double.NEGATIVE_INFINITY){//there are no longer enough shares to complete the sale
-				System.out.println(timestamp +" S NA");
+            //Process command line input until EOF
+			if (options.getBinaryInput() != null){
+				reader = new BinaryFeedReader(options.getBinaryInput());
+			} else if (options.getListenAddress() != null){
+				TcpFeedReader feeds = new TcpFeedReader(options.getListenAddress(), options.getFeeds());
+				System.err.println("Listening for "+options.getFeeds()+" feed(s) on port "+feeds.getPort());
+				if (options.getFlushLatencyNanos() > 0 && pipeline == null && split == null){
+					feeds.setIdleFlushable(sharded == null ? prices : sharded);
+				}
+				reader = feeds;
+			} else {
+				MessageParser parser = new MessageParser(System.in);
+				if (options.getFlushLatencyNanos() > 0 && pipeline == null && split == null){
+					//the pipeline's writer thread and the merger flush by themselves when they run out of output
+					parser.setIdleFlushable(sharded == null ? prices : sharded);
+				}
+				reader = parser;
+			}
+			OrderMessage message = new OrderMessage();
+			if (sharded != null){
+				while (reader.next(message) && sharded.dispatch(message)){
+				}
+			} else if (split != null){
+				while (reader.next(message) && split.dispatch(message)){
+				}
+			} else if (pipeline != null){
+				//parse straight into the slots of the pipeline
+				message = pipeline.claim();
+				while (reader.next(message) && pipeline.publish()){
+					message = pipeline.claim();
+				}
+			} else if (stats != null){
+				reader.setTimed(true);
+				while (reader.next(message)){
+					parse_nanos = reader.getParseNanos();
+					processMessage(message);
+					if (options.getFlushLatencyNanos() > 0){
+						flushIfDue();
+					}
+				}
+			} else if (options.getFlushLatencyNanos() > 0){
+				while (reader.next(message)){
+					processMessage(message);
+					flushIfDue();
+				}
 			} else {
-				System.out.println(timestamp +" S "+ String.format("%.2f", max_sell_price));
+				while (reader.next(message)){
+					processMessage(message);
+				}
 			}
+			finishWorkers();
+
+		} catch (IndexOutOfBoundsException|IOException|NumberFormatException e){
+			String input_line = (reader == null) ? "" : reader.getLine();
+			finishWorkers();
+			printLine(getInvalidInputWarning(input_line));
+		}
+        catch (Exception e) {
+            finishWorkers();
+            printLine(e.getMessage());
+        }
+		try{
+			prices.flush();
+			writer.flush();
+			if (ring != null){
+				ring.close();
+			}
+		} catch (IOException e){
+			System.err.println(e.getMessage());
 		}
+    }
 
+    /**
+     * This method flushes the price lines that have waited as long as the latency bound, so they are not
+     * held back while messages keep arriving without changing a price.
+     */
+	private static void flushIfDue() throws IOException {
+		if (target_writers != null){
+			target_writers.flushIfDue();
+		} else {
+			writer.flushIfDue();
+		}
 	}
 
     /**
-     * This is the main method for the pricer program. It takes a command line argument for
-     * the target number of shares to buy/sell. Then, it iterates over lines of input on STDIN
-     * until it reaches a null value.
+     * Returns the warning the pricer writes when it stops at a line that is not a valid message.
      *
-     * @param target_shares The target number of shares to buy and sell 
+     * @param input_line The invalid line
+     *
+     * @return warning The warning, over several lines
      */
-    public static void main(String[] args) {
-
-		String input_line = "";
-
+	public static String getInvalidInputWarning(String input_line){
+		return improper_input_warning_1+input_line+improper_input_warning_2;
+	}
 
+    /**
+     * This method lets the worker, pipeline or side threads, if any, apply the messages
+     * already read and write their output, and the journal, if any, write the messages
+     * applied, then prints the first error they ran into.
+     */
+	private static void finishWorkers(){
+		Exception error = null;
 		try{
-			buyer = new Buyer(Integer.parseInt(args[0]));
-			seller = new Seller(Integer.parseInt(args[0]));
-
-            //Process command line input until EOF
-			Scanner s = new Scanner(System.in);
-			while (s.hasNext()){
-                input_line = s.nextLine();
-
-                //Parse Input
-				parseNewOrder(input_line);
-            }
+			if (sharded != null){
+				sharded.finish();
+				error = sharded.getError();
+			}
+			if (pipeline != null){
+				pipeline.finish();
+				error = pipeline.getError();
+			}
+			if (split != null){
+				split.finish();
+				error = split.getError();
+			}
+			if (journal != null){
+				journal.finish();
+				error = (error == null) ? journal.getError() : error;
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		sharded = null;
+		pipeline = null;
+		split = null;
+		journal = null;
+		if (stats != null){
+			stats.publish();
+		}
+		if (coalescer != null){
+			//the prices held back come before the error
+			try{
+				coalescer.flush();
+			} catch (IOException e){
+				System.err.println(e.getMessage());
+			}
+		}
+		if (error != null){
+			printLine(error.getMessage());
+		}
+	}
 
-		} catch (IndexOutOfBoundsException|IOException|NumberFormatException e){
-			System.out.println(improper_input_warning_1+input_line+improper_input_warning_2);
+	private static void printLine(String line){
+		try{
+			writer.writeLine(String.valueOf(line));
+		} catch (IOException e){
+			System.err.println(e.getMessage());
 		}
-        catch (Exception e) {
-            System.out.println(e.getMessage());
-        }
-    }
+	}
 }
@@ -0,0 +1,380 @@
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * This class parses the command line arguments of the pricer application. The only required argument is
+ * the target number of shares. Several target sizes can be given to price them all in one pass over the
+ * same books, in which case each output line starts with its target size (see PriceWriter) unless the
+ * targets are written to files of their own. Options are given as --name=value and may appear before or
+ * after the target sizes.
+ *
+ *		java Pricer [options] target_size [target_size...]
+ *
+ * Options:
+ *		--flush-latency-us=N	flush output at most N microseconds after it is written and whenever the input
+ *								goes idle. By default output is only flushed in large blocks and at the end.
+ *		--threads=N				price the instruments on N worker threads, each owning the books of a share of
+ *								the symbols. By default everything runs on the main thread.
+ *		--pipeline				read, apply the books and write the output on three pipelined threads (see
+ *								PipelinedPricer). The output is the same as without it.
+ *		--split-sides			apply offers and bids on two separate threads and merge their output back into
+ *								input order (see SplitSidePricer). The output is the same as without it.
+ *		--wait=S				how the pipelined threads wait for each other: spin, yield or park, or three
+ *								of them separated by commas for the reader, book and writer. Default park.
+ *								With --split-sides only the first is used.
+ *		--buy-target=N[,N...]	the target numbers of shares to buy, instead of the target sizes
+ *		--sell-target=N[,N...]	the target numbers of shares to sell, instead of the target sizes
+ *		--output-prefix=P		write the prices of each target size to a file named P.target_size instead
+ *								of STDOUT. Warnings still go to STDOUT. Not available with --threads.
+ *		--binary-input=F		read the messages from a binary feed file written by BinaryFeedWriter, memory
+ *								mapped, instead of text from STDIN
+ *		--listen=[H:]P			read the messages from live feeds published over TCP (see TcpFeedReader), listening
+ *								on port P of host H, or of every interface, instead of reading STDIN
+ *		--feeds=N				accept N feed connections with --listen. Default 1. The input ends once all of
+ *								them have closed.
+ *		--journal-dir=D			journal every message applied to the books in directory D and snapshot the books
+ *								there periodically (see Journal). On startup the books are first recovered from
+ *								the directory. Not available with --threads, --pipeline or --split-sides.
+ *		--snapshot-every=N		take a snapshot every N messages with --journal-dir. Default 1000000.
+ *		--coalesce				write at most one price per instrument, side and target size for each timestamp:
+ *								the price it settled on (see CoalescingPriceOutput). Not available with
+ *								--threads, --pipeline or --split-sides.
+ *		--stats					time and count every message and publish the stats through the JMX MBean
+ *								OrderBook:type=PricerStats (see PricerStats). Not available with --threads,
+ *								--pipeline or --split-sides.
+ *		--stats-interval-ms=N	publish the stats every N milliseconds instead of every second. Implies --stats.
+ *		--stats-line			also print the stats to STDERR every interval. Implies --stats.
+ *		--query=[H:]P			serve the costs of any number of shares to clients connecting to port P of host H, or
+ *								of every interface (see QueryServer). Not available with --threads, --pipeline
+ *								or --split-sides.
+ *		--query-depth=N			publish the best N levels of each side for the query server to walk. Default 10.
+ *		--off-heap				keep the price levels of every book in direct memory instead of on the heap
+ *								(see OffHeapLevelStore)
+ *		--price-ring=F			write the prices as binary records to the memory mapped ring file F instead of
+ *								STDOUT, for local processes to read with PriceRingReader. Warnings still go
+ *								to STDOUT. Not available with --threads or --output-prefix.
+ *		--price-ring-size=N		keep the latest N prices in the ring, a power of 2. Default 65536.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PricerOptions {
+	public static final String USAGE = "Usage: java Pricer [--flush-latency-us=N]"
+		+" [--threads=N | (--pipeline | --split-sides) [--wait=S]]"
+		+" [--buy-target=N[,N...]] [--sell-target=N[,N...]] [--output-prefix=P]"
+		+" [--binary-input=F | --listen=[H:]P [--feeds=N]] [--coalesce]"
+		+" [--journal-dir=D [--snapshot-every=N]] [--stats] [--stats-interval-ms=N] [--stats-line]"
+		+" [--query=[H:]P [--query-depth=N]] [--off-heap] [--price-ring=F [--price-ring-size=N]]"
+		+" target_size [target_size...]";
+
+	private int[] target_sizes;
+	private int[] buy_target_sizes; //null to use target_sizes
+	private int[] sell_target_sizes; //null to use target_sizes
+	private String output_prefix; //null to write prices to STDOUT
+	private String binary_input; //null to read text from STDIN
+	private InetSocketAddress listen_address; //null to not read from TCP feeds
+	private int feeds;
+	private String journal_dir; //null to not journal
+	private long snapshot_interval;
+	private boolean coalesce;
+	private boolean stats;
+	private boolean stats_line;
+	private long stats_interval_nanos;
+	private InetSocketAddress query_address; //null to not serve queries
+	private int query_depth;
+	private boolean off_heap;
+	private String price_ring; //null to not write a price ring
+	private int price_ring_size;
+	private long flush_latency_nanos;
+	private int threads;
+	private boolean pipeline;
+	private boolean split_sides;
+	private WaitStrategy[] wait_strategies; //reader, book and writer
+
+	//Constructors
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args The command line arguments
+     *
+     * @return PricerOptions instance with the values from args
+     *
+     * @throws NumberFormatException if a number is not valid
+     * @throws IllegalArgumentException if an option is unknown or the target size is missing
+     */
+	public PricerOptions(String[] args){
+		int[] targets = new int[args.length];
+		int target_count = 0;
+		this.flush_latency_nanos = 0;
+		this.threads = 1;
+		this.pipeline = false;
+		this.split_sides = false;
+		this.buy_target_sizes = null;
+		this.sell_target_sizes = null;
+		this.output_prefix = null;
+		this.binary_input = null;
+		this.listen_address = null;
+		this.feeds = 1;
+		this.journal_dir = null;
+		this.snapshot_interval = Journal.DEFAULT_SNAPSHOT_INTERVAL;
+		this.coalesce = false;
+		this.stats = false;
+		this.stats_line = false;
+		this.stats_interval_nanos = PricerStats.DEFAULT_INTERVAL_NANOS;
+		this.query_address = null;
+		this.query_depth = PublishedBooks.DEFAULT_DEPTH;
+		this.off_heap = false;
+		this.price_ring = null;
+		this.price_ring_size = PriceRingWriter.DEFAULT_CAPACITY;
+		this.wait_strategies = new WaitStrategy[]{WaitStrategy.PARK, WaitStrategy.PARK, WaitStrategy.PARK};
+
+		for (String arg : args){
+			if (arg.startsWith("--flush-latency-us=")){
+				this.flush_latency_nanos = Long.parseLong(value(arg)) * 1000;
+			} else if (arg.startsWith("--threads=")){
+				this.threads = Integer.parseInt(value(arg));
+				if (this.threads < 1){
+					throw new IllegalArgumentException("Error: --threads must be at least 1\n"+USAGE);
+				}
+			} else if (arg.equals("--pipeline")){
+				this.pipeline = true;
+			} else if (arg.equals("--split-sides")){
+				this.split_sides = true;
+			} else if (arg.startsWith("--buy-target=")){
+				this.buy_target_sizes = parseTargets(value(arg));
+			} else if (arg.startsWith("--sell-target=")){
+				this.sell_target_sizes = parseTargets(value(arg));
+			} else if (arg.startsWith("--output-prefix=")){
+				this.output_prefix = value(arg);
+			} else if (arg.startsWith("--binary-input=")){
+				this.binary_input = value(arg);
+			} else if (arg.startsWith("--listen=")){
+				this.listen_address = TcpFeedPublisher.parseAddress(value(arg));
+			} else if (arg.startsWith("--feeds=")){
+				this.feeds = Integer.parseInt(value(arg));
+				if (this.feeds < 1){
+					throw new IllegalArgumentException("Error: --feeds must be at least 1\n"+USAGE);
+				}
+			} else if (arg.startsWith("--journal-dir=")){
+				this.journal_dir = value(arg);
+			} else if (arg.startsWith("--snapshot-every=")){
+				this.snapshot_interval = Long.parseLong(value(arg));
+				if (this.snapshot_interval < 1){
+					throw new IllegalArgumentException("Error: --snapshot-every must be at least 1\n"+USAGE);
+				}
+			} else if (arg.equals("--coalesce")){
+				this.coalesce = true;
+			} else if (arg.startsWith("--query=")){
+				this.query_address = TcpFeedPublisher.parseAddress(value(arg));
+			} else if (arg.startsWith("--query-depth=")){
+				this.query_depth = Integer.parseInt(value(arg));
+				if (this.query_depth < 1){
+					throw new IllegalArgumentException("Error: --query-depth must be at least 1\n"+USAGE);
+				}
+			} else if (arg.equals("--off-heap")){
+				this.off_heap = true;
+			} else if (arg.startsWith("--price-ring=")){
+				this.price_ring = value(arg);
+			} else if (arg.startsWith("--price-ring-size=")){
+				this.price_ring_size = Integer.parseInt(value(arg));
+				if (this.price_ring_size < 1 || this.price_ring_size > PriceRingWriter.MAX_CAPACITY
+						|| Integer.bitCount(this.price_ring_size) != 1){
+					throw new IllegalArgumentException("Error: --price-ring-size must be a power of 2 up to "
+						+PriceRingWriter.MAX_CAPACITY+"\n"+USAGE);
+				}
+			} else if (arg.equals("--stats")){
+				this.stats = true;
+			} else if (arg.equals("--stats-line")){
+				this.stats = true;
+				this.stats_line = true;
+			} else if (arg.startsWith("--stats-interval-ms=")){
+				this.stats = true;
+				this.stats_interval_nanos = Long.parseLong(value(arg)) * 1000000;
+				if (this.stats_interval_nanos < 1){
+					throw new IllegalArgumentException("Error: --stats-interval-ms must be at least 1\n"+USAGE);
+				}
+			} else if (arg.startsWith("--wait=")){
+				String[] names = value(arg).split(",");
+				if (names.length != 1 && names.length != 3){
+					throw new IllegalArgumentException("Error: --wait takes one or three strategies\n"+USAGE);
+				}
+				for (int i = 0; i < 3; i++){
+					this.wait_strategies[i] = WaitStrategy.fromName(names[names.length == 1 ? 0 : i]);
+				}
+			} else if (arg.startsWith("--")){
+				throw new IllegalArgumentException("Unknown option: "+arg+"\n"+USAGE);
+			} else {
+				targets[target_count++] = Integer.parseInt(arg);
+			}
+		}
+		if (target_count == 0){
+			throw new IllegalArgumentException(USAGE);
+		}
+		this.target_sizes = Arrays.copyOf(targets, target_count);
+		if ((this.pipeline ? 1 : 0) + (this.split_sides ? 1 : 0) + (this.threads > 1 ? 1 : 0) > 1){
+			throw new IllegalArgumentException("Error: only one of --threads, --pipeline and --split-sides can be used\n"
+				+USAGE);
+		}
+		if (this.output_prefix != null && this.threads > 1){
+			throw new IllegalArgumentException("Error: --output-prefix cannot be used with --threads\n"+USAGE);
+		}
+		if (this.price_ring != null && (this.output_prefix != null || this.threads > 1)){
+			throw new IllegalArgumentException("Error: --price-ring cannot be used with --threads or --output-prefix\n"
+				+USAGE);
+		}
+		if (this.listen_address != null && this.binary_input != null){
+			throw new IllegalArgumentException("Error: --listen cannot be used with --binary-input\n"+USAGE);
+		}
+		if (this.journal_dir != null && (this.pipeline || this.split_sides || this.threads > 1)){
+			throw new IllegalArgumentException("Error: --journal-dir cannot be used with --threads, --pipeline or"
+				+" --split-sides\n"+USAGE);
+		}
+		if (this.coalesce && (this.pipeline || this.split_sides || this.threads > 1)){
+			throw new IllegalArgumentException("Error: --coalesce cannot be used with --threads, --pipeline or"
+				+" --split-sides\n"+USAGE);
+		}
+		if (this.query_address != null && (this.pipeline || this.split_sides || this.threads > 1)){
+			throw new IllegalArgumentException("Error: --query cannot be used with --threads, --pipeline or"
+				+" --split-sides\n"+USAGE);
+		}
+		if (this.stats && (this.pipeline || this.split_sides || this.threads > 1)){
+			throw new IllegalArgumentException("Error: --stats cannot be used with --threads, --pipeline or"
+				+" --split-sides\n"+USAGE);
+		}
+	}
+
+	//Getters
+	public int getTargetSize(){
+		return this.target_sizes[0];
+	}
+	public int[] getBuyTargetSizes(){
+		return this.buy_target_sizes == null ? this.target_sizes : this.buy_target_sizes;
+	}
+	public int[] getSellTargetSizes(){
+		return this.sell_target_sizes == null ? this.target_sizes : this.sell_target_sizes;
+	}
+	public String getOutputPrefix(){
+		return this.output_prefix;
+	}
+	public String getBinaryInput(){
+		return this.binary_input;
+	}
+	public InetSocketAddress getListenAddress(){
+		return this.listen_address;
+	}
+	public int getFeeds(){
+		return this.feeds;
+	}
+	public String getJournalDir(){
+		return this.journal_dir;
+	}
+	public long getSnapshotInterval(){
+		return this.snapshot_interval;
+	}
+	public boolean isCoalesce(){
+		return this.coalesce;
+	}
+	public boolean isStats(){
+		return this.stats;
+	}
+	public boolean isStatsLine(){
+		return this.stats_line;
+	}
+	public long getStatsIntervalNanos(){
+		return this.stats_interval_nanos;
+	}
+	public InetSocketAddress getQueryAddress(){
+		return this.query_address;
+	}
+	public int getQueryDepth(){
+		return this.query_depth;
+	}
+	public boolean isOffHeap(){
+		return this.off_heap;
+	}
+	public String getPriceRing(){
+		return this.price_ring;
+	}
+	public int getPriceRingSize(){
+		return this.price_ring_size;
+	}
+
+    /**
+     * Returns every distinct target size of either side, in ascending order.
+     *
+     * @return target_sizes The target sizes
+     */
+	public int[] getAllTargetSizes(){
+		TreeSet<Integer> all = new TreeSet<Integer>();
+		for (int target_size : getBuyTargetSizes()){
+			all.add(target_size);
+		}
+		for (int target_size : getSellTargetSizes()){
+			all.add(target_size);
+		}
+		int[] target_sizes = new int[all.size()];
+		int i = 0;
+		for (int target_size : all){
+			target_sizes[i++] = target_size;
+		}
+		return target_sizes;
+	}
+
+    /**
+     * Returns true if the output lines must say which target size they are for, that is if a side has
+     * several target sizes and they are written to the same stream.
+     *
+     * @return tag_targets true to tag the output lines with their target size
+     */
+	public boolean isTagTargets(){
+		return this.output_prefix == null && this.price_ring == null
+			&& (countDistinct(getBuyTargetSizes()) > 1 || countDistinct(getSellTargetSizes()) > 1);
+	}
+	public long getFlushLatencyNanos(){
+		return this.flush_latency_nanos;
+	}
+	public int getThreads(){
+		return this.threads;
+	}
+	public boolean isPipeline(){
+		return this.pipeline;
+	}
+	public boolean isSplitSides(){
+		return this.split_sides;
+	}
+	public WaitStrategy getReaderWait(){
+		return this.wait_strategies[0];
+	}
+	public WaitStrategy getBookWait(){
+		return this.wait_strategies[1];
+	}
+	public WaitStrategy getWriterWait(){
+		return this.wait_strategies[2];
+	}
+
+	private static int countDistinct(int[] values){
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (int i = 0; i < sorted.length; i++){
+			if (i == 0 || sorted[i] != sorted[i - 1]){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int[] parseTargets(String list){
+		String[] values = list.split(",");
+		int[] targets = new int[values.length];
+		for (int i = 0; i < values.length; i++){
+			targets[i] = Integer.parseInt(values[i]);
+		}
+		return targets;
+	}
+
+	private static String value(String arg){
+		return arg.substring(arg.indexOf('=') + 1);
+	}
+}
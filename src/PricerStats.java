@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+/**
+ * This class instruments the pricer while it runs. For every message it records how long parsing, updating
+ * the book and writing the price changes took in a LatencyHistogram each, and counts the adds, reduces,
+ * target cost updates and the price levels they walked across (see TargetCostTracker). It also keeps the
+ * number of price levels on each side and of live orders, over every book.
+ *
+ * Recording happens on the thread that owns the books and never allocates or synchronizes. Once per
+ * interval that thread publishes the counts and the percentiles of the interval's latencies in a new array
+ * for the JMX MBean (see PricerStatsMBean) to read, resets the histograms and, if asked to, prints a stats
+ * line. Intervals only end when a message arrives, so nothing is published while the input is idle.
+ *
+ * The pricer only creates an instance with --stats, so without it the only cost left on the hot path is
+ * counting levels and updates in TargetCostSet.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PricerStats implements PricerStatsMBean {
+	public static final String OBJECT_NAME = "OrderBook:type=PricerStats";
+	public static final long DEFAULT_INTERVAL_NANOS = 1000000000L;
+	private static final double[] PERCENTILES = {50, 99, 99.9, 100};
+
+	//Indexes of the published values
+	private static final int MESSAGES = 0;
+	private static final int ADDS = 1;
+	private static final int REDUCES = 2;
+	private static final int RECOMPUTES = 3;
+	private static final int LEVELS_TRAVERSED = 4;
+	private static final int OFFER_LEVELS = 5;
+	private static final int BID_LEVELS = 6;
+	private static final int LIVE_ORDERS = 7;
+	private static final int COUNTS = 8;
+	private static final int PARSE = COUNTS; //then one value per percentile for each latency
+	private static final int BOOK = PARSE + PERCENTILES.length;
+	private static final int OUTPUT = BOOK + PERCENTILES.length;
+	private static final int VALUES = OUTPUT + PERCENTILES.length;
+
+	private long interval_nanos;
+	private PrintStream stats_line; //null to not print a stats line
+	private long interval_end;
+	private long[] counts; //running counts, indexed like the published values
+	private LatencyHistogram parse;
+	private LatencyHistogram book;
+	private LatencyHistogram output;
+	private long output_nanos; //time spent writing the price changes of the current message
+	private volatile long[] published;
+
+	//Book values before the current message
+	private int offer_levels;
+	private int bid_levels;
+	private int live_orders;
+	private long recomputes;
+	private long levels_traversed;
+
+	//Constructors
+    /**
+     * Creates the stats of books, counting the levels and orders they already hold.
+     *
+     * @param books The books that will be instrumented
+     * @param interval_nanos The time between publishing the stats
+     * @param stats_line Where to print a stats line every interval, null for none
+     *
+     * @return PricerStats instance with nothing recorded
+     */
+	public PricerStats(OrderBooks books, long interval_nanos, PrintStream stats_line){
+		this.interval_nanos = interval_nanos;
+		this.stats_line = stats_line;
+		this.interval_end = System.nanoTime() + interval_nanos;
+		this.counts = new long[COUNTS];
+		this.parse = new LatencyHistogram();
+		this.book = new LatencyHistogram();
+		this.output = new LatencyHistogram();
+		for (OrderBook book : books.values()){
+			this.counts[OFFER_LEVELS] += book.getBuyer().getOfferLog().getLevelCount();
+			this.counts[BID_LEVELS] += book.getSeller().getBidLog().getLevelCount();
+			this.counts[LIVE_ORDERS] += book.getOrderIndex().size();
+		}
+		this.published = new long[VALUES];
+		System.arraycopy(this.counts, 0, this.published, 0, COUNTS);
+	}
+
+	/**
+	 * This method registers the stats with the platform MBean server under OBJECT_NAME.
+	 */
+	public void register() throws Exception {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * This method wraps the sink of the price changes so the time spent writing them is recorded as output
+	 * rather than as book time.
+	 *
+	 * @param sink The sink of the price changes
+	 *
+	 * @return timed_sink A sink that writes to sink
+	 */
+	public PriceSink timeOutput(final PriceSink sink){
+		return new PriceSink(){
+			public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol,
+					int symbol_length) throws IOException {
+				long start = System.nanoTime();
+				sink.writePrice(timestamp, side, target_size, cost, symbol, symbol_length);
+				output_nanos += System.nanoTime() - start;
+			}
+		};
+	}
+
+	/**
+	 * This method remembers the state of the book a message is about to be applied to.
+	 *
+	 * @param book The book of the message's instrument
+	 */
+	public void beforeMessage(OrderBook book){
+		this.offer_levels = book.getBuyer().getOfferLog().getLevelCount();
+		this.bid_levels = book.getSeller().getBidLog().getLevelCount();
+		this.live_orders = book.getOrderIndex().size();
+		this.recomputes = book.getBuyer().getRecomputes() + book.getSeller().getRecomputes();
+		this.levels_traversed = book.getBuyer().getLevelsWalked() + book.getSeller().getLevelsWalked();
+		this.output_nanos = 0;
+	}
+
+	/**
+	 * This method records a message that has been applied to its book, and publishes the stats if the
+	 * interval is over.
+	 *
+	 * @param message The message
+	 * @param book The book of the message's instrument
+	 * @param parse_nanos The time it took to parse the message, without reading or waiting for input
+	 * @param start The System.nanoTime() when the message started being applied
+	 * @param end The System.nanoTime() when the message had been applied and its price changes written
+	 */
+	public void afterMessage(OrderMessage message, OrderBook book, long parse_nanos, long start, long end){
+		long[] counts = this.counts;
+		counts[MESSAGES]++;
+		counts[message.getType() == OrderMessage.ADD ? ADDS : REDUCES]++;
+		counts[OFFER_LEVELS] += book.getBuyer().getOfferLog().getLevelCount() - this.offer_levels;
+		counts[BID_LEVELS] += book.getSeller().getBidLog().getLevelCount() - this.bid_levels;
+		counts[LIVE_ORDERS] += book.getOrderIndex().size() - this.live_orders;
+		counts[RECOMPUTES] += book.getBuyer().getRecomputes() + book.getSeller().getRecomputes() - this.recomputes;
+		counts[LEVELS_TRAVERSED] += book.getBuyer().getLevelsWalked() + book.getSeller().getLevelsWalked()
+			- this.levels_traversed;
+		this.parse.record(parse_nanos);
+		this.book.record(end - start - this.output_nanos);
+		this.output.record(this.output_nanos);
+		if (end - this.interval_end >= 0){
+			publish();
+			this.interval_end = end + this.interval_nanos;
+		}
+	}
+
+	/**
+	 * This method ends the interval: it publishes the counts and the latency percentiles of the interval,
+	 * prints the stats line if there is one and resets the histograms.
+	 */
+	public void publish(){
+		long[] values = new long[VALUES];
+		System.arraycopy(this.counts, 0, values, 0, COUNTS);
+		for (int i = 0; i < PERCENTILES.length; i++){
+			values[PARSE + i] = this.parse.getValueAtPercentile(PERCENTILES[i]);
+			values[BOOK + i] = this.book.getValueAtPercentile(PERCENTILES[i]);
+			values[OUTPUT + i] = this.output.getValueAtPercentile(PERCENTILES[i]);
+		}
+		this.published = values;
+		this.parse.reset();
+		this.book.reset();
+		this.output.reset();
+		if (this.stats_line != null){
+			this.stats_line.println(format(values));
+		}
+	}
+
+    /**
+     * Returns the last published stats as a line of text, for logs. This allocates.
+     *
+     * @return line The stats
+     */
+	public String toString(){
+		return format(this.published);
+	}
+
+	private static String format(long[] values){
+		StringBuilder line = new StringBuilder("stats");
+		line.append(" messages=").append(values[MESSAGES]).append(" adds=").append(values[ADDS])
+			.append(" reduces=").append(values[REDUCES]).append(" recomputes=").append(values[RECOMPUTES])
+			.append(" levels_traversed=").append(values[LEVELS_TRAVERSED])
+			.append(" offer_levels=").append(values[OFFER_LEVELS]).append(" bid_levels=").append(values[BID_LEVELS])
+			.append(" live_orders=").append(values[LIVE_ORDERS]);
+		appendLatency(line, " parse_ns=", values, PARSE);
+		appendLatency(line, " book_ns=", values, BOOK);
+		appendLatency(line, " output_ns=", values, OUTPUT);
+		return line.toString();
+	}
+
+	//p50/p99/p99.9/max
+	private static void appendLatency(StringBuilder line, String name, long[] values, int first){
+		line.append(name);
+		for (int i = 0; i < PERCENTILES.length; i++){
+			line.append(i == 0 ? "" : "/").append(values[first + i]);
+		}
+	}
+
+	/*****MBean attributes*****/
+
+	public long getMessages(){
+		return this.published[MESSAGES];
+	}
+	public long getAdds(){
+		return this.published[ADDS];
+	}
+	public long getReduces(){
+		return this.published[REDUCES];
+	}
+	public long getRecomputes(){
+		return this.published[RECOMPUTES];
+	}
+	public long getLevelsTraversed(){
+		return this.published[LEVELS_TRAVERSED];
+	}
+	public long getOfferLevels(){
+		return this.published[OFFER_LEVELS];
+	}
+	public long getBidLevels(){
+		return this.published[BID_LEVELS];
+	}
+	public long getLiveOrders(){
+		return this.published[LIVE_ORDERS];
+	}
+	public long getParseNanosP50(){
+		return this.published[PARSE];
+	}
+	public long getParseNanosP99(){
+		return this.published[PARSE + 1];
+	}
+	public long getParseNanosP999(){
+		return this.published[PARSE + 2];
+	}
+	public long getParseNanosMax(){
+		return this.published[PARSE + 3];
+	}
+	public long getBookNanosP50(){
+		return this.published[BOOK];
+	}
+	public long getBookNanosP99(){
+		return this.published[BOOK + 1];
+	}
+	public long getBookNanosP999(){
+		return this.published[BOOK + 2];
+	}
+	public long getBookNanosMax(){
+		return this.published[BOOK + 3];
+	}
+	public long getOutputNanosP50(){
+		return this.published[OUTPUT];
+	}
+	public long getOutputNanosP99(){
+		return this.published[OUTPUT + 1];
+	}
+	public long getOutputNanosP999(){
+		return this.published[OUTPUT + 2];
+	}
+	public long getOutputNanosMax(){
+		return this.published[OUTPUT + 3];
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * This is the JMX management interface of PricerStats. The counts are totals since the pricer started and
+ * the latencies are percentiles of the messages of the last stats interval, in nanoseconds. Every value is
+ * as of the end of the last interval.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public interface PricerStatsMBean {
+	long getMessages();
+	long getAdds();
+	long getReduces();
+	long getRecomputes();
+	long getLevelsTraversed();
+	long getOfferLevels();
+	long getBidLevels();
+	long getLiveOrders();
+
+	long getParseNanosP50();
+	long getParseNanosP99();
+	long getParseNanosP999();
+	long getParseNanosMax();
+
+	long getBookNanosP50();
+	long getBookNanosP99();
+	long getBookNanosP999();
+	long getBookNanosMax();
+
+	long getOutputNanosP50();
+	long getOutputNanosP99();
+	long getOutputNanosP999();
+	long getOutputNanosMax();
+}
@@ -0,0 +1,134 @@
+/**
+ * This class contains the fixed-point representation of prices used throughout the pricer. A price is
+ * stored as a long number of ticks, where one tick is one hundredth of a unit (44.26 is 4426 ticks).
+ * The cost of a number of shares is kept as a long notional in ticks, so costs never pick up floating
+ * point drift and are only turned into decimals for output.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class Prices {
+	public static final int DECIMALS = 2;
+	public static final long TICKS_PER_UNIT = 100;
+	//Largest number of ticks a parsed price may have, so that price * size cannot overflow a long
+	public static final long MAX_TICKS = Long.MAX_VALUE / Integer.MAX_VALUE;
+
+	//Sentinels returned in place of a price or a cost. Real prices and costs are never negative.
+	public static final long NO_PRICE = Long.MIN_VALUE;
+	public static final long NOT_AVAILABLE = -1;
+	public static final long UNCHANGED = -2;
+	public static final long BEYOND_DEPTH = -3; //the cost needs more levels than a BookView holds
+
+	private Prices(){
+	}
+
+    /**
+     * Converts a decimal price into ticks, rounding to the nearest tick.
+     *
+     * @param price The price per share
+     *
+     * @return ticks The price in ticks
+     */
+	public static long toTicks(double price){
+		return Math.round(price * TICKS_PER_UNIT);
+	}
+
+    /**
+     * Converts ticks back into a decimal price or cost.
+     *
+     * @param ticks The price or cost in ticks
+     *
+     * @return price The decimal value of ticks
+     */
+	public static double toDouble(long ticks){
+		return (double) ticks / TICKS_PER_UNIT;
+	}
+
+    /**
+     * Parses a decimal price of digits with an optional decimal point into ticks without going through
+     * a double. Digits past the second decimal place must be zeros, as a price finer than a tick cannot be
+     * kept exactly, and the price may be at most MAX_TICKS ticks.
+     *
+     * @param text The price, e.g. "44.26"
+     *
+     * @return ticks The price in ticks
+     *
+     * @throws NumberFormatException if text is not a valid price, is finer than a tick or is out of range
+     */
+	public static long parseTicks(String text){
+		byte[] bytes = text.getBytes();
+		return parseTicks(bytes, 0, bytes.length);
+	}
+
+    /**
+     * Parses a decimal price out of a byte buffer into ticks. This does not allocate unless the price
+     * is invalid.
+     *
+     * @param text The buffer holding the price
+     * @param start The index of the first character of the price
+     * @param end The index after the last character of the price
+     *
+     * @return ticks The price in ticks
+     *
+     * @throws NumberFormatException if the bytes are not a valid price, are finer than a tick or are out of range
+     */
+	public static long parseTicks(byte[] text, int start, int end){
+		long ticks = 0;
+		int decimals = -1; //number of digits after the decimal point, -1 before the point
+		boolean has_digits = false;
+
+		for (int i = start; i < end; i++){
+			byte c = text[i];
+			if (c == '.' && decimals < 0){
+				decimals = 0;
+			} else if (c >= '0' && c <= '9'){
+				has_digits = true;
+				if (decimals < DECIMALS){
+					ticks = ticks * 10 + (c - '0');
+					if (ticks > MAX_TICKS){
+						throw new NumberFormatException("Price out of range: \""+new String(text, start, end - start)+"\"");
+					}
+					if (decimals >= 0){
+						decimals++;
+					}
+				} else if (c != '0'){
+					throw new NumberFormatException("Price finer than a tick: \""+new String(text, start, end - start)
+						+"\"");
+				}
+			} else {
+				throw new NumberFormatException("Invalid price: \""+new String(text, start, end - start)+"\"");
+			}
+		}
+		if (!has_digits){
+			throw new NumberFormatException("Invalid price: \""+new String(text, start, end - start)+"\"");
+		}
+		for (int i = Math.max(decimals, 0); i < DECIMALS; i++){
+			ticks *= 10;
+		}
+		if (ticks > MAX_TICKS){
+			throw new NumberFormatException("Price out of range: \""+new String(text, start, end - start)+"\"");
+		}
+		return ticks;
+	}
+
+    /**
+     * Formats ticks as a decimal with two places, e.g. 442600 is "4426.00".
+     *
+     * @param ticks The price or cost in ticks
+     *
+     * @return text The decimal representation of ticks
+     */
+	public static String format(long ticks){
+		StringBuilder text = new StringBuilder(24);
+		if (ticks < 0){
+			text.append('-');
+			ticks = -ticks;
+		}
+		long fraction = ticks % TICKS_PER_UNIT;
+		text.append(ticks / TICKS_PER_UNIT).append('.');
+		if (fraction < 10){
+			text.append('0');
+		}
+		return text.append(fraction).toString();
+	}
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class lets any number of threads read a consistent view of a book that another thread is updating,
+ * without ever blocking or slowing that thread. The thread that owns the book publishes its best levels,
+ * level counts, total shares and target costs after applying a message (see publish(...)), and readers
+ * copy them into a BookView of their own (see read(...)).
+ *
+ * The values are kept in a preallocated array guarded by a sequence lock. The writer makes the version odd,
+ * writes the values and makes it even again, all with ordered (lazySet) stores, so publishing is a few
+ * plain stores with no fence, lock or allocation. A reader copies the values between two reads of the
+ * version and starts again if the version was odd or changed in between, so it only ever sees what was
+ * published for one message. Readers never write anything the writer reads.
+ *
+ * Only the best depth levels of each side are published; BookDepth answers deeper queries on the thread
+ * that owns the book.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PublishedBook {
+	//Offsets of the values
+	private static final int TIMESTAMP = 0;
+	private static final int MESSAGES = 1;
+	private static final int BID_LEVEL_COUNT = 2;
+	private static final int OFFER_LEVEL_COUNT = 3;
+	private static final int BID_SHARES = 4;
+	private static final int OFFER_SHARES = 5;
+	private static final int COSTS = 6; //buy targets first, then sell targets, then the bid and offer levels
+
+	private final byte[] symbol;
+	private final int depth;
+	private final int[] buy_target_sizes;
+	private final int[] sell_target_sizes;
+	private final int bid_levels; //offset of the bid levels, as price and shares pairs
+	private final int offer_levels; //offset of the offer levels
+	private final AtomicLong version; //odd while the values are written
+	private final AtomicLongArray values;
+
+	//Owned by the writer
+	private long messages;
+	private long[] level_prices;
+	private int[] level_shares;
+	private long bid_modifications; //modifications of the bid log when its levels were last published
+	private long offer_modifications;
+
+	//Constructors
+    /**
+     * Creates the published view of a book that has not published anything yet.
+     *
+     * @param symbol The symbol of the instrument, an empty array for the unnamed default instrument
+     * @param depth The number of best levels to publish on each side
+     * @param buy_target_sizes The target sizes of the buyer, in the order the book keeps them
+     * @param sell_target_sizes The target sizes of the seller, in the order the book keeps them
+     *
+     * @return PublishedBook instance with an empty view
+     */
+	public PublishedBook(byte[] symbol, int depth, int[] buy_target_sizes, int[] sell_target_sizes){
+		this.symbol = symbol;
+		this.depth = depth;
+		this.buy_target_sizes = buy_target_sizes;
+		this.sell_target_sizes = sell_target_sizes;
+		this.bid_levels = COSTS + buy_target_sizes.length + sell_target_sizes.length;
+		this.offer_levels = this.bid_levels + 2 * depth;
+		this.version = new AtomicLong();
+		this.values = new AtomicLongArray(this.offer_levels + 2 * depth);
+		for (int i = 0; i < buy_target_sizes.length + sell_target_sizes.length; i++){
+			this.values.set(COSTS + i, Prices.NOT_AVAILABLE);
+		}
+		this.messages = 0;
+		this.level_prices = new long[depth];
+		this.level_shares = new int[depth];
+		this.bid_modifications = -1;
+		this.offer_modifications = -1;
+	}
+
+	//Getters
+	public byte[] getSymbol(){
+		return this.symbol;
+	}
+	public int getDepth(){
+		return this.depth;
+	}
+
+    /**
+     * Returns the version of the published state, so a reader can tell cheaply whether anything has been
+     * published since it last looked
+     *
+     * @return version Even between publishes and odd while one is under way
+     */
+	public long getVersion(){
+		return this.version.get();
+	}
+
+	/**
+	 * This method publishes the current state of the book. It must only be called by the thread that owns
+	 * the book, after it has applied a message.
+	 *
+	 * @param book The book, whose targets must be the ones this view was created with
+	 * @param timestamp The timestamp of the message that was applied
+	 */
+	public void publish(OrderBook book, long timestamp){
+		AtomicLongArray values = this.values;
+		long version = this.version.get();
+		this.version.lazySet(version + 1);
+		this.messages++;
+		values.lazySet(TIMESTAMP, timestamp);
+		values.lazySet(MESSAGES, this.messages);
+
+		Seller seller = book.getSeller();
+		Buyer buyer = book.getBuyer();
+		for (int i = 0; i < this.buy_target_sizes.length; i++){
+			values.lazySet(COSTS + i, buyer.getCost(i));
+		}
+		for (int i = 0; i < this.sell_target_sizes.length; i++){
+			values.lazySet(COSTS + this.buy_target_sizes.length + i, seller.getCost(i));
+		}
+		this.bid_modifications = publishLevels(seller.getBidLog(), this.bid_modifications, BID_LEVEL_COUNT,
+			BID_SHARES, this.bid_levels);
+		this.offer_modifications = publishLevels(buyer.getOfferLog(), this.offer_modifications, OFFER_LEVEL_COUNT,
+			OFFER_SHARES, this.offer_levels);
+		this.version.lazySet(version + 2);
+	}
+
+	/**
+	 * This method copies the last published state into a view, retrying while a publish is under way. It
+	 * can be called by any thread.
+	 *
+	 * @param view The view to copy into, created for this book (see BookView)
+	 */
+	public void read(BookView view){
+		AtomicLongArray values = this.values;
+		int count = 0;
+		while (true){
+			long version = this.version.get();
+			if ((version & 1) == 0){
+				view.timestamp = values.get(TIMESTAMP);
+				view.messages = values.get(MESSAGES);
+				view.bid_level_count = (int) values.get(BID_LEVEL_COUNT);
+				view.offer_level_count = (int) values.get(OFFER_LEVEL_COUNT);
+				view.bid_shares = values.get(BID_SHARES);
+				view.offer_shares = values.get(OFFER_SHARES);
+				for (int i = 0; i < this.buy_target_sizes.length; i++){
+					view.buy_costs[i] = values.get(COSTS + i);
+				}
+				for (int i = 0; i < this.sell_target_sizes.length; i++){
+					view.sell_costs[i] = values.get(COSTS + this.buy_target_sizes.length + i);
+				}
+				int bids = Math.min(this.depth, view.bid_level_count);
+				for (int i = 0; i < bids; i++){
+					view.bid_prices[i] = values.get(this.bid_levels + 2 * i);
+					view.bid_sizes[i] = (int) values.get(this.bid_levels + 2 * i + 1);
+				}
+				int offers = Math.min(this.depth, view.offer_level_count);
+				for (int i = 0; i < offers; i++){
+					view.offer_prices[i] = values.get(this.offer_levels + 2 * i);
+					view.offer_sizes[i] = (int) values.get(this.offer_levels + 2 * i + 1);
+				}
+				if (this.version.get() == version){
+					return;
+				}
+			}
+			count = WaitStrategy.YIELD.idle(count);
+		}
+	}
+
+    /**
+     * Creates a view sized for this book, for a reader to copy into.
+     *
+     * @return view An empty view
+     */
+	public BookView newView(){
+		return new BookView(this.symbol, this.depth, Arrays.copyOf(this.buy_target_sizes, this.buy_target_sizes.length),
+			Arrays.copyOf(this.sell_target_sizes, this.sell_target_sizes.length));
+	}
+
+	/**
+	 * Publishes the levels of a side that has changed since they were last published. A message only
+	 * changes one side, and often a level deeper than the ones published, so usually the levels published
+	 * are still right and only the level count and total shares are written.
+	 *
+	 * @return modifications The modifications of the log that have been published
+	 */
+	private long publishLevels(PriceLevelTree log, long published, int level_count, int total_shares, int levels){
+		long modifications = log.getModifications();
+		if (modifications == published){
+			return published;
+		}
+		AtomicLongArray values = this.values;
+		values.lazySet(level_count, log.getLevelCount());
+		values.lazySet(total_shares, log.getTotalShares());
+		if (modifications == published + 1 && this.depth > 0 && values.get(levels + 2 * (this.depth - 1) + 1) > 0
+				&& log.compare(log.getLastModifiedPrice(), values.get(levels + 2 * (this.depth - 1))) > 0){
+			//every published level is filled and the only change is worse than all of them
+			return modifications;
+		}
+		int copied = log.getLevels(this.level_prices, this.level_shares, this.depth);
+		for (int i = 0; i < copied; i++){
+			values.lazySet(levels + 2 * i, this.level_prices[i]);
+			values.lazySet(levels + 2 * i + 1, this.level_shares[i]);
+		}
+		for (int i = copied; i < this.depth; i++){
+			values.lazySet(levels + 2 * i + 1, 0);
+		}
+		return modifications;
+	}
+}
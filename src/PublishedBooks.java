@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class publishes a PublishedBook per instrument for readers on other threads. The thread that owns
+ * the books calls publish(...) after applying each message; readers look books up by symbol at any time.
+ * A PublishedBook is created, and becomes visible to readers, the first time its instrument is published.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class PublishedBooks {
+	public static final int DEFAULT_DEPTH = 10;
+
+	private int depth;
+	private int[] buy_target_sizes; //ascending and distinct, as the books keep them
+	private int[] sell_target_sizes;
+	private Table table; //owned by the writer
+	private ConcurrentHashMap<String, PublishedBook> by_symbol; //read by anyone
+
+	//Constructors
+    /**
+     * Creates an empty set of published books.
+     *
+     * @param depth The number of best levels to publish on each side
+     * @param buy_target_sizes The target sizes to buy of the books
+     * @param sell_target_sizes The target sizes to sell of the books
+     *
+     * @return PublishedBooks instance with no books
+     */
+	public PublishedBooks(int depth, int[] buy_target_sizes, int[] sell_target_sizes){
+		this.depth = depth;
+		this.buy_target_sizes = distinct(buy_target_sizes);
+		this.sell_target_sizes = distinct(sell_target_sizes);
+		this.table = new Table();
+		this.by_symbol = new ConcurrentHashMap<String, PublishedBook>();
+	}
+
+	/**
+	 * This method publishes the state of a book. It must only be called by the thread that owns the books.
+	 *
+	 * @param book The book that has applied a message
+	 * @param timestamp The timestamp of the message
+	 */
+	public void publish(OrderBook book, long timestamp){
+		byte[] symbol = book.getSymbol();
+		this.table.get(symbol, symbol.length).publish(book, timestamp);
+	}
+
+    /**
+     * Returns the published book of an instrument. It can be called by any thread.
+     *
+     * @param symbol The symbol, "" for the unnamed default instrument
+     *
+     * @return book The published book, null if the instrument has not been published
+     */
+	public PublishedBook get(String symbol){
+		return this.by_symbol.get(symbol);
+	}
+
+    /**
+     * Returns the symbols of every instrument published so far. This allocates.
+     *
+     * @return symbols The symbols, in no particular order
+     */
+	public String[] getSymbols(){
+		return this.by_symbol.keySet().toArray(new String[0]);
+	}
+
+    /**
+     * Returns every book published so far. It can be called by any thread, and the collection sees books
+     * published later.
+     *
+     * @return books The published books, in no particular order
+     */
+	public Collection<PublishedBook> getBooks(){
+		return this.by_symbol.values();
+	}
+
+	private static int[] distinct(int[] target_sizes){
+		int[] sorted = target_sizes.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (int i = 0; i < sorted.length; i++){
+			if (i == 0 || sorted[i] != sorted[i - 1]){
+				sorted[count++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, count);
+	}
+
+	private class Table extends SymbolTable<PublishedBook> {
+		@Override
+		protected PublishedBook create(byte[] symbol){
+			PublishedBook book = new PublishedBook(symbol, depth, buy_target_sizes, sell_target_sizes);
+			by_symbol.put(new String(symbol), book);
+			return book;
+		}
+	}
+}
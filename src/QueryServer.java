@@ -0,0 +1,498 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class serves the costs of any number of shares to many clients at once, so each desk can price its
+ * own quantities without running a pricer of its own. Every answer is read from PublishedBooks, so the
+ * thread that owns the books only publishes them and never waits for a client.
+ *
+ * Clients connect over TCP and send lines of text. A symbol of "-" names the unnamed default instrument,
+ * and the side is B for the cost of buying from the offers or S for the amount from selling to the bids:
+ *
+ *		COST symbol side size [size...]		answer once for each size
+ *		WATCH symbol side size [size...]	answer for each size now and again whenever its cost changes
+ *		UNWATCH symbol side size [size...]	stop watching the sizes
+ *		QUIT								close the connection
+ *
+ * Every answer is a line "timestamp symbol side size cost", where the timestamp is that of the last message
+ * the book had applied and the cost is a decimal, NA if the book does not hold enough shares, or DEEP if it
+ * does but deeper than the levels published (see BookView.getCostOf). Sizes that are target sizes of the
+ * pricer are always answered exactly. A line that is not a valid request is answered with "ERROR line".
+ *
+ * Each client runs on a thread of its own that mostly waits for requests, and another that pushes the
+ * changes of its watches. They are virtual threads when the Java runtime has them, so thousands of mostly
+ * idle clients cost little, and daemon platform threads otherwise. A notifier thread checks the versions
+ * of the published books every push interval, while anything is watched, and only wakes the clients
+ * watching a book that changed.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class QueryServer {
+	public static final long DEFAULT_PUSH_INTERVAL_NANOS = 1000000;
+	public static final String DEFAULT_SYMBOL = "-";
+
+	//Thread.ofVirtual() and Thread.Builder, looked up at runtime so the pricer still runs on older Javas
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_START;
+	static {
+		Method of_virtual = null;
+		Method name = null;
+		Method start = null;
+		try{
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			of_virtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class);
+			start = builder.getMethod("start", Runnable.class);
+		} catch (ReflectiveOperationException e){
+			of_virtual = null;
+		}
+		OF_VIRTUAL = of_virtual;
+		BUILDER_NAME = name;
+		BUILDER_START = start;
+	}
+
+	private PublishedBooks books;
+	private long push_interval_nanos;
+	private ServerSocket server;
+	private ConcurrentHashMap<String, Set<Client>> watchers; //symbol to the clients watching it
+	private volatile boolean closed;
+	private volatile boolean virtual; //true once a client has been started on a virtual thread
+	private volatile Thread notifier;
+
+	//Constructors
+    /**
+     * Starts listening for clients and starts the accepting and notifier threads.
+     *
+     * @param address The address to listen on, port 0 for any free port
+     * @param books The published books to answer from
+     * @param push_interval_nanos How often to check the books for changes to push
+     *
+     * @return QueryServer instance accepting clients
+     */
+	public QueryServer(InetSocketAddress address, PublishedBooks books, long push_interval_nanos) throws IOException {
+		this.books = books;
+		this.push_interval_nanos = push_interval_nanos;
+		this.watchers = new ConcurrentHashMap<String, Set<Client>>();
+		this.closed = false;
+		this.server = new ServerSocket();
+		this.server.bind(address);
+
+		Thread acceptor = new Thread(new Runnable(){
+			public void run(){
+				runAcceptor();
+			}
+		}, "pricer-query-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		Thread notifier = new Thread(new Runnable(){
+			public void run(){
+				runNotifier();
+			}
+		}, "pricer-query-notifier");
+		notifier.setDaemon(true);
+		notifier.start();
+	}
+
+	//Getters
+	public int getPort(){
+		return this.server.getLocalPort();
+	}
+
+    /**
+     * Returns whether clients run on virtual threads, which is only known once a client has connected
+     *
+     * @return virtual true if a client has been started on a virtual thread
+     */
+	public boolean isVirtual(){
+		return this.virtual;
+	}
+
+	/**
+	 * This method stops accepting clients and lets the client threads end. Connected clients are closed
+	 * the next time they are written to.
+	 */
+	public void close() throws IOException {
+		this.closed = true;
+		this.server.close();
+	}
+
+	/*****Threads*****/
+
+	private void runAcceptor(){
+		int count = 0;
+		while (!this.closed){
+			Socket socket;
+			try{
+				socket = this.server.accept();
+				socket.setTcpNoDelay(true);
+			} catch (IOException e){
+				continue; //closed, or a connection that failed before it was accepted
+			}
+			count++;
+			final Client client = new Client(socket);
+			client.pusher = start(new Runnable(){
+				public void run(){
+					client.runPusher();
+				}
+			}, "pricer-query-push-"+count);
+			start(new Runnable(){
+				public void run(){
+					client.runSession();
+				}
+			}, "pricer-query-"+count);
+		}
+	}
+
+	/**
+	 * Wakes the clients watching each book published since the last check.
+	 */
+	private void runNotifier(){
+		HashMap<PublishedBook, long[]> versions = new HashMap<PublishedBook, long[]>();
+		HashMap<PublishedBook, String> symbols = new HashMap<PublishedBook, String>();
+		this.notifier = Thread.currentThread();
+		while (!this.closed){
+			if (this.watchers.isEmpty()){
+				//nothing to push, so don't take the CPU from the books until something is watched
+				LockSupport.park(this);
+				continue;
+			}
+			for (PublishedBook book : this.books.getBooks()){
+				long[] seen = versions.get(book);
+				if (seen == null){
+					seen = new long[]{-1};
+					versions.put(book, seen);
+					symbols.put(book, symbol(book.getSymbol()));
+				}
+				long version = book.getVersion();
+				if (version != seen[0] && (version & 1) == 0){
+					seen[0] = version;
+					Set<Client> clients = this.watchers.get(symbols.get(book));
+					if (clients != null){
+						for (Client client : clients){
+							client.wake();
+						}
+					}
+				}
+			}
+			LockSupport.parkNanos(this.push_interval_nanos);
+		}
+	}
+
+	/**
+	 * Starts a thread, virtual if the Java runtime has them.
+	 */
+	private Thread start(Runnable task, String name){
+		if (OF_VIRTUAL != null){
+			try{
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+				Thread thread = (Thread) BUILDER_START.invoke(builder, task);
+				this.virtual = true;
+				return thread;
+			} catch (ReflectiveOperationException|RuntimeException e){
+				//virtual threads are a preview that is not enabled
+			}
+		}
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private static String symbol(byte[] symbol){
+		return (symbol.length == 0) ? DEFAULT_SYMBOL : new String(symbol);
+	}
+
+	/**
+	 * One connected client, its watches and a view of each book it has asked about. The watches and the
+	 * output are guarded by the client's lock, a ReentrantLock rather than a monitor so that a virtual thread
+	 * blocked writing to a slow client does not pin its carrier thread. Each thread has views of its own.
+	 */
+	private class Client {
+		final Socket socket;
+		final OutputStream out;
+		final ArrayList<Watch> watches;
+		final HashMap<String, BookView> session_views;
+		final HashMap<String, BookView> push_views;
+		final ReentrantLock lock;
+		volatile Thread pusher;
+		volatile boolean changed;
+		volatile boolean open;
+
+		Client(Socket socket){
+			OutputStream out = null;
+			try{
+				out = socket.getOutputStream();
+			} catch (IOException e){
+				//closed already, so the session ends at once
+			}
+			this.socket = socket;
+			this.out = out;
+			this.watches = new ArrayList<Watch>();
+			this.session_views = new HashMap<String, BookView>();
+			this.push_views = new HashMap<String, BookView>();
+			this.lock = new ReentrantLock();
+			this.changed = false;
+			this.open = true;
+		}
+
+		void runSession(){
+			try{
+				BufferedReader in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), "US-ASCII"));
+				String line;
+				while (!closed && (line = in.readLine()) != null){
+					if (!request(line)){
+						break;
+					}
+				}
+			} catch (IOException e){
+				//the client went away
+			}
+			close();
+		}
+
+		void runPusher(){
+			while (this.open){
+				while (!this.changed && this.open){
+					LockSupport.park(this);
+				}
+				this.changed = false;
+				try{
+					push();
+				} catch (IOException e){
+					close();
+				}
+			}
+		}
+
+		void wake(){
+			this.changed = true;
+			Thread pusher = this.pusher;
+			if (pusher != null){
+				LockSupport.unpark(pusher);
+			}
+		}
+
+		/**
+		 * Answers one request line.
+		 *
+		 * @return false if the client asked to quit
+		 */
+		boolean request(String line) throws IOException {
+			String[] tokens = line.trim().split("\\s+");
+			String command = tokens[0];
+			if (command.equals("QUIT") && tokens.length == 1){
+				return false;
+			}
+			boolean valid = tokens.length >= 4 && (tokens[2].equals("B") || tokens[2].equals("S"))
+				&& (command.equals("COST") || command.equals("WATCH") || command.equals("UNWATCH"));
+			long[] sizes = new long[Math.max(0, tokens.length - 3)];
+			for (int i = 0; valid && i < sizes.length; i++){
+				try{
+					sizes[i] = Long.parseLong(tokens[3 + i]);
+					valid = sizes[i] > 0;
+				} catch (NumberFormatException e){
+					valid = false;
+				}
+			}
+			if (!valid){
+				write("ERROR "+line+"\n");
+				return true;
+			}
+
+			String symbol = tokens[1];
+			char side = tokens[2].charAt(0);
+			StringBuilder answers = new StringBuilder();
+			this.lock.lock();
+			try{
+				BookView view = view(this.session_views, symbol);
+				for (long size : sizes){
+					if (command.equals("UNWATCH")){
+						unwatch(symbol, side, size);
+						continue;
+					}
+					long cost = (view == null) ? Prices.NOT_AVAILABLE : view.getCostOf(side, size);
+					answer(answers, view, symbol, side, size, cost);
+					if (command.equals("WATCH")){
+						watch(symbol, side, size, cost);
+					}
+				}
+				write(answers.toString());
+			} finally {
+				this.lock.unlock();
+			}
+			if (command.equals("WATCH")){
+				//a publish between reading the view and registering the watch would not wake this client
+				wake();
+			}
+			return true;
+		}
+
+		/**
+		 * Writes the watches whose costs have changed since they were last written.
+		 */
+		void push() throws IOException {
+			StringBuilder answers = new StringBuilder();
+			HashSet<String> read = new HashSet<String>();
+			this.lock.lock();
+			try{
+				for (Watch watch : this.watches){
+					//each book is read once per push, so its watches see the same view
+					BookView view = read.add(watch.symbol) ? view(this.push_views, watch.symbol)
+						: this.push_views.get(watch.symbol);
+					long cost = (view == null) ? Prices.NOT_AVAILABLE : view.getCostOf(watch.side, watch.size);
+					if (cost != watch.cost){
+						watch.cost = cost;
+						answer(answers, view, watch.symbol, watch.side, watch.size, cost);
+					}
+				}
+				if (answers.length() > 0){
+					write(answers.toString());
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Reads the latest view of a book, keeping one view per book in views.
+		 *
+		 * @return view The view, null if the book has not been published
+		 */
+		BookView view(Map<String, BookView> views, String symbol){
+			BookView view = views.get(symbol);
+			PublishedBook book = books.get(symbol.equals(DEFAULT_SYMBOL) ? "" : symbol);
+			if (book == null){
+				return null;
+			}
+			if (view == null){
+				view = book.newView();
+				views.put(symbol, view);
+			}
+			book.read(view);
+			return view;
+		}
+
+		void watch(String symbol, char side, long size, long cost){
+			for (Watch watch : this.watches){
+				if (watch.symbol.equals(symbol) && watch.side == side && watch.size == size){
+					return;
+				}
+			}
+			this.watches.add(new Watch(symbol, side, size, cost));
+			Set<Client> clients = watchers.get(symbol);
+			if (clients == null){
+				Set<Client> created = ConcurrentHashMap.<Client>newKeySet();
+				clients = watchers.putIfAbsent(symbol, created);
+				clients = (clients == null) ? created : clients;
+			}
+			clients.add(this);
+			Thread notifier = QueryServer.this.notifier;
+			if (notifier != null){
+				LockSupport.unpark(notifier);
+			}
+		}
+
+		void unwatch(String symbol, char side, long size){
+			boolean watched = false;
+			for (int i = this.watches.size() - 1; i >= 0; i--){
+				Watch watch = this.watches.get(i);
+				if (watch.symbol.equals(symbol) && watch.side == side && watch.size == size){
+					this.watches.remove(i);
+				} else {
+					watched |= watch.symbol.equals(symbol);
+				}
+			}
+			if (!watched){
+				stopWatching(symbol);
+			}
+		}
+
+		void stopWatching(String symbol){
+			Set<Client> clients = watchers.get(symbol);
+			if (clients != null){
+				clients.remove(this);
+				if (clients.isEmpty()){
+					watchers.remove(symbol, clients);
+				}
+			}
+		}
+
+		void answer(StringBuilder answers, BookView view, String symbol, char side, long size, long cost){
+			answers.append((view == null) ? 0 : view.getTimestamp()).append(' ').append(symbol).append(' ')
+				.append(side).append(' ').append(size).append(' ');
+			if (cost == Prices.NOT_AVAILABLE){
+				answers.append("NA");
+			} else if (cost == Prices.BEYOND_DEPTH){
+				answers.append("DEEP");
+			} else {
+				answers.append(Prices.format(cost));
+			}
+			answers.append('\n');
+		}
+
+		void write(String text) throws IOException {
+			this.lock.lock();
+			try{
+				if (closed || this.out == null){
+					throw new IOException("Query server closed");
+				}
+				this.out.write(text.getBytes("US-ASCII"));
+				this.out.flush();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void close(){
+			this.lock.lock();
+			try{
+				this.open = false;
+				for (Watch watch : this.watches){
+					stopWatching(watch.symbol);
+				}
+				this.watches.clear();
+			} finally {
+				this.lock.unlock();
+			}
+			wake();
+			try{
+				this.socket.close();
+			} catch (IOException e){
+				//closing anyway
+			}
+		}
+	}
+
+	/**
+	 * A size a client watches and the cost it was last sent.
+	 */
+	private static class Watch {
+		final String symbol;
+		final char side;
+		final long size;
+		long cost;
+
+		Watch(String symbol, char side, long size, long cost){
+			this.symbol = symbol;
+			this.side = side;
+			this.size = size;
+			this.cost = cost;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a bounded ring buffer of preallocated, reusable slots that puts results computed out of
+ * order on several threads back into sequence. A single producer reserves a sequence number for each
+ * piece of work, any thread fills in the slot of that sequence number and marks it complete, and a single
+ * consumer takes the slots strictly in sequence, waiting for each one to complete.
+ *
+ *		producer: long sequence = ring.next(); ...hand sequence to a worker...
+ *		worker:   T slot = ring.get(sequence); ...fill slot...; ring.complete(sequence);
+ *		consumer: T slot = ring.take(); ...read slot...; ring.release();
+ *
+ * Each slot records the sequence number it was last completed for, so the consumer never needs a lock
+ * and the workers never need to coordinate with each other.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ReorderRing<T> {
+	private final T[] slots;
+	private final int mask;
+	private final WaitStrategy producer_wait; //used while the ring is full
+	private final WaitStrategy consumer_wait; //used while the next slot is not complete
+
+	private final AtomicLongArray completed; //sequence + 1 of the last completion of each slot
+	private final AtomicLong reserved = new AtomicLong(); //number of sequences reserved, written by the producer
+	private final AtomicLong released = new AtomicLong(); //number of slots released, written by the consumer
+	private long producer_released; //producer's cached copy of released
+	private volatile boolean closed;
+
+	//Constructors
+    /**
+     * Creates an empty ring over preallocated slots.
+     *
+     * @param slots The slots to reuse. The length must be a power of 2.
+     * @param producer_wait How the producer waits while the ring is full
+     * @param consumer_wait How the consumer waits for the next slot to complete
+     *
+     * @return ReorderRing instance with no reserved sequences
+     *
+     * @throws IllegalArgumentException if the number of slots is not a power of 2
+     */
+	public ReorderRing(T[] slots, WaitStrategy producer_wait, WaitStrategy consumer_wait){
+		if (slots.length == 0 || Integer.bitCount(slots.length) != 1){
+			throw new IllegalArgumentException("Ring size must be a power of 2: "+slots.length);
+		}
+		this.slots = slots;
+		this.mask = slots.length - 1;
+		this.producer_wait = producer_wait;
+		this.consumer_wait = consumer_wait;
+		this.completed = new AtomicLongArray(slots.length);
+	}
+
+	/**
+	 * This method reserves the next sequence number, waiting while every slot is still in use.
+	 *
+	 * @return sequence The reserved sequence number
+	 */
+	public long next(){
+		long sequence = this.reserved.get();
+		int count = 0;
+		while (sequence - this.producer_released >= this.slots.length){
+			this.producer_released = this.released.get();
+			if (sequence - this.producer_released >= this.slots.length){
+				count = this.producer_wait.idle(count);
+			}
+		}
+		this.reserved.lazySet(sequence + 1);
+		return sequence;
+	}
+
+	/**
+	 * This method tells the consumer that no more sequence numbers will be reserved. Every sequence
+	 * already reserved must still be completed.
+	 */
+	public void close(){
+		this.closed = true;
+	}
+
+	/**
+	 * This method returns the slot of a reserved sequence number, to be filled in by a worker.
+	 *
+	 * @param sequence The reserved sequence number
+	 *
+	 * @return slot The slot of the sequence number
+	 */
+	public T get(long sequence){
+		return this.slots[(int) sequence & this.mask];
+	}
+
+	/**
+	 * This method marks the slot of a sequence number as filled in.
+	 *
+	 * @param sequence The reserved sequence number
+	 */
+	public void complete(long sequence){
+		this.completed.lazySet((int) sequence & this.mask, sequence + 1);
+	}
+
+	/**
+	 * This method returns the slot of the next sequence number, waiting for it to complete.
+	 *
+	 * @return slot The slot to read, null once the ring is closed and every reserved slot has been taken
+	 */
+	public T take(){
+		int count = 0;
+		T slot;
+		while ((slot = poll()) == null){
+			if (this.closed && this.released.get() >= this.reserved.get()){
+				return null;
+			}
+			count = this.consumer_wait.idle(count);
+		}
+		return slot;
+	}
+
+	/**
+	 * This method returns the slot of the next sequence number without waiting.
+	 *
+	 * @return slot The slot to read, null if it is not complete yet
+	 */
+	public T poll(){
+		long sequence = this.released.get();
+		int index = (int) sequence & this.mask;
+		if (this.completed.get(index) != sequence + 1){
+			return null;
+		}
+		return this.slots[index];
+	}
+
+	/**
+	 * This method hands the slot returned by take() or poll() back to the producer.
+	 */
+	public void release(){
+		this.released.lazySet(this.released.get() + 1);
+	}
+}
@@ -1,28 +1,21 @@
 /**
  * This class contains methods and attributes for processing bids and calculated new maximum sale price.
- * It is initialized with a target size of the number of shares to sell, and it maintains a log in the form of 
- * a max TreeMap in order track the bids.
- * 
+ * It is initialized with a target size of the number of shares to sell, and it maintains a log in the form of
+ * a descending PriceLevelTree in order track the bids.
+ *
  * The implementation and tradeoffs are similar to the Buyer class.
  *
  * @author Michael Hinds
  * @version 1.0
 */
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.TreeMap;
-import java.util.Map;
-
 public class Seller {
-	private TreeMap<Double, Integer> bid_log;
-	private int target_size;
-	private double target_shares_cost;
-	private double min_price_paid_per_share; //track this to know if we need to recalculate the max cost of target shares
+	private PriceLevelTree bid_log;
+	private TargetCostSet target_costs; //running cost of the best shares in the log for each target size
 
 	//Constructors
     /**
-     * This is a constructor for the Seller class. It instantiates a new Seller instance with 
+     * This is a constructor for the Seller class. It instantiates a new Seller instance with
      * an empty log of bids and requires a target_size int.
      *
      * @param target_size The number of shares to be sold for maximal price
@@ -30,69 +23,145 @@ public class Seller {
      * @return Seller instance with empty bid log and target_size populated
      */
 	public Seller(int target_size){
-		 this.bid_log = new TreeMap<Double, Integer>(new ReverseComparator());
-		 this.target_size = target_size;
-		 this.target_shares_cost = -1;
-		 this.min_price_paid_per_share = Double.NEGATIVE_INFINITY;
+		 this(new int[]{target_size});
+	}
+
+    /**
+     * This is a constructor for a seller that prices several target sizes over the same log of bids.
+     * The cost changes of every target are available from getCostChange(...) after each update.
+     *
+     * @param target_sizes The target numbers of shares to sell. They are kept in ascending order.
+     *
+     * @return Seller instance with empty bid log and target sizes populated
+     */
+	public Seller(int[] target_sizes){
+		 this(target_sizes, false);
+	}
+
+    /**
+     * This is a constructor for a seller that prices several target sizes, with its log of bids stored on
+     * the heap or in direct memory.
+     *
+     * @param target_sizes The target numbers of shares to sell. They are kept in ascending order.
+     * @param off_heap true to keep the price levels in direct memory (see OffHeapLevelStore)
+     *
+     * @return Seller instance with empty bid log and target sizes populated
+     */
+	public Seller(int[] target_sizes, boolean off_heap){
+		 this.bid_log = new PriceLevelTree(true, off_heap);
+		 this.target_costs = new TargetCostSet(this.bid_log, target_sizes);
 	}
 
 	//Getters & Setters
     /**
-     * Returns the target_size param
+     * Returns the target_size param, the smallest target if there are several
      *
      * @return target_size An integer representing the number of shares to sell
      */
 	public int getTargetSize(){
-		return this.target_size;
+		return this.target_costs.getTargetSize(0);
 	}
 
     /**
      * Sets the target_size param. It is not recommended to do this while after adding bids to the
-     * log as this could lead to an inconsistent state.
+     * log as this could lead to an inconsistent state. It replaces every target size with this one.
      *
      * @param target_size The number of shares to sell
      */
 	public void setTargetSize(int target_size){
-		this.target_size = target_size;
+		this.target_costs.setTargetSizes(new int[]{target_size});
+	}
+
+    /**
+     * Returns the log of bids. It must only be read, as the costs are kept up to date by this seller.
+     *
+     * @return bid_log The price levels of the bids
+     */
+	public PriceLevelTree getBidLog(){
+		return this.bid_log;
+	}
+
+    /**
+     * Returns the number of times the cost of a target has been updated (see TargetCostSet)
+     *
+     * @return recomputes The number of updates
+     */
+	public long getRecomputes(){
+		return this.target_costs.getRecomputes();
+	}
+
+    /**
+     * Returns the number of price levels the cost updates have walked across
+     *
+     * @return levels_walked The number of levels
+     */
+	public long getLevelsWalked(){
+		return this.target_costs.getLevelsWalked();
+	}
+
+    /**
+     * Returns the number of target sizes
+     *
+     * @return count The number of target sizes
+     */
+	public int getTargetCount(){
+		return this.target_costs.size();
+	}
+
+    /**
+     * Returns one of the target sizes
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return target_size The number of shares to sell
+     */
+	public int getTargetSize(int target){
+		return this.target_costs.getTargetSize(target);
+	}
+
+    /**
+     * Returns how the cost of a target changed in the last add or remove. The add and remove methods
+     * return the change of the smallest target.
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of the target is unchanged
+     * Prices.NOT_AVAILABLE if there are no longer enough shares
+     * new cost of the target shares in ticks
+     */
+	public long getCostChange(int target){
+		return this.target_costs.getChange(target);
+	}
+
+    /**
+     * Returns the current cost of a target
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return cost The amount from selling the target shares in ticks, Prices.NOT_AVAILABLE if there are
+     * not enough
+     */
+	public long getCost(int target){
+		return this.target_costs.getCost(target);
 	}
 
 	/**
 	 * This method calculates the maximum price to sell target_size shares. Returns negative infinity if there
-	 * aren't enough shares available.
+	 * aren't enough shares available. Like the Buyer, this takes O(log(n)) using the subtree totals in the log.
      *
      * @return costOfTargetShares The maximum price to sell target_size shares. Returns Double.NEGATIVE_INFINITY
      * if there aren't enough shares in the log.
 	 */
 	public double getCostOfTargetShares(){
-		int shares_remaining = target_size;
-		double total_cost = 0.0;
-		Map.Entry<Double,Integer> cur_bid = this.bid_log.firstEntry();
-		while (shares_remaining > 0 && cur_bid != null){
-			//check if the current bid has enough shares to complete the buy
-			if (cur_bid.getValue() < shares_remaining){
-				//the current bid doesn't have enough shares to complete the buy
-
-				//Add all the shares at this price point to the sale
-				total_cost += cur_bid.getKey() * cur_bid.getValue();
-				shares_remaining -= cur_bid.getValue();
-
-			} else { //the current bid has enough shares to complete the sale
-				total_cost += cur_bid.getKey() * shares_remaining;
-				shares_remaining = 0;
-				this.min_price_paid_per_share = cur_bid.getKey();
-
-			}
-			//get the next highest priced bid
-			cur_bid = bid_log.higherEntry(cur_bid.getKey());
-		}
-		if(shares_remaining > 0){
+		long total_cost = this.bid_log.getCostOfBest(getTargetSize());
+		if (total_cost == Prices.NOT_AVAILABLE){
 			return Double.NEGATIVE_INFINITY;
-		} else {
-			return total_cost;
 		}
+		return Prices.toDouble(total_cost);
 	}
 	/**
-	 * This method adds a bid to the log and recalculates the 
+	 * This method adds a bid to the log and recalculates the
 	 * maximum sale price for target_size shares.
      *
      * @param price The price per share of the bid to be added
@@ -104,31 +173,27 @@ public class Seller {
 	 * new cost of buying target shares
 	**/
 	public Double addNewBid(double price, int size){
-		double new_cost;
+		return toDecimalCost(addNewBidTicks(Prices.toTicks(price), size));
+	}
+
+	/**
+	 * This method adds a bid to the log and recalculates the
+	 * maximum sale price for target_size shares.
+     *
+     * @param price The price per share of the bid to be added in ticks
+     * @param size The number of shares in the bid
+     *
+     * @return
+	 * Prices.UNCHANGED if the cost of selling target shares is unchanged
+	 * Prices.NOT_AVAILABLE if there are not enough shares to complete the sale
+	 * new cost of selling target shares in ticks
+	**/
+	public long addNewBidTicks(long price, int size){
 		/*****add new bid to the log****/
-		//Keys are prices, so check and see if there are some shares at this price already
-		Integer current_shares = this.bid_log.get(price);
-		if (current_shares != null){
-			//already have shares at this price, so increment the number by size
-			this.bid_log.put(price, current_shares+size);
-		} else {
-			//no shares at this price so create a new key/value pair
-			this.bid_log.put(price, size);
-		}
-		//check if the price should be updated
-		if (price <= this.min_price_paid_per_share){
-			//the new bid is too low and won't affect max sale
-			return null;
-		}
-		new_cost = getCostOfTargetShares();
-		if (new_cost == this.target_shares_cost || (this.target_shares_cost == -1 && new_cost == Double.NEGATIVE_INFINITY)){
-			//the new_cost is the same as the old cost
-			this.target_shares_cost = new_cost;
-			return null;
-		} else {
-			this.target_shares_cost = new_cost;
-			return this.target_shares_cost;
-		}
+		//Levels are keyed by price, so the shares are merged into an existing level at this price
+		this.bid_log.add(price, size);
+		//apply the new shares to the running cost, this only walks the levels the boundary moves across
+		return this.target_costs.add(price, size);
 	}
 
     /**
@@ -143,31 +208,39 @@ public class Seller {
      * Double.NEGATIVE_INFINITY if there are not enough shares to complete the sale
      */
 	public Double removeBid(double price, int size) throws Exception {
-		Double new_cost;
+		return toDecimalCost(removeBidTicks(Prices.toTicks(price), size));
+	}
+
+    /**
+     * This method removes a bid from the log. Then, it recalculates the maximum price to sell target_size
+     * shares.
+     *
+     * @param price The price per share of the bid to remove in ticks
+     * @param size The number of shares in the bid
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of selling target shares is unchanged
+     * Prices.NOT_AVAILABLE if there are not enough shares to complete the sale
+     * new cost of selling target shares in ticks
+     */
+	public long removeBidTicks(long price, int size) throws Exception {
 		//remove shares from log
-		Integer current_shares = this.bid_log.get(price);
-        if (current_shares == null) {
-            throw new Exception("Error: Cannot remove shares. No shares in the seller log at this price: "+price);
+		int current_shares = this.bid_log.getShares(price);
+        if (current_shares == 0) {
+            throw new Exception("Error: Cannot remove shares. No shares in the seller log at this price: "+Prices.toDouble(price));
         }
-		if (size < current_shares) {//there are other bids at this price, so just decrement shares from log
-			this.bid_log.put(price,current_shares-size);
-		} else {//remove the entry from the log completely
-			this.bid_log.remove(price);
-		}
-		//recalculate price if needed
-		if (price >= this.min_price_paid_per_share){
-			//invalidates min_price_paid_per_share
-			this.min_price_paid_per_share = Double.NEGATIVE_INFINITY;
-			new_cost = getCostOfTargetShares();
-			if(new_cost == this.target_shares_cost || (this.target_shares_cost == -1 && new_cost == Double.NEGATIVE_INFINITY)){
-				this.target_shares_cost = new_cost;
-				return null;
-			} else {
-				this.target_shares_cost = new_cost;
-				return this.target_shares_cost;
-			}
-		} else {
+		//decrements the shares at this price, or removes the level completely if no shares are left
+		this.bid_log.remove(price, size);
+		//apply the removed shares to the running cost
+		return this.target_costs.remove(price, Math.min(size, current_shares));
+	}
+
+	private static Double toDecimalCost(long cost){
+		if (cost == Prices.UNCHANGED){
 			return null;
+		} else if (cost == Prices.NOT_AVAILABLE){
+			return Double.NEGATIVE_INFINITY;
 		}
+		return Prices.toDouble(cost);
 	}
 }
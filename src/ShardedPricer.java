@@ -0,0 +1,264 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * This class prices many instruments on a fixed pool of worker threads. Symbols are hash-partitioned
+ * across the workers, and each worker owns the OrderBooks of its symbols outright, so the books are never
+ * locked or shared. The thread that reads the input copies each message into a batch for the worker that
+ * owns its symbol and hands full batches over through a small queue. Batches are recycled, so the steady
+ * state does not allocate.
+ *
+ * Every message for a symbol goes to the same worker in input order, so the output of each symbol stays
+ * in input order. Lines of different symbols may be interleaved differently from a single-threaded run.
+ * Each worker buffers its own lines and writes only whole lines to the shared output stream.
+ *
+ * If a worker fails, for example on a reduce of an unknown order id, it stops applying messages and
+ * dispatch(...) returns false so the reader can stop.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class ShardedPricer implements Flushable {
+	public static final int BATCH_SIZE = 1024;
+	private static final int BATCHES_PER_WORKER = 4;
+
+	private Worker[] workers;
+	private Batch[] current; //batch being filled for each worker
+	private volatile Exception error; //first error from a worker, null if there is none
+	private boolean finished;
+
+	//Constructors
+    /**
+     * Creates and starts the worker threads.
+     *
+     * @param threads The number of worker threads
+     * @param buy_target_sizes The target numbers of shares to buy
+     * @param sell_target_sizes The target numbers of shares to sell
+     * @param out The stream to write price changes to. Writes to it are synchronized on the stream.
+     * @param max_latency_nanos The longest a line may wait in a worker's buffer, 0 to wait until it fills
+     * @param tag_targets true to start each line with its target size (see PriceWriter.setTagTargets)
+     * @param off_heap true to keep the price levels of every book in direct memory (see OffHeapLevelStore)
+     *
+     * @return ShardedPricer instance with running workers
+     */
+	public ShardedPricer(int threads, int[] buy_target_sizes, int[] sell_target_sizes, OutputStream out,
+			long max_latency_nanos, boolean tag_targets, boolean off_heap){
+		this.workers = new Worker[threads];
+		this.current = new Batch[threads];
+		this.finished = false;
+		for (int i = 0; i < threads; i++){
+			PriceWriter writer = new PriceWriter(new SharedOutputStream(out), PriceWriter.DEFAULT_BUFFER_SIZE,
+				max_latency_nanos);
+			writer.setTagTargets(tag_targets);
+			this.workers[i] = new Worker(this, new OrderBooks(buy_target_sizes, sell_target_sizes, off_heap), writer,
+				max_latency_nanos > 0);
+			this.current[i] = this.workers[i].free.poll();
+			Thread thread = new Thread(this.workers[i], "pricer-worker-"+i);
+			thread.setDaemon(true);
+			this.workers[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	//Getters
+    /**
+     * Returns the first error thrown by a worker
+     *
+     * @return error The error, null if no worker has failed
+     */
+	public Exception getError(){
+		return this.error;
+	}
+
+    /**
+     * Returns the worker that owns the book of a symbol.
+     *
+     * @param symbol The bytes of the symbol
+     * @param length The number of bytes in the symbol
+     *
+     * @return shard The index of the worker
+     */
+	public int getShard(byte[] symbol, int length){
+		return (int) ((OrderIndex.hash(symbol, length) >>> 1) % this.workers.length);
+	}
+
+	/**
+	 * This method copies a message into the batch of the worker that owns its symbol. The batch is handed
+	 * to the worker once it is full.
+	 *
+	 * @param message The parsed add or reduce message. It may be reused as soon as this returns.
+	 *
+	 * @return true to keep going, false if a worker has failed
+	 */
+	public boolean dispatch(OrderMessage message) throws InterruptedException {
+		int shard = getShard(message.getSymbolBytes(), message.getSymbolLength());
+		Batch batch = this.current[shard];
+		batch.messages[batch.count++].copyFrom(message);
+		if (batch.count == BATCH_SIZE){
+			publish(shard);
+			return this.error == null;
+		}
+		return true;
+	}
+
+	/**
+	 * This method hands every partly filled batch to its worker, so messages are not held back while the
+	 * input is idle.
+	 */
+	@Override
+	public void flush() throws IOException {
+		try{
+			for (int shard = 0; shard < this.workers.length; shard++){
+				if (this.current[shard].count > 0){
+					publish(shard);
+				}
+			}
+		} catch (InterruptedException e){
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * This method hands the remaining messages to the workers, waits for them to apply the messages and
+	 * flush their output, and stops them. It does nothing if called again.
+	 */
+	public void finish() throws InterruptedException {
+		if (this.finished){
+			return;
+		}
+		this.finished = true;
+		for (int shard = 0; shard < this.workers.length; shard++){
+			this.current[shard].last = true;
+			this.workers[shard].full.put(this.current[shard]);
+		}
+		for (Worker worker : this.workers){
+			worker.thread.join();
+		}
+	}
+
+	private void publish(int shard) throws InterruptedException {
+		Worker worker = this.workers[shard];
+		worker.full.put(this.current[shard]);
+		this.current[shard] = worker.free.take();
+	}
+
+	private synchronized void fail(Exception e){
+		if (this.error == null){
+			this.error = e;
+		}
+	}
+
+	/*****Workers*****/
+
+	private static class Batch {
+		OrderMessage[] messages;
+		int count;
+		boolean last; //true for the final batch of the input
+
+		Batch(){
+			this.messages = new OrderMessage[BATCH_SIZE];
+			for (int i = 0; i < BATCH_SIZE; i++){
+				this.messages[i] = new OrderMessage();
+			}
+		}
+	}
+
+	private static class Worker implements Runnable {
+		ShardedPricer pricer;
+		OrderBooks books;
+		PriceWriter writer;
+		boolean flush_when_idle;
+		ArrayBlockingQueue<Batch> full; //batches waiting to be applied
+		ArrayBlockingQueue<Batch> free; //applied batches waiting to be refilled
+		Thread thread;
+
+		Worker(ShardedPricer pricer, OrderBooks books, PriceWriter writer, boolean flush_when_idle){
+			this.pricer = pricer;
+			this.books = books;
+			this.writer = writer;
+			this.flush_when_idle = flush_when_idle;
+			//one batch is always being filled, so the rest can all be waiting without blocking the reader
+			this.full = new ArrayBlockingQueue<Batch>(BATCHES_PER_WORKER);
+			this.free = new ArrayBlockingQueue<Batch>(BATCHES_PER_WORKER);
+			for (int i = 0; i < BATCHES_PER_WORKER; i++){
+				this.free.add(new Batch());
+			}
+		}
+
+		@Override
+		public void run(){
+			boolean failed = false;
+			boolean last = false;
+			while (!last){
+				try{
+					Batch batch = this.full.poll();
+					if (batch == null){
+						if (this.flush_when_idle){
+							this.writer.flush();
+						}
+						batch = this.full.take();
+					}
+					for (int i = 0; i < batch.count && !failed; i++){
+						try{
+							this.books.processMessage(batch.messages[i], this.writer);
+						} catch (Exception e){
+							failed = true;
+							this.pricer.fail(e);
+						}
+					}
+					if (this.flush_when_idle){
+						this.writer.flushIfDue();
+					}
+					last = batch.last;
+					batch.count = 0;
+					batch.last = false;
+					this.free.put(batch);
+				} catch (IOException e){
+					failed = true;
+					this.pricer.fail(e);
+				} catch (InterruptedException e){
+					return;
+				}
+			}
+			try{
+				this.writer.flush();
+			} catch (IOException e){
+				this.pricer.fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes whole blocks to a stream that is shared with other workers.
+	 */
+	private static class SharedOutputStream extends OutputStream {
+		private OutputStream out;
+
+		SharedOutputStream(OutputStream out){
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			synchronized (this.out){
+				this.out.write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			synchronized (this.out){
+				this.out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (this.out){
+				this.out.flush();
+			}
+		}
+	}
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+
+/**
+ * This class applies the two sides of the books on separate threads. The cost to buy only depends on the
+ * offers and the amount from selling only depends on the bids, so they can be computed in parallel:
+ *
+ *		dispatcher	(the caller) keeps the order index of every instrument, resolves each reduce to the
+ *					side, price and number of shares of its order, and routes the message by side
+ *		buyer		applies offers to a Buyer per instrument
+ *		seller		applies bids to a Seller per instrument
+ *		merger		writes the price changes of both sides in input order to a PriceOutput
+ *
+ * Every message is given a sequence number in a ReorderRing, and the side that handles it fills in the
+ * slot of that sequence number, so the merger writes exactly what the single-threaded pricer would. The
+ * stages are connected by preallocated rings, so the steady state does not allocate or lock. The two
+ * sides may use different target sizes, and each may price several.
+ *
+ * A reduce of an unknown order id is thrown by dispatch(...) itself, as it would be by OrderBook.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class SplitSidePricer {
+	public static final int DEFAULT_RING_SIZE = 1 << 12;
+
+	private SymbolTable<OrderIndex> indexes; //owned by the dispatcher
+	private SpscRing<SideOrder> offers; //dispatcher to buyer
+	private SpscRing<SideOrder> bids; //dispatcher to seller
+	private ReorderRing<PriceChange[]> changes; //buyer and seller to merger, a change per target of the side
+	private PriceOutput writer;
+	private boolean flush_when_idle;
+	private Thread[] threads;
+	private volatile Exception error; //first error from a side or the merger, null if there is none
+	private boolean finished;
+
+	//Constructors
+    /**
+     * Creates the rings and starts the buyer, seller and merger threads.
+     *
+     * @param buy_target_sizes The target numbers of shares to buy
+     * @param sell_target_sizes The target numbers of shares to sell
+     * @param writer The writer for price changes. It must only be used by the merger until finish() returns.
+     * @param ring_size The number of slots in each ring, a power of 2
+     * @param wait How every thread waits for the others
+     * @param flush_when_idle true to flush the writer whenever the merger runs out of price changes
+     * @param off_heap true to keep the price levels of every side in direct memory (see OffHeapLevelStore)
+     *
+     * @return SplitSidePricer instance with running threads
+     */
+	public SplitSidePricer(final int[] buy_target_sizes, final int[] sell_target_sizes, PriceOutput writer,
+			int ring_size, WaitStrategy wait, boolean flush_when_idle, final boolean off_heap){
+		this.writer = writer;
+		this.flush_when_idle = flush_when_idle;
+		this.finished = false;
+		this.indexes = new SymbolTable<OrderIndex>(){
+			protected OrderIndex create(byte[] symbol){
+				return new OrderIndex();
+			}
+		};
+
+		SideOrder[] offer_slots = new SideOrder[ring_size];
+		SideOrder[] bid_slots = new SideOrder[ring_size];
+		//room for a change of every target of the side with the most targets
+		int targets = Math.max(buy_target_sizes.length, sell_target_sizes.length);
+		PriceChange[][] change_slots = new PriceChange[ring_size][targets];
+		for (int i = 0; i < ring_size; i++){
+			offer_slots[i] = new SideOrder();
+			bid_slots[i] = new SideOrder();
+			for (int target = 0; target < targets; target++){
+				change_slots[i][target] = new PriceChange();
+			}
+		}
+		this.offers = new SpscRing<SideOrder>(offer_slots, wait, wait);
+		this.bids = new SpscRing<SideOrder>(bid_slots, wait, wait);
+		this.changes = new ReorderRing<PriceChange[]>(change_slots, wait, wait);
+
+		final SymbolTable<Buyer> buyers = new SymbolTable<Buyer>(){
+			protected Buyer create(byte[] symbol){
+				return new Buyer(buy_target_sizes, off_heap);
+			}
+		};
+		final SymbolTable<Seller> sellers = new SymbolTable<Seller>(){
+			protected Seller create(byte[] symbol){
+				return new Seller(sell_target_sizes, off_heap);
+			}
+		};
+		Runnable buyer = new Runnable(){
+			public void run(){
+				runSide(offers, OrderMessage.BUY, buyers, null);
+			}
+		};
+		Runnable seller = new Runnable(){
+			public void run(){
+				runSide(bids, OrderMessage.SELL, null, sellers);
+			}
+		};
+		Runnable merger = new Runnable(){
+			public void run(){
+				runMerger();
+			}
+		};
+		this.threads = new Thread[]{new Thread(buyer, "pricer-buyer"), new Thread(seller, "pricer-seller"),
+			new Thread(merger, "pricer-merger")};
+		for (Thread thread : this.threads){
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	//Getters
+    /**
+     * Returns the first error thrown by the buyer, seller or merger
+     *
+     * @return error The error, null if none of them has failed
+     */
+	public Exception getError(){
+		return this.error;
+	}
+
+	/*****Dispatcher*****/
+
+	/**
+	 * This method updates the order index with a message and routes it to the side it changes.
+	 *
+	 * @param message The parsed add or reduce message. It may be reused as soon as this returns.
+	 *
+	 * @return true to keep going, false if a side or the merger has failed
+	 *
+	 * @throws Exception if the message reduces an unknown order id
+	 */
+	public boolean dispatch(OrderMessage message) throws Exception {
+		OrderIndex id_to_order = this.indexes.get(message.getSymbolBytes(), message.getSymbolLength());
+		char side;
+		long price;
+		int size;
+		if (message.getType() == OrderMessage.ADD){
+			side = message.getSide();
+			price = message.getPrice();
+			size = message.getSize();
+			id_to_order.add(message.getOrderIdBytes(), message.getOrderIdLength(), side, price, size);
+		} else {
+			int slot = id_to_order.find(message.getOrderIdBytes(), message.getOrderIdLength());
+			if (slot == OrderIndex.NOT_FOUND){
+				throw new Exception("Error: Cannot remove shares. Unknown order id: "+message.getOrderId());
+			}
+			side = id_to_order.getSide(slot);
+			price = id_to_order.getPrice(slot);
+			size = id_to_order.reduce(slot, message.getSize());
+		}
+
+		SpscRing<SideOrder> ring = (side == OrderMessage.SELL) ? this.offers : this.bids;
+		SideOrder order = ring.claim();
+		order.type = message.getType();
+		order.sequence = this.changes.next();
+		order.timestamp = message.getTimestamp();
+		order.price = price;
+		order.size = size;
+		order.setSymbol(message.getSymbolBytes(), message.getSymbolLength());
+		ring.publish();
+		return this.error == null;
+	}
+
+	/**
+	 * This method waits for every dispatched message to be applied and written and stops the threads. The
+	 * writer is not flushed, so the caller can add to the output after it. It does nothing if called again.
+	 */
+	public void finish() throws InterruptedException {
+		if (this.finished){
+			return;
+		}
+		this.finished = true;
+		this.offers.close();
+		this.bids.close();
+		this.changes.close();
+		for (Thread thread : this.threads){
+			thread.join();
+		}
+	}
+
+	/*****Sides*****/
+
+	private void runSide(SpscRing<SideOrder> ring, char output_side, SymbolTable<Buyer> buyers,
+			SymbolTable<Seller> sellers){
+		boolean failed = false;
+		SideOrder order;
+		while ((order = ring.take()) != null){
+			PriceChange[] slot = this.changes.get(order.sequence);
+			int written = 0;
+			if (!failed){
+				try{
+					if (buyers != null){
+						Buyer buyer = buyers.get(order.symbol, order.symbol_length);
+						if (order.type == OrderMessage.ADD){
+							buyer.addNewOfferTicks(order.price, order.size);
+						} else {
+							buyer.removeOfferTicks(order.price, order.size);
+						}
+						for (int target = 0; target < buyer.getTargetCount(); target++){
+							written = addChange(slot, written, order, output_side, buyer.getTargetSize(target),
+								buyer.getCostChange(target));
+						}
+					} else {
+						Seller seller = sellers.get(order.symbol, order.symbol_length);
+						if (order.type == OrderMessage.ADD){
+							seller.addNewBidTicks(order.price, order.size);
+						} else {
+							seller.removeBidTicks(order.price, order.size);
+						}
+						for (int target = 0; target < seller.getTargetCount(); target++){
+							written = addChange(slot, written, order, output_side, seller.getTargetSize(target),
+								seller.getCostChange(target));
+						}
+					}
+				} catch (Exception e){
+					failed = true;
+					fail(e);
+				}
+			}
+			//every sequence is completed, even after a failure, so the merger never waits forever
+			if (written < slot.length){
+				slot[written].set(order.timestamp, output_side, 0, Prices.UNCHANGED, null, 0);
+			}
+			this.changes.complete(order.sequence);
+			ring.release();
+		}
+	}
+
+	private static int addChange(PriceChange[] slot, int written, SideOrder order, char output_side, int target_size,
+			long cost){
+		if (cost == Prices.UNCHANGED){
+			return written;
+		}
+		slot[written].set(order.timestamp, output_side, target_size, cost, order.symbol, order.symbol_length);
+		return written + 1;
+	}
+
+	private void runMerger(){
+		boolean failed = false;
+		while (true){
+			PriceChange[] slot = this.changes.poll();
+			if (slot == null){
+				if (this.flush_when_idle && !failed){
+					failed = flushWriter();
+				}
+				slot = this.changes.take();
+				if (slot == null){
+					return;
+				}
+			}
+			//the changes of the message are followed by an unchanged one unless every target changed
+			for (int i = 0; i < slot.length && !failed && slot[i].getCost() != Prices.UNCHANGED; i++){
+				try{
+					slot[i].writeTo(this.writer);
+				} catch (IOException e){
+					failed = true;
+					fail(e);
+				}
+			}
+			this.changes.release();
+		}
+	}
+
+	private boolean flushWriter(){
+		try{
+			this.writer.flush();
+			return false;
+		} catch (IOException e){
+			fail(e);
+			return true;
+		}
+	}
+
+	private synchronized void fail(Exception e){
+		if (this.error == null){
+			this.error = e;
+		}
+	}
+
+	/**
+	 * An add or reduce of one side, with the reduce already resolved to the price and number of shares of
+	 * its order.
+	 */
+	private static class SideOrder {
+		char type;
+		long sequence;
+		long timestamp;
+		long price;
+		int size;
+		byte[] symbol = new byte[SymbolTable.MAX_SYMBOL_LENGTH];
+		int symbol_length;
+
+		void setSymbol(byte[] bytes, int length){
+			System.arraycopy(bytes, 0, this.symbol, 0, length);
+			this.symbol_length = length;
+		}
+	}
+}
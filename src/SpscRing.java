@@ -0,0 +1,153 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a bounded single-producer/single-consumer ring buffer of preallocated, reusable slots, in
+ * the style of the LMAX Disruptor. Nothing is copied in or out and nothing is allocated after construction:
+ * the producer claims the next free slot, fills it in place and publishes it, and the consumer takes the
+ * next published slot, reads it in place and releases it back to the producer.
+ *
+ *		producer: T slot = ring.claim(); ...fill slot...; ring.publish();
+ *		consumer: T slot = ring.take(); ...read slot...; ring.release();
+ *
+ * The producer and consumer each own one counter and only publish it with an ordered store, and each
+ * keeps a cached copy of the other's counter so that it only reads the shared one when it looks like it
+ * has to wait. The producer's counter and cached copy share a cache line that the consumer only reads, and
+ * the consumer's share another that the producer only reads, padded from each other and from the fields of
+ * the ring, so neither thread's stores evict a line the other is storing to. Exactly one thread may produce
+ * and exactly one may consume.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class SpscRing<T> {
+	private final T[] slots;
+	private final int mask;
+	private final WaitStrategy producer_wait; //used while the ring is full
+	private final WaitStrategy consumer_wait; //used while the ring is empty
+
+	//The counters and cached copies are elements of one array, padded so each side has a cache line of its own
+	private static final int PAD = 8; //longs per cache line
+	private static final int PUBLISHED = PAD; //number of slots published, written by the producer
+	private static final int PRODUCER_RELEASED = PAD + 1; //producer's cached copy of RELEASED
+	private static final int RELEASED = 2 * PAD; //number of slots released, written by the consumer
+	private static final int CONSUMER_PUBLISHED = 2 * PAD + 1; //consumer's cached copy of PUBLISHED
+	private final AtomicLongArray counters = new AtomicLongArray(3 * PAD);
+	private volatile boolean closed;
+
+	//Constructors
+    /**
+     * Creates an empty ring over preallocated slots.
+     *
+     * @param slots The slots to reuse. The length must be a power of 2.
+     * @param producer_wait How the producer waits while the ring is full
+     * @param consumer_wait How the consumer waits while the ring is empty
+     *
+     * @return SpscRing instance with no published slots
+     *
+     * @throws IllegalArgumentException if the number of slots is not a power of 2
+     */
+	public SpscRing(T[] slots, WaitStrategy producer_wait, WaitStrategy consumer_wait){
+		if (slots.length == 0 || Integer.bitCount(slots.length) != 1){
+			throw new IllegalArgumentException("Ring size must be a power of 2: "+slots.length);
+		}
+		this.slots = slots;
+		this.mask = slots.length - 1;
+		this.producer_wait = producer_wait;
+		this.consumer_wait = consumer_wait;
+	}
+
+	//Getters
+	public int capacity(){
+		return this.slots.length;
+	}
+
+	/*****Producer*****/
+
+	/**
+	 * This method returns the next free slot, waiting while the ring is full. Calling it again before
+	 * publish() returns the same slot.
+	 *
+	 * @return slot The slot to fill in
+	 */
+	public T claim(){
+		long next = this.counters.get(PUBLISHED);
+		long released = this.counters.get(PRODUCER_RELEASED);
+		int count = 0;
+		while (next - released >= this.slots.length){
+			released = this.counters.get(RELEASED);
+			this.counters.lazySet(PRODUCER_RELEASED, released);
+			if (next - released >= this.slots.length){
+				count = this.producer_wait.idle(count);
+			}
+		}
+		return this.slots[(int) next & this.mask];
+	}
+
+	/**
+	 * This method makes the claimed slot visible to the consumer.
+	 */
+	public void publish(){
+		this.counters.lazySet(PUBLISHED, this.counters.get(PUBLISHED) + 1);
+	}
+
+	/**
+	 * This method tells the consumer that nothing more will be published. Slots already published are
+	 * still taken first.
+	 */
+	public void close(){
+		this.closed = true;
+	}
+
+	/*****Consumer*****/
+
+	/**
+	 * This method returns the next published slot, waiting while the ring is empty.
+	 *
+	 * @return slot The slot to read, null once the ring is closed and every slot has been taken
+	 */
+	public T take(){
+		int count = 0;
+		T slot;
+		while ((slot = poll()) == null){
+			if (this.closed){
+				//everything was published before the ring was closed, so check once more
+				return poll();
+			}
+			count = this.consumer_wait.idle(count);
+		}
+		return slot;
+	}
+
+	/**
+	 * This method returns the next published slot without waiting.
+	 *
+	 * @return slot The slot to read, null if no slot is waiting
+	 */
+	public T poll(){
+		long next = this.counters.get(RELEASED);
+		if (next >= this.counters.get(CONSUMER_PUBLISHED)){
+			long published = this.counters.get(PUBLISHED);
+			this.counters.lazySet(CONSUMER_PUBLISHED, published);
+			if (next >= published){
+				return null;
+			}
+		}
+		return this.slots[(int) next & this.mask];
+	}
+
+	/**
+	 * This method hands the slot returned by take() or poll() back to the producer.
+	 */
+	public void release(){
+		this.counters.lazySet(RELEASED, this.counters.get(RELEASED) + 1);
+	}
+
+	/**
+	 * Returns true once the ring is closed. Slots may still be waiting to be taken.
+	 *
+	 * @return closed true if the producer has closed the ring
+	 */
+	public boolean isClosed(){
+		return this.closed;
+	}
+}
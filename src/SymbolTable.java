@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class maps instrument symbols to per-instrument state, such as an OrderBook. An entry is created
+ * with create(...) the first time its symbol is seen, and messages without a symbol use the entry of the
+ * unnamed default instrument. Symbols are looked up straight from the bytes of a message with an
+ * open-addressing table, so no String is created per message.
+ *
+ * This class is not thread safe and is meant to be owned by one thread.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public abstract class SymbolTable<T> {
+	public static final int MAX_SYMBOL_LENGTH = 32;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Object[] values; //power of 2 slots, null if empty
+	private byte[][] symbols; //symbol of each slot
+	private long[] hashes; //hash of the symbol in each slot
+	private int count;
+
+	//Constructors
+    /**
+     * Creates a table with no entries.
+     *
+     * @return SymbolTable instance with no entries
+     */
+	public SymbolTable(){
+		this.values = new Object[INITIAL_CAPACITY];
+		this.symbols = new byte[INITIAL_CAPACITY][];
+		this.hashes = new long[INITIAL_CAPACITY];
+		this.count = 0;
+	}
+
+    /**
+     * Creates the entry of an instrument the first time its symbol is seen.
+     *
+     * @param symbol A copy of the symbol, an empty array for the unnamed default instrument
+     *
+     * @return value The new entry
+     */
+	protected abstract T create(byte[] symbol);
+
+    /**
+     * Returns the number of entries that have been created
+     *
+     * @return count The number of entries
+     */
+	public int size(){
+		return this.count;
+	}
+
+	/**
+	 * This method returns the entry of an instrument, creating it if its symbol has not been seen before.
+	 *
+	 * @param symbol The bytes of the symbol
+	 * @param length The number of bytes in the symbol, 0 for the unnamed default instrument
+	 *
+	 * @return value The entry of the instrument
+	 *
+	 * @throws IllegalArgumentException if the symbol is longer than MAX_SYMBOL_LENGTH bytes
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(byte[] symbol, int length){
+		long hash = OrderIndex.hash(symbol, length);
+		int mask = this.values.length - 1;
+		int slot = (int) hash & mask;
+		while (this.values[slot] != null){
+			if (this.hashes[slot] == hash && sameSymbol(this.symbols[slot], symbol, length)){
+				return (T) this.values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (length > MAX_SYMBOL_LENGTH){
+			throw new IllegalArgumentException("Error: Symbol is longer than "+MAX_SYMBOL_LENGTH+" bytes: "
+				+new String(symbol, 0, length));
+		}
+		byte[] copy = Arrays.copyOf(symbol, length);
+		T value = create(copy);
+		this.values[slot] = value;
+		this.symbols[slot] = copy;
+		this.hashes[slot] = hash;
+		this.count++;
+		if (this.count * 2 > this.values.length){
+			resize();
+		}
+		return value;
+	}
+
+    /**
+     * Returns every entry that has been created, in no particular order. This allocates and is meant for
+     * work off the hot path, such as writing snapshots.
+     *
+     * @return values The entries
+     */
+	@SuppressWarnings("unchecked")
+	public List<T> values(){
+		List<T> values = new ArrayList<T>(this.count);
+		for (Object value : this.values){
+			if (value != null){
+				values.add((T) value);
+			}
+		}
+		return values;
+	}
+
+	private void resize(){
+		Object[] old_values = this.values;
+		byte[][] old_symbols = this.symbols;
+		long[] old_hashes = this.hashes;
+		this.values = new Object[old_values.length * 2];
+		this.symbols = new byte[old_values.length * 2][];
+		this.hashes = new long[old_values.length * 2];
+		int mask = this.values.length - 1;
+		for (int i = 0; i < old_values.length; i++){
+			if (old_values[i] == null){
+				continue;
+			}
+			int slot = (int) old_hashes[i] & mask;
+			while (this.values[slot] != null){
+				slot = (slot + 1) & mask;
+			}
+			this.values[slot] = old_values[i];
+			this.symbols[slot] = old_symbols[i];
+			this.hashes[slot] = old_hashes[i];
+		}
+	}
+
+	private static boolean sameSymbol(byte[] entry_symbol, byte[] symbol, int length){
+		if (entry_symbol.length != length){
+			return false;
+		}
+		for (int i = 0; i < length; i++){
+			if (entry_symbol[i] != symbol[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps the cost of several target sizes over one shared PriceLevelTree, so the same book can
+ * be priced for many targets without keeping it more than once. It holds a TargetCostTracker per target
+ * and remembers the last cost reported for each, so every update reports which targets changed.
+ *
+ * The targets are kept in ascending order. The boundary price of a larger target is never better than that
+ * of a smaller one, so an update is applied from the largest target down and stops at the first filled
+ * target whose boundary it is behind: none of the smaller targets can be affected either. Changes deep in
+ * the book therefore cost the same however many targets are kept, and the work of an update grows with
+ * the levels the boundaries move across rather than with the number of targets.
+ *
+ * Callers must update the tree first and then notify the set of the same change.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class TargetCostSet {
+	private PriceLevelTree log;
+	private int[] target_sizes; //ascending and distinct
+	private TargetCostTracker[] trackers; //one per target size
+	private long[] reported_costs; //last cost reported per target, Prices.NOT_AVAILABLE until it is filled
+	private long[] changes; //change of each target from the last update
+	private long recomputes; //updates applied to a target's cost, for PricerStats
+
+	//Constructors
+    /**
+     * Creates a set for an empty log.
+     *
+     * @param log The price levels to track. Must be empty.
+     * @param target_sizes The numbers of shares to fill. They are sorted and duplicates are dropped.
+     *
+     * @return TargetCostSet instance with no shares filled
+     */
+	public TargetCostSet(PriceLevelTree log, int[] target_sizes){
+		this.log = log;
+		setTargetSizes(target_sizes);
+	}
+
+	//Getters & Setters
+    /**
+     * Returns the number of target sizes
+     *
+     * @return count The number of target sizes
+     */
+	public int size(){
+		return this.target_sizes.length;
+	}
+
+	public int getTargetSize(int target){
+		return this.target_sizes[target];
+	}
+
+    /**
+     * Returns how the cost of a target changed in the last add or remove.
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return
+     * Prices.UNCHANGED if the cost of the target is unchanged
+     * Prices.NOT_AVAILABLE if there are no longer enough shares to fill the target
+     * new cost of the target shares in ticks
+     */
+	public long getChange(int target){
+		return this.changes[target];
+	}
+
+    /**
+     * Returns the number of times the cost of a target has been updated, counting each target an add or
+     * remove reached once.
+     *
+     * @return recomputes The number of updates
+     */
+	public long getRecomputes(){
+		return this.recomputes;
+	}
+
+    /**
+     * Returns the number of levels the boundaries of all the targets have moved across.
+     *
+     * @return levels_walked The number of levels
+     */
+	public long getLevelsWalked(){
+		long levels_walked = 0;
+		for (TargetCostTracker tracker : this.trackers){
+			levels_walked += tracker.getLevelsWalked();
+		}
+		return levels_walked;
+	}
+
+    /**
+     * Returns the cost of a target as it was last reported.
+     *
+     * @param target The index of the target, in ascending order of target size
+     *
+     * @return cost The cost in ticks, Prices.NOT_AVAILABLE if there are not enough shares
+     */
+	public long getCost(int target){
+		return this.reported_costs[target];
+	}
+
+    /**
+     * Replaces the target sizes and recalculates their costs from the best level. Costs reported after
+     * this are compared with the new costs, so no change is reported for the switch itself.
+     *
+     * @param target_sizes The numbers of shares to fill. They are sorted and duplicates are dropped.
+     */
+	public void setTargetSizes(int[] target_sizes){
+		int[] sorted = target_sizes.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (int i = 0; i < sorted.length; i++){
+			if (i == 0 || sorted[i] != sorted[i - 1]){
+				sorted[count++] = sorted[i];
+			}
+		}
+		this.target_sizes = Arrays.copyOf(sorted, count);
+		this.trackers = new TargetCostTracker[count];
+		this.reported_costs = new long[count];
+		this.changes = new long[count];
+		for (int i = 0; i < count; i++){
+			this.trackers[i] = new TargetCostTracker(this.log, this.target_sizes[i]);
+			if (this.log.getLevelCount() > 0){
+				this.trackers[i].setTargetSize(this.target_sizes[i]);
+			}
+			this.reported_costs[i] = currentCost(i);
+			this.changes[i] = Prices.UNCHANGED;
+		}
+	}
+
+	/**
+	 * This method applies shares that have been added to the log to the cost of every target.
+	 *
+	 * @param price The price of the level the shares were added to in ticks
+	 * @param size The number of shares added
+	 *
+	 * @return change The change of the smallest target, see getChange(0)
+	 */
+	public long add(long price, int size){
+		int target = this.trackers.length - 1;
+		for (; target >= 0; target--){
+			TargetCostTracker tracker = this.trackers[target];
+			if (tracker.isFilled() && this.log.compare(price, tracker.getBoundaryPrice()) >= 0){
+				//at or behind the boundary of this target, so behind the boundaries of the smaller ones too
+				break;
+			}
+			tracker.add(price, size);
+			this.recomputes++;
+		}
+		return updateChanges(target);
+	}
+
+	/**
+	 * This method applies shares that have been removed from the log to the cost of every target.
+	 *
+	 * @param price The price of the level the shares were removed from in ticks
+	 * @param size The number of shares that were actually removed from the level
+	 *
+	 * @return change The change of the smallest target, see getChange(0)
+	 */
+	public long remove(long price, int size){
+		int target = this.trackers.length - 1;
+		for (; target >= 0; target--){
+			TargetCostTracker tracker = this.trackers[target];
+			if (tracker.isFilled() && this.log.compare(price, tracker.getBoundaryPrice()) > 0){
+				//behind the boundary of this target, so behind the boundaries of the smaller ones too
+				break;
+			}
+			tracker.remove(price, size);
+			this.recomputes++;
+		}
+		return updateChanges(target);
+	}
+
+    /**
+     * Compares the running cost of every target above untouched with the last cost that was reported.
+     * Targets up to untouched were not updated, so their costs are unchanged.
+     */
+	private long updateChanges(int untouched){
+		for (int target = 0; target < this.trackers.length; target++){
+			if (target <= untouched){
+				this.changes[target] = Prices.UNCHANGED;
+				continue;
+			}
+			long new_cost = currentCost(target);
+			if (new_cost == this.reported_costs[target]){
+				this.changes[target] = Prices.UNCHANGED;
+			} else {
+				this.reported_costs[target] = new_cost;
+				this.changes[target] = new_cost;
+			}
+		}
+		return this.changes[0];
+	}
+
+	private long currentCost(int target){
+		TargetCostTracker tracker = this.trackers[target];
+		return tracker.isFilled() ? tracker.getCost() : Prices.NOT_AVAILABLE;
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * This class maintains the cost of the best target_size shares in a PriceLevelTree incrementally. Instead
+ * of recalculating the cost from the best level after every change, it keeps the running cost, the
+ * boundary price (the worst level needed to fill the target) and the number of shares taken from the
+ * boundary level. Each add or remove is applied as a delta to the running cost, and only the levels that
+ * the boundary moves across are visited. A typical update near the best price is O(1) to O(log(n)).
+ *
+ * Prices and the running cost are fixed-point ticks (see Prices), so applying many deltas does not drift.
+ *
+ * Callers must update the tree first and then notify the tracker of the same change.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class TargetCostTracker {
+	private PriceLevelTree log;
+	private int target_size;
+	private long filled_shares; //shares counted in the cost, equal to target_size when the target can be filled
+	private long cost; //in ticks
+	private long boundary_price; //worst price counted in the cost, Prices.NO_PRICE if the log is empty
+	private int boundary_fill; //shares counted in the cost at boundary_price
+	private long levels_walked; //levels the boundary has moved across, for PricerStats
+
+	//Constructors
+    /**
+     * Creates a tracker for an empty log.
+     *
+     * @param log The price levels to track. Must be empty.
+     * @param target_size The number of shares to fill
+     *
+     * @return TargetCostTracker instance with no shares filled
+     */
+	public TargetCostTracker(PriceLevelTree log, int target_size){
+		this.log = log;
+		this.target_size = target_size;
+		this.filled_shares = 0;
+		this.cost = 0;
+		this.boundary_price = Prices.NO_PRICE;
+		this.boundary_fill = 0;
+		this.levels_walked = 0;
+	}
+
+	//Getters
+    /**
+     * Returns true if there are enough shares in the log to fill target_size shares.
+     *
+     * @return filled true if the cost of target_size shares is known
+     */
+	public boolean isFilled(){
+		return this.filled_shares >= this.target_size;
+	}
+
+    /**
+     * Returns the cost of the best target_size shares.
+     *
+     * @return cost The cost of target_size shares in ticks. Only meaningful if isFilled() is true.
+     */
+	public long getCost(){
+		return this.cost;
+	}
+
+    /**
+     * Returns the worst price that is needed to fill target_size shares. Changes at prices worse than
+     * this do not affect the cost.
+     *
+     * @return boundary_price The boundary price in ticks. Prices.NO_PRICE if the log is empty.
+     */
+	public long getBoundaryPrice(){
+		return this.boundary_price;
+	}
+
+    /**
+     * Returns the number of levels the boundary has moved across since the tracker was created, which is
+     * the work the updates have done beyond their constant cost.
+     *
+     * @return levels_walked The number of levels
+     */
+	public long getLevelsWalked(){
+		return this.levels_walked;
+	}
+
+    /**
+     * Changes the number of shares to fill and recalculates the running cost from the best level.
+     *
+     * @param target_size The number of shares to fill
+     */
+	public void setTargetSize(int target_size){
+		this.target_size = target_size;
+		this.filled_shares = 0;
+		this.cost = 0;
+		this.boundary_price = this.log.getBestPrice();
+		this.boundary_fill = 0;
+		if (this.boundary_price != Prices.NO_PRICE){
+			refill();
+		}
+	}
+
+	/**
+	 * This method applies shares that have been added to the log to the running cost.
+	 *
+	 * @param price The price of the level the shares were added to in ticks
+	 * @param size The number of shares added
+	 */
+	public void add(long price, int size){
+		if (this.boundary_price == Prices.NO_PRICE){
+			//first level in an empty log
+			this.boundary_price = price;
+			this.boundary_fill = 0;
+		}
+		int cmp = this.log.compare(price, this.boundary_price);
+		if (isFilled()){
+			if (cmp >= 0){
+				//at or behind the boundary, the best target_size shares are unchanged
+				return;
+			}
+		} else if (cmp > 0){
+			//all the shares are counted while the target is not filled, so this is the new worst level
+			this.boundary_price = price;
+			this.boundary_fill = 0;
+			cmp = 0;
+		}
+		if (cmp == 0){
+			this.boundary_fill += size;
+		}
+		this.cost += price * size;
+		this.filled_shares += size;
+		trim();
+	}
+
+	/**
+	 * This method applies shares that have been removed from the log to the running cost.
+	 *
+	 * @param price The price of the level the shares were removed from in ticks
+	 * @param size The number of shares that were actually removed from the level
+	 */
+	public void remove(long price, int size){
+		if (this.boundary_price == Prices.NO_PRICE){
+			return;
+		}
+		int cmp = this.log.compare(price, this.boundary_price);
+		if (cmp > 0){
+			//behind the boundary, the best target_size shares are unchanged
+			return;
+		} else if (cmp < 0){
+			this.cost -= price * size;
+			this.filled_shares -= size;
+		} else {
+			//only the shares that are left at the boundary level can still be counted
+			int remaining = this.log.getShares(price);
+			if (remaining < this.boundary_fill){
+				int lost = this.boundary_fill - remaining;
+				this.cost -= price * lost;
+				this.filled_shares -= lost;
+				this.boundary_fill = remaining;
+			}
+		}
+		refill();
+	}
+
+	/**
+	 * Uncounts shares from the boundary level towards the best level until no more than target_size
+	 * shares are counted.
+	 */
+	private void trim(){
+		while (this.filled_shares > this.target_size){
+			long excess = this.filled_shares - this.target_size;
+			if (excess < this.boundary_fill){
+				this.cost -= this.boundary_price * excess;
+				this.boundary_fill -= (int) excess;
+				this.filled_shares = this.target_size;
+			} else {
+				//the whole boundary level is uncounted, so the boundary moves to the next better level
+				this.cost -= this.boundary_price * this.boundary_fill;
+				this.filled_shares -= this.boundary_fill;
+				this.boundary_price = this.log.getPreviousPrice(this.boundary_price);
+				this.boundary_fill = this.log.getShares(this.boundary_price);
+				this.levels_walked++;
+			}
+		}
+	}
+
+	/**
+	 * Counts shares from the boundary level towards the worst level until target_size shares are counted
+	 * or the log runs out of shares.
+	 */
+	private void refill(){
+		long price = this.boundary_price;
+		int fill = this.boundary_fill;
+		while (this.filled_shares < this.target_size){
+			int available = this.log.getShares(price) - fill;
+			if (available > 0){
+				int taken = (int) Math.min(available, this.target_size - this.filled_shares);
+				this.cost += price * taken;
+				this.filled_shares += taken;
+				fill += taken;
+				this.boundary_price = price;
+				this.boundary_fill = fill;
+			}
+			if (this.filled_shares < this.target_size){
+				long next_price = this.log.getNextPrice(price);
+				if (next_price == Prices.NO_PRICE){
+					break;
+				}
+				price = next_price;
+				fill = 0;
+				this.levels_walked++;
+			}
+		}
+		if (this.boundary_fill == 0){
+			//the boundary level is gone and nothing further back could replace it
+			this.boundary_price = this.log.getPreviousPrice(this.boundary_price);
+			this.boundary_fill = this.log.getShares(this.boundary_price);
+		}
+	}
+}
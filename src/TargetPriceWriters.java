@@ -0,0 +1,89 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This class writes the prices of each target size to a stream of its own, so that pricing several
+ * targets in one pass gives the same outputs as running a pricer per target. It holds a PriceWriter per
+ * target and routes every price change to the writer of its target size.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class TargetPriceWriters implements PriceOutput {
+	private int[] target_sizes; //ascending
+	private PriceWriter[] writers; //one per target size
+
+	//Constructors
+    /**
+     * Creates a writer per target size.
+     *
+     * @param target_sizes The target sizes, in any order
+     * @param outs The stream to write the prices of each target size to
+     * @param max_latency_nanos The longest a line may wait in a buffer, 0 to wait until it fills
+     *
+     * @return TargetPriceWriters instance with empty buffers
+     */
+	public TargetPriceWriters(int[] target_sizes, OutputStream[] outs, long max_latency_nanos){
+		int count = target_sizes.length;
+		this.target_sizes = target_sizes.clone();
+		Arrays.sort(this.target_sizes);
+		this.writers = new PriceWriter[count];
+		for (int i = 0; i < count; i++){
+			int target = Arrays.binarySearch(this.target_sizes, target_sizes[i]);
+			this.writers[target] = new PriceWriter(outs[i], PriceWriter.DEFAULT_BUFFER_SIZE, max_latency_nanos);
+		}
+	}
+
+    /**
+     * Creates a file per target size, named prefix.target_size.
+     *
+     * @param prefix The start of the file names
+     * @param target_sizes The distinct target sizes
+     * @param max_latency_nanos The longest a line may wait in a buffer, 0 to wait until it fills
+     *
+     * @return TargetPriceWriters instance writing to new files
+     *
+     * @throws IllegalArgumentException if a file cannot be created
+     */
+	public static TargetPriceWriters toFiles(String prefix, int[] target_sizes, long max_latency_nanos){
+		OutputStream[] outs = new OutputStream[target_sizes.length];
+		for (int i = 0; i < target_sizes.length; i++){
+			String name = prefix+"."+target_sizes[i];
+			try{
+				outs[i] = new FileOutputStream(name);
+			} catch (FileNotFoundException e){
+				throw new IllegalArgumentException("Error: Cannot create output file: "+name);
+			}
+		}
+		return new TargetPriceWriters(target_sizes, outs, max_latency_nanos);
+	}
+
+	@Override
+	public void writePrice(long timestamp, char side, int target_size, long cost, byte[] symbol, int symbol_length)
+			throws IOException {
+		int target = Arrays.binarySearch(this.target_sizes, target_size);
+		if (target < 0){
+			throw new IOException("No output for target size "+target_size);
+		}
+		this.writers[target].writePrice(timestamp, side, target_size, cost, symbol, symbol_length);
+	}
+
+	/**
+	 * This method flushes each file whose oldest buffered line has waited as long as the latency bound.
+	 */
+	public void flushIfDue() throws IOException {
+		for (PriceWriter writer : this.writers){
+			writer.flushIfDue();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		for (PriceWriter writer : this.writers){
+			writer.flush();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class publishes messages to a TcpFeedReader as numbered frames (see FeedFrame). It stands in for
+ * an exchange gateway when testing the live feed against the loopback interface. Its main method publishes
+ * a text feed read from STDIN:
+ *
+ *		java TcpFeedPublisher [--binary] host:port < text_feed
+ *
+ * Frames are buffered and sent when the buffer fills or on flush. The socket is blocking, so a publisher
+ * waits whenever the pricer stops reading.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class TcpFeedPublisher {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private SocketChannel channel;
+	private ByteBuffer buffer;
+	private long sequence; //sequence number of the next frame
+
+	//Constructors
+    /**
+     * Connects to a feed reader.
+     *
+     * @param address The address the reader listens on
+     *
+     * @return TcpFeedPublisher instance whose next frame is number 1
+     */
+	public TcpFeedPublisher(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.channel.socket().setTcpNoDelay(true);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.sequence = 1;
+	}
+
+	//Getters & Setters
+	public long getSequence(){
+		return this.sequence;
+	}
+
+    /**
+     * Sets the sequence number of the next frame, to resend frames or to skip some.
+     *
+     * @param sequence The sequence number
+     */
+	public void setSequence(long sequence){
+		this.sequence = sequence;
+	}
+
+	/**
+	 * This method publishes a line of the text feed.
+	 *
+	 * @param line The bytes of the line
+	 * @param offset The index of the first byte of the line
+	 * @param length The number of bytes in the line, without the line separator
+	 *
+	 * @throws IllegalArgumentException if the line does not fit in a frame
+	 */
+	public void publishLine(byte[] line, int offset, int length) throws IOException {
+		int size = FeedFrame.HEADER_SIZE + length;
+		if (size > FeedFrame.MAX_FRAME_SIZE){
+			throw new IllegalArgumentException("Error: Line is too long for a feed frame");
+		}
+		if (this.buffer.remaining() < size){
+			flush();
+		}
+		FeedFrame.putText(this.buffer, this.sequence++, line, offset, length);
+	}
+
+	/**
+	 * This method publishes a message as a binary record.
+	 *
+	 * @param message The add or reduce message
+	 *
+	 * @throws IllegalArgumentException if the message does not fit in a frame
+	 */
+	public void publish(OrderMessage message) throws IOException {
+		int size = FeedFrame.binarySize(message);
+		if (size > FeedFrame.MAX_FRAME_SIZE){
+			throw new IllegalArgumentException("Error: Message is too long for a feed frame");
+		}
+		if (this.buffer.remaining() < size){
+			flush();
+		}
+		FeedFrame.putBinary(this.buffer, this.sequence++, message);
+	}
+
+	/**
+	 * This method sends every frame published so far.
+	 */
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()){
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * This method sends the remaining frames and closes the connection, which ends the feed.
+	 */
+	public void close() throws IOException {
+		try{
+			flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+    /**
+     * Parses host:port into an address.
+     *
+     * @param address The address, or just a port for every local interface
+     *
+     * @return address The socket address
+     *
+     * @throws IllegalArgumentException if the port is not a number
+     */
+	public static InetSocketAddress parseAddress(String address){
+		int colon = address.lastIndexOf(':');
+		try{
+			int port = Integer.parseInt(address.substring(colon + 1));
+			return (colon < 0) ? new InetSocketAddress(port) : new InetSocketAddress(address.substring(0, colon), port);
+		} catch (IllegalArgumentException e){
+			throw new IllegalArgumentException("Error: Not a host:port address: "+address);
+		}
+	}
+
+	/**
+	 * This is the main method of the publisher. It reads a text feed from STDIN and publishes each line,
+	 * as it is or with --binary as a binary record. It stops at the first line that is not a valid message.
+	 *
+	 * @param args [--binary] host:port
+	 */
+	public static void main(String[] args){
+		boolean binary = args.length == 2 && args[0].equals("--binary");
+		if (args.length != (binary ? 2 : 1)){
+			System.err.println("Usage: java TcpFeedPublisher [--binary] host:port < text_feed");
+			System.exit(1);
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		MessageParser parser = new MessageParser();
+		OrderMessage message = new OrderMessage();
+		String line = null;
+		try{
+			TcpFeedPublisher publisher = new TcpFeedPublisher(parseAddress(args[args.length - 1]));
+			while ((line = in.readLine()) != null){
+				byte[] bytes = line.getBytes();
+				if (binary){
+					parser.parse(bytes, 0, bytes.length, message);
+					publisher.publish(message);
+				} else {
+					publisher.publishLine(bytes, 0, bytes.length);
+				}
+			}
+			publisher.close();
+		} catch (IOException|NumberFormatException e){
+			System.err.println((line == null) ? e.getMessage() : "Warning invalid input: \""+line+"\"");
+			System.exit(1);
+		} catch (IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,423 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * This class reads messages from live feeds published over TCP (see FeedFrame), so the pricer can take
+ * order flow straight from a gateway instead of through a pipe. It listens on a port, accepts a given number
+ * of feed connections and multiplexes them on the calling thread with a Selector. Nothing else runs on
+ * another thread.
+ *
+ * Each connection has a direct receive buffer that the socket is read into. Frames are decoded in place:
+ * binary records field by field and text lines by MessageParser after copying the line out. A connection
+ * is read only when every buffer has run out of complete frames, so no more than a buffer per connection is
+ * ever held. When the books fall behind, the buffers stay full, the sockets stop being read and TCP flow
+ * control makes the publishers wait.
+ *
+ * Each connection's frames must be numbered 1, 2, ... A frame with a sequence number lower than expected
+ * is a repeat and is dropped. A higher one means frames were lost: a warning is printed to STDERR and the
+ * feed carries on from there, since the lost messages cannot be asked for again. The input ends once every
+ * feed has connected and closed.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public class TcpFeedReader implements MessageReader {
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private ServerSocketChannel server; //null once every feed has connected
+	private Selector selector;
+	private int feeds;
+	private int accepted;
+	private Connection[] connections; //open connections and closed ones with frames left to read
+	private int connection_count;
+	private int current; //connection to take the next frame from
+	private MessageParser parser;
+	private byte[] line;
+	private Flushable idle_flushable; //flushed before blocking on the sockets, null if not needed
+	private boolean timed; //true to time each decode
+	private long parse_nanos; //time the last frame took to decode, if timed
+	private Connection last_connection; //connection of the last frame decoded, null if there is none
+	private int last_frame; //offset of the last frame decoded in its connection's buffer
+	private long gaps;
+	private long missed;
+	private long duplicates;
+
+	//Constructors
+    /**
+     * Starts listening for feed connections.
+     *
+     * @param address The address to listen on, port 0 for any free port
+     * @param feeds The number of feed connections to accept
+     *
+     * @return TcpFeedReader instance that has not accepted any connection yet
+     *
+     * @throws IllegalArgumentException if feeds is less than 1
+     */
+	public TcpFeedReader(InetSocketAddress address, int feeds) throws IOException {
+		if (feeds < 1){
+			throw new IllegalArgumentException("Error: There must be at least 1 feed");
+		}
+		this.feeds = feeds;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.socket().bind(address);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+		this.connections = new Connection[feeds];
+		this.connection_count = 0;
+		this.accepted = 0;
+		this.current = 0;
+		this.parser = new MessageParser();
+		this.line = new byte[FeedFrame.MAX_FRAME_SIZE];
+	}
+
+	//Getters & Setters
+    /**
+     * Returns the port the reader listens on, useful when it was asked for any free port
+     *
+     * @return port The local port
+     */
+	public int getPort(){
+		return this.server.socket().getLocalPort();
+	}
+
+    /**
+     * Returns the number of times frames were found to be lost
+     *
+     * @return gaps The number of gaps in the sequence numbers of every feed
+     */
+	public long getGaps(){
+		return this.gaps;
+	}
+
+    /**
+     * Returns the number of frames that were lost
+     *
+     * @return missed The number of sequence numbers skipped by every feed
+     */
+	public long getMissed(){
+		return this.missed;
+	}
+
+    /**
+     * Returns the number of repeated frames that were dropped
+     *
+     * @return duplicates The number of frames dropped
+     */
+	public long getDuplicates(){
+		return this.duplicates;
+	}
+
+    /**
+     * Sets an object to flush before the reader blocks waiting for the feeds.
+     *
+     * @param idle_flushable The object to flush when the feeds are idle, null for none
+     */
+	public void setIdleFlushable(Flushable idle_flushable){
+		this.idle_flushable = idle_flushable;
+	}
+
+	/**
+	 * This method decodes the next frame received on any feed into message, waiting for one if none has
+	 * been received yet.
+	 *
+	 * @param message The message to fill in
+	 *
+	 * @return true if a message was read, false once every feed has connected and closed
+	 *
+	 * @throws IOException if a frame is not a valid message or a feed closed in the middle of a frame
+	 */
+	@Override
+	public boolean next(OrderMessage message) throws IOException {
+		while (true){
+			for (int scanned = 0; scanned < this.connection_count; scanned++){
+				Connection connection = this.connections[this.current];
+				//decoding only looks at frames already received, so it never waits
+				long start = this.timed ? System.nanoTime() : 0;
+				if (decode(connection, message)){
+					if (this.timed){
+						this.parse_nanos = System.nanoTime() - start;
+					}
+					return true;
+				}
+				this.current = (this.current + 1) % this.connection_count;
+			}
+			removeClosed();
+			if (this.server == null && this.connection_count == 0){
+				close();
+				return false;
+			}
+			receive();
+		}
+	}
+
+    /**
+     * Returns the last frame decoded in the text format, for diagnostics. This allocates and is only valid
+     * until next is called again.
+     *
+     * @return line The last frame, "" if none has been decoded
+     */
+	@Override
+	public String getLine(){
+		if (this.last_connection == null){
+			return "";
+		}
+		ByteBuffer buffer = this.last_connection.buffer;
+		int frame = this.last_frame;
+		int length = Math.min(buffer.getInt(frame + FeedFrame.LENGTH), buffer.position() - frame - FeedFrame.SEQUENCE);
+		int message = frame + FeedFrame.HEADER_SIZE;
+		StringBuilder line = new StringBuilder();
+		if (length >= FeedFrame.HEADER_SIZE - FeedFrame.SEQUENCE && buffer.get(frame + FeedFrame.FORMAT) == FeedFrame.TEXT){
+			for (int i = message; i < frame + FeedFrame.SEQUENCE + length; i++){
+				line.append((char) (buffer.get(i) & 0xFF));
+			}
+		} else if (length >= FeedFrame.HEADER_SIZE - FeedFrame.SEQUENCE + FeedFrame.RECORD_HEADER){
+			char type = (char) buffer.get(message + FeedFrame.TYPE);
+			line.append(buffer.getLong(message + FeedFrame.TIMESTAMP)).append(' ').append(type).append(' ');
+			int id = message + FeedFrame.RECORD_HEADER;
+			int id_end = Math.min(id + (buffer.get(message + FeedFrame.ID_LENGTH) & 0xFF), buffer.position());
+			for (int i = id; i < id_end; i++){
+				line.append((char) (buffer.get(i) & 0xFF));
+			}
+			line.append(' ');
+			if (type == OrderMessage.ADD){
+				line.append((char) buffer.get(message + FeedFrame.SIDE)).append(' ')
+					.append(Prices.format(buffer.getLong(message + FeedFrame.PRICE))).append(' ');
+			}
+			line.append(buffer.getInt(message + FeedFrame.SIZE));
+		}
+		return line.toString();
+	}
+
+	/**
+	 * This method sets whether the time each frame takes to decode is measured, leaving out the time spent
+	 * waiting for and receiving frames. It is off by default.
+	 *
+	 * @param timed true to measure getParseNanos()
+	 */
+	@Override
+	public void setTimed(boolean timed){
+		this.timed = timed;
+	}
+
+	/**
+	 * Returns how long the last frame read took to decode, if timing is on.
+	 *
+	 * @return parse_nanos The nanoseconds spent decoding the last frame, 0 if timing is off
+	 */
+	@Override
+	public long getParseNanos(){
+		return this.parse_nanos;
+	}
+
+	/**
+	 * This method stops listening and closes every feed connection.
+	 */
+	public void close() throws IOException {
+		if (this.server != null){
+			this.server.close();
+			this.server = null;
+		}
+		for (int i = 0; i < this.connection_count; i++){
+			this.connections[i].channel.close();
+		}
+		this.connection_count = 0;
+		this.selector.close();
+	}
+
+	/*****Frames*****/
+
+	/**
+	 * Decodes the next complete frame of a connection into message, dropping repeated frames.
+	 *
+	 * @return true if a message was decoded, false if the connection has no complete frame
+	 */
+	private boolean decode(Connection connection, OrderMessage message) throws IOException {
+		ByteBuffer buffer = connection.buffer;
+		while (buffer.position() - connection.start >= FeedFrame.HEADER_SIZE){
+			int frame = connection.start;
+			int length = buffer.getInt(frame + FeedFrame.LENGTH);
+			this.last_connection = connection;
+			this.last_frame = frame;
+			if (length < FeedFrame.HEADER_SIZE - FeedFrame.SEQUENCE || length > FeedFrame.MAX_FRAME_SIZE - FeedFrame.SEQUENCE){
+				throw new IOException();
+			}
+			if (buffer.position() - frame < FeedFrame.SEQUENCE + length){
+				return false;
+			}
+			connection.start = frame + FeedFrame.SEQUENCE + length;
+
+			long sequence = buffer.getLong(frame + FeedFrame.SEQUENCE);
+			if (sequence < connection.next_sequence){
+				this.duplicates++;
+				continue;
+			}
+			if (sequence > connection.next_sequence){
+				this.gaps++;
+				this.missed += sequence - connection.next_sequence;
+				System.err.println("Warning: feed "+connection.number+" lost messages "+connection.next_sequence
+					+" to "+(sequence - 1));
+			}
+			connection.next_sequence = sequence + 1;
+
+			int start = frame + FeedFrame.HEADER_SIZE;
+			int end = frame + FeedFrame.SEQUENCE + length;
+			byte format = buffer.get(frame + FeedFrame.FORMAT);
+			if (format == FeedFrame.TEXT){
+				for (int i = start; i < end; i++){
+					this.line[i - start] = buffer.get(i);
+				}
+				this.parser.parse(this.line, 0, end - start, message);
+			} else if (format == FeedFrame.BINARY){
+				decodeBinary(buffer, start, end, message);
+			} else {
+				throw new IOException();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void decodeBinary(ByteBuffer buffer, int start, int end, OrderMessage message) throws IOException {
+		if (end - start < FeedFrame.RECORD_HEADER){
+			throw new IOException();
+		}
+		char type = (char) buffer.get(start + FeedFrame.TYPE);
+		char side = (char) buffer.get(start + FeedFrame.SIDE);
+		int id_length = buffer.get(start + FeedFrame.ID_LENGTH) & 0xFF;
+		int symbol_length = buffer.get(start + FeedFrame.SYMBOL_LENGTH) & 0xFF;
+		int size = buffer.getInt(start + FeedFrame.SIZE);
+		long price = buffer.getLong(start + FeedFrame.PRICE);
+		boolean add = type == OrderMessage.ADD && (side == OrderMessage.BUY || side == OrderMessage.SELL) && price >= 0
+			&& price <= Prices.MAX_TICKS;
+		if ((!add && type != OrderMessage.REDUCE) || size < 0
+				|| end - start != FeedFrame.RECORD_HEADER + id_length + symbol_length){
+			throw new IOException();
+		}
+		message.setType(type);
+		message.setTimestamp(buffer.getLong(start + FeedFrame.TIMESTAMP));
+		message.setSize(size);
+		if (add){
+			message.setSide(side);
+			message.setPrice(price);
+		}
+		message.setOrderId(buffer, start + FeedFrame.RECORD_HEADER, id_length);
+		message.setSymbol(buffer, start + FeedFrame.RECORD_HEADER + id_length, symbol_length);
+	}
+
+	/*****Sockets*****/
+
+	/**
+	 * Waits for new connections or more bytes on any feed and reads them into the receive buffers.
+	 */
+	private void receive() throws IOException {
+		for (int i = 0; i < this.connection_count; i++){
+			this.connections[i].compact();
+		}
+		if (this.selector.selectNow() == 0){
+			if (this.idle_flushable != null){
+				//the select may block, so don't hold anything back while waiting
+				this.idle_flushable.flush();
+			}
+			this.selector.select();
+		}
+		Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+		while (keys.hasNext()){
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()){
+				continue;
+			}
+			if (key.isAcceptable()){
+				accept();
+			} else if (key.isReadable()){
+				Connection connection = (Connection) key.attachment();
+				if (connection.channel.read(connection.buffer) < 0){
+					key.cancel();
+					connection.channel.close();
+					connection.closed = true;
+				}
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = this.server.accept();
+		if (channel == null){
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(channel, ++this.accepted);
+		channel.register(this.selector, SelectionKey.OP_READ, connection);
+		this.connections[this.connection_count++] = connection;
+		if (this.accepted == this.feeds){
+			this.server.close();
+			this.server = null;
+		}
+	}
+
+	/**
+	 * Forgets the connections that have closed and have no frames left to read.
+	 */
+	private void removeClosed() throws IOException {
+		int kept = 0;
+		for (int i = 0; i < this.connection_count; i++){
+			Connection connection = this.connections[i];
+			if (!connection.closed){
+				this.connections[kept++] = connection;
+			} else if (connection.buffer.position() > connection.start){
+				//every complete frame has been decoded, so the feed closed in the middle of a frame
+				this.last_connection = connection;
+				this.last_frame = connection.start;
+				throw new IOException();
+			}
+		}
+		Arrays.fill(this.connections, kept, this.connection_count, null);
+		this.connection_count = kept;
+		this.current = 0;
+	}
+
+	/**
+	 * A feed connection and its receive buffer. The bytes received and not yet decoded are the ones between
+	 * start and the position of the buffer.
+	 */
+	private static class Connection {
+		final SocketChannel channel;
+		final ByteBuffer buffer;
+		final int number;
+		int start;
+		long next_sequence;
+		boolean closed;
+
+		Connection(SocketChannel channel, int number){
+			this.channel = channel;
+			this.number = number;
+			this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			this.start = 0;
+			this.next_sequence = 1;
+			this.closed = false;
+		}
+
+		/**
+		 * Moves the partial frame at the end of the buffer to the front, to make room to read into.
+		 */
+		void compact(){
+			if (this.start > 0){
+				this.buffer.limit(this.buffer.position());
+				this.buffer.position(this.start);
+				this.buffer.compact();
+				this.start = 0;
+			}
+		}
+	}
+}
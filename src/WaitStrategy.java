@@ -0,0 +1,74 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This enum decides what a pipeline stage does while it waits for a ring buffer (see SpscRing). Each wait
+ * is a loop that calls idle(...) with a count of how many times it has already idled.
+ *
+ *		BUSY_SPIN	keep checking. Lowest latency, but burns a whole core while waiting.
+ *		YIELD		spin briefly, then yield the core to other threads between checks.
+ *		PARK		spin and yield briefly, then sleep for PARK_NANOS between checks. Cheapest when idle.
+ *
+ * @author Michael Hinds
+ * @version 1.0
+ */
+public enum WaitStrategy {
+	BUSY_SPIN {
+		@Override
+		public int idle(int count){
+			return count + 1;
+		}
+	},
+	YIELD {
+		@Override
+		public int idle(int count){
+			if (count >= SPIN_TRIES){
+				Thread.yield();
+			}
+			return count + 1;
+		}
+	},
+	PARK {
+		@Override
+		public int idle(int count){
+			if (count >= SPIN_TRIES + YIELD_TRIES){
+				LockSupport.parkNanos(PARK_NANOS);
+			} else if (count >= SPIN_TRIES){
+				Thread.yield();
+			}
+			return count + 1;
+		}
+	};
+
+	public static final int SPIN_TRIES = 100;
+	public static final int YIELD_TRIES = 100;
+	public static final long PARK_NANOS = 50000;
+
+	/**
+	 * This method waits a little before the caller checks its ring buffer again.
+	 *
+	 * @param count The number of times the caller has already idled in this wait
+	 *
+	 * @return count The count to pass to the next call
+	 */
+	public abstract int idle(int count);
+
+	/**
+	 * This method returns the strategy with the given name, as used on the command line.
+	 *
+	 * @param name One of spin, yield or park
+	 *
+	 * @return strategy The wait strategy
+	 *
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static WaitStrategy fromName(String name){
+		if (name.equals("spin")){
+			return BUSY_SPIN;
+		} else if (name.equals("yield")){
+			return YIELD;
+		} else if (name.equals("park")){
+			return PARK;
+		}
+		throw new IllegalArgumentException("Unknown wait strategy: "+name+" (expected spin, yield or park)");
+	}
+}
@@ -0,0 +1,104 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class BacktestRunnerTest {
+
+    @Test
+    public void testSessionsMatchPricer() throws Exception{
+        File dir = Files.createTempDirectory("backtest").toFile();
+        String feed = feed(new Random(23), 20000);
+        write(new File(dir, "a.txt"), feed.getBytes());
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(gzipped);
+        gzip.write(feed.getBytes());
+        gzip.close();
+        write(new File(dir, "b.txt.gz"), gzipped.toByteArray());
+        BinaryFeedWriter binary = new BinaryFeedWriter(new File(dir, "c.bin").getPath());
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(feed.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            binary.write(message);
+        }
+        binary.close();
+        write(new File(dir, "d.txt"), "1 A a B 44.26 100\n2 A b X 44.30 50\n3 R a 50\n".getBytes());
+
+        File[] inputs = BacktestRunner.listInputs(dir);
+        assertEquals(4, inputs.length);
+        BacktestRunner runner = new BacktestRunner(new PricerOptions(new String[]{"200"}), dir, 3);
+        BacktestRunner.Session[] sessions = runner.run(inputs);
+        runner.shutdown();
+        //outputs are written next to the inputs but are not inputs themselves
+        assertEquals(4, BacktestRunner.listInputs(dir).length);
+
+        String expected = price(feed);
+        for (int i = 0; i < 3; i++){
+            assertEquals(inputs[i].getName(), sessions[i].getName());
+            assertNull(sessions[i].getError());
+            assertEquals(20000, sessions[i].getMessages());
+            assertEquals(expected, read(new File(dir, inputs[i].getName()+BacktestRunner.OUTPUT_SUFFIX)));
+        }
+        assertEquals(1, sessions[3].getMessages());
+        assertEquals("Warning invalid input: \"2 A b X 44.30 50\"", sessions[3].getError());
+        assertTrue(read(new File(dir, "d.txt.out")).startsWith(Pricer.getInvalidInputWarning("2 A b X 44.30 50")));
+        for (File file : dir.listFiles()){
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Generates a feed of adds and reduces, one line per message.
+     */
+    private String feed(Random random, int messages){
+        StringBuilder feed = new StringBuilder();
+        int[] remaining = new int[messages];
+        int orders = 0;
+        for (int i = 0; i < messages; i++){
+            int order = (orders == 0) ? 0 : random.nextInt(orders);
+            if (remaining[order] > 0 && random.nextInt(3) == 0){
+                int size = Math.min(remaining[order], 1 + random.nextInt(50));
+                remaining[order] -= size;
+                feed.append(i).append(" R o").append(order).append(' ').append(size);
+            } else {
+                remaining[orders] = 1 + random.nextInt(100);
+                feed.append(i).append(" A o").append(orders++).append(random.nextBoolean() ? " B " : " S ")
+                    .append(Prices.format(4000 + random.nextInt(100))).append(' ').append(remaining[orders - 1]);
+            }
+            feed.append('\n');
+        }
+        return feed.toString();
+    }
+
+    private String price(String feed) throws Exception{
+        OrderBooks books = new OrderBooks(new int[]{200}, new int[]{200});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(feed.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            books.processMessage(message, writer);
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    private void write(File file, byte[] bytes) throws Exception{
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+    }
+
+    private String read(File file) throws Exception{
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,122 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class BinaryFeedTest {
+
+    @Test
+    public void testMatchesTextFeed() throws Exception{
+        StringBuilder feed = new StringBuilder();
+        ArrayList<String[]> live = new ArrayList<String[]>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++){
+            if (live.isEmpty() || random.nextInt(3) > 0){
+                String symbol = (i % 3 == 0) ? "" : " SYM"+random.nextInt(4);
+                String id = "o"+i;
+                live.add(new String[]{id, symbol});
+                char side = random.nextBoolean() ? 'B' : 'S';
+                feed.append(i+" A "+id+" "+side+" "+(40 + random.nextInt(10))+"."+random.nextInt(100)+" "
+                    +(1 + random.nextInt(300))+symbol+"\n");
+            } else {
+                String[] order = live.remove(random.nextInt(live.size()));
+                feed.append(i+" R "+order[0]+" "+(1 + random.nextInt(400))+order[1]+"\n");
+            }
+        }
+        String text = feed.toString();
+
+        File file = File.createTempFile("feed", ".bin");
+        file.deleteOnExit();
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        BinaryFeedWriter writer = new BinaryFeedWriter(file.getPath());
+        while (parser.next(message)){
+            writer.write(message);
+        }
+        writer.close();
+
+        assertEquals(price(new MessageParser(new ByteArrayInputStream(text.getBytes()))),
+            price(new BinaryFeedReader(file.getPath())));
+        assertEquals(20000, new BinaryFeedReader(file.getPath()).getRecordCount());
+    }
+
+    @Test
+    public void testUnknownOrderId() throws Exception{
+        File file = File.createTempFile("feed", ".bin");
+        file.deleteOnExit();
+        String text = "1 A a B 44.26 100 IBM\n2 R a 100 IBM\n3 R a 100 IBM\n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        BinaryFeedWriter writer = new BinaryFeedWriter(file.getPath());
+        while (parser.next(message)){
+            writer.write(message);
+        }
+        writer.close();
+
+        BinaryFeedReader reader = new BinaryFeedReader(file.getPath());
+        OrderBooks books = new OrderBooks(100);
+        PriceWriter out = new PriceWriter(new ByteArrayOutputStream());
+        reader.next(message);
+        books.processMessage(message, out);
+        reader.next(message);
+        books.processMessage(message, out);
+        reader.next(message);
+        assertEquals("3 R 2 100 IBM", reader.getLine());
+        try{
+            books.processMessage(message, out);
+            fail();
+        } catch (Exception e){
+            assertEquals("Error: Cannot remove shares. Unknown order id: 2", e.getMessage());
+        }
+        assertFalse(reader.next(message));
+    }
+
+    @Test
+    public void testSameIdLiveOnTwoSymbols() throws Exception{
+        String text = "1 A a B 44.26 100 IBM\n2 A a B 44.30 100 MSFT\n3 R a 100 IBM\n4 R a 40 MSFT\n"
+            +"5 A b B 44.20 100 IBM\n6 R a 60 MSFT\n";
+        File file = File.createTempFile("feed", ".bin");
+        file.deleteOnExit();
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        BinaryFeedWriter writer = new BinaryFeedWriter(file.getPath());
+        while (parser.next(message)){
+            writer.write(message);
+        }
+        writer.close();
+
+        assertEquals(price(new MessageParser(new ByteArrayInputStream(text.getBytes()))),
+            price(new BinaryFeedReader(file.getPath())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotABinaryFeed() throws Exception{
+        File file = File.createTempFile("feed", ".txt");
+        file.deleteOnExit();
+        java.nio.file.Files.write(file.toPath(), "28800538 A b S 44.26 100\n".getBytes());
+        new BinaryFeedReader(file.getPath());
+    }
+
+    private static String price(MessageReader reader) throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        OrderBooks books = new OrderBooks(new int[]{1, 200}, new int[]{200});
+        writer.setTagTargets(true);
+        OrderMessage message = new OrderMessage();
+        try{
+            while (reader.next(message)){
+                books.processMessage(message, writer);
+            }
+        } catch (Exception e){
+            writer.writeLine(e.getMessage());
+        }
+        writer.flush();
+        return out.toString();
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class BookDepthTest {
+
+    @Test
+    public void testQueriesBothSides() throws Exception{
+        OrderBook book = new OrderBook(new byte[0], 100);
+        String text = "1 A a B 44.26 100\n2 A b B 44.10 50\n3 A c B 44.26 20\n4 A d S 44.50 30\n5 A e S 44.60 70\n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        PriceWriter out = new PriceWriter(new ByteArrayOutputStream());
+        while (parser.next(message)){
+            book.processMessage(message, out);
+        }
+        BookDepth depth = new BookDepth(book);
+
+        long[] prices = new long[3];
+        int[] shares = new int[3];
+        assertEquals(2, depth.getTopLevels(OrderMessage.BUY, prices, shares, 3));
+        assertEquals(4426L, prices[0]);
+        assertEquals(120, shares[0]);
+        assertEquals(4410L, prices[1]);
+        assertEquals(1, depth.getTopLevels(OrderMessage.SELL, prices, shares, 1));
+        assertEquals(4450L, prices[0]);
+
+        assertEquals(120, depth.getCumulativeShares(OrderMessage.BUY, 4420));
+        assertEquals(170, depth.getCumulativeShares(OrderMessage.BUY, 4410));
+        assertEquals(30, depth.getCumulativeShares(OrderMessage.SELL, 4459));
+        assertEquals(4450L*30+4460*70, depth.getCumulativeNotional(OrderMessage.SELL, 4460));
+        assertEquals(4450L*30+4460*70, depth.getCostOf(OrderMessage.SELL, 100));
+        assertEquals(44.57, depth.getVwap(OrderMessage.SELL, 100), 1e-9);
+        assertEquals(Double.NaN, depth.getVwap(OrderMessage.BUY, 171), 0);
+    }
+
+    @Test
+    public void testMatchesWalk(){
+        Random random = new Random(18);
+        PriceLevelTree tree = new PriceLevelTree(true);
+        TreeMap<Long, Integer> log = new TreeMap<Long, Integer>();
+        for (int i = 0; i < 5000; i++){
+            long price = 1000 + random.nextInt(2000);
+            int size = 1 + random.nextInt(100);
+            tree.add(price, size);
+            Integer shares = log.get(price);
+            log.put(price, (shares == null ? 0 : shares) + size);
+        }
+        BookDepth depth = new BookDepth(tree, new PriceLevelTree(false));
+        long[] prices = new long[10];
+        int[] shares = new int[10];
+        assertEquals(10, depth.getTopLevels(OrderMessage.BUY, prices, shares, 10));
+        int i = 0;
+        for (Map.Entry<Long, Integer> level : log.descendingMap().entrySet()){
+            if (i == 10){
+                break;
+            }
+            assertEquals((long) level.getKey(), prices[i]);
+            assertEquals((int) level.getValue(), shares[i++]);
+        }
+        for (int query = 0; query < 200; query++){
+            long price = 900 + random.nextInt(2200);
+            long total = 0;
+            long notional = 0;
+            for (Map.Entry<Long, Integer> level : log.tailMap(price, true).entrySet()){
+                total += level.getValue();
+                notional += level.getKey() * level.getValue();
+            }
+            assertEquals(total, depth.getCumulativeShares(OrderMessage.BUY, price));
+            assertEquals(notional, depth.getCumulativeNotional(OrderMessage.BUY, price));
+        }
+    }
+}
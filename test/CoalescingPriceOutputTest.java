@@ -0,0 +1,66 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class CoalescingPriceOutputTest {
+
+    @Test
+    public void testOneLinePerSideForEachTimestamp() throws Exception{
+        String text = "1 A a S 44.50 100\n1 A b S 44.40 100\n1 A c B 44.00 100\n2 A d S 44.30 100\n"
+            +"2 R d 100\n3 A e B 44.10 100\n3 R e 100\n3 R c 100\n";
+        assertEquals("1 B 4440.00\n1 S 4400.00\n3 S NA\n", price(text, new int[]{100}));
+    }
+
+    @Test
+    public void testTargetsAndSymbolsAreCoalescedApart() throws Exception{
+        String text = "1 A a S 44.50 100 IBM\n1 A b S 44.40 100 IBM\n1 A c S 44.60 50 MSFT\n"
+            +"1 A d S 44.70 50 MSFT\n2 R a 100 IBM\n";
+        assertEquals("100 1 B 4440.00 IBM\n200 1 B 8890.00 IBM\n100 1 B 4465.00 MSFT\n200 2 B NA IBM\n",
+            price(text, new int[]{100, 200}));
+    }
+
+    @Test
+    public void testSeededFromRecoveredBooks() throws Exception{
+        OrderBooks books = new OrderBooks(new int[]{100, 200}, new int[]{100});
+        String recovered = "1 A a S 44.50 100\n1 A b S 44.40 100 IBM\n2 A c B 44.00 100\n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(recovered.getBytes()));
+        OrderMessage message = new OrderMessage();
+        PriceWriter ignored = new PriceWriter(new ByteArrayOutputStream());
+        while (parser.next(message)){
+            books.processMessage(message, ignored);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(bytes);
+        writer.setTagTargets(true);
+        CoalescingPriceOutput out = new CoalescingPriceOutput(writer, new int[]{100, 200});
+        out.seed(books);
+        String text = "3 R a 100\n3 R b 100 IBM\n3 A d S 44.40 100 IBM\n4 A e S 44.10 100\n";
+        parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        while (parser.next(message)){
+            out.advance(message.getTimestamp());
+            books.processMessage(message, out);
+        }
+        out.flush();
+        //the IBM offer coming back within the timestamp writes nothing, as in an uninterrupted run
+        assertEquals("100 3 B NA\n100 4 B 4410.00\n", bytes.toString());
+    }
+
+    private static String price(String text, int[] target_sizes) throws Exception{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(bytes);
+        writer.setTagTargets(target_sizes.length > 1);
+        CoalescingPriceOutput out = new CoalescingPriceOutput(writer, target_sizes);
+        OrderBooks books = new OrderBooks(target_sizes, target_sizes);
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            out.advance(message.getTimestamp());
+            books.processMessage(message, out);
+        }
+        out.flush();
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class ConflatingDispatcherTest {
+
+    @Test
+    public void testListenerSeesWhatTheWriterWrites() throws Exception{
+        String text = "1 A a B 44.26 100 IBM\n2 A b S 44.60 50\n3 A c S 44.70 50\n4 R a 50 IBM\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PriceWriter writer = new PriceWriter(bytes);
+        PriceSink listener_sink = new ListenerPriceSink(new PriceListener(){
+            public void priceChanged(long timestamp, char side, int target_size, long cost, byte[] symbol,
+                    int symbol_length){
+                try{
+                    writer.writePrice(timestamp, side, target_size, cost, symbol, symbol_length);
+                } catch (Exception e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        OrderBooks books = new OrderBooks(100);
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            books.processMessage(message, listener_sink);
+        }
+        writer.flush();
+        assertEquals("1 S 4426.00 IBM\n3 B 4465.00\n4 S NA IBM\n", bytes.toString());
+    }
+
+    @Test
+    public void testSlowListenerSeesLatestPrice() throws Exception{
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<long[]> seen = new ArrayList<long[]>();
+        ConflatingDispatcher dispatcher = new ConflatingDispatcher(new PriceListener(){
+            public void priceChanged(long timestamp, char side, int target_size, long cost, byte[] symbol,
+                    int symbol_length){
+                seen.add(new long[]{timestamp, side, target_size, cost});
+                blocked.countDown();
+                try{
+                    release.await();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, new int[]{200, 100}, 16, WaitStrategy.PARK);
+
+        byte[] symbol = "IBM".getBytes();
+        dispatcher.writePrice(1, OrderMessage.BUY, 100, 1000, symbol, 3);
+        blocked.await();
+        //the listener is stuck on the first change, so these can only be conflated
+        for (int i = 2; i <= 10000; i++){
+            dispatcher.writePrice(i, OrderMessage.BUY, 100, 1000 + i, symbol, 3);
+            dispatcher.writePrice(i, OrderMessage.SELL, 200, Prices.NOT_AVAILABLE, symbol, 3);
+        }
+        release.countDown();
+        dispatcher.finish();
+
+        assertEquals(null, dispatcher.getError());
+        assertEquals(3, seen.size());
+        assertEquals(1, seen.get(0)[0]);
+        assertTrue(seen.get(1)[1] == OrderMessage.BUY && seen.get(1)[0] == 10000 && seen.get(1)[3] == 11000);
+        assertTrue(seen.get(2)[1] == OrderMessage.SELL && seen.get(2)[2] == 200
+            && seen.get(2)[3] == Prices.NOT_AVAILABLE);
+    }
+
+    @Test
+    public void testDeliversLatestOfEverySlot() throws Exception{
+        final HashMap<String, Long> latest = new HashMap<String, Long>();
+        ConflatingDispatcher dispatcher = new ConflatingDispatcher(new PriceListener(){
+            public void priceChanged(long timestamp, char side, int target_size, long cost, byte[] symbol,
+                    int symbol_length){
+                latest.put(new String(symbol, 0, symbol_length)+" "+side+" "+target_size, cost);
+            }
+        }, new int[]{100}, 4, WaitStrategy.YIELD);
+        for (int i = 0; i < 100000; i++){
+            byte[] symbol = ("S"+(i % 10)).getBytes();
+            dispatcher.writePrice(i, (i % 3 == 0) ? OrderMessage.SELL : OrderMessage.BUY, 100, i, symbol, symbol.length);
+        }
+        dispatcher.finish();
+        assertEquals(20, latest.size());
+        assertEquals(99999L, (long) latest.get("S9 S 100"));
+        assertEquals(99998L, (long) latest.get("S8 B 100"));
+    }
+}
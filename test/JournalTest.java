@@ -0,0 +1,100 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class JournalTest {
+
+    @Test
+    public void testRecoveredBooksPriceLikeTheOriginal() throws Exception{
+        String[] halves = feed(20000, 10000);
+        String uninterrupted = price(new OrderBooks(200), halves[0] + halves[1], null);
+
+        File directory = directory();
+        OrderBooks books = new OrderBooks(200);
+        Journal journal = new Journal(directory, 3000, books, new OrderBooks(200));
+        price(books, halves[0], journal);
+        journal.finish();
+        assertEquals(null, journal.getError());
+
+        books = new OrderBooks(200);
+        journal = new Journal(directory, 3000, books, new OrderBooks(200));
+        assertEquals(10000, journal.getRecoveredSequence());
+        String continued = price(books, halves[1], journal);
+        journal.finish();
+        assertEquals(uninterrupted.substring(uninterrupted.length() - continued.length()), continued);
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testIgnoresRecordCutShort() throws Exception{
+        File directory = directory();
+        OrderBooks books = new OrderBooks(100);
+        Journal journal = new Journal(directory, 1000, books, new OrderBooks(100));
+        price(books, "1 A a B 44.26 100 IBM\n2 A b S 44.50 100 IBM\n", journal);
+        journal.finish();
+        RandomAccessFile file = new RandomAccessFile(new File(directory, "journal.0"), "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+
+        books = new OrderBooks(100);
+        assertEquals(1, Journal.recover(directory, books));
+        //only the first add was recovered, so the new offer is the cheapest
+        assertEquals("3 B 4460.00 IBM\n", price(books, "3 A c S 44.60 100 IBM\n", null));
+    }
+
+    private static File directory() throws Exception{
+        File directory = File.createTempFile("journal", "");
+        directory.delete();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private static String[] feed(int messages, int split){
+        StringBuilder[] halves = {new StringBuilder(), new StringBuilder()};
+        ArrayList<String[]> live = new ArrayList<String[]>();
+        Random random = new Random(14);
+        for (int i = 0; i < messages; i++){
+            StringBuilder feed = halves[i < split ? 0 : 1];
+            if (live.isEmpty() || random.nextInt(3) > 0){
+                String symbol = (i % 3 == 0) ? "" : " SYM"+random.nextInt(4);
+                String id = "o"+i;
+                int size = 1 + random.nextInt(300);
+                live.add(new String[]{id, symbol, String.valueOf(size)});
+                char side = random.nextBoolean() ? 'B' : 'S';
+                feed.append(i+" A "+id+" "+side+" "+(40 + random.nextInt(10))+"."+random.nextInt(100)+" "
+                    +size+symbol+"\n");
+            } else {
+                int index = random.nextInt(live.size());
+                String[] order = live.get(index);
+                int size = 1 + random.nextInt(Integer.parseInt(order[2]));
+                feed.append(i+" R "+order[0]+" "+size+order[1]+"\n");
+                order[2] = String.valueOf(Integer.parseInt(order[2]) - size);
+                if (order[2].equals("0")){
+                    live.remove(index);
+                }
+            }
+        }
+        return new String[]{halves[0].toString(), halves[1].toString()};
+    }
+
+    private static String price(OrderBooks books, String text, Journal journal) throws Exception{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PriceWriter out = new PriceWriter(bytes);
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            books.processMessage(message, out);
+            if (journal != null){
+                journal.append(message);
+            }
+        }
+        out.flush();
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,42 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 50; value++){
+            histogram.record(value);
+        }
+        assertEquals(50, histogram.getCount());
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+        assertEquals(50, histogram.getMax());
+        assertEquals(25.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        Random random = new Random(9);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++){
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+            (i % 2 == 0 ? histogram : other).record(values[i]);
+        }
+        histogram.add(other);
+        Arrays.sort(values);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 99.99, 100}){
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile+": "+actual+" vs "+expected, actual >= expected && actual <= expected * 1.04);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class MessageParserTest {
+
+    @Test
+    public void testParseLines() throws IOException{
+        String input = "28800538 A b S 44.26 100\n  28800562\tR b 40  \r\n\n \n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(input.getBytes()));
+        OrderMessage message = new OrderMessage();
+
+        assertTrue(parser.next(message));
+        assertEquals(OrderMessage.ADD, message.getType());
+        assertEquals(28800538L, message.getTimestamp());
+        assertEquals("b", message.getOrderId());
+        assertEquals(OrderMessage.SELL, message.getSide());
+        assertEquals(4426L, message.getPrice());
+        assertEquals(100, message.getSize());
+
+        assertTrue(parser.next(message));
+        assertEquals(OrderMessage.REDUCE, message.getType());
+        assertEquals(28800562L, message.getTimestamp());
+        assertEquals(40, message.getSize());
+
+        //trailing blank lines are ignored
+        assertFalse(parser.next(message));
+    }
+
+    @Test
+    public void testParseTimeLeavesOutWaitForInput() throws IOException{
+        //input that takes 50ms to arrive
+        InputStream slow = new ByteArrayInputStream("28800538 A b S 44.26 100\n".getBytes()){
+            public synchronized int read(byte[] b, int offset, int length){
+                try{
+                    Thread.sleep(50);
+                } catch (InterruptedException e){
+                    throw new RuntimeException(e);
+                }
+                return super.read(b, offset, length);
+            }
+        };
+        MessageParser parser = new MessageParser(slow);
+        OrderMessage message = new OrderMessage();
+        assertEquals(0, parser.getParseNanos());
+        parser.setTimed(true);
+        assertTrue(parser.next(message));
+        assertTrue(parser.getParseNanos() > 0);
+        assertTrue(parser.getParseNanos() < 50000000);
+    }
+
+    @Test
+    public void testBlankLineBeforeInput() throws IOException{
+        MessageParser parser = new MessageParser(new ByteArrayInputStream("1 R a 1\n\n2 R a 1\n".getBytes()));
+        OrderMessage message = new OrderMessage();
+        assertTrue(parser.next(message));
+        try {
+            parser.next(message);
+            throw new AssertionError("expected an IOException");
+        } catch (IOException e){
+            assertEquals("", parser.getLine());
+        }
+    }
+
+    @Test
+    public void testSymbol() throws IOException{
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        byte[] line = "28800538 A b S 44.26 100 AAPL".getBytes();
+        parser.parse(line, 0, line.length, message);
+        assertEquals("AAPL", message.getSymbol());
+        assertEquals(100, message.getSize());
+
+        line = "28800562 R b 40 MSFT".getBytes();
+        parser.parse(line, 0, line.length, message);
+        assertEquals("MSFT", message.getSymbol());
+
+        //without a symbol the message belongs to the default instrument
+        line = "28800562 R b 40".getBytes();
+        parser.parse(line, 0, line.length, message);
+        assertEquals(0, message.getSymbolLength());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSide() throws IOException{
+        byte[] line = "28800538 A b X 44.26 100".getBytes();
+        new MessageParser().parse(line, 0, line.length, new OrderMessage());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooManyFields() throws IOException{
+        byte[] line = "28800538 R b 100 AAPL 7".getBytes();
+        new MessageParser().parse(line, 0, line.length, new OrderMessage());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testSizeOutOfRange() throws IOException{
+        byte[] line = "28800538 R b 99999999999".getBytes();
+        new MessageParser().parse(line, 0, line.length, new OrderMessage());
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+public class OffHeapLevelStoreTest {
+
+    @Test
+    public void testMatchesHeapTree(){
+        Random random = new Random(20);
+        for (boolean descending : new boolean[]{true, false}){
+            PriceLevelTree heap = new PriceLevelTree(descending, false);
+            PriceLevelTree off_heap = new PriceLevelTree(descending, true);
+            //enough levels to grow the off-heap store through several chunks
+            for (int i = 0; i < 20000; i++){
+                long price = 1000 + random.nextInt(3000);
+                int size = 1 + random.nextInt(100);
+                if (random.nextInt(3) == 0 && heap.getShares(price) > 0){
+                    size = Math.min(size, heap.getShares(price));
+                    heap.remove(price, size);
+                    off_heap.remove(price, size);
+                } else {
+                    heap.add(price, size);
+                    off_heap.add(price, size);
+                }
+                if (i % 1000 == 0){
+                    assertSame(heap, off_heap, random);
+                }
+            }
+            assertSame(heap, off_heap, random);
+        }
+    }
+
+    @Test
+    public void testChunkBoundaries(){
+        OffHeapLevelStore store = new OffHeapLevelStore(4);
+        assertEquals(4, store.capacity());
+        store.grow();
+        store.grow();
+        assertEquals(28, store.capacity());
+        for (int node = 0; node < store.capacity(); node++){
+            assertEquals(0L, store.price(node));
+            store.setPrice(node, node);
+            store.setRight(node, -node);
+        }
+        for (int node = 0; node < store.capacity(); node++){
+            assertEquals((long) node, store.price(node));
+            assertEquals(-node, store.right(node));
+            assertEquals(0, store.left(node));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePowerOfTwo(){
+        new OffHeapLevelStore(48);
+    }
+
+    private void assertSame(PriceLevelTree heap, PriceLevelTree off_heap, Random random){
+        assertEquals(heap.getLevelCount(), off_heap.getLevelCount());
+        assertEquals(heap.getTotalShares(), off_heap.getTotalShares());
+        assertEquals(heap.getBestPrice(), off_heap.getBestPrice());
+        for (int i = 0; i < 20; i++){
+            long target = 1 + random.nextInt(200000);
+            assertEquals(heap.getCostOfBest(target), off_heap.getCostOfBest(target));
+            long price = 1000 + random.nextInt(3000);
+            assertEquals(heap.getNotionalThrough(price), off_heap.getNotionalThrough(price));
+        }
+        long[] heap_prices = new long[50];
+        int[] heap_shares = new int[50];
+        long[] prices = new long[50];
+        int[] shares = new int[50];
+        int count = heap.getLevels(heap_prices, heap_shares, 50);
+        assertEquals(count, off_heap.getLevels(prices, shares, 50));
+        for (int i = 0; i < count; i++){
+            assertEquals(heap_prices[i], prices[i]);
+            assertEquals(heap_shares[i], shares[i]);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class OrderIndexTest {
+
+    @Test
+    public void testReduceAndReclaim(){
+        OrderIndex index = new OrderIndex();
+        byte[] id = "ab".getBytes();
+        index.add(id, id.length, OrderMessage.SELL, 4426, 100);
+
+        int slot = index.find(id, id.length);
+        assertEquals(OrderMessage.SELL, index.getSide(slot));
+        assertEquals(4426L, index.getPrice(slot));
+        assertEquals(40, index.reduce(slot, 40));
+        assertEquals(60, index.getSize(slot));
+
+        //a reduce larger than the remaining size only removes what is left
+        assertEquals(60, index.reduce(slot, 1000));
+        assertEquals(OrderIndex.NOT_FOUND, index.find(id, id.length));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testMatchesHashMap(){
+        Random random = new Random(11);
+        OrderIndex index = new OrderIndex(16, OrderIndex.DEFAULT_MAX_ID_LENGTH);
+        HashMap<String, Integer> sizes = new HashMap<String, Integer>();
+        ArrayList<String> ids = new ArrayList<String>();
+
+        for (int i = 0; i < 50000; i++){
+            if (random.nextInt(5) < 3 || ids.isEmpty()){
+                String id = Integer.toString(i, 36);
+                int size = 1 + random.nextInt(100);
+                index.add(id.getBytes(), id.length(), OrderMessage.BUY, i, size);
+                sizes.put(id, size);
+                ids.add(id);
+            } else {
+                String id = ids.get(random.nextInt(ids.size()));
+                int slot = index.find(id.getBytes(), id.length());
+                if (!sizes.containsKey(id)){
+                    assertEquals(OrderIndex.NOT_FOUND, slot);
+                    continue;
+                }
+                assertEquals((int) sizes.get(id), index.getSize(slot));
+                int reduce = 1 + random.nextInt(100);
+                index.reduce(slot, reduce);
+                if (reduce >= sizes.get(id)){
+                    sizes.remove(id);
+                } else {
+                    sizes.put(id, sizes.get(id) - reduce);
+                }
+            }
+            assertEquals(sizes.size(), index.size());
+        }
+        for (String id : ids){
+            int slot = index.find(id.getBytes(), id.length());
+            assertEquals(sizes.containsKey(id) ? (int) sizes.get(id) : -1, slot == OrderIndex.NOT_FOUND ? -1 : index.getSize(slot));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class PipelinedPricerTest {
+
+    @Test
+    public void testMatchesSingleThread() throws Exception{
+        ArrayList<String> lines = new ArrayList<String>();
+        ArrayList<String> live = new ArrayList<String>();
+        Random random = new Random(5);
+        for (int i = 0; i < 20000; i++){
+            if (live.isEmpty() || random.nextInt(3) > 0){
+                String id = "o"+i;
+                live.add(id);
+                char side = random.nextBoolean() ? 'B' : 'S';
+                String price = (40 + random.nextInt(10))+"."+random.nextInt(100);
+                lines.add(i+" A "+id+" "+side+" "+price+" "+(1+random.nextInt(300)));
+            } else {
+                lines.add(i+" R "+live.remove(random.nextInt(live.size()))+" "+(1+random.nextInt(400)));
+            }
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(expected);
+        OrderBooks books = new OrderBooks(200);
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, message);
+            books.processMessage(message, writer);
+        }
+        writer.flush();
+
+        for (WaitStrategy wait : WaitStrategy.values()){
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            PriceWriter pipeline_writer = new PriceWriter(actual);
+            PipelinedPricer pipeline = new PipelinedPricer(new OrderBooks(200), pipeline_writer, 64, wait, wait, wait,
+                false);
+            for (String line : lines){
+                byte[] bytes = line.getBytes();
+                parser.parse(bytes, 0, bytes.length, pipeline.claim());
+                pipeline.publish();
+            }
+            pipeline.finish();
+            pipeline_writer.flush();
+            assertNull(pipeline.getError());
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    public void testBookError() throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        PipelinedPricer pipeline = new PipelinedPricer(new OrderBooks(1), writer, 4, WaitStrategy.PARK,
+            WaitStrategy.PARK, WaitStrategy.PARK, false);
+        MessageParser parser = new MessageParser();
+        String[] lines = {"1 A a B 10.00 5", "2 R b 5", "3 A c S 11.00 5"};
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, pipeline.claim());
+            pipeline.publish();
+        }
+        pipeline.finish();
+        writer.flush();
+        assertEquals("Error: Cannot remove shares. Unknown order id: b", pipeline.getError().getMessage());
+        //nothing after the failed message is applied
+        assertEquals("1 S 10.00\n", out.toString());
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PriceLevelTreeTest {
+
+    @Test
+    public void testCostOfBest(){
+        PriceLevelTree tree = new PriceLevelTree(false);
+        tree.add(10000, 100);
+        tree.add(9000, 100);
+        tree.add(11000, 50);
+
+        assertEquals(9000L*100, tree.getCostOfBest(100));
+        assertEquals(9000L, tree.getLastBoundaryPrice());
+        assertEquals(9000L*100+10000*100+11000*25, tree.getCostOfBest(225));
+        assertEquals(11000L, tree.getLastBoundaryPrice());
+        assertEquals(Prices.NOT_AVAILABLE, tree.getCostOfBest(251));
+
+        tree.remove(9000, 100);
+        assertEquals(0, tree.getShares(9000));
+        assertEquals(2, tree.getLevelCount());
+        assertEquals(10000L*100+11000*50, tree.getCostOfBest(150));
+    }
+
+    @Test
+    public void testDescending(){
+        PriceLevelTree tree = new PriceLevelTree(true);
+        tree.add(9000, 100);
+        tree.add(10000, 100);
+        tree.add(10000, 100);
+
+        assertEquals(10000L*150, tree.getCostOfBest(150));
+        tree.remove(10000, 50);
+        assertEquals(150, tree.getShares(10000));
+        assertEquals(10000L*150+9000*50, tree.getCostOfBest(200));
+        assertEquals(9000L, tree.getLastBoundaryPrice());
+        assertEquals(10000L, tree.getBestPrice());
+        assertEquals(9000L, tree.getNextPrice(10000));
+        assertEquals(Prices.NO_PRICE, tree.getPreviousPrice(10000));
+    }
+
+    @Test
+    public void testMatchesTreeMapWalk(){
+        Random random = new Random(42);
+        PriceLevelTree tree = new PriceLevelTree(false);
+        TreeMap<Long, Integer> log = new TreeMap<Long, Integer>();
+
+        for (int i = 0; i < 20000; i++){
+            long price = 4000 + random.nextInt(200);
+            int size = 1 + random.nextInt(500);
+            if (random.nextInt(3) == 0 && log.containsKey(price)){
+                tree.remove(price, size);
+                if (size < log.get(price)){
+                    log.put(price, log.get(price)-size);
+                } else {
+                    log.remove(price);
+                }
+            } else {
+                tree.add(price, size);
+                log.put(price, log.containsKey(price) ? log.get(price)+size : size);
+            }
+            int target = 1 + random.nextInt(20000);
+            assertEquals(log.size(), tree.getLevelCount());
+            assertEquals(walk(log, target), tree.getCostOfBest(target));
+        }
+    }
+
+    private static long walk(TreeMap<Long, Integer> log, int target){
+        long cost = 0;
+        for (Map.Entry<Long, Integer> level : log.entrySet()){
+            int taken = Math.min(target, level.getValue());
+            cost += level.getKey() * taken;
+            target -= taken;
+            if (target == 0){
+                return cost;
+            }
+        }
+        return Prices.NOT_AVAILABLE;
+    }
+}
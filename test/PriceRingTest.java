@@ -0,0 +1,170 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class PriceRingTest {
+
+    @Test
+    public void testMatchesPriceWriter() throws Exception{
+        String[] feed = {"1 A a S 44.26 100", "2 A b B 44.10 100 IBM", "3 A c S 44.30 150", "4 A d B 44.20 50 IBM",
+            "5 R a 100", "6 R d 50 IBM", "7 A e S 44.00 20 SYMBOL_OF_THIRTY_TWO_BYTES_LONG_"};
+        int[] targets = {100, 150};
+        File file = File.createTempFile("prices", ".ring");
+        PriceRingWriter ring = new PriceRingWriter(file.getPath(), 16);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PriceWriter expected = new PriceWriter(text);
+        expected.setTagTargets(true);
+        price(feed, targets, ring);
+        price(feed, targets, expected);
+        expected.flush();
+
+        PriceRingReader reader = new PriceRingReader(file.getPath());
+        assertFalse(reader.isClosed());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter actual = new PriceWriter(out);
+        actual.setTagTargets(true);
+        long sequence = 0;
+        while (reader.next()){
+            assertEquals(sequence++, reader.getSequence());
+            actual.writePrice(reader.getTimestamp(), reader.getSide(), reader.getTargetSize(), reader.getCost(),
+                reader.getSymbolBytes(), reader.getSymbolLength());
+        }
+        actual.flush();
+        assertEquals(text.toString(), out.toString());
+        assertEquals(ring.getSequence(), sequence);
+        assertFalse(reader.isClosed());
+        ring.close();
+        assertTrue(reader.isClosed());
+        assertEquals(0, reader.getLost());
+        reader.close();
+        file.delete();
+    }
+
+    @Test
+    public void testSlowReaderLosesOldest() throws Exception{
+        File file = File.createTempFile("prices", ".ring");
+        PriceRingWriter ring = new PriceRingWriter(file.getPath(), 8);
+        PriceRingReader reader = new PriceRingReader(file.getPath());
+        for (int i = 0; i < 20; i++){
+            ring.writePrice(i, OrderMessage.BUY, 200, i * 100, null, 0);
+        }
+        assertTrue(reader.next());
+        assertEquals(12, reader.getSequence());
+        assertEquals(12, reader.getLost());
+        assertEquals(1200, reader.getCost());
+        reader.skipToEnd();
+        assertFalse(reader.next());
+        ring.writePrice(20, OrderMessage.SELL, 200, Prices.NOT_AVAILABLE, null, 0);
+        assertTrue(reader.next());
+        assertEquals(OrderMessage.SELL, reader.getSide());
+        assertEquals(Prices.NOT_AVAILABLE, reader.getCost());
+
+        //a reader opened late starts at the oldest record still in the ring
+        PriceRingReader late = new PriceRingReader(file.getPath());
+        assertTrue(late.next());
+        assertEquals(13, late.getSequence());
+        ring.close();
+        reader.close();
+        late.close();
+        file.delete();
+    }
+
+    @Test
+    public void testRecordNotYetPublishedIsReadAgain() throws Exception{
+        File file = File.createTempFile("prices", ".ring");
+        PriceRingWriter ring = new PriceRingWriter(file.getPath(), 8);
+        PriceRingReader reader = new PriceRingReader(file.getPath());
+        ring.writePrice(1, OrderMessage.BUY, 200, 4426, null, 0);
+        //the cursor seen before the sequence number of its record
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        MappedByteBuffer slots = raw.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        slots.order(ByteOrder.LITTLE_ENDIAN);
+        int first = PriceRingFormat.HEADER_SIZE + PriceRingFormat.SEQUENCE;
+        slots.putLong(first, PriceRingFormat.IN_PROGRESS);
+        assertFalse(reader.next());
+        assertEquals(0, reader.getLost());
+        slots.putLong(first, 0);
+        assertTrue(reader.next());
+        assertEquals(4426, reader.getCost());
+        assertEquals(0, reader.getLost());
+        raw.close();
+        ring.close();
+        reader.close();
+        file.delete();
+    }
+
+    @Test
+    public void testConcurrentReaderNeverSeesTornRecords() throws Exception{
+        final File file = File.createTempFile("prices", ".ring");
+        final PriceRingWriter ring = new PriceRingWriter(file.getPath(), 64);
+        final int records = 1000000;
+        Thread writer = new Thread(new Runnable(){
+            public void run(){
+                byte[] symbol = "ABCDEFGH".getBytes();
+                for (int i = 0; i < records; i++){
+                    ring.writePrice(i, (i % 2 == 0) ? OrderMessage.BUY : OrderMessage.SELL, i, 3L * i, symbol, i % 9);
+                }
+                try{
+                    ring.close();
+                } catch (Exception e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        PriceRingReader reader = new PriceRingReader(file.getPath());
+        writer.start();
+        long read = 0;
+        long last = -1;
+        while (!reader.isClosed()){
+            if (!reader.next()){
+                continue;
+            }
+            long i = reader.getSequence();
+            assertTrue(i > last);
+            assertEquals(i, reader.getTimestamp());
+            assertEquals(3 * i, reader.getCost());
+            assertEquals(i, reader.getTargetSize());
+            assertEquals((i % 2 == 0) ? OrderMessage.BUY : OrderMessage.SELL, reader.getSide());
+            assertEquals("ABCDEFGH".substring(0, (int) (i % 9)), reader.getSymbol());
+            last = i;
+            read++;
+        }
+        writer.join();
+        assertEquals(records - 1, last);
+        assertEquals(records, read + reader.getLost());
+        reader.close();
+        file.delete();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePowerOfTwo() throws Exception{
+        File file = File.createTempFile("prices", ".ring");
+        file.deleteOnExit();
+        new PriceRingWriter(file.getPath(), 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotARing() throws Exception{
+        File file = File.createTempFile("prices", ".ring");
+        file.deleteOnExit();
+        new PriceRingReader(file.getPath());
+    }
+
+    private void price(String[] feed, int[] targets, PriceSink sink) throws Exception{
+        OrderBooks books = new OrderBooks(targets, targets);
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        for (String line : feed){
+            parser.parse(line.getBytes(), 0, line.length(), message);
+            books.processMessage(message, sink);
+        }
+    }
+}
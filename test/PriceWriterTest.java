@@ -0,0 +1,73 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class PriceWriterTest {
+
+    @Test
+    public void testWritePrice() throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+
+        writer.writePrice(28800538, OrderMessage.BUY, 4426);
+        writer.writePrice(28800562, OrderMessage.SELL, 5);
+        writer.writePrice(28800744, OrderMessage.BUY, Prices.NOT_AVAILABLE);
+        writer.writePrice(0, OrderMessage.SELL, 88520000);
+        writer.writePrice(28800758, OrderMessage.SELL, 200, 4410, "AAPL".getBytes(), 4);
+        assertEquals("", out.toString());
+
+        writer.flush();
+        assertEquals("28800538 B 44.26\n28800562 S 0.05\n28800744 B NA\n0 S 885200.00\n28800758 S 44.10 AAPL\n",
+            out.toString());
+    }
+
+    @Test
+    public void testFlushWhenFull() throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out, 128, 0);
+        for (int i = 0; i < 100; i++){
+            writer.writePrice(i, OrderMessage.BUY, 100);
+        }
+        assertTrue(out.size() > 0);
+        writer.writeLine("done");
+        writer.flush();
+        String[] lines = out.toString().split("\n");
+        assertEquals(101, lines.length);
+        assertEquals("99 B 1.00", lines[99]);
+        assertEquals("done", lines[100]);
+    }
+
+    @Test
+    public void testTagTargets() throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        writer.setTagTargets(true);
+        writer.writePrice(28800538, OrderMessage.BUY, 200, 4426, null, 0);
+        writer.writePrice(28800538, OrderMessage.BUY, 10000, Prices.NOT_AVAILABLE, "IBM".getBytes(), 3);
+        writer.flush();
+        assertEquals("200 28800538 B 44.26\n10000 28800538 B NA IBM\n", out.toString());
+    }
+
+    @Test
+    public void testFlushIfDue() throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out, PriceWriter.DEFAULT_BUFFER_SIZE, 1000000);
+        writer.flushIfDue();
+        writer.writePrice(28800538, OrderMessage.BUY, 4426);
+        writer.flushIfDue();
+        assertEquals("", out.toString());
+        //no more lines are written, but the one buffered must not wait past the bound
+        Thread.sleep(5);
+        writer.flushIfDue();
+        assertEquals("28800538 B 44.26\n", out.toString());
+
+        PriceWriter unbounded = new PriceWriter(out);
+        unbounded.writePrice(28800562, OrderMessage.SELL, 5);
+        Thread.sleep(5);
+        unbounded.flushIfDue();
+        assertEquals("28800538 B 44.26\n", out.toString());
+    }
+}
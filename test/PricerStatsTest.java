@@ -0,0 +1,61 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class PricerStatsTest {
+
+    @Test
+    public void testCountsMessagesAndDepth() throws Exception{
+        OrderBooks books = new OrderBooks(100);
+        PricerStats stats = new PricerStats(books, Long.MAX_VALUE / 2, null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PriceSink prices = stats.timeOutput(new PriceWriter(bytes));
+        String text = "1 A a B 44.26 60 IBM\n2 A b B 44.10 60 IBM\n3 A c S 44.60 100 IBM\n4 A e B 44.50 100 IBM\n"
+            +"5 R a 60 IBM\n6 A d S 44.70 10\n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        while (parser.next(message)){
+            OrderBook book = books.getBook(message.getSymbolBytes(), message.getSymbolLength());
+            stats.beforeMessage(book);
+            long start = System.nanoTime();
+            book.processMessage(message, prices);
+            stats.afterMessage(message, book, 10, start, System.nanoTime());
+        }
+        assertEquals(0, stats.getMessages());
+        stats.publish();
+
+        assertEquals(6, stats.getMessages());
+        assertEquals(5, stats.getAdds());
+        assertEquals(1, stats.getReduces());
+        assertEquals(2, stats.getOfferLevels());
+        assertEquals(2, stats.getBidLevels());
+        assertEquals(4, stats.getLiveOrders());
+        //e fills the bid target by itself, so the boundary moves from b past a to e
+        assertEquals(2, stats.getLevelsTraversed());
+        assertEquals(10, stats.getParseNanosP50());
+        assertTrue(stats.getBookNanosMax() > 0);
+        assertTrue(stats.toString().startsWith("stats messages=6 adds=5 reduces=1"));
+    }
+
+    @Test
+    public void testRegistersMBean() throws Exception{
+        OrderBooks books = new OrderBooks(100);
+        books.getBook("IBM".getBytes(), 3).restoreLevel(OrderMessage.SELL, 4460, 100);
+        PricerStats stats = new PricerStats(books, PricerStats.DEFAULT_INTERVAL_NANOS, null);
+        stats.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(PricerStats.OBJECT_NAME);
+        try{
+            assertEquals(1L, server.getAttribute(name, "OfferLevels"));
+            assertEquals(0L, server.getAttribute(name, "Messages"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
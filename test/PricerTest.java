@@ -1,14 +1,301 @@
 import org.junit.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.zip.GZIPInputStream;
+
 public class PricerTest {
+	//The input of the golden outputs, not kept in the repository because of its size. bin/run reads it from here too.
+	private static final File GOLDEN_INPUT = new File("pricer.in.gz");
+
+	//Bytes the book may allocate per message once warmed up, for the odd resize the warmup did not reach
+	private static final double ALLOCATION_BUDGET = 1.0;
+
 	@Test
-	public void pricerTest1() {
-		
+	public void pricerTest1() throws Exception{
+		assertMatchesGolden(1);
 	}
-	public void pricerTest200() {
-		
+
+	@Test
+	public void pricerTest200() throws Exception{
+		assertMatchesGolden(200);
+	}
+
+	@Test
+	public void pricerTest10000() throws Exception{
+		assertMatchesGolden(10000);
+	}
+
+	@Test
+	public void testMatchesTreeMapBook() throws Exception{
+		assertMatchesTreeMapBook(new Random(24), new int[]{1, 200}, new int[]{100, 1000}, false);
+		assertMatchesTreeMapBook(new Random(25), new int[]{10000}, new int[]{50}, false);
+	}
+
+	@Test
+	public void testOffHeapMatchesTreeMapBook() throws Exception{
+		assertMatchesTreeMapBook(new Random(26), new int[]{1, 200}, new int[]{100, 1000}, true);
+	}
+
+	@Test
+	public void testSteadyStateAllocation() throws Exception{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		//the live orders stay bounded, so once warmed up the books, index and writer have all the room they need
+		byte[] feed = feed(new Random(27), 400000).getBytes();
+		int[] line_ends = lineEnds(feed);
+		OrderBooks books = new OrderBooks(new int[]{1, 200}, new int[]{200});
+		PriceWriter writer = new PriceWriter(new OutputStream(){
+			public void write(int b){
+			}
+			public void write(byte[] b, int offset, int length){
+			}
+		});
+		MessageParser parser = new MessageParser();
+		OrderMessage message = new OrderMessage();
+		int half = line_ends.length / 2;
+		replay(feed, line_ends, 0, half, parser, message, books, writer);
+
+		long thread = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(thread);
+		replay(feed, line_ends, half, line_ends.length, parser, message, books, writer);
+		long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+		double per_message = (double) allocated / (line_ends.length - half);
+		assertTrue("Allocated "+per_message+" bytes per message", per_message <= ALLOCATION_BUDGET);
+	}
+
+	/**
+	 * Streams the golden input through the books and compares every line written with the golden output,
+	 * as bin/run does with diff. Skipped when the input is not in the test directory.
+	 */
+	private void assertMatchesGolden(int target_size) throws Exception{
+		Assume.assumeTrue(GOLDEN_INPUT.isFile());
+		BufferedReader golden = new BufferedReader(new InputStreamReader(
+			new GZIPInputStream(new FileInputStream("pricer.out."+target_size+".gz"))));
+		GoldenStream out = new GoldenStream(golden);
+		PriceWriter writer = new PriceWriter(out);
+		MessageParser parser = new MessageParser(new GZIPInputStream(new FileInputStream(GOLDEN_INPUT), 1 << 16));
+		OrderBooks books = new OrderBooks(target_size);
+		OrderMessage message = new OrderMessage();
+		try{
+			while (parser.next(message)){
+				books.processMessage(message, writer);
+			}
+		} catch (IndexOutOfBoundsException|IOException|NumberFormatException e){
+			writer.writeLine(Pricer.getInvalidInputWarning(parser.getLine()));
+		}
+		writer.flush();
+		assertEquals("Golden output has more lines than line "+out.lines, null, golden.readLine());
+		golden.close();
+	}
+
+	/**
+	 * Replays a random feed over several symbols through OrderBooks and through a plain TreeMap book, and
+	 * compares every price change.
+	 */
+	private void assertMatchesTreeMapBook(Random random, int[] buy_target_sizes, int[] sell_target_sizes,
+		boolean off_heap) throws Exception{
+		String feed = feed(random, 50000);
+		OrderBooks books = new OrderBooks(buy_target_sizes, sell_target_sizes, off_heap);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PriceWriter writer = new PriceWriter(out);
+		writer.setTagTargets(true);
+		TreeMapBooks expected = new TreeMapBooks(buy_target_sizes, sell_target_sizes);
+		MessageParser parser = new MessageParser();
+		OrderMessage message = new OrderMessage();
+		for (String line : feed.split("\n")){
+			byte[] bytes = line.getBytes();
+			parser.parse(bytes, 0, bytes.length, message);
+			books.processMessage(message, writer);
+			expected.processMessage(message);
+		}
+		writer.flush();
+		assertEquals(expected.output.toString(), out.toString());
+	}
+
+	private void replay(byte[] feed, int[] line_ends, int first, int last, MessageParser parser, OrderMessage message,
+		OrderBooks books, PriceWriter writer) throws Exception{
+		int start = (first == 0) ? 0 : line_ends[first - 1] + 1;
+		for (int i = first; i < last; i++){
+			parser.parse(feed, start, line_ends[i], message);
+			books.processMessage(message, writer);
+			start = line_ends[i] + 1;
+		}
+	}
+
+	private int[] lineEnds(byte[] feed){
+		int lines = 0;
+		for (byte b : feed){
+			lines += (b == '\n') ? 1 : 0;
+		}
+		int[] ends = new int[lines];
+		for (int i = 0, line = 0; i < feed.length; i++){
+			if (feed[i] == '\n'){
+				ends[line++] = i;
+			}
+		}
+		return ends;
+	}
+
+	/**
+	 * Generates a feed of adds and reduces over the default instrument and two symbols. At most a few hundred
+	 * orders are live at a time, and an order is reduced by at most its remaining size.
+	 */
+	private String feed(Random random, int messages){
+		String[] symbols = {"", " X", " Y"};
+		StringBuilder feed = new StringBuilder();
+		ArrayList<String> live = new ArrayList<String>();
+		HashMap<String, Integer> remaining = new HashMap<String, Integer>();
+		HashMap<String, String> symbol_of = new HashMap<String, String>();
+		int orders = 0;
+		for (int i = 0; i < messages; i++){
+			if (live.size() < 50 || (live.size() < 300 && random.nextBoolean())){
+				String id = "o"+orders++;
+				String symbol = symbols[random.nextInt(symbols.length)];
+				int size = 1 + random.nextInt(200);
+				live.add(id);
+				remaining.put(id, size);
+				symbol_of.put(id, symbol);
+				feed.append(i).append(" A ").append(id).append(random.nextBoolean() ? " B " : " S ")
+					.append(Prices.format(4000 + random.nextInt(200))).append(' ').append(size).append(symbol);
+			} else {
+				int index = random.nextInt(live.size());
+				String id = live.get(index);
+				int left = remaining.get(id);
+				int size = random.nextBoolean() ? left : 1 + random.nextInt(left);
+				if (size == left){
+					Collections.swap(live, index, live.size() - 1);
+					live.remove(live.size() - 1);
+				}
+				remaining.put(id, left - size);
+				feed.append(i).append(" R ").append(id).append(' ').append(size).append(symbol_of.get(id));
+			}
+			feed.append('\n');
+		}
+		return feed.toString();
+	}
+
+	/**
+	 * Compares each line written to it with the next line of the golden output.
+	 */
+	private static class GoldenStream extends OutputStream {
+		final BufferedReader golden;
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int lines;
+
+		GoldenStream(BufferedReader golden){
+			this.golden = golden;
+		}
+
+		public void write(int b) throws IOException{
+			if (b != '\n'){
+				this.line.write(b);
+				return;
+			}
+			this.lines++;
+			assertEquals("Line "+this.lines, this.golden.readLine(), this.line.toString());
+			this.line.reset();
+		}
+
+		public void write(byte[] b, int offset, int length) throws IOException{
+			for (int i = offset; i < offset + length; i++){
+				write(b[i]);
+			}
+		}
 	}
-	public void pricerTest() {
-		
+
+	/**
+	 * The reference book: the price levels of each side in a TreeMap, and the costs recomputed from the best
+	 * level after every message. It is slow but too simple to get wrong.
+	 */
+	private static class TreeMapBooks {
+		final int[] buy_target_sizes;
+		final int[] sell_target_sizes;
+		final HashMap<String, TreeMap<Long, Long>> offers = new HashMap<String, TreeMap<Long, Long>>();
+		final HashMap<String, TreeMap<Long, Long>> bids = new HashMap<String, TreeMap<Long, Long>>();
+		final HashMap<String, long[]> orders = new HashMap<String, long[]>(); //side, price, remaining size
+		final HashMap<String, Long> costs = new HashMap<String, Long>(); //last cost written
+		final StringBuilder output = new StringBuilder();
+
+		TreeMapBooks(int[] buy_target_sizes, int[] sell_target_sizes){
+			this.buy_target_sizes = buy_target_sizes;
+			this.sell_target_sizes = sell_target_sizes;
+		}
+
+		void processMessage(OrderMessage message){
+			String symbol = message.getSymbol();
+			char side;
+			long price;
+			long shares;
+			if (message.getType() == OrderMessage.ADD){
+				side = message.getSide();
+				price = message.getPrice();
+				shares = message.getSize();
+				this.orders.put(symbol+" "+message.getOrderId(), new long[]{side, price, shares});
+			} else {
+				long[] order = this.orders.get(symbol+" "+message.getOrderId());
+				side = (char) order[0];
+				price = order[1];
+				shares = -Math.min(order[2], message.getSize());
+				order[2] += shares;
+			}
+			boolean offer = side == OrderMessage.SELL;
+			HashMap<String, TreeMap<Long, Long>> levels = offer ? this.offers : this.bids;
+			if (!levels.containsKey(symbol)){
+				levels.put(symbol, offer ? new TreeMap<Long, Long>() : new TreeMap<Long, Long>(Collections.reverseOrder()));
+			}
+			TreeMap<Long, Long> book = levels.get(symbol);
+			Long level = book.get(price);
+			long total = ((level == null) ? 0 : level) + shares;
+			if (total == 0){
+				book.remove(price);
+			} else {
+				book.put(price, total);
+			}
+			char cost_side = offer ? OrderMessage.BUY : OrderMessage.SELL;
+			for (int target_size : offer ? this.buy_target_sizes : this.sell_target_sizes){
+				long cost = cost(book, target_size);
+				String key = symbol+" "+cost_side+" "+target_size;
+				Long last = this.costs.get(key);
+				if ((last == null) ? cost != Prices.NOT_AVAILABLE : last != cost){
+					this.costs.put(key, cost);
+					this.output.append(target_size).append(' ').append(message.getTimestamp()).append(' ')
+						.append(cost_side).append(' ').append((cost == Prices.NOT_AVAILABLE) ? "NA" : Prices.format(cost));
+					this.output.append(symbol.isEmpty() ? "" : " "+symbol).append('\n');
+				}
+			}
+		}
+
+		long cost(TreeMap<Long, Long> book, int target_size){
+			long needed = target_size;
+			long cost = 0;
+			for (Map.Entry<Long, Long> level : book.entrySet()){
+				long shares = Math.min(needed, level.getValue());
+				cost += shares * level.getKey();
+				needed -= shares;
+				if (needed == 0){
+					return cost;
+				}
+			}
+			return Prices.NOT_AVAILABLE;
+		}
 	}
 }
@@ -0,0 +1,43 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class PricesTest {
+
+    @Test
+    public void testParseTicks(){
+        assertEquals(4426L, Prices.parseTicks("44.26"));
+        assertEquals(4420L, Prices.parseTicks("44.2"));
+        assertEquals(4400L, Prices.parseTicks("44"));
+        assertEquals(4400L, Prices.parseTicks("44."));
+        assertEquals(50L, Prices.parseTicks(".5"));
+        assertEquals(4426L, Prices.parseTicks("44.2600"));
+        assertEquals(Prices.MAX_TICKS, Prices.parseTicks(Prices.format(Prices.MAX_TICKS)));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseFinerThanTick(){
+        Prices.parseTicks("44.265");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseOutOfRange(){
+        Prices.parseTicks(Prices.format(Prices.MAX_TICKS + 1));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseTwoPoints(){
+        Prices.parseTicks("44.2.6");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseNoDigits(){
+        Prices.parseTicks(".");
+    }
+
+    @Test
+    public void testFormat(){
+        assertEquals("44.26", Prices.format(4426));
+        assertEquals("0.05", Prices.format(5));
+        assertEquals("885200.00", Prices.format(88520000));
+    }
+}
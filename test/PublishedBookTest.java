@@ -0,0 +1,158 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PublishedBookTest {
+
+    @Test
+    public void testViewOfBook() throws Exception{
+        OrderBook book = new OrderBook("IBM".getBytes(), new int[]{100, 50}, new int[]{100});
+        PublishedBooks published = new PublishedBooks(2, new int[]{100, 50}, new int[]{100});
+        String text = "1 A a B 44.26 100 IBM\n2 A b B 44.10 50 IBM\n3 A c B 44.00 20 IBM\n4 A d S 44.50 30 IBM\n";
+        MessageParser parser = new MessageParser(new ByteArrayInputStream(text.getBytes()));
+        OrderMessage message = new OrderMessage();
+        PriceWriter out = new PriceWriter(new ByteArrayOutputStream());
+        while (parser.next(message)){
+            book.processMessage(message, out);
+            published.publish(book, message.getTimestamp());
+        }
+        assertEquals(null, published.get("MSFT"));
+        PublishedBook ibm = published.get("IBM");
+        BookView view = ibm.newView();
+        ibm.read(view);
+
+        assertEquals(4, view.getTimestamp());
+        assertEquals(4, view.getMessages());
+        assertEquals(3, view.getLevelCount(OrderMessage.BUY));
+        assertEquals(2, view.getLevels(OrderMessage.BUY));
+        assertEquals(170, view.getTotalShares(OrderMessage.BUY));
+        assertEquals(4426L, view.getPrice(OrderMessage.BUY, 0));
+        assertEquals(50, view.getShares(OrderMessage.BUY, 1));
+        assertEquals(1, view.getLevels(OrderMessage.SELL));
+        assertEquals(4450L, view.getPrice(OrderMessage.SELL, 0));
+        assertEquals(50, view.getTargetSize(OrderMessage.BUY, 0));
+        assertEquals(Prices.NOT_AVAILABLE, view.getCost(OrderMessage.BUY, 0));
+        assertEquals(442600L, view.getCost(OrderMessage.SELL, 0));
+    }
+
+    @Test
+    public void testReadersSeeConsistentViews() throws Exception{
+        final int depth = 64;
+        final OrderBook book = new OrderBook(new byte[0], 150);
+        final PublishedBooks published = new PublishedBooks(depth, new int[]{150}, new int[]{150});
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        published.publish(book, 0);
+
+        Thread reader = new Thread(new Runnable(){
+            public void run(){
+                PublishedBook bids = published.get("");
+                BookView view = bids.newView();
+                while (!done.get() && failure.get() == null){
+                    bids.read(view);
+                    //a torn view would not add up
+                    long total = 0;
+                    long cost = 0;
+                    long remaining = 150;
+                    for (int level = 0; level < view.getLevels(OrderMessage.BUY); level++){
+                        int shares = view.getShares(OrderMessage.BUY, level);
+                        total += shares;
+                        long taken = Math.min(remaining, shares);
+                        cost += taken * view.getPrice(OrderMessage.BUY, level);
+                        remaining -= taken;
+                    }
+                    long expected = (remaining > 0) ? Prices.NOT_AVAILABLE : cost;
+                    if (total != view.getTotalShares(OrderMessage.BUY) || expected != view.getCost(OrderMessage.SELL, 0)){
+                        failure.set("Inconsistent view after "+view.getMessages()+" messages");
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        Random random = new Random(19);
+        ArrayList<long[]> live = new ArrayList<long[]>(); //id, remaining size
+        OrderMessage message = new OrderMessage();
+        PriceWriter out = new PriceWriter(new ByteArrayOutputStream());
+        for (int i = 1; i <= 50000 && failure.get() == null; i++){
+            message.setTimestamp(i);
+            if (live.size() < 40 && (live.isEmpty() || random.nextBoolean())){
+                message.setType(OrderMessage.ADD);
+                message.setSide(OrderMessage.BUY);
+                message.setPrice(4000 + random.nextInt(depth));
+                message.setSize(1 + random.nextInt(100));
+                message.setOrderId(i);
+                live.add(new long[]{i, message.getSize()});
+            } else {
+                int index = random.nextInt(live.size());
+                long[] order = live.get(index);
+                message.setType(OrderMessage.REDUCE);
+                message.setOrderId(order[0]);
+                message.setSize((int) order[1]);
+                live.remove(index);
+            }
+            message.setSymbol(new byte[0], 0, 0);
+            book.processMessage(message, out);
+            published.publish(book, i);
+        }
+        done.set(true);
+        reader.join();
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testViewMatchesBookAfterEveryMessage() throws Exception{
+        //most changes are deeper than the 3 levels published, which only republishes the totals
+        OrderBook book = new OrderBook(new byte[0], 100);
+        PublishedBook published = new PublishedBook(new byte[0], 3, new int[]{100}, new int[]{100});
+        BookView view = published.newView();
+        Random random = new Random(22);
+        ArrayList<long[]> live = new ArrayList<long[]>(); //id, remaining size
+        OrderMessage message = new OrderMessage();
+        PriceWriter out = new PriceWriter(new ByteArrayOutputStream());
+        long[] prices = new long[3];
+        int[] shares = new int[3];
+        for (int i = 1; i <= 20000; i++){
+            message.setTimestamp(i);
+            if (live.isEmpty() || random.nextInt(5) < 3){
+                message.setType(OrderMessage.ADD);
+                message.setSide(random.nextBoolean() ? OrderMessage.BUY : OrderMessage.SELL);
+                message.setPrice(message.getSide() == OrderMessage.BUY ? 4000 - random.nextInt(30) : 4001 + random.nextInt(30));
+                message.setSize(1 + random.nextInt(100));
+                message.setOrderId(i);
+                live.add(new long[]{i, message.getSize()});
+            } else {
+                int index = random.nextInt(live.size());
+                long[] order = live.get(index);
+                int size = 1 + random.nextInt((int) order[1]);
+                message.setType(OrderMessage.REDUCE);
+                message.setOrderId(order[0]);
+                message.setSize(size);
+                order[1] -= size;
+                if (order[1] == 0){
+                    live.remove(index);
+                }
+            }
+            message.setSymbol(new byte[0], 0, 0);
+            book.processMessage(message, out);
+            published.publish(book, i);
+            published.read(view);
+            for (char side : new char[]{OrderMessage.BUY, OrderMessage.SELL}){
+                PriceLevelTree log = (side == OrderMessage.BUY) ? book.getSeller().getBidLog() : book.getBuyer().getOfferLog();
+                int levels = log.getLevels(prices, shares, 3);
+                assertEquals(levels, view.getLevels(side));
+                assertEquals(log.getTotalShares(), view.getTotalShares(side));
+                for (int level = 0; level < levels; level++){
+                    assertEquals(prices[level], view.getPrice(side, level));
+                    assertEquals(shares[level], view.getShares(side, level));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+public class QueryServerTest {
+
+    @Test
+    public void testCostAndWatch() throws Exception{
+        Books books = new Books(2);
+        QueryServer server = new QueryServer(new InetSocketAddress("127.0.0.1", 0), books.published, 100000);
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        OutputStream out = socket.getOutputStream();
+
+        books.apply("1 A a S 44.26 100 X");
+        books.apply("2 A b S 44.50 50 X");
+        books.apply("3 A c S 45.00 50 X");
+        request(out, "COST X B 100 120 200 250 ");
+        assertEquals("3 X B 100 4426.00", in.readLine());
+        assertEquals("3 X B 120 5316.00", in.readLine());
+        assertEquals("3 X B 200 DEEP", in.readLine());
+        assertEquals("3 X B 250 NA", in.readLine());
+        request(out, "COST - S 10");
+        assertEquals("0 - S 10 NA", in.readLine());
+        request(out, "COST X Q 10");
+        assertEquals("ERROR COST X Q 10", in.readLine());
+
+        request(out, "WATCH X B 150 200");
+        assertEquals("3 X B 150 6651.00", in.readLine());
+        assertEquals("3 X B 200 DEEP", in.readLine());
+        books.apply("4 A d S 44.00 100 X");
+        assertEquals("4 X B 150 6613.00", in.readLine());
+        assertEquals("4 X B 200 8826.00", in.readLine());
+        request(out, "UNWATCH X B 150");
+        //requests are answered in order, so the watch is gone once this is answered
+        request(out, "COST X B 150");
+        assertEquals("4 X B 150 6613.00", in.readLine());
+        books.apply("5 R d 100 X");
+        assertEquals("5 X B 200 DEEP", in.readLine());
+        request(out, "QUIT");
+        assertEquals(null, in.readLine());
+        socket.close();
+        server.close();
+    }
+
+    @Test
+    public void testManyClients() throws Exception{
+        Books books = new Books(10);
+        QueryServer server = new QueryServer(new InetSocketAddress("127.0.0.1", 0), books.published, 100000);
+        books.apply("1 A a B 44.26 100");
+        int clients = 100;
+        Socket[] sockets = new Socket[clients];
+        BufferedReader[] in = new BufferedReader[clients];
+        for (int i = 0; i < clients; i++){
+            sockets[i] = new Socket("127.0.0.1", server.getPort());
+            in[i] = new BufferedReader(new InputStreamReader(sockets[i].getInputStream()));
+            request(sockets[i].getOutputStream(), "WATCH - S "+(1 + i));
+            assertEquals("1 - S "+(1 + i)+" "+Prices.format(4426L * (1 + i)), in[i].readLine());
+        }
+        books.apply("2 A b B 44.30 50");
+        for (int i = 0; i < clients; i++){
+            long cost = 4430L * Math.min(50, 1 + i) + 4426L * Math.max(0, i + 1 - 50);
+            assertEquals("2 - S "+(1 + i)+" "+Prices.format(cost), in[i].readLine());
+            sockets[i].close();
+        }
+        server.close();
+    }
+
+    private void request(OutputStream out, String line) throws Exception{
+        out.write((line+"\n").getBytes());
+        out.flush();
+    }
+
+    /**
+     * Books with a target size of 100 that are published after every message.
+     */
+    private static class Books {
+        final OrderBooks books = new OrderBooks(new int[]{100}, new int[]{100});
+        final PublishedBooks published;
+        final MessageParser parser = new MessageParser();
+        final OrderMessage message = new OrderMessage();
+        final PriceWriter writer = new PriceWriter(new ByteArrayOutputStream());
+
+        Books(int depth){
+            this.published = new PublishedBooks(depth, new int[]{100}, new int[]{100});
+        }
+
+        void apply(String line) throws Exception{
+            this.parser.parse(line.getBytes(), 0, line.length(), this.message);
+            this.books.processMessage(this.message, this.writer);
+            this.published.publish(this.books.getBook(this.message.getSymbolBytes(), this.message.getSymbolLength()),
+                this.message.getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class ShardedPricerTest {
+
+    @Test
+    public void testMatchesSingleThreadPerSymbol() throws Exception{
+        String[] symbols = {"AAPL", "MSFT", "IBM", "GOOG", "", "XOM"};
+        ArrayList<String> lines = new ArrayList<String>();
+        ArrayList<ArrayList<String>> live = new ArrayList<ArrayList<String>>();
+        for (int i = 0; i < symbols.length; i++){
+            live.add(new ArrayList<String>());
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++){
+            int s = random.nextInt(symbols.length);
+            String symbol = symbols[s].isEmpty() ? "" : " "+symbols[s];
+            if (live.get(s).isEmpty() || random.nextInt(3) > 0){
+                String id = "o"+i;
+                live.get(s).add(id);
+                char side = random.nextBoolean() ? 'B' : 'S';
+                String price = (40 + random.nextInt(10))+"."+random.nextInt(100);
+                lines.add(i+" A "+id+" "+side+" "+price+" "+(1+random.nextInt(300))+symbol);
+            } else {
+                String id = live.get(s).remove(random.nextInt(live.get(s).size()));
+                lines.add(i+" R "+id+" 1000"+symbol);
+            }
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(expected);
+        OrderBooks books = new OrderBooks(200);
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, message);
+            books.processMessage(message, writer);
+        }
+        writer.flush();
+        assertEquals(symbols.length, books.size());
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ShardedPricer sharded = new ShardedPricer(3, new int[]{200}, new int[]{200}, actual, 0, false, false);
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, message);
+            assertTrue(sharded.dispatch(message));
+        }
+        sharded.finish();
+        assertNull(sharded.getError());
+
+        for (String symbol : symbols){
+            assertEquals(linesFor(expected.toString(), symbol), linesFor(actual.toString(), symbol));
+        }
+    }
+
+    @Test
+    public void testWorkerError() throws Exception{
+        ShardedPricer sharded = new ShardedPricer(2, new int[]{1}, new int[]{1}, new ByteArrayOutputStream(), 0, false, false);
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        byte[] line = "1 R missing 10 AAPL".getBytes();
+        parser.parse(line, 0, line.length, message);
+        boolean keep_going = true;
+        for (int i = 0; i < ShardedPricer.BATCH_SIZE * 8 && keep_going; i++){
+            keep_going = sharded.dispatch(message);
+        }
+        assertFalse(keep_going);
+        sharded.finish();
+        assertEquals("Error: Cannot remove shares. Unknown order id: missing", sharded.getError().getMessage());
+    }
+
+    private static ArrayList<String> linesFor(String output, String symbol){
+        ArrayList<String> lines = new ArrayList<String>();
+        for (String line : output.split("\n")){
+            String[] fields = line.split(" ");
+            String line_symbol = fields.length > 3 ? fields[3] : "";
+            if (line_symbol.equals(symbol)){
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SplitSidePricerTest {
+
+    @Test
+    public void testMatchesSingleThread() throws Exception{
+        String[] symbols = {"", " AAPL", " MSFT"};
+        ArrayList<String> lines = new ArrayList<String>();
+        ArrayList<ArrayList<String>> live = new ArrayList<ArrayList<String>>();
+        for (int i = 0; i < symbols.length; i++){
+            live.add(new ArrayList<String>());
+        }
+        Random random = new Random(9);
+        for (int i = 0; i < 20000; i++){
+            int s = random.nextInt(symbols.length);
+            if (live.get(s).isEmpty() || random.nextInt(3) > 0){
+                String id = "o"+i;
+                live.get(s).add(id);
+                char side = random.nextBoolean() ? 'B' : 'S';
+                String price = (40 + random.nextInt(10))+"."+random.nextInt(100);
+                lines.add(i+" A "+id+" "+side+" "+price+" "+(1+random.nextInt(300))+symbols[s]);
+            } else {
+                //partial reduces may leave shares behind, so the order is never reduced again
+                String id = live.get(s).remove(random.nextInt(live.get(s).size()));
+                lines.add(i+" R "+id+" "+(1+random.nextInt(300))+symbols[s]);
+            }
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(expected);
+        writer.setTagTargets(true);
+        OrderBooks books = new OrderBooks(new int[]{1}, new int[]{200, 10});
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, message);
+            books.processMessage(message, writer);
+        }
+        writer.flush();
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        PriceWriter split_writer = new PriceWriter(actual);
+        split_writer.setTagTargets(true);
+        SplitSidePricer split = new SplitSidePricer(new int[]{1}, new int[]{200, 10}, split_writer, 64, WaitStrategy.PARK, false, false);
+        for (String line : lines){
+            byte[] bytes = line.getBytes();
+            parser.parse(bytes, 0, bytes.length, message);
+            split.dispatch(message);
+        }
+        split.finish();
+        split_writer.flush();
+        assertNull(split.getError());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testUnknownOrderId() throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        SplitSidePricer split = new SplitSidePricer(new int[]{1}, new int[]{1}, writer, 4, WaitStrategy.YIELD, false, false);
+        MessageParser parser = new MessageParser();
+        OrderMessage message = new OrderMessage();
+        byte[] line = "1 A a S 10.00 5".getBytes();
+        parser.parse(line, 0, line.length, message);
+        split.dispatch(message);
+        line = "2 R b 5".getBytes();
+        parser.parse(line, 0, line.length, message);
+        try{
+            split.dispatch(message);
+            throw new AssertionError("expected an Exception");
+        } catch (Exception e){
+            assertEquals("Error: Cannot remove shares. Unknown order id: b", e.getMessage());
+        }
+        split.finish();
+        writer.flush();
+        assertEquals("1 B 10.00\n", out.toString());
+    }
+}
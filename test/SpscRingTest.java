@@ -0,0 +1,60 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpscRingTest {
+
+    @Test
+    public void testSingleThread(){
+        SpscRing<long[]> ring = new SpscRing<long[]>(slots(4), WaitStrategy.BUSY_SPIN, WaitStrategy.BUSY_SPIN);
+        assertNull(ring.poll());
+        for (int i = 0; i < 4; i++){
+            ring.claim()[0] = i;
+            ring.publish();
+        }
+        assertEquals(0L, ring.take()[0]);
+        ring.release();
+        ring.claim()[0] = 4;
+        ring.publish();
+        ring.close();
+        for (int i = 1; i <= 4; i++){
+            assertEquals((long) i, ring.take()[0]);
+            ring.release();
+        }
+        assertNull(ring.take());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeNotPowerOfTwo(){
+        new SpscRing<long[]>(slots(6), WaitStrategy.PARK, WaitStrategy.PARK);
+    }
+
+    @Test
+    public void testAcrossThreads() throws InterruptedException{
+        for (final WaitStrategy wait : WaitStrategy.values()){
+            final SpscRing<long[]> ring = new SpscRing<long[]>(slots(8), wait, wait);
+            Thread producer = new Thread(new Runnable(){
+                public void run(){
+                    for (long i = 0; i < 100000; i++){
+                        ring.claim()[0] = i;
+                        ring.publish();
+                    }
+                    ring.close();
+                }
+            });
+            producer.start();
+            long expected = 0;
+            long[] slot;
+            while ((slot = ring.take()) != null){
+                assertEquals(expected++, slot[0]);
+                ring.release();
+            }
+            producer.join();
+            assertEquals(100000L, expected);
+        }
+    }
+
+    private static long[][] slots(int size){
+        return new long[size][1];
+    }
+}
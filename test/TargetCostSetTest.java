@@ -0,0 +1,49 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class TargetCostSetTest {
+
+    @Test
+    public void testMatchesOneBuyerPerTarget() throws Exception{
+        int[] targets = {10000, 1, 200, 200};
+        int[] distinct = {1, 200, 10000};
+        Buyer shared = new Buyer(targets);
+        Seller shared_seller = new Seller(targets);
+        assertEquals(3, shared.getTargetCount());
+        Buyer[] buyers = new Buyer[distinct.length];
+        Seller[] sellers = new Seller[distinct.length];
+        for (int i = 0; i < distinct.length; i++){
+            assertEquals(distinct[i], shared.getTargetSize(i));
+            buyers[i] = new Buyer(distinct[i]);
+            sellers[i] = new Seller(distinct[i]);
+        }
+
+        Random random = new Random(3);
+        ArrayList<long[]> live = new ArrayList<long[]>();
+        for (int n = 0; n < 50000; n++){
+            if (live.isEmpty() || random.nextInt(5) < 3){
+                long price = 4000 + random.nextInt(200);
+                int size = 1 + random.nextInt(300);
+                live.add(new long[]{price, size});
+                assertEquals(buyers[0].addNewOfferTicks(price, size), shared.addNewOfferTicks(price, size));
+                assertEquals(sellers[0].addNewBidTicks(price, size), shared_seller.addNewBidTicks(price, size));
+                for (int i = 1; i < distinct.length; i++){
+                    assertEquals(buyers[i].addNewOfferTicks(price, size), shared.getCostChange(i));
+                    assertEquals(sellers[i].addNewBidTicks(price, size), shared_seller.getCostChange(i));
+                }
+            } else {
+                long[] order = live.remove(random.nextInt(live.size()));
+                int size = (int) order[1];
+                assertEquals(buyers[0].removeOfferTicks(order[0], size), shared.removeOfferTicks(order[0], size));
+                assertEquals(sellers[0].removeBidTicks(order[0], size), shared_seller.removeBidTicks(order[0], size));
+                for (int i = 1; i < distinct.length; i++){
+                    assertEquals(buyers[i].removeOfferTicks(order[0], size), shared.getCostChange(i));
+                    assertEquals(sellers[i].removeBidTicks(order[0], size), shared_seller.getCostChange(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+public class TargetCostTrackerTest {
+
+    @Test
+    public void testBoundaryMoves(){
+        PriceLevelTree log = new PriceLevelTree(false);
+        TargetCostTracker tracker = new TargetCostTracker(log, 200);
+
+        log.add(10000, 150);
+        tracker.add(10000, 150);
+        assertFalse(tracker.isFilled());
+
+        log.add(11000, 100);
+        tracker.add(11000, 100);
+        assertTrue(tracker.isFilled());
+        assertEquals(10000L*150+11000*50, tracker.getCost());
+        assertEquals(11000L, tracker.getBoundaryPrice());
+
+        //a better level pushes the boundary back to 100
+        log.add(9000, 100);
+        tracker.add(9000, 100);
+        assertEquals(9000L*100+10000*100, tracker.getCost());
+        assertEquals(10000L, tracker.getBoundaryPrice());
+
+        //removing the boundary level moves it forward again
+        log.remove(10000, 150);
+        tracker.remove(10000, 150);
+        assertEquals(9000L*100+11000*100, tracker.getCost());
+        assertEquals(11000L, tracker.getBoundaryPrice());
+
+        log.remove(11000, 1);
+        tracker.remove(11000, 1);
+        assertFalse(tracker.isFilled());
+    }
+
+    @Test
+    public void testMatchesFullRecalculation(){
+        Random random = new Random(7);
+        for (boolean descending : new boolean[]{false, true}){
+            PriceLevelTree log = new PriceLevelTree(descending);
+            TargetCostTracker tracker = new TargetCostTracker(log, 1000);
+
+            for (int i = 0; i < 20000; i++){
+                long price = 4000 + random.nextInt(100);
+                int size = 1 + random.nextInt(300);
+                int current_shares = log.getShares(price);
+                if (random.nextBoolean() && current_shares > 0){
+                    log.remove(price, size);
+                    tracker.remove(price, Math.min(size, current_shares));
+                } else {
+                    log.add(price, size);
+                    tracker.add(price, size);
+                }
+                long expected = log.getCostOfBest(1000);
+                assertEquals(expected != Prices.NOT_AVAILABLE, tracker.isFilled());
+                if (tracker.isFilled()){
+                    assertEquals(expected, tracker.getCost());
+                    assertEquals(log.getLastBoundaryPrice(), tracker.getBoundaryPrice());
+                }
+            }
+        }
+    }
+}
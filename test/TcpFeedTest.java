@@ -0,0 +1,156 @@
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+public class TcpFeedTest {
+
+    @Test
+    public void testMatchesTextFeed() throws Exception{
+        //enough frames to wrap the receive buffer many times, half text and half binary
+        String feed = feed(new Random(21), 50000, "");
+        TcpFeedReader reader = new TcpFeedReader(new InetSocketAddress("127.0.0.1", 0), 1);
+        Thread publisher = publish(reader.getPort(), feed);
+
+        assertEquals(price(new MessageParser(new ByteArrayInputStream(feed.getBytes()))), price(reader));
+        publisher.join();
+        assertEquals(0, reader.getGaps());
+        assertEquals(0, reader.getDuplicates());
+    }
+
+    @Test
+    public void testMultipleFeeds() throws Exception{
+        String first = feed(new Random(1), 20000, " X");
+        String second = feed(new Random(2), 20000, " Y");
+        TcpFeedReader reader = new TcpFeedReader(new InetSocketAddress("127.0.0.1", 0), 2);
+        Thread[] publishers = {publish(reader.getPort(), first), publish(reader.getPort(), second)};
+
+        OrderMessage message = new OrderMessage();
+        int x = 0;
+        int y = 0;
+        while (reader.next(message)){
+            if (message.getSymbol().equals("X")){
+                x++;
+            } else {
+                y++;
+            }
+        }
+        for (Thread publisher : publishers){
+            publisher.join();
+        }
+        assertEquals(20000, x);
+        assertEquals(20000, y);
+    }
+
+    @Test
+    public void testGapsAndDuplicates() throws Exception{
+        TcpFeedReader reader = new TcpFeedReader(new InetSocketAddress("127.0.0.1", 0), 1);
+        TcpFeedPublisher publisher = new TcpFeedPublisher(new InetSocketAddress("127.0.0.1", reader.getPort()));
+        publishLine(publisher, "1 A a B 44.26 100");
+        publisher.setSequence(1);
+        publishLine(publisher, "1 A a B 44.26 100");
+        publisher.setSequence(5);
+        publishLine(publisher, "2 R a 50");
+        publisher.close();
+
+        OrderMessage message = new OrderMessage();
+        assertTrue(reader.next(message));
+        assertEquals(OrderMessage.ADD, message.getType());
+        assertTrue(reader.next(message));
+        assertEquals(OrderMessage.REDUCE, message.getType());
+        assertFalse(reader.next(message));
+        assertEquals(1, reader.getDuplicates());
+        assertEquals(1, reader.getGaps());
+        assertEquals(3, reader.getMissed());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFrame() throws Exception{
+        TcpFeedReader reader = new TcpFeedReader(new InetSocketAddress("127.0.0.1", 0), 1);
+        TcpFeedPublisher publisher = new TcpFeedPublisher(new InetSocketAddress("127.0.0.1", reader.getPort()));
+        publishLine(publisher, "1 A a X 44.26 100");
+        publisher.close();
+        try{
+            reader.next(new OrderMessage());
+        } finally {
+            assertEquals("1 A a X 44.26 100", reader.getLine());
+            reader.close();
+        }
+    }
+
+    /**
+     * Generates a feed of adds and reduces, one line per message.
+     */
+    private String feed(Random random, int messages, String symbol){
+        StringBuilder feed = new StringBuilder();
+        int[] remaining = new int[messages];
+        int orders = 0;
+        for (int i = 0; i < messages; i++){
+            int order = (orders == 0) ? 0 : random.nextInt(orders);
+            if (remaining[order] > 0 && random.nextInt(3) == 0){
+                int size = Math.min(remaining[order], 1 + random.nextInt(50));
+                remaining[order] -= size;
+                feed.append(i).append(" R o").append(order).append(' ').append(size);
+            } else {
+                remaining[orders] = 1 + random.nextInt(100);
+                feed.append(i).append(" A o").append(orders++).append(random.nextBoolean() ? " B " : " S ")
+                    .append(Prices.format(4000 + random.nextInt(100))).append(' ').append(remaining[orders - 1]);
+            }
+            feed.append(symbol).append('\n');
+        }
+        return feed.toString();
+    }
+
+    /**
+     * Publishes the lines of a feed on a thread of its own, every other one as a binary record.
+     */
+    private Thread publish(final int port, final String feed){
+        Thread thread = new Thread(new Runnable(){
+            public void run(){
+                try{
+                    TcpFeedPublisher publisher = new TcpFeedPublisher(new InetSocketAddress("127.0.0.1", port));
+                    MessageParser parser = new MessageParser();
+                    OrderMessage message = new OrderMessage();
+                    boolean binary = false;
+                    for (String line : feed.split("\n")){
+                        byte[] bytes = line.getBytes();
+                        if (binary){
+                            parser.parse(bytes, 0, bytes.length, message);
+                            publisher.publish(message);
+                        } else {
+                            publisher.publishLine(bytes, 0, bytes.length);
+                        }
+                        binary = !binary;
+                    }
+                    publisher.close();
+                } catch (IOException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void publishLine(TcpFeedPublisher publisher, String line) throws IOException{
+        publisher.publishLine(line.getBytes(), 0, line.length());
+    }
+
+    private String price(MessageReader reader) throws Exception{
+        OrderBooks books = new OrderBooks(new int[]{200}, new int[]{200});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PriceWriter writer = new PriceWriter(out);
+        OrderMessage message = new OrderMessage();
+        while (reader.next(message)){
+            books.processMessage(message, writer);
+        }
+        writer.flush();
+        return out.toString();
+    }
+}
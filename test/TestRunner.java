@@ -15,5 +15,155 @@ public class TestRunner {
          System.out.println(failure.toString());
       }
       System.out.println("SellerTests: "+SellerResult.wasSuccessful());
+
+      Result PriceLevelTreeResult = JUnitCore.runClasses(PriceLevelTreeTest.class);
+      for (Failure failure : PriceLevelTreeResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PriceLevelTreeTests: "+PriceLevelTreeResult.wasSuccessful());
+
+      Result TargetCostTrackerResult = JUnitCore.runClasses(TargetCostTrackerTest.class);
+      for (Failure failure : TargetCostTrackerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("TargetCostTrackerTests: "+TargetCostTrackerResult.wasSuccessful());
+
+      Result PricesResult = JUnitCore.runClasses(PricesTest.class);
+      for (Failure failure : PricesResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PricesTests: "+PricesResult.wasSuccessful());
+
+      Result MessageParserResult = JUnitCore.runClasses(MessageParserTest.class);
+      for (Failure failure : MessageParserResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("MessageParserTests: "+MessageParserResult.wasSuccessful());
+
+      Result PriceWriterResult = JUnitCore.runClasses(PriceWriterTest.class);
+      for (Failure failure : PriceWriterResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PriceWriterTests: "+PriceWriterResult.wasSuccessful());
+
+      Result OrderIndexResult = JUnitCore.runClasses(OrderIndexTest.class);
+      for (Failure failure : OrderIndexResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("OrderIndexTests: "+OrderIndexResult.wasSuccessful());
+
+      Result ShardedPricerResult = JUnitCore.runClasses(ShardedPricerTest.class);
+      for (Failure failure : ShardedPricerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("ShardedPricerTests: "+ShardedPricerResult.wasSuccessful());
+
+      Result SpscRingResult = JUnitCore.runClasses(SpscRingTest.class);
+      for (Failure failure : SpscRingResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("SpscRingTests: "+SpscRingResult.wasSuccessful());
+
+      Result PipelinedPricerResult = JUnitCore.runClasses(PipelinedPricerTest.class);
+      for (Failure failure : PipelinedPricerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PipelinedPricerTests: "+PipelinedPricerResult.wasSuccessful());
+
+      Result SplitSidePricerResult = JUnitCore.runClasses(SplitSidePricerTest.class);
+      for (Failure failure : SplitSidePricerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("SplitSidePricerTests: "+SplitSidePricerResult.wasSuccessful());
+
+      Result TargetCostSetResult = JUnitCore.runClasses(TargetCostSetTest.class);
+      for (Failure failure : TargetCostSetResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("TargetCostSetTests: "+TargetCostSetResult.wasSuccessful());
+
+      Result LatencyHistogramResult = JUnitCore.runClasses(LatencyHistogramTest.class);
+      for (Failure failure : LatencyHistogramResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("LatencyHistogramTests: "+LatencyHistogramResult.wasSuccessful());
+
+      Result BinaryFeedResult = JUnitCore.runClasses(BinaryFeedTest.class);
+      for (Failure failure : BinaryFeedResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("BinaryFeedTests: "+BinaryFeedResult.wasSuccessful());
+
+      Result JournalResult = JUnitCore.runClasses(JournalTest.class);
+      for (Failure failure : JournalResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("JournalTests: "+JournalResult.wasSuccessful());
+
+      Result PricerStatsResult = JUnitCore.runClasses(PricerStatsTest.class);
+      for (Failure failure : PricerStatsResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PricerStatsTests: "+PricerStatsResult.wasSuccessful());
+
+      Result ConflatingDispatcherResult = JUnitCore.runClasses(ConflatingDispatcherTest.class);
+      for (Failure failure : ConflatingDispatcherResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("ConflatingDispatcherTests: "+ConflatingDispatcherResult.wasSuccessful());
+
+      Result CoalescingPriceOutputResult = JUnitCore.runClasses(CoalescingPriceOutputTest.class);
+      for (Failure failure : CoalescingPriceOutputResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("CoalescingPriceOutputTests: "+CoalescingPriceOutputResult.wasSuccessful());
+
+      Result BookDepthResult = JUnitCore.runClasses(BookDepthTest.class);
+      for (Failure failure : BookDepthResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("BookDepthTests: "+BookDepthResult.wasSuccessful());
+
+      Result PublishedBookResult = JUnitCore.runClasses(PublishedBookTest.class);
+      for (Failure failure : PublishedBookResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PublishedBookTests: "+PublishedBookResult.wasSuccessful());
+
+      Result OffHeapLevelStoreResult = JUnitCore.runClasses(OffHeapLevelStoreTest.class);
+      for (Failure failure : OffHeapLevelStoreResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("OffHeapLevelStoreTests: "+OffHeapLevelStoreResult.wasSuccessful());
+
+      Result TcpFeedResult = JUnitCore.runClasses(TcpFeedTest.class);
+      for (Failure failure : TcpFeedResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("TcpFeedTests: "+TcpFeedResult.wasSuccessful());
+
+      Result QueryServerResult = JUnitCore.runClasses(QueryServerTest.class);
+      for (Failure failure : QueryServerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("QueryServerTests: "+QueryServerResult.wasSuccessful());
+
+      Result BacktestRunnerResult = JUnitCore.runClasses(BacktestRunnerTest.class);
+      for (Failure failure : BacktestRunnerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("BacktestRunnerTests: "+BacktestRunnerResult.wasSuccessful());
+
+      Result PricerResult = JUnitCore.runClasses(PricerTest.class);
+      for (Failure failure : PricerResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PricerTests: "+PricerResult.wasSuccessful());
+
+      Result PriceRingResult = JUnitCore.runClasses(PriceRingTest.class);
+      for (Failure failure : PriceRingResult.getFailures()) {
+         System.out.println(failure.toString());
+      }
+      System.out.println("PriceRingTests: "+PriceRingResult.wasSuccessful());
    }
 } 